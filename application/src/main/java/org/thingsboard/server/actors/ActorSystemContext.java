@@ -21,16 +21,23 @@ import akka.actor.Scheduler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.actors.device.DeviceActorStats;
+import org.thingsboard.server.actors.rpc.RpcOutboundStats;
+import org.thingsboard.server.actors.rule.RuleActorChain;
 import org.thingsboard.server.actors.service.ActorService;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
+import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
@@ -51,10 +58,12 @@ import org.thingsboard.server.service.cluster.routing.ClusterRoutingService;
 import org.thingsboard.server.service.cluster.rpc.ClusterRpcService;
 import org.thingsboard.server.service.component.ComponentDiscoveryService;
 
+import javax.annotation.Nullable;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Optional;
 
+@Slf4j
 @Component
 public class ActorSystemContext {
     private static final String AKKA_CONF_FILE_NAME = "actor-system.conf";
@@ -108,9 +117,30 @@ public class ActorSystemContext {
     @Autowired
     @Getter @Setter private PluginWebSocketMsgEndpoint wsMsgEndpoint;
 
+    @Autowired
+    @Getter private DeviceActorStats deviceActorStats;
+
+    @Autowired
+    @Getter private RpcOutboundStats rpcOutboundStats;
+
+    @Value("${rpc.outbound.queue_size}")
+    @Getter private int rpcOutboundQueueSize;
+
+    @Value("${rpc.outbound.batch_size}")
+    @Getter private int rpcOutboundBatchSize;
+
     @Value("${actors.session.sync.timeout}")
     @Getter private long syncSessionTimeout;
 
+    @Value("${actors.app.routers}")
+    @Getter private int deviceMsgRoutersCount;
+
+    @Value("${actors.device.idle_timeout}")
+    @Getter private long deviceActorIdleTimeout;
+
+    @Value("${actors.device.max_pending_msgs}")
+    @Getter private int deviceActorMaxPendingMsgs;
+
     @Value("${actors.plugin.termination.delay}")
     @Getter private long pluginActorTerminationDelay;
 
@@ -136,6 +166,10 @@ public class ActorSystemContext {
 
     @Getter @Setter private ActorRef appActor;
 
+    @Setter private ActorRef[] deviceMsgRouters;
+
+    @Getter @Setter private volatile RuleActorChain systemRuleChain;
+
     @Getter @Setter private ActorRef sessionManagerActor;
 
     @Getter @Setter private ActorRef statsActor;
@@ -146,6 +180,13 @@ public class ActorSystemContext {
         config = ConfigFactory.parseResources(AKKA_CONF_FILE_NAME).withFallback(ConfigFactory.load());
     }
 
+    /**
+     * Returns the router of device messages. Messages of the same device are always routed by the same router.
+     */
+    public ActorRef getDeviceMsgRouter(DeviceId deviceId) {
+        return deviceMsgRouters[(deviceId.hashCode() & Integer.MAX_VALUE) % deviceMsgRouters.length];
+    }
+
     public Scheduler getScheduler() {
         return actorSystem.scheduler();
     }
@@ -169,7 +210,16 @@ public class ActorSystemContext {
     }
 
     private void persistEvent(Event event) {
-        eventService.save(event);
+        Futures.addCallback(eventService.saveAsync(event), new FutureCallback<Event>() {
+            @Override
+            public void onSuccess(@Nullable Event result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}] Failed to persist {} event", event.getEntityId(), event.getType(), t);
+            }
+        });
     }
 
     private String toString(Exception e) {
@@ -76,6 +76,7 @@ public class AppActor extends ContextAwareActor {
         logger.info("Starting main system actor.");
         try {
             ruleManager.init(this.context());
+            systemContext.setSystemRuleChain(ruleManager.getRuleChain());
             pluginManager.init(this.context());
 
             PageDataIterable<Tenant> tenantIterator = new PageDataIterable<>(link -> tenantService.findTenants(link), ENTITY_PACK_LIMIT);
@@ -96,6 +97,8 @@ public class AppActor extends ContextAwareActor {
         logger.debug("Received message: {}", msg);
         if (msg instanceof ToDeviceActorMsg) {
             processDeviceMsg((ToDeviceActorMsg) msg);
+        } else if (msg instanceof TenantActorRequestMsg) {
+            onTenantActorRequest((TenantActorRequestMsg) msg);
         } else if (msg instanceof ToPluginActorMsg) {
             onToPluginMsg((ToPluginActorMsg) msg);
         } else if (msg instanceof ToRuleActorMsg) {
@@ -151,6 +154,7 @@ public class AppActor extends ContextAwareActor {
                 target = pluginManager.getOrCreatePluginActor(this.context(), msg.getPluginId().get());
             } else if (msg.getRuleId().isPresent()) {
                 Optional<ActorRef> ref = ruleManager.update(this.context(), msg.getRuleId().get(), msg.getEvent());
+                systemContext.setSystemRuleChain(ruleManager.getRuleChain());
                 if (ref.isPresent()) {
                     target = ref.get();
                 } else {
@@ -170,6 +174,11 @@ public class AppActor extends ContextAwareActor {
         getOrCreateTenantActor(msg.getTenantId()).tell(msg, ActorRef.noSender());
     }
 
+    private void onTenantActorRequest(TenantActorRequestMsg msg) {
+        ActorRef tenantActor = getOrCreateTenantActor(msg.getTenantId());
+        sender().tell(new TenantActorResponseMsg(msg.getTenantId(), tenantActor), context().self());
+    }
+
     private void processDeviceMsg(ToDeviceActorMsg toDeviceActorMsg) {
         TenantId tenantId = toDeviceActorMsg.getTenantId();
         ActorRef tenantActor = getOrCreateTenantActor(tenantId);
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.app;
+
+import akka.actor.ActorRef;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.service.ContextAwareActor;
+import org.thingsboard.server.actors.service.ContextBasedCreator;
+import org.thingsboard.server.actors.tenant.RuleChainDeviceMsg;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+import org.thingsboard.server.extensions.api.device.ToDeviceActorNotificationMsg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes device messages to tenant actors instead of the single threaded app actor.
+ * <p>
+ * Messages of a particular device are always routed by the same router (see {@link ActorSystemContext#getDeviceMsgRouter}),
+ * so their order is preserved. Tenant actors are requested from the app actor once and cached. Messages of a tenant
+ * are buffered until its actor is known, so they are never routed through two different paths at the same time.
+ */
+public class DeviceMsgRouterActor extends ContextAwareActor {
+
+    private final LoggingAdapter logger = Logging.getLogger(getContext().system(), this);
+
+    private final Map<TenantId, ActorRef> tenantActors;
+    private final Map<TenantId, List<Object>> pendingMsgs;
+
+    private DeviceMsgRouterActor(ActorSystemContext systemContext) {
+        super(systemContext);
+        this.tenantActors = new HashMap<>();
+        this.pendingMsgs = new HashMap<>();
+    }
+
+    @Override
+    public void onReceive(Object msg) throws Exception {
+        if (msg instanceof ToDeviceActorMsg) {
+            route(((ToDeviceActorMsg) msg).getTenantId(), msg);
+        } else if (msg instanceof ToDeviceActorNotificationMsg) {
+            route(((ToDeviceActorNotificationMsg) msg).getTenantId(), msg);
+        } else if (msg instanceof TenantActorResponseMsg) {
+            onTenantActorResponse((TenantActorResponseMsg) msg);
+        } else {
+            logger.warning("Unknown message: {}!", msg);
+        }
+    }
+
+    private void route(TenantId tenantId, Object msg) {
+        ActorRef tenantActor = tenantActors.get(tenantId);
+        if (tenantActor != null) {
+            tell(tenantActor, msg);
+        } else {
+            List<Object> tenantMsgs = pendingMsgs.get(tenantId);
+            if (tenantMsgs == null) {
+                logger.debug("[{}] Requesting tenant actor", tenantId);
+                tenantMsgs = new ArrayList<>();
+                pendingMsgs.put(tenantId, tenantMsgs);
+                systemContext.getAppActor().tell(new TenantActorRequestMsg(tenantId), self());
+            }
+            tenantMsgs.add(msg);
+        }
+    }
+
+    private void onTenantActorResponse(TenantActorResponseMsg msg) {
+        ActorRef tenantActor = msg.getTenantActor();
+        tenantActors.put(msg.getTenantId(), tenantActor);
+        List<Object> tenantMsgs = pendingMsgs.remove(msg.getTenantId());
+        if (tenantMsgs != null) {
+            tenantMsgs.forEach(pendingMsg -> tell(tenantActor, pendingMsg));
+        }
+    }
+
+    private void tell(ActorRef tenantActor, Object msg) {
+        if (msg instanceof ToDeviceActorMsg) {
+            ToDeviceActorMsg toDeviceActorMsg = (ToDeviceActorMsg) msg;
+            if (toDeviceActorMsg.getPayload().getMsgType().requiresRulesProcessing()) {
+                tenantActor.tell(new RuleChainDeviceMsg(toDeviceActorMsg, systemContext.getSystemRuleChain()), self());
+                return;
+            }
+        }
+        tenantActor.tell(msg, self());
+    }
+
+    public static class ActorCreator extends ContextBasedCreator<DeviceMsgRouterActor> {
+        private static final long serialVersionUID = 1L;
+
+        public ActorCreator(ActorSystemContext context) {
+            super(context);
+        }
+
+        @Override
+        public DeviceMsgRouterActor create() throws Exception {
+            return new DeviceMsgRouterActor(context);
+        }
+    }
+}
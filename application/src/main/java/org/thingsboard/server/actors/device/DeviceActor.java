@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.actors.device;
 
+import akka.actor.ReceiveTimeout;
+import akka.actor.Status;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import org.thingsboard.server.actors.ActorSystemContext;
@@ -30,14 +32,26 @@ import org.thingsboard.server.extensions.api.device.DeviceAttributesEventNotific
 import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotificationMsg;
 import org.thingsboard.server.extensions.api.device.ToDeviceActorNotificationMsg;
 import org.thingsboard.server.extensions.api.plugins.msg.*;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
 
 public class DeviceActor extends ContextAwareActor {
 
+    private static final long INIT_RETRY_MIN_DELAY_MS = 1000;
+    private static final long INIT_RETRY_MAX_DELAY_MS = 60000;
+
     private final LoggingAdapter logger = Logging.getLogger(getContext().system(), this);
 
     private final TenantId tenantId;
     private final DeviceId deviceId;
     private final DeviceActorMessageProcessor processor;
+    private final Deque<Object> pendingMsgs = new ArrayDeque<>();
+    private boolean initialized;
+    private long initRetryDelayMs = INIT_RETRY_MIN_DELAY_MS;
+    private boolean passivating;
 
     private DeviceActor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
@@ -46,8 +60,95 @@ public class DeviceActor extends ContextAwareActor {
         this.processor = new DeviceActorMessageProcessor(systemContext, logger, deviceId);
     }
 
+    @Override
+    public void preStart() {
+        processor.initAttributes(context());
+        long idleTimeout = systemContext.getDeviceActorIdleTimeout();
+        if (idleTimeout > 0) {
+            context().setReceiveTimeout(Duration.create(idleTimeout, TimeUnit.MILLISECONDS));
+        }
+    }
+
     @Override
     public void onReceive(Object msg) throws Exception {
+        if (msg instanceof DeviceActorInitMsg) {
+            onInit((DeviceActorInitMsg) msg);
+        } else if (msg instanceof Status.Failure) {
+            onInitFailure(((Status.Failure) msg).cause());
+        } else if (msg instanceof DeviceActorInitRetryMsg) {
+            processor.initAttributes(context());
+        } else if (msg instanceof ReceiveTimeout) {
+            onIdle();
+        } else if (msg instanceof DeviceActorPassivateMsg) {
+            onPassivate();
+        } else if (!initialized) {
+            addPendingMsg(msg);
+        } else {
+            process(msg);
+        }
+    }
+
+    private void onInit(DeviceActorInitMsg msg) throws Exception {
+        if (initialized) {
+            return;
+        }
+        if (msg.getDevice() == null) {
+            logger.warning("[{}][{}] Device not found, stopping device actor", tenantId, deviceId);
+            context().stop(self());
+            return;
+        }
+        processor.onInit(msg);
+        initialized = true;
+        logger.debug("[{}][{}] Device actor initialized, processing {} pending messages", tenantId, deviceId, pendingMsgs.size());
+        for (Object pendingMsg : pendingMsgs) {
+            process(pendingMsg);
+        }
+        pendingMsgs.clear();
+    }
+
+    /**
+     * Messages received before the device is initialized are buffered up to the configured limit.
+     * Once the limit is reached, the oldest message is dropped.
+     */
+    private void addPendingMsg(Object msg) {
+        if (pendingMsgs.size() >= systemContext.getDeviceActorMaxPendingMsgs()) {
+            Object droppedMsg = pendingMsgs.pollFirst();
+            logger.warning("[{}][{}] Too many messages pending device actor initialization, dropping {}", tenantId, deviceId, droppedMsg);
+        }
+        pendingMsgs.addLast(msg);
+    }
+
+    /**
+     * Pending messages are kept and the initialization is retried with an exponential backoff,
+     * so an unavailable database neither loses recent device messages nor causes a restart loop.
+     */
+    private void onInitFailure(Throwable cause) {
+        logger.warning("[{}][{}] Failed to initialize device actor, retrying in {} ms: {}", tenantId, deviceId, initRetryDelayMs, cause);
+        systemContext.getScheduler().scheduleOnce(Duration.create(initRetryDelayMs, TimeUnit.MILLISECONDS),
+                self(), new DeviceActorInitRetryMsg(deviceId), context().dispatcher(), self());
+        initRetryDelayMs = Math.min(initRetryDelayMs * 2, INIT_RETRY_MAX_DELAY_MS);
+    }
+
+    private void onIdle() {
+        if (initialized && !passivating && processor.isIdle()) {
+            logger.debug("[{}][{}] Device actor is idle, requesting passivation", tenantId, deviceId);
+            passivating = true;
+            context().parent().tell(new DeviceActorIdleMsg(deviceId), self());
+        }
+    }
+
+    private void onPassivate() {
+        passivating = false;
+        if (processor.isIdle()) {
+            logger.debug("[{}][{}] Passivating device actor", tenantId, deviceId);
+            context().stop(self());
+        } else {
+            logger.debug("[{}][{}] Device actor is active again, cancelling passivation", tenantId, deviceId);
+            context().parent().tell(new DeviceActorPassivationCancelledMsg(deviceId), self());
+        }
+    }
+
+    private void process(Object msg) throws Exception {
         if (msg instanceof RuleChainDeviceMsg) {
             processor.process(context(), (RuleChainDeviceMsg) msg);
         } else if (msg instanceof RulesProcessedMsg) {
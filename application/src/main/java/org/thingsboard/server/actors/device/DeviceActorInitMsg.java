@@ -0,0 +1,32 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.device;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the asynchronous device actor initialization: the device and its attributes grouped by scope.
+ */
+@Data
+public final class DeviceActorInitMsg {
+    private final Device device;
+    private final Map<String, List<AttributeKvEntry>> attributes;
+}
@@ -17,7 +17,11 @@ package org.thingsboard.server.actors.device;
 
 import akka.actor.ActorContext;
 import akka.actor.ActorRef;
+import akka.actor.Status;
 import akka.event.LoggingAdapter;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.rule.*;
 import org.thingsboard.server.actors.shared.AbstractContextAwareMsgProcessor;
@@ -51,7 +55,6 @@ import org.thingsboard.server.extensions.api.plugins.msg.ToDeviceRpcRequestPlugi
 import org.thingsboard.server.extensions.api.plugins.msg.ToPluginRpcResponseDeviceMsg;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -81,16 +84,45 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         this.attributeSubscriptions = new HashMap<>();
         this.rpcSubscriptions = new HashMap<>();
         this.rpcPendingMap = new HashMap<>();
-        initAttributes();
     }
 
-    private void initAttributes() {
+    /**
+     * Fetches the device and attributes of all scopes without blocking the actor thread.
+     * The result is sent back to the actor as {@link DeviceActorInitMsg} or {@link Status.Failure}.
+     */
+    void initAttributes(ActorContext context) {
+        ActorRef self = context.self();
+        ListenableFuture<Device> deviceFuture = systemContext.getDeviceService().findDeviceByIdAsync(deviceId);
+        ListenableFuture<Map<String, List<AttributeKvEntry>>> attributesFuture = systemContext.getAttributesService()
+                .findAll(deviceId, Arrays.asList(DataConstants.CLIENT_SCOPE, DataConstants.SERVER_SCOPE, DataConstants.SHARED_SCOPE));
+        Futures.addCallback(Futures.allAsList(deviceFuture, attributesFuture), new FutureCallback<List<Object>>() {
+            @Override
+            public void onSuccess(List<Object> result) {
+                self.tell(new DeviceActorInitMsg(Futures.getUnchecked(deviceFuture), Futures.getUnchecked(attributesFuture)), ActorRef.noSender());
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                self.tell(new Status.Failure(t), ActorRef.noSender());
+            }
+        });
+    }
+
+    void onInit(DeviceActorInitMsg msg) {
         //TODO: add invalidation of deviceType cache.
-        Device device = systemContext.getDeviceService().findDeviceById(deviceId);
+        Device device = msg.getDevice();
         this.deviceName = device.getName();
         this.deviceType = device.getType();
-        this.deviceAttributes = new DeviceAttributes(fetchAttributes(DataConstants.CLIENT_SCOPE),
-                fetchAttributes(DataConstants.SERVER_SCOPE), fetchAttributes(DataConstants.SHARED_SCOPE));
+        Map<String, List<AttributeKvEntry>> attributes = msg.getAttributes();
+        this.deviceAttributes = new DeviceAttributes(attributes.get(DataConstants.CLIENT_SCOPE),
+                attributes.get(DataConstants.SERVER_SCOPE), attributes.get(DataConstants.SHARED_SCOPE));
+    }
+
+    /**
+     * Device actor can be passivated only if it has no state that will be lost after stop.
+     */
+    boolean isIdle() {
+        return sessions.isEmpty() && attributeSubscriptions.isEmpty() && rpcSubscriptions.isEmpty() && rpcPendingMap.isEmpty();
     }
 
     private void refreshAttributes(DeviceAttributesEventNotificationMsg msg) {
@@ -362,16 +394,6 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         }
     }
 
-    private List<AttributeKvEntry> fetchAttributes(String scope) {
-        try {
-            //TODO: replace this with async operation. Happens only during actor creation, but is still criticla for performance,
-            return systemContext.getAttributesService().findAll(this.deviceId, scope).get();
-        } catch (InterruptedException | ExecutionException e) {
-            logger.warning("[{}] Failed to fetch attributes for scope: {}", deviceId, scope);
-            throw new RuntimeException(e);
-        }
-    }
-
     public void processCredentialsUpdate(ActorContext context, DeviceCredentialsUpdateNotificationMsg msg) {
         sessions.forEach((k, v) -> {
             sendMsgToSessionActor(new BasicToDeviceSessionActorMsg(new SessionCloseNotification(), k), v.getServer());
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.device;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node wide statistics of device actors lifecycle.
+ */
+@Component
+@Slf4j
+public class DeviceActorStats {
+
+    @Value("${actors.device.stats_print_interval_ms}")
+    private long statsPrintIntervalMs;
+
+    private final AtomicLong residentActors = new AtomicLong();
+    private final AtomicLong createdActors = new AtomicLong();
+    private final AtomicLong passivatedActors = new AtomicLong();
+    private volatile long lastStatsPrintTs = System.currentTimeMillis();
+    private volatile long lastPassivatedActors;
+
+    public void onActorCreated() {
+        residentActors.incrementAndGet();
+        createdActors.incrementAndGet();
+        printStats();
+    }
+
+    public void onActorTerminated(boolean passivated) {
+        residentActors.decrementAndGet();
+        if (passivated) {
+            passivatedActors.incrementAndGet();
+        }
+        printStats();
+    }
+
+    public long getResidentActors() {
+        return residentActors.get();
+    }
+
+    public long getCreatedActors() {
+        return createdActors.get();
+    }
+
+    public long getPassivatedActors() {
+        return passivatedActors.get();
+    }
+
+    private void printStats() {
+        long ts = System.currentTimeMillis();
+        long interval = ts - lastStatsPrintTs;
+        if (statsPrintIntervalMs > 0 && interval > statsPrintIntervalMs) {
+            lastStatsPrintTs = ts;
+            long passivated = passivatedActors.get();
+            double passivationRate = (passivated - lastPassivatedActors) * 1000.0 / interval;
+            lastPassivatedActors = passivated;
+            log.info("Device actors stats: resident [{}], created [{}], passivated [{}], passivation rate [{}/s]",
+                    residentActors.get(), createdActors.get(), passivated, String.format("%.2f", passivationRate));
+        }
+    }
+}
@@ -82,6 +82,11 @@ public final class PluginProcessingContext implements PluginContext {
         pluginCtx.msgEndpoint.send(wsMsg);
     }
 
+    @Override
+    public void send(PluginWebsocketMsg<?> wsMsg, PluginCallback<Void> callback) {
+        pluginCtx.msgEndpoint.send(wsMsg, getCallback(callback, v -> null));
+    }
+
     @Override
     public void close(PluginWebsocketSessionRef sessionRef) throws IOException {
         pluginCtx.msgEndpoint.close(sessionRef);
@@ -157,7 +162,10 @@ public final class PluginProcessingContext implements PluginContext {
     public void saveTsData(final EntityId entityId, final TsKvEntry entry, final PluginCallback<Void> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<Void>> rsListFuture = pluginCtx.tsService.save(entityId, entry);
-            Futures.addCallback(rsListFuture, getListCallback(callback, v -> null), executor);
+            Futures.addCallback(rsListFuture, getListCallback(callback, v -> {
+                onTimeseriesChanged(entityId, Collections.singletonList(entry));
+                return null;
+            }), executor);
         }));
     }
 
@@ -170,7 +178,10 @@ public final class PluginProcessingContext implements PluginContext {
     public void saveTsData(final EntityId entityId, final List<TsKvEntry> entries, long ttl, final PluginCallback<Void> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<Void>> rsListFuture = pluginCtx.tsService.save(entityId, entries, ttl);
-            Futures.addCallback(rsListFuture, getListCallback(callback, v -> null), executor);
+            Futures.addCallback(rsListFuture, getListCallback(callback, v -> {
+                onTimeseriesChanged(entityId, entries);
+                return null;
+            }), executor);
         }));
     }
 
@@ -222,6 +233,11 @@ public final class PluginProcessingContext implements PluginContext {
         pluginCtx.toDeviceActor(DeviceAttributesEventNotificationMsg.onUpdate(tenantId, deviceId, scope, values));
     }
 
+    private void onTimeseriesChanged(EntityId entityId, List<TsKvEntry> entries) {
+        List<String> keys = entries.stream().map(TsKvEntry::getKey).distinct().collect(Collectors.toList());
+        pluginCtx.systemContext.getActorService().onTimeseriesUpdate(entityId, keys);
+    }
+
     private <T, R> FutureCallback<List<T>> getListCallback(final PluginCallback<R> callback, Function<List<T>, R> transformer) {
         return new FutureCallback<List<T>>() {
             @Override
@@ -39,7 +39,7 @@ public class RpcManagerActor extends ContextAwareActor {
 
     private final Map<ServerAddress, SessionActorInfo> sessionActors;
 
-    private final Map<ServerAddress, Queue<ClusterAPIProtos.ToRpcServerMessage>> pendingMsgs;
+    private final Map<ServerAddress, RpcOutboundQueue> pendingMsgs;
 
     private final ServerAddress instance;
 
@@ -89,18 +89,15 @@ public class RpcManagerActor extends ContextAwareActor {
             session.actor.tell(msg, ActorRef.noSender());
         } else {
             log.debug("{} Storing msg to pending queue", address);
-            Queue<ClusterAPIProtos.ToRpcServerMessage> queue = pendingMsgs.get(address);
-            if (queue == null) {
-                queue = new LinkedList<>();
-                pendingMsgs.put(address, queue);
-            }
-            queue.add(msg.getMsg());
+            pendingMsgs.computeIfAbsent(address, a -> new RpcOutboundQueue(systemContext.getRpcOutboundQueueSize(),
+                    systemContext.getRpcOutboundStats())).add(msg.getMsg());
         }
     }
 
     @Override
     public void postStop() {
         sessionActors.clear();
+        pendingMsgs.values().forEach(RpcOutboundQueue::clear);
         pendingMsgs.clear();
     }
 
@@ -143,7 +140,10 @@ public class RpcManagerActor extends ContextAwareActor {
         SessionActorInfo sessionRef = sessionActors.get(remoteAddress);
         if (context().sender().equals(sessionRef.actor)) {
             sessionActors.remove(remoteAddress);
-            pendingMsgs.remove(remoteAddress);
+            RpcOutboundQueue queue = pendingMsgs.remove(remoteAddress);
+            if (queue != null) {
+                queue.clear();
+            }
             if (reconnect) {
                 onCreateSessionRequest(new RpcSessionCreateRequestMsg(sessionRef.sessionId, remoteAddress, null));
             }
@@ -160,10 +160,13 @@ public class RpcManagerActor extends ContextAwareActor {
     private void register(ServerAddress remoteAddress, UUID uuid, ActorRef sender) {
         sessionActors.put(remoteAddress, new SessionActorInfo(uuid, sender));
         log.debug("[{}][{}] Registering session actor.", remoteAddress, uuid);
-        Queue<ClusterAPIProtos.ToRpcServerMessage> data = pendingMsgs.remove(remoteAddress);
+        RpcOutboundQueue data = pendingMsgs.remove(remoteAddress);
         if (data != null) {
             log.debug("[{}][{}] Forwarding {} pending messages.", remoteAddress, uuid, data.size());
-            data.forEach(msg -> sender.tell(new RpcSessionTellMsg(remoteAddress, msg), ActorRef.noSender()));
+            ClusterAPIProtos.ToRpcServerMessage msg;
+            while ((msg = data.poll()) != null) {
+                sender.tell(new RpcSessionTellMsg(remoteAddress, msg), ActorRef.noSender());
+            }
         } else {
             log.debug("[{}][{}] No pending messages to forward.", remoteAddress, uuid);
         }
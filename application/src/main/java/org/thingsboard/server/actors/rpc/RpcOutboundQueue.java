@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.rpc;
+
+import org.thingsboard.server.gen.cluster.ClusterAPIProtos;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded queue of messages to a single cluster node. The oldest message is dropped when a message is added to a full queue.
+ * Not thread safe, expected to be owned by an actor.
+ */
+public class RpcOutboundQueue {
+
+    private final int maxSize;
+    private final RpcOutboundStats stats;
+    private final Deque<ClusterAPIProtos.ToRpcServerMessage> msgs;
+
+    public RpcOutboundQueue(int maxSize, RpcOutboundStats stats) {
+        this.maxSize = Math.max(maxSize, 1);
+        this.stats = stats;
+        this.msgs = new ArrayDeque<>();
+    }
+
+    public void add(ClusterAPIProtos.ToRpcServerMessage msg) {
+        if (msgs.size() >= maxSize) {
+            msgs.pollFirst();
+            stats.onDequeued(1);
+            stats.onDropped(1);
+        }
+        msgs.addLast(msg);
+        stats.onQueued(1);
+    }
+
+    public ClusterAPIProtos.ToRpcServerMessage poll() {
+        ClusterAPIProtos.ToRpcServerMessage msg = msgs.pollFirst();
+        if (msg != null) {
+            stats.onDequeued(1);
+        }
+        return msg;
+    }
+
+    public boolean isEmpty() {
+        return msgs.isEmpty();
+    }
+
+    public int size() {
+        return msgs.size();
+    }
+
+    public void clear() {
+        stats.onDequeued(msgs.size());
+        msgs.clear();
+    }
+}
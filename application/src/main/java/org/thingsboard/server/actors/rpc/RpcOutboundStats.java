@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.rpc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node wide statistics of messages sent to other cluster nodes.
+ */
+@Component
+@Slf4j
+public class RpcOutboundStats {
+
+    @Value("${rpc.outbound.stats_print_interval_ms}")
+    private long statsPrintIntervalMs;
+
+    private final AtomicLong queuedMsgs = new AtomicLong();
+    private final AtomicLong sentMsgs = new AtomicLong();
+    private final AtomicLong sentFrames = new AtomicLong();
+    private final AtomicLong droppedMsgs = new AtomicLong();
+    private volatile long lastStatsPrintTs = System.currentTimeMillis();
+
+    public void onQueued(int count) {
+        queuedMsgs.addAndGet(count);
+    }
+
+    public void onDequeued(int count) {
+        queuedMsgs.addAndGet(-count);
+    }
+
+    public void onSent(int count) {
+        sentMsgs.addAndGet(count);
+        sentFrames.incrementAndGet();
+        printStats();
+    }
+
+    public void onDropped(int count) {
+        long dropped = droppedMsgs.addAndGet(count);
+        if (dropped == count) {
+            log.warn("Outbound queue is full, dropping the oldest messages to other cluster nodes");
+        }
+        printStats();
+    }
+
+    public long getQueuedMsgs() {
+        return queuedMsgs.get();
+    }
+
+    public long getSentMsgs() {
+        return sentMsgs.get();
+    }
+
+    public long getSentFrames() {
+        return sentFrames.get();
+    }
+
+    public long getDroppedMsgs() {
+        return droppedMsgs.get();
+    }
+
+    private void printStats() {
+        long ts = System.currentTimeMillis();
+        if (statsPrintIntervalMs > 0 && ts - lastStatsPrintTs > statsPrintIntervalMs) {
+            lastStatsPrintTs = ts;
+            log.info("Cluster RPC outbound stats: queued [{}], sent [{}], frames [{}], dropped [{}]",
+                    queuedMsgs.get(), sentMsgs.get(), sentFrames.get(), droppedMsgs.get());
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.actors.rpc;
 
+import akka.actor.ActorRef;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import io.grpc.Channel;
@@ -39,30 +40,61 @@ public class RpcSessionActor extends ContextAwareActor {
     private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);
 
     private final UUID sessionId;
+    private final RpcOutboundQueue outboundMsgs;
+    private final int batchSize;
     private GrpcSession session;
     private GrpcSessionListener listener;
+    private boolean flushScheduled;
 
     public RpcSessionActor(ActorSystemContext systemContext, UUID sessionId) {
         super(systemContext);
         this.sessionId = sessionId;
+        this.outboundMsgs = new RpcOutboundQueue(systemContext.getRpcOutboundQueueSize(), systemContext.getRpcOutboundStats());
+        this.batchSize = systemContext.getRpcOutboundBatchSize();
     }
 
     @Override
     public void onReceive(Object msg) throws Exception {
         if (msg instanceof RpcSessionTellMsg) {
             tell((RpcSessionTellMsg) msg);
+        } else if (msg instanceof RpcSessionFlushMsg) {
+            flush();
         } else if (msg instanceof RpcSessionCreateRequestMsg) {
             initSession((RpcSessionCreateRequestMsg) msg);
         }
     }
 
     private void tell(RpcSessionTellMsg msg) {
-        session.sendMsg(msg.getMsg());
+        outboundMsgs.add(msg.getMsg());
+        if (!flushScheduled) {
+            // Messages that arrive before the flush message are coalesced into the same frames
+            flushScheduled = true;
+            context().self().tell(RpcSessionFlushMsg.INSTANCE, context().self());
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        while (session != null && !outboundMsgs.isEmpty() && session.isReady()) {
+            ClusterAPIProtos.ToRpcServerMessage msg = outboundMsgs.poll();
+            int count = 1;
+            if (batchSize > 1 && !outboundMsgs.isEmpty()) {
+                ClusterAPIProtos.ToRpcServerMessage.Builder batch = ClusterAPIProtos.ToRpcServerMessage.newBuilder().addBatchMsgs(msg);
+                while (batch.getBatchMsgsCount() < batchSize && !outboundMsgs.isEmpty()) {
+                    batch.addBatchMsgs(outboundMsgs.poll());
+                }
+                msg = batch.build();
+                count = batch.getBatchMsgsCount();
+            }
+            session.sendMsg(msg);
+            systemContext.getRpcOutboundStats().onSent(count);
+        }
     }
 
     @Override
     public void postStop() {
         log.info("Closing session -> {}", session.getRemoteServer());
+        outboundMsgs.clear();
         session.close();
     }
 
@@ -70,9 +102,13 @@ public class RpcSessionActor extends ContextAwareActor {
         log.info("[{}] Initializing session", context().self());
         ServerAddress remoteServer = msg.getRemoteAddress();
         listener = new BasicRpcSessionListener(systemContext, context().parent(), context().self());
+        // Stream becomes ready again once the remote server has consumed the data sent before
+        ActorRef self = context().self();
+        Runnable onReadyHandler = () -> self.tell(RpcSessionFlushMsg.INSTANCE, ActorRef.noSender());
         if (msg.getRemoteAddress() == null) {
             // Server session
             session = new GrpcSession(listener);
+            session.setOnReadyHandler(onReadyHandler);
             session.setOutputStream(msg.getResponseObserver());
             session.initInputStream();
             session.initOutputStream();
@@ -81,6 +117,7 @@ public class RpcSessionActor extends ContextAwareActor {
             // Client session
             Channel channel = ManagedChannelBuilder.forAddress(remoteServer.getHost(), remoteServer.getPort()).usePlaintext(true).build();
             session = new GrpcSession(remoteServer, listener);
+            session.setOnReadyHandler(onReadyHandler);
             session.initInputStream();
 
             ClusterRpcServiceGrpc.ClusterRpcServiceStub stub = ClusterRpcServiceGrpc.newStub(channel);
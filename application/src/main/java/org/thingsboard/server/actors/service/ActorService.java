@@ -16,6 +16,7 @@
 package org.thingsboard.server.actors.service;
 
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.PluginId;
 import org.thingsboard.server.common.data.id.RuleId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -24,6 +25,8 @@ import org.thingsboard.server.common.transport.SessionMsgProcessor;
 import org.thingsboard.server.service.cluster.discovery.DiscoveryServiceListener;
 import org.thingsboard.server.service.cluster.rpc.RpcMsgListener;
 
+import java.util.List;
+
 public interface ActorService extends SessionMsgProcessor, WebSocketMsgProcessor, RestMsgProcessor, RpcMsgListener, DiscoveryServiceListener {
 
     void onPluginStateChange(TenantId tenantId, PluginId pluginId, ComponentLifecycleEvent state);
@@ -31,4 +34,6 @@ public interface ActorService extends SessionMsgProcessor, WebSocketMsgProcessor
     void onRuleStateChange(TenantId tenantId, RuleId ruleId, ComponentLifecycleEvent state);
 
     void onCredentialsUpdate(TenantId tenantId, DeviceId deviceId);
+
+    void onTimeseriesUpdate(EntityId entityId, List<String> keys);
 }
@@ -23,9 +23,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.app.AppActor;
+import org.thingsboard.server.actors.app.DeviceMsgRouterActor;
 import org.thingsboard.server.actors.rpc.RpcBroadcastMsg;
 import org.thingsboard.server.actors.rpc.RpcManagerActor;
 import org.thingsboard.server.actors.rpc.RpcSessionCreateRequestMsg;
@@ -33,17 +36,28 @@ import org.thingsboard.server.actors.rpc.RpcSessionTellMsg;
 import org.thingsboard.server.actors.session.SessionManagerActor;
 import org.thingsboard.server.actors.stats.StatsActor;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.PluginId;
 import org.thingsboard.server.common.data.id.RuleId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.msg.alarm.AlarmSeverityInvalidationMsg;
 import org.thingsboard.server.common.msg.aware.SessionAwareMsg;
 import org.thingsboard.server.common.msg.cluster.ClusterEventMsg;
 import org.thingsboard.server.common.msg.cluster.ServerAddress;
 import org.thingsboard.server.common.msg.cluster.ToAllNodesMsg;
 import org.thingsboard.server.common.msg.core.ToDeviceSessionActorMsg;
+import org.thingsboard.server.common.msg.device.DeviceCredentialsInvalidationMsg;
 import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+import org.thingsboard.server.common.msg.kv.TsKvLatestInvalidationMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.thingsboard.server.common.msg.relation.RelationsInvalidationMsg;
+import org.thingsboard.server.dao.alarm.AlarmService;
+import org.thingsboard.server.dao.alarm.AlarmSeverityInvalidationEvent;
+import org.thingsboard.server.dao.device.DeviceCredentialsCache;
+import org.thingsboard.server.dao.device.DeviceCredentialsInvalidationEvent;
+import org.thingsboard.server.dao.relation.RelationService;
+import org.thingsboard.server.dao.relation.RelationsInvalidationEvent;
 import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotificationMsg;
 import org.thingsboard.server.extensions.api.device.ToDeviceActorNotificationMsg;
 import org.thingsboard.server.extensions.api.plugins.msg.ToPluginActorMsg;
@@ -59,6 +73,7 @@ import scala.concurrent.duration.Duration;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -68,6 +83,7 @@ public class DefaultActorService implements ActorService {
     private static final String ACTOR_SYSTEM_NAME = "Akka";
 
     public static final String APP_DISPATCHER_NAME = "app-dispatcher";
+    public static final String ROUTER_DISPATCHER_NAME = "router-dispatcher";
     public static final String CORE_DISPATCHER_NAME = "core-dispatcher";
     public static final String SYSTEM_RULE_DISPATCHER_NAME = "system-rule-dispatcher";
     public static final String SYSTEM_PLUGIN_DISPATCHER_NAME = "system-plugin-dispatcher";
@@ -85,6 +101,23 @@ public class DefaultActorService implements ActorService {
     @Autowired
     private DiscoveryService discoveryService;
 
+    @Autowired
+    private DeviceCredentialsCache deviceCredentialsCache;
+
+    @Autowired
+    private RelationService relationService;
+
+    @Autowired
+    private AlarmService alarmService;
+
+    @Value("${cache.ts_latest.enabled}")
+    private boolean tsLatestCacheEnabled;
+
+    @Value("${cache.ts_latest.invalidation_interval_ms}")
+    private long tsLatestInvalidationIntervalMs;
+
+    private TsKvLatestInvalidationBuffer tsLatestInvalidations;
+
     private ActorSystem system;
 
     private ActorRef appActor;
@@ -100,6 +133,14 @@ public class DefaultActorService implements ActorService {
         system = ActorSystem.create(ACTOR_SYSTEM_NAME, actorContext.getConfig());
         actorContext.setActorSystem(system);
 
+        int routersCount = actorContext.getDeviceMsgRoutersCount() > 0 ? actorContext.getDeviceMsgRoutersCount() : Runtime.getRuntime().availableProcessors();
+        ActorRef[] deviceMsgRouters = new ActorRef[routersCount];
+        for (int i = 0; i < routersCount; i++) {
+            deviceMsgRouters[i] = system.actorOf(Props.create(new DeviceMsgRouterActor.ActorCreator(actorContext)).withDispatcher(ROUTER_DISPATCHER_NAME),
+                    "deviceMsgRouter" + i);
+        }
+        actorContext.setDeviceMsgRouters(deviceMsgRouters);
+
         appActor = system.actorOf(Props.create(new AppActor.ActorCreator(actorContext)).withDispatcher(APP_DISPATCHER_NAME), "appActor");
         actorContext.setAppActor(appActor);
 
@@ -113,6 +154,10 @@ public class DefaultActorService implements ActorService {
         ActorRef statsActor = system.actorOf(Props.create(new StatsActor.ActorCreator(actorContext)).withDispatcher(CORE_DISPATCHER_NAME), "statsActor");
         actorContext.setStatsActor(statsActor);
 
+        if (tsLatestCacheEnabled) {
+            tsLatestInvalidations = new TsKvLatestInvalidationBuffer(tsLatestInvalidationIntervalMs, rpcService::broadcast);
+        }
+
         rpcService.init(this);
 
         discoveryService.addListener(this);
@@ -121,6 +166,9 @@ public class DefaultActorService implements ActorService {
 
     @PreDestroy
     public void stopActorSystem() {
+        if (tsLatestInvalidations != null) {
+            tsLatestInvalidations.stop();
+        }
         Future<Terminated> status = system.terminate();
         try {
             Terminated terminated = Await.result(status, Duration.Inf());
@@ -159,13 +207,13 @@ public class DefaultActorService implements ActorService {
     @Override
     public void onMsg(ToDeviceActorMsg msg) {
         log.trace("Processing device rpc msg: {}", msg);
-        appActor.tell(msg, ActorRef.noSender());
+        actorContext.getDeviceMsgRouter(msg.getDeviceId()).tell(msg, ActorRef.noSender());
     }
 
     @Override
     public void onMsg(ToDeviceActorNotificationMsg msg) {
         log.trace("Processing notification rpc msg: {}", msg);
-        appActor.tell(msg, ActorRef.noSender());
+        actorContext.getDeviceMsgRouter(msg.getDeviceId()).tell(msg, ActorRef.noSender());
     }
 
     @Override
@@ -177,7 +225,18 @@ public class DefaultActorService implements ActorService {
     @Override
     public void onMsg(ToAllNodesMsg msg) {
         log.trace("Processing broadcast rpc msg: {}", msg);
-        appActor.tell(msg, ActorRef.noSender());
+        if (msg instanceof TsKvLatestInvalidationMsg) {
+            TsKvLatestInvalidationMsg invalidationMsg = (TsKvLatestInvalidationMsg) msg;
+            actorContext.getTsService().invalidateLatest(invalidationMsg.getEntityId(), invalidationMsg.getKeys());
+        } else if (msg instanceof DeviceCredentialsInvalidationMsg) {
+            deviceCredentialsCache.invalidate(((DeviceCredentialsInvalidationMsg) msg).getDeviceId());
+        } else if (msg instanceof RelationsInvalidationMsg) {
+            relationService.invalidateRelations(((RelationsInvalidationMsg) msg).getEntityIds());
+        } else if (msg instanceof AlarmSeverityInvalidationMsg) {
+            alarmService.invalidateAlarmSeverities(((AlarmSeverityInvalidationMsg) msg).getEntityIds());
+        } else {
+            appActor.tell(msg, ActorRef.noSender());
+        }
     }
 
     @Override
@@ -236,6 +295,35 @@ public class DefaultActorService implements ActorService {
         } else {
             onMsg(msg);
         }
+        broadcastCredentialsInvalidation(deviceId);
+    }
+
+    @Override
+    public void onTimeseriesUpdate(EntityId entityId, List<String> keys) {
+        if (tsLatestInvalidations != null) {
+            tsLatestInvalidations.add(entityId, keys);
+        }
+    }
+
+    @EventListener
+    public void onRelationsInvalidation(RelationsInvalidationEvent event) {
+        rpcService.broadcast(new RelationsInvalidationMsg(event.getEntityIds()));
+    }
+
+    @EventListener
+    public void onDeviceCredentialsInvalidation(DeviceCredentialsInvalidationEvent event) {
+        broadcastCredentialsInvalidation(event.getDeviceId());
+    }
+
+    @EventListener
+    public void onAlarmSeverityInvalidation(AlarmSeverityInvalidationEvent event) {
+        rpcService.broadcast(new AlarmSeverityInvalidationMsg(event.getEntityIds()));
+    }
+
+    private void broadcastCredentialsInvalidation(DeviceId deviceId) {
+        if (deviceCredentialsCache.isEnabled()) {
+            rpcService.broadcast(new DeviceCredentialsInvalidationMsg(deviceId));
+        }
     }
 
     public void broadcast(ToAllNodesMsg msg) {
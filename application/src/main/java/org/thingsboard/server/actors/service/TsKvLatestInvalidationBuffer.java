@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.msg.kv.TsKvLatestInvalidationMsg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces invalidations of latest timeseries values per entity and publishes them once per interval,
+ * so that frequent updates of an entity result in a single message with all updated keys.
+ */
+@Slf4j
+public class TsKvLatestInvalidationBuffer {
+
+    private final Consumer<TsKvLatestInvalidationMsg> publisher;
+    private final ConcurrentMap<EntityId, Set<String>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public TsKvLatestInvalidationBuffer(long intervalMs, Consumer<TsKvLatestInvalidationMsg> publisher) {
+        this.publisher = publisher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(EntityId entityId, Collection<String> keys) {
+        pending.compute(entityId, (id, entityKeys) -> {
+            if (entityKeys == null) {
+                entityKeys = new HashSet<>();
+            }
+            entityKeys.addAll(keys);
+            return entityKeys;
+        });
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private void flush() {
+        for (EntityId entityId : pending.keySet()) {
+            Set<String> keys = pending.remove(entityId);
+            if (keys != null) {
+                try {
+                    publisher.accept(new TsKvLatestInvalidationMsg(entityId, new ArrayList<>(keys)));
+                } catch (Exception e) {
+                    log.warn("[{}] Failed to publish latest timeseries invalidation", entityId, e);
+                }
+            }
+        }
+    }
+}
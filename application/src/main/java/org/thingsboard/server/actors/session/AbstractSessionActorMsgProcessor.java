@@ -93,7 +93,7 @@ abstract class AbstractSessionActorMsgProcessor extends AbstractContextAwareMsgP
                 systemContext.getRpcService().tell(newAddress.get(),
                         toForward.toOtherAddress(systemContext.getRoutingService().getCurrentServer()));
             } else {
-                getAppActor().tell(toForward, ctx.self());
+                systemContext.getDeviceMsgRouter(toForward.getDeviceId()).tell(toForward, ctx.self());
             }
         }
         return newAddress;
@@ -104,7 +104,7 @@ abstract class AbstractSessionActorMsgProcessor extends AbstractContextAwareMsgP
             systemContext.getRpcService().tell(address.get(),
                     toForward.toOtherAddress(systemContext.getRoutingService().getCurrentServer()));
         } else {
-            getAppActor().tell(toForward, ctx.self());
+            systemContext.getDeviceMsgRouter(toForward.getDeviceId()).tell(toForward, ctx.self());
         }
     }
 
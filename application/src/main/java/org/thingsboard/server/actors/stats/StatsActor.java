@@ -19,6 +19,8 @@ import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.actors.service.ContextBasedCreator;
@@ -26,6 +28,8 @@ import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
 import org.thingsboard.server.common.msg.cluster.ServerAddress;
 
+import javax.annotation.Nullable;
+
 public class StatsActor extends ContextAwareActor {
 
     private final LoggingAdapter logger = Logging.getLogger(getContext().system(), this);
@@ -53,7 +57,16 @@ public class StatsActor extends ContextAwareActor {
         event.setTenantId(msg.getTenantId());
         event.setType(DataConstants.STATS);
         event.setBody(toBodyJson(systemContext.getDiscoveryService().getCurrentServer().getServerAddress(), msg.getMessagesProcessed(), msg.getErrorsOccurred()));
-        systemContext.getEventService().save(event);
+        Futures.addCallback(systemContext.getEventService().saveAsync(event), new FutureCallback<Event>() {
+            @Override
+            public void onSuccess(@Nullable Event result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                logger.warning("Failed to persist statistics: {}", msg, t);
+            }
+        });
     }
 
     private JsonNode toBodyJson(ServerAddress server, long messagesProcessed, long errorsOccurred) {
@@ -15,12 +15,18 @@
  */
 package org.thingsboard.server.actors.tenant;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.device.DeviceActor;
+import org.thingsboard.server.actors.device.DeviceActorIdleMsg;
+import org.thingsboard.server.actors.device.DeviceActorPassivateMsg;
+import org.thingsboard.server.actors.device.DeviceActorPassivationCancelledMsg;
 import org.thingsboard.server.actors.plugin.PluginTerminationMsg;
 import org.thingsboard.server.actors.rule.ComplexRuleActorChain;
 import org.thingsboard.server.actors.rule.RuleActorChain;
@@ -38,6 +44,7 @@ import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
 
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.Terminated;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
@@ -53,6 +60,7 @@ public class TenantActor extends ContextAwareActor {
     private final RuleManager ruleManager;
     private final PluginManager pluginManager;
     private final Map<DeviceId, ActorRef> deviceActors;
+    private final Map<DeviceId, List<Object>> passivatingDeviceActors;
 
     private TenantActor(ActorSystemContext systemContext, TenantId tenantId) {
         super(systemContext);
@@ -60,6 +68,7 @@ public class TenantActor extends ContextAwareActor {
         this.ruleManager = new TenantRuleManager(systemContext, tenantId);
         this.pluginManager = new TenantPluginManager(systemContext, tenantId);
         this.deviceActors = new HashMap<>();
+        this.passivatingDeviceActors = new HashMap<>();
     }
 
     @Override
@@ -93,6 +102,12 @@ public class TenantActor extends ContextAwareActor {
             onComponentLifecycleMsg((ComponentLifecycleMsg) msg);
         } else if (msg instanceof PluginTerminationMsg) {
             onPluginTerminated((PluginTerminationMsg) msg);
+        } else if (msg instanceof DeviceActorIdleMsg) {
+            onDeviceActorIdle((DeviceActorIdleMsg) msg);
+        } else if (msg instanceof DeviceActorPassivationCancelledMsg) {
+            onDeviceActorPassivationCancelled((DeviceActorPassivationCancelledMsg) msg);
+        } else if (msg instanceof Terminated) {
+            onDeviceActorTerminated((Terminated) msg);
         } else {
             logger.warning("[{}] Unknown message: {}!", tenantId, msg);
         }
@@ -104,11 +119,11 @@ public class TenantActor extends ContextAwareActor {
     }
 
     private void onToDeviceActorMsg(ToDeviceActorMsg msg) {
-        getOrCreateDeviceActor(msg.getDeviceId()).tell(msg, ActorRef.noSender());
+        tellDeviceActor(msg.getDeviceId(), msg);
     }
 
     private void onToDeviceActorMsg(ToDeviceActorNotificationMsg msg) {
-        getOrCreateDeviceActor(msg.getDeviceId()).tell(msg, ActorRef.noSender());
+        tellDeviceActor(msg.getDeviceId(), msg);
     }
 
     private void onToRuleMsg(ToRuleActorMsg msg) {
@@ -150,9 +165,17 @@ public class TenantActor extends ContextAwareActor {
 
     private void process(RuleChainDeviceMsg msg) {
         ToDeviceActorMsg toDeviceActorMsg = msg.getToDeviceActorMsg();
-        ActorRef deviceActor = getOrCreateDeviceActor(toDeviceActorMsg.getDeviceId());
         RuleActorChain chain = new ComplexRuleActorChain(msg.getRuleChain(), ruleManager.getRuleChain());
-        deviceActor.tell(new RuleChainDeviceMsg(toDeviceActorMsg, chain), context().self());
+        tellDeviceActor(toDeviceActorMsg.getDeviceId(), new RuleChainDeviceMsg(toDeviceActorMsg, chain));
+    }
+
+    private void tellDeviceActor(DeviceId deviceId, Object msg) {
+        List<Object> pendingMsgs = passivatingDeviceActors.get(deviceId);
+        if (pendingMsgs != null) {
+            pendingMsgs.add(msg);
+        } else {
+            getOrCreateDeviceActor(deviceId).tell(msg, context().self());
+        }
     }
 
     private ActorRef getOrCreateDeviceActor(DeviceId deviceId) {
@@ -160,11 +183,50 @@ public class TenantActor extends ContextAwareActor {
         if (deviceActor == null) {
             deviceActor = context().actorOf(Props.create(new DeviceActor.ActorCreator(systemContext, tenantId, deviceId))
                     .withDispatcher(DefaultActorService.CORE_DISPATCHER_NAME), deviceId.toString());
+            context().watch(deviceActor);
             deviceActors.put(deviceId, deviceActor);
+            systemContext.getDeviceActorStats().onActorCreated();
         }
         return deviceActor;
     }
 
+    private void onDeviceActorIdle(DeviceActorIdleMsg msg) {
+        DeviceId deviceId = msg.getDeviceId();
+        ActorRef deviceActor = deviceActors.get(deviceId);
+        if (deviceActor != null && deviceActor.equals(sender())) {
+            deviceActors.remove(deviceId);
+            passivatingDeviceActors.put(deviceId, new ArrayList<>());
+            deviceActor.tell(new DeviceActorPassivateMsg(deviceId), context().self());
+        }
+    }
+
+    private void onDeviceActorPassivationCancelled(DeviceActorPassivationCancelledMsg msg) {
+        DeviceId deviceId = msg.getDeviceId();
+        List<Object> pendingMsgs = passivatingDeviceActors.remove(deviceId);
+        if (pendingMsgs != null) {
+            ActorRef deviceActor = sender();
+            deviceActors.put(deviceId, deviceActor);
+            pendingMsgs.forEach(pendingMsg -> deviceActor.tell(pendingMsg, context().self()));
+        }
+    }
+
+    private void onDeviceActorTerminated(Terminated msg) {
+        ActorRef deviceActor = msg.actor();
+        DeviceId deviceId = new DeviceId(UUID.fromString(deviceActor.path().name()));
+        List<Object> pendingMsgs = passivatingDeviceActors.remove(deviceId);
+        if (pendingMsgs != null) {
+            logger.debug("[{}][{}] Device actor passivated, {} messages pending", tenantId, deviceId, pendingMsgs.size());
+            systemContext.getDeviceActorStats().onActorTerminated(true);
+            pendingMsgs.forEach(pendingMsg -> tellDeviceActor(deviceId, pendingMsg));
+        } else {
+            logger.debug("[{}][{}] Device actor terminated", tenantId, deviceId);
+            systemContext.getDeviceActorStats().onActorTerminated(false);
+            if (deviceActor.equals(deviceActors.get(deviceId))) {
+                deviceActors.remove(deviceId);
+            }
+        }
+    }
+
     public static class ActorCreator extends ContextBasedCreator<TenantActor> {
         private static final long serialVersionUID = 1L;
 
@@ -37,7 +37,9 @@ import org.thingsboard.server.exception.ThingsboardException;
 import org.thingsboard.server.service.security.model.SecurityUser;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -169,4 +171,37 @@ public class AlarmController extends BaseController {
         }
     }
 
+    @PreAuthorize("hasAnyAuthority('SYS_ADMIN', 'TENANT_ADMIN', 'CUSTOMER_USER')")
+    @RequestMapping(value = "/alarm/highestSeverity/{entityType}", params = {"entityIds"}, method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, AlarmSeverity> getHighestAlarmSeverities(
+            @PathVariable("entityType") String strEntityType,
+            @RequestParam("entityIds") String[] strEntityIds,
+            @RequestParam(required = false) String searchStatus,
+            @RequestParam(required = false) String status
+    ) throws ThingsboardException {
+        checkParameter("EntityType", strEntityType);
+        checkArrayParameter("entityIds", strEntityIds);
+        AlarmSearchStatus alarmSearchStatus = StringUtils.isEmpty(searchStatus) ? null : AlarmSearchStatus.valueOf(searchStatus);
+        AlarmStatus alarmStatus = StringUtils.isEmpty(status) ? null : AlarmStatus.valueOf(status);
+        if (alarmSearchStatus != null && alarmStatus != null) {
+            throw new ThingsboardException("Invalid alarms search query: Both parameters 'searchStatus' " +
+                    "and 'status' can't be specified at the same time!", ThingsboardErrorCode.BAD_REQUEST_PARAMS);
+        }
+        List<EntityId> entityIds = new ArrayList<>();
+        for (String strEntityId : strEntityIds) {
+            EntityId entityId = EntityIdFactory.getByTypeAndId(strEntityType, strEntityId);
+            checkEntityId(entityId);
+            entityIds.add(entityId);
+        }
+        try {
+            Map<EntityId, AlarmSeverity> severities = alarmService.findHighestAlarmSeverities(entityIds, alarmSearchStatus, alarmStatus).get();
+            Map<String, AlarmSeverity> result = new HashMap<>();
+            severities.forEach((entityId, severity) -> result.put(entityId.getId().toString(), severity));
+            return result;
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
 }
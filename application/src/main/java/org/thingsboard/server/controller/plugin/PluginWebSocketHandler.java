@@ -15,15 +15,24 @@
  */
 package org.thingsboard.server.controller.plugin;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.google.common.util.concurrent.FutureCallback;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.BeanCreationNotAllowedException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -37,8 +46,11 @@ import org.thingsboard.server.common.data.plugin.PluginMetaData;
 import org.thingsboard.server.dao.plugin.PluginService;
 import org.thingsboard.server.extensions.api.plugins.PluginApiCallSecurityContext;
 import org.thingsboard.server.extensions.api.plugins.ws.BasicPluginWebsocketSessionRef;
+import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketMsgFormat;
 import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketSessionRef;
 import org.thingsboard.server.extensions.api.plugins.ws.SessionEvent;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.BinaryPluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeablePluginWebSocketMsg;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.PluginWebsocketMsg;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.SessionEventPluginWebSocketMsg;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.TextPluginWebSocketMsg;
@@ -46,14 +58,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 @Service
 @Slf4j
-public class PluginWebSocketHandler extends TextWebSocketHandler implements PluginWebSocketMsgEndpoint {
+public class PluginWebSocketHandler extends AbstractWebSocketHandler implements PluginWebSocketMsgEndpoint, SubProtocolCapable {
 
     private static final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
@@ -66,6 +82,32 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
     @Lazy
     private PluginService pluginService;
 
+    @Value("${websocket.outbound.sender_pool_size}")
+    private int senderPoolSize;
+
+    @Value("${websocket.outbound.high_watermark}")
+    private int highWatermark;
+
+    @Value("${websocket.outbound.low_watermark}")
+    private int lowWatermark;
+
+    @Value("${websocket.outbound.overflow_policy}")
+    private WebSocketOverflowPolicy overflowPolicy;
+
+    private ExecutorService senderExecutor;
+
+    @PostConstruct
+    public void init() {
+        senderExecutor = Executors.newFixedThreadPool(senderPoolSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (senderExecutor != null) {
+            senderExecutor.shutdownNow();
+        }
+    }
+
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
@@ -73,16 +115,42 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
             SessionMetaData sessionMd = internalSessionMap.get(session.getId());
             if (sessionMd != null) {
                 actorService.process(new TextPluginWebSocketMsg(sessionMd.sessionRef, message.getPayload()));
+                sessionMd.outbound.send(message);
+            } else {
+                log.warn("[{}] Failed to find session", session.getId());
+                session.close(CloseStatus.SERVER_ERROR.withReason("Session not found!"));
+                session.sendMessage(message);
+            }
+        } catch (IOException e) {
+            log.warn("IO error", e);
+        }
+    }
+
+    @Override
+    public void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        try {
+            log.debug("[{}] Processing binary message of {} bytes", session.getId(), message.getPayloadLength());
+            SessionMetaData sessionMd = internalSessionMap.get(session.getId());
+            if (sessionMd != null) {
+                // payload buffer may be reused by the container once this method returns
+                ByteBuffer payload = ByteBuffer.allocate(message.getPayloadLength());
+                payload.put(message.getPayload().duplicate());
+                payload.flip();
+                actorService.process(new BinaryPluginWebSocketMsg(sessionMd.sessionRef, payload));
             } else {
                 log.warn("[{}] Failed to find session", session.getId());
                 session.close(CloseStatus.SERVER_ERROR.withReason("Session not found!"));
             }
-            session.sendMessage(message);
         } catch (IOException e) {
             log.warn("IO error", e);
         }
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return PluginWebsocketMsgFormat.getSubProtocols();
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         super.afterConnectionEstablished(session);
@@ -90,7 +158,8 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
             String internalSessionId = session.getId();
             PluginWebsocketSessionRef sessionRef = toRef(session);
             String externalSessionId = sessionRef.getSessionId();
-            internalSessionMap.put(internalSessionId, new SessionMetaData(session, sessionRef));
+            WebSocketOutboundQueue outbound = new WebSocketOutboundQueue(session, senderExecutor, highWatermark, lowWatermark, overflowPolicy);
+            internalSessionMap.put(internalSessionId, new SessionMetaData(session, sessionRef, outbound));
             externalSessionMap.put(externalSessionId, internalSessionId);
             actorService.process(new SessionEventPluginWebSocketMsg(sessionRef, SessionEvent.onEstablished()));
             log.info("[{}][{}] Session is started", externalSessionId, session.getId());
@@ -120,6 +189,7 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
         super.afterConnectionClosed(session, closeStatus);
         SessionMetaData sessionMd = internalSessionMap.remove(session.getId());
         if (sessionMd != null) {
+            sessionMd.outbound.onClosed();
             externalSessionMap.remove(sessionMd.sessionRef.getSessionId());
             processInActorService(new SessionEventPluginWebSocketMsg(sessionMd.sessionRef, SessionEvent.onClosed()));
         }
@@ -155,21 +225,41 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
                 PluginApiCallSecurityContext securityCtx = new PluginApiCallSecurityContext(pluginMd.getTenantId(), pluginMd.getId(), tenantId,
                         currentUser.getCustomerId());
                 return new BasicPluginWebsocketSessionRef(UUID.randomUUID().toString(), securityCtx, session.getUri(), session.getAttributes(),
-                        session.getLocalAddress(), session.getRemoteAddress());
+                        session.getLocalAddress(), session.getRemoteAddress(), getFormat(session));
             } else {
                 throw new SecurityException("Current user is not allowed to use this plugin!");
             }
         }
     }
 
+    private static PluginWebsocketMsgFormat getFormat(WebSocketSession session) {
+        Optional<PluginWebsocketMsgFormat> format = Optional.empty();
+        if (session.getAcceptedProtocol() != null) {
+            format = PluginWebsocketMsgFormat.forSubProtocol(session.getAcceptedProtocol());
+        }
+        if (!format.isPresent()) {
+            String formatParam = UriComponentsBuilder.fromUri(session.getUri()).build()
+                    .getQueryParams().getFirst(PluginWebsocketMsgFormat.FORMAT_PARAM);
+            if (formatParam != null) {
+                format = PluginWebsocketMsgFormat.forSubProtocol(formatParam);
+                if (!format.isPresent()) {
+                    throw new InvalidParameterException("Unsupported message format: " + formatParam + "!");
+                }
+            }
+        }
+        return format.orElse(PluginWebsocketMsgFormat.JSON);
+    }
+
     private static class SessionMetaData {
         private final WebSocketSession session;
         private final PluginWebsocketSessionRef sessionRef;
+        private final WebSocketOutboundQueue outbound;
 
-        public SessionMetaData(WebSocketSession session, PluginWebsocketSessionRef sessionRef) {
+        public SessionMetaData(WebSocketSession session, PluginWebsocketSessionRef sessionRef, WebSocketOutboundQueue outbound) {
             super();
             this.session = session;
             this.sessionRef = sessionRef;
+            this.outbound = outbound;
         }
     }
 
@@ -182,9 +272,13 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
         if (internalId != null) {
             SessionMetaData sessionMd = internalSessionMap.get(internalId);
             if (sessionMd != null) {
-                if (wsMsg instanceof TextPluginWebSocketMsg) {
-                    String payload = ((TextPluginWebSocketMsg) wsMsg).getPayload();
-                    sessionMd.session.sendMessage(new TextMessage(payload));
+                if (wsMsg instanceof MergeablePluginWebSocketMsg) {
+                    sessionMd.outbound.send((MergeablePluginWebSocketMsg) wsMsg);
+                } else {
+                    WebSocketMessage<?> msg = WebSocketOutboundQueue.toWebSocketMessage(wsMsg);
+                    if (msg != null) {
+                        sessionMd.outbound.send(msg);
+                    }
                 }
             } else {
                 log.warn("[{}][{}] Failed to find session by internal id", externalId, internalId);
@@ -194,6 +288,23 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
         }
     }
 
+    @Override
+    public void send(PluginWebsocketMsg<?> wsMsg, FutureCallback<Void> callback) {
+        String externalId = wsMsg.getSessionRef().getSessionId();
+        log.debug("[{}] Processing {} with flow control", externalId, wsMsg);
+        String internalId = externalSessionMap.get(externalId);
+        SessionMetaData sessionMd = internalId != null ? internalSessionMap.get(internalId) : null;
+        WebSocketMessage<?> msg = WebSocketOutboundQueue.toWebSocketMessage(wsMsg);
+        if (sessionMd == null) {
+            log.warn("[{}] Failed to find session", externalId);
+            callback.onFailure(new IllegalStateException("Session is closed!"));
+        } else if (msg == null) {
+            callback.onFailure(new IllegalArgumentException("Unsupported message: " + wsMsg + "!"));
+        } else {
+            sessionMd.outbound.send(msg, callback);
+        }
+    }
+
     @Override
     public void close(PluginWebsocketSessionRef sessionRef) throws IOException {
         String externalId = sessionRef.getSessionId();
@@ -202,7 +313,7 @@ public class PluginWebSocketHandler extends TextWebSocketHandler implements Plug
         if (internalId != null) {
             SessionMetaData sessionMd = internalSessionMap.get(internalId);
             if (sessionMd != null) {
-                sessionMd.session.close(CloseStatus.NORMAL);
+                sessionMd.outbound.close(CloseStatus.NORMAL);
             } else {
                 log.warn("[{}][{}] Failed to find session by internal id", externalId, internalId);
             }
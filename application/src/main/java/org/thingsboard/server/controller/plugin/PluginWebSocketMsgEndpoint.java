@@ -17,6 +17,7 @@ package org.thingsboard.server.controller.plugin;
 
 import java.io.IOException;
 
+import com.google.common.util.concurrent.FutureCallback;
 import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketSessionRef;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.PluginWebsocketMsg;
 
@@ -24,5 +25,7 @@ public interface PluginWebSocketMsgEndpoint {
 
     void send(PluginWebsocketMsg<?> wsMsg) throws IOException;
 
+    void send(PluginWebsocketMsg<?> wsMsg, FutureCallback<Void> callback);
+
     void close(PluginWebsocketSessionRef sessionRef) throws IOException;
 }
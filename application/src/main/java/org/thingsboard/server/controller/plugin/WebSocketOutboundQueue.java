@@ -0,0 +1,384 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller.plugin;
+
+import com.google.common.util.concurrent.FutureCallback;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.BinaryPluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeablePluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeableUpdate;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.PluginWebsocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.TextPluginWebSocketMsg;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded outbound queue of a single WebSocket session.
+ * <p>
+ * Messages are sent by a task of the shared sender executor, so callers never block on a slow client.
+ * At most one task per session is active at a time, and it yields the thread after a limited amount of messages.
+ * Once the queue reaches the high watermark, the overflow policy is applied to every new message
+ * until the queue is drained down to the low watermark.
+ * <p>
+ * Subscription updates are queued as {@link MergeableUpdate} and encoded only when they are sent,
+ * so that the {@link WebSocketOverflowPolicy#CONFLATE} policy can merge them by key.
+ * <p>
+ * Messages sent with a callback are flow controlled by their producer, which waits for the callback before it sends
+ * the next one. They neither count towards the watermarks nor are discarded by the overflow policy, and the callback
+ * is notified once the message is written to the session or discarded because the session is closed. Callbacks are never notified under the lock of the queue.
+ */
+@Slf4j
+public class WebSocketOutboundQueue {
+
+    private static final int MAX_MESSAGES_PER_TASK = 100;
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final WebSocketOverflowPolicy overflowPolicy;
+
+    private final Deque<OutboundMsg> queue = new ArrayDeque<>();
+    private final Map<Integer, OutboundMsg> subscriptionMsgs = new HashMap<>();
+    private final List<FutureCallback<Void>> discardedCallbacks = new ArrayList<>();
+    private int flowControlledCount;
+    private boolean sending;
+    private boolean congested;
+    private boolean closed;
+    private CloseStatus pendingCloseStatus;
+    private long droppedCount;
+    private long mergedCount;
+
+    public WebSocketOutboundQueue(WebSocketSession session, Executor executor, int highWatermark, int lowWatermark,
+                                  WebSocketOverflowPolicy overflowPolicy) {
+        this.session = session;
+        this.executor = executor;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = Math.min(lowWatermark, highWatermark);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void send(WebSocketMessage<?> msg) {
+        enqueue(new OutboundMsg(msg, null, null));
+    }
+
+    public void send(MergeablePluginWebSocketMsg update) {
+        enqueue(new OutboundMsg(null, update, null));
+    }
+
+    public void send(WebSocketMessage<?> msg, FutureCallback<Void> callback) {
+        enqueue(new OutboundMsg(msg, null, callback));
+    }
+
+    /**
+     * Converts a text or binary plugin message to the message of the session, null for other plugin messages.
+     */
+    public static WebSocketMessage<?> toWebSocketMessage(PluginWebsocketMsg<?> wsMsg) {
+        if (wsMsg instanceof TextPluginWebSocketMsg) {
+            return new TextMessage(((TextPluginWebSocketMsg) wsMsg).getPayload());
+        } else if (wsMsg instanceof BinaryPluginWebSocketMsg) {
+            return new BinaryMessage(((BinaryPluginWebSocketMsg) wsMsg).getPayload());
+        } else {
+            return null;
+        }
+    }
+
+    private void enqueue(OutboundMsg outboundMsg) {
+        synchronized (this) {
+            doEnqueue(outboundMsg);
+        }
+        notifyDiscarded();
+    }
+
+    private void doEnqueue(OutboundMsg outboundMsg) {
+        if (closed || pendingCloseStatus != null) {
+            log.trace("[{}] Session is closed, message is discarded", session.getId());
+            discard(outboundMsg);
+            return;
+        }
+        if (!congested && queue.size() - flowControlledCount >= highWatermark) {
+            congested = true;
+            log.debug("[{}] Outbound queue reached high watermark [{}], applying {} policy", session.getId(), highWatermark, overflowPolicy);
+        }
+        if (congested && outboundMsg.callback == null) {
+            switch (overflowPolicy) {
+                case CLOSE:
+                    closeOnOverflow();
+                    return;
+                case CONFLATE:
+                    if (outboundMsg.update != null && mergeIntoPending(outboundMsg.update)) {
+                        return;
+                    }
+                    dropOldest();
+                    break;
+                default:
+                    dropOldest();
+            }
+        }
+        queue.addLast(outboundMsg);
+        if (outboundMsg.update != null) {
+            subscriptionMsgs.put(outboundMsg.update.getPayload().getSubscriptionId(), outboundMsg);
+        }
+        if (outboundMsg.callback != null) {
+            flowControlledCount++;
+        }
+        scheduleSending();
+    }
+
+    /**
+     * Merges the update into the queued update of the same subscription, so that the latest values of all keys are kept.
+     */
+    private boolean mergeIntoPending(MergeablePluginWebSocketMsg update) {
+        OutboundMsg pending = subscriptionMsgs.get(update.getPayload().getSubscriptionId());
+        if (pending == null) {
+            return false;
+        }
+        MergeableUpdate merged = pending.update.getPayload().merge(update.getPayload());
+        if (merged == null) {
+            return false;
+        }
+        pending.update = new MergeablePluginWebSocketMsg(update.getSessionRef(), merged);
+        mergedCount++;
+        return true;
+    }
+
+    /**
+     * Closes the session once all queued messages are sent.
+     */
+    public synchronized void close(CloseStatus status) {
+        if (!closed && pendingCloseStatus == null) {
+            pendingCloseStatus = status;
+            scheduleSending();
+        }
+    }
+
+    /**
+     * Discards queued messages of a session that is already closed.
+     */
+    public void onClosed() {
+        synchronized (this) {
+            discardAll();
+        }
+        notifyDiscarded();
+    }
+
+    public synchronized int getSize() {
+        return queue.size();
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public synchronized long getMergedCount() {
+        return mergedCount;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Drops the oldest message that is not flow controlled.
+     */
+    private void dropOldest() {
+        Iterator<OutboundMsg> it = queue.iterator();
+        while (it.hasNext()) {
+            OutboundMsg msg = it.next();
+            if (msg.callback == null) {
+                it.remove();
+                onRemoved(msg);
+                droppedCount++;
+                return;
+            }
+        }
+    }
+
+    private void closeOnOverflow() {
+        log.warn("[{}] Outbound queue is full, closing session", session.getId());
+        droppedCount += queue.size() + 1;
+        discardAll();
+        execute(() -> closeSession(CloseStatus.POLICY_VIOLATION.withReason("Outbound queue is full!")));
+    }
+
+    private void discardAll() {
+        closed = true;
+        queue.forEach(this::discard);
+        queue.clear();
+        subscriptionMsgs.clear();
+        flowControlledCount = 0;
+    }
+
+    private void discard(OutboundMsg msg) {
+        if (msg.callback != null) {
+            discardedCallbacks.add(msg.callback);
+        }
+    }
+
+    private void notifyDiscarded() {
+        List<FutureCallback<Void>> callbacks;
+        synchronized (this) {
+            if (discardedCallbacks.isEmpty()) {
+                return;
+            }
+            callbacks = new ArrayList<>(discardedCallbacks);
+            discardedCallbacks.clear();
+        }
+        IllegalStateException e = new IllegalStateException("Session is closed!");
+        callbacks.forEach(callback -> callback.onFailure(e));
+    }
+
+    private OutboundMsg poll() {
+        OutboundMsg msg = queue.pollFirst();
+        if (msg != null) {
+            onRemoved(msg);
+        }
+        return msg;
+    }
+
+    private void onRemoved(OutboundMsg msg) {
+        if (msg.update != null) {
+            subscriptionMsgs.remove(msg.update.getPayload().getSubscriptionId(), msg);
+        }
+        if (msg.callback != null) {
+            flowControlledCount--;
+        }
+        if (congested && queue.size() - flowControlledCount <= lowWatermark) {
+            congested = false;
+            log.debug("[{}] Outbound queue reached low watermark [{}]", session.getId(), lowWatermark);
+        }
+    }
+
+    private void scheduleSending() {
+        if (!sending) {
+            sending = true;
+            if (!execute(this::sendPending)) {
+                sending = false;
+            }
+        }
+    }
+
+    private boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("[{}] Failed to schedule outbound task", session.getId(), e);
+            return false;
+        }
+    }
+
+    private void sendPending() {
+        for (int i = 0; i < MAX_MESSAGES_PER_TASK; i++) {
+            WebSocketMessage<?> msg;
+            MergeablePluginWebSocketMsg update = null;
+            FutureCallback<Void> callback = null;
+            CloseStatus closeStatus = null;
+            synchronized (this) {
+                OutboundMsg next = closed ? null : poll();
+                if (next != null) {
+                    msg = next.msg;
+                    update = next.update;
+                    callback = next.callback;
+                } else {
+                    sending = false;
+                    if (!closed && pendingCloseStatus != null) {
+                        closed = true;
+                        closeStatus = pendingCloseStatus;
+                    }
+                    msg = null;
+                }
+            }
+            if (msg == null && update == null) {
+                if (closeStatus != null) {
+                    closeSession(closeStatus);
+                }
+                return;
+            }
+            if (update != null) {
+                msg = encode(update);
+                if (msg == null) {
+                    continue;
+                }
+            }
+            try {
+                session.sendMessage(msg);
+            } catch (IOException | RuntimeException e) {
+                log.warn("[{}] Failed to send message", session.getId(), e);
+                synchronized (this) {
+                    discardAll();
+                    sending = false;
+                }
+                if (callback != null) {
+                    callback.onFailure(e);
+                }
+                notifyDiscarded();
+                return;
+            }
+            if (callback != null) {
+                callback.onSuccess(null);
+            }
+        }
+        synchronized (this) {
+            if (!execute(this::sendPending)) {
+                sending = false;
+            }
+        }
+    }
+
+    private WebSocketMessage<?> encode(MergeablePluginWebSocketMsg update) {
+        try {
+            return toWebSocketMessage(update.getPayload().encode(update.getSessionRef()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("[{}] Failed to encode update: {}", session.getId(), update.getPayload(), e);
+            return null;
+        }
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException | RuntimeException e) {
+            log.warn("[{}] Failed to close session", session.getId(), e);
+        }
+    }
+
+    private static class OutboundMsg {
+        private final WebSocketMessage<?> msg;
+        private MergeablePluginWebSocketMsg update;
+        private final FutureCallback<Void> callback;
+
+        private OutboundMsg(WebSocketMessage<?> msg, MergeablePluginWebSocketMsg update, FutureCallback<Void> callback) {
+            this.msg = msg;
+            this.update = update;
+            this.callback = callback;
+        }
+    }
+}
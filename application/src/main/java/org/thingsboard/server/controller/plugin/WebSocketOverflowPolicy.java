@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller.plugin;
+
+/**
+ * Action taken on a new outbound message once the queue of a WebSocket session reaches its high watermark.
+ */
+public enum WebSocketOverflowPolicy {
+
+    /**
+     * Discard the oldest queued message.
+     */
+    DROP_OLDEST,
+    /**
+     * Merge the subscription update into the queued update of the same subscription by key, so that no key is lost.
+     * Messages that can't be merged discard the oldest queued message.
+     */
+    CONFLATE,
+    /**
+     * Discard all queued messages and close the session with the policy violation (1008) status.
+     */
+    CLOSE
+
+}
@@ -0,0 +1,481 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cluster.rpc;
+
+import com.google.protobuf.ByteString;
+import org.springframework.util.SerializationUtils;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKey;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.alarm.AlarmSeverityInvalidationMsg;
+import org.thingsboard.server.common.msg.cluster.ServerAddress;
+import org.thingsboard.server.common.msg.cluster.ToAllNodesMsg;
+import org.thingsboard.server.common.msg.core.AttributesSubscribeMsg;
+import org.thingsboard.server.common.msg.core.AttributesUnsubscribeMsg;
+import org.thingsboard.server.common.msg.core.BasicGetAttributesRequest;
+import org.thingsboard.server.common.msg.core.BasicTelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.BasicUpdateAttributesRequest;
+import org.thingsboard.server.common.msg.core.GetAttributesRequest;
+import org.thingsboard.server.common.msg.core.RpcSubscribeMsg;
+import org.thingsboard.server.common.msg.core.RpcUnsubscribeMsg;
+import org.thingsboard.server.common.msg.core.SessionCloseMsg;
+import org.thingsboard.server.common.msg.core.SessionOpenMsg;
+import org.thingsboard.server.common.msg.core.TelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.ToDeviceRpcResponseMsg;
+import org.thingsboard.server.common.msg.core.ToServerRpcRequestMsg;
+import org.thingsboard.server.common.msg.core.UpdateAttributesRequest;
+import org.thingsboard.server.common.msg.device.BasicToDeviceActorMsg;
+import org.thingsboard.server.common.msg.device.DeviceCredentialsInvalidationMsg;
+import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+import org.thingsboard.server.common.msg.kv.TsKvLatestInvalidationMsg;
+import org.thingsboard.server.common.msg.relation.RelationsInvalidationMsg;
+import org.thingsboard.server.common.msg.session.FromDeviceMsg;
+import org.thingsboard.server.common.msg.session.SessionType;
+import org.thingsboard.server.extensions.api.device.DeviceAttributesEventNotificationMsg;
+import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotificationMsg;
+import org.thingsboard.server.extensions.api.device.ToDeviceActorNotificationMsg;
+import org.thingsboard.server.gen.cluster.ClusterAPIProtos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts device, device notification and broadcast messages to cluster protobuf messages and back.
+ * <p>
+ * Message types that are known to the schema are encoded field by field. Other messages, and messages
+ * with values that can't be represented by the schema (like null strings), are encoded with java serialization.
+ */
+public final class ClusterMsgCodec {
+
+    private ClusterMsgCodec() {
+    }
+
+    public static ClusterAPIProtos.ToDeviceActorRpcMessage toProto(ToDeviceActorMsg msg) {
+        ClusterAPIProtos.ToDeviceActorRpcMessage.Builder builder = ClusterAPIProtos.ToDeviceActorRpcMessage.newBuilder();
+        ClusterAPIProtos.DeviceActorMessage proto = encode(msg);
+        if (proto != null) {
+            builder.setMsg(proto);
+        } else {
+            builder.setData(serialize(msg));
+        }
+        return builder.build();
+    }
+
+    public static ToDeviceActorMsg fromProto(ClusterAPIProtos.ToDeviceActorRpcMessage msg) {
+        if (msg.hasMsg()) {
+            return decode(msg.getMsg());
+        } else {
+            return deserialize(msg.getData());
+        }
+    }
+
+    public static ClusterAPIProtos.ToDeviceActorNotificationRpcMessage toProto(ToDeviceActorNotificationMsg msg) {
+        ClusterAPIProtos.ToDeviceActorNotificationRpcMessage.Builder builder = ClusterAPIProtos.ToDeviceActorNotificationRpcMessage.newBuilder();
+        if (msg instanceof DeviceAttributesEventNotificationMsg && canEncode((DeviceAttributesEventNotificationMsg) msg)) {
+            builder.setAttributesEvent(encode((DeviceAttributesEventNotificationMsg) msg));
+        } else if (msg instanceof DeviceCredentialsUpdateNotificationMsg) {
+            DeviceCredentialsUpdateNotificationMsg credentialsMsg = (DeviceCredentialsUpdateNotificationMsg) msg;
+            builder.setCredentialsUpdate(ClusterAPIProtos.DeviceCredentialsUpdate.newBuilder()
+                    .setTenantId(toUid(credentialsMsg.getTenantId()))
+                    .setDeviceId(toUid(credentialsMsg.getDeviceId())));
+        } else {
+            builder.setData(serialize(msg));
+        }
+        return builder.build();
+    }
+
+    public static ToDeviceActorNotificationMsg fromProto(ClusterAPIProtos.ToDeviceActorNotificationRpcMessage msg) {
+        if (msg.hasAttributesEvent()) {
+            return decode(msg.getAttributesEvent());
+        } else if (msg.hasCredentialsUpdate()) {
+            ClusterAPIProtos.DeviceCredentialsUpdate proto = msg.getCredentialsUpdate();
+            return new DeviceCredentialsUpdateNotificationMsg(new TenantId(toUUID(proto.getTenantId())), new DeviceId(toUUID(proto.getDeviceId())));
+        } else {
+            return deserialize(msg.getData());
+        }
+    }
+
+    public static ClusterAPIProtos.ToAllNodesRpcMessage toProto(ToAllNodesMsg msg) {
+        ClusterAPIProtos.ToAllNodesRpcMessage.Builder builder = ClusterAPIProtos.ToAllNodesRpcMessage.newBuilder();
+        if (msg instanceof TsKvLatestInvalidationMsg && !((TsKvLatestInvalidationMsg) msg).getKeys().contains(null)) {
+            TsKvLatestInvalidationMsg invalidationMsg = (TsKvLatestInvalidationMsg) msg;
+            builder.setTsKvLatestInvalidation(ClusterAPIProtos.TsKvLatestInvalidation.newBuilder()
+                    .setEntityType(invalidationMsg.getEntityId().getEntityType().name())
+                    .setEntityId(toUid(invalidationMsg.getEntityId()))
+                    .addAllKeys(invalidationMsg.getKeys()));
+        } else if (msg instanceof DeviceCredentialsInvalidationMsg && ((DeviceCredentialsInvalidationMsg) msg).getDeviceId() != null) {
+            builder.setDeviceCredentialsInvalidation(ClusterAPIProtos.DeviceCredentialsInvalidation.newBuilder()
+                    .setDeviceId(toUid(((DeviceCredentialsInvalidationMsg) msg).getDeviceId())));
+        } else if (msg instanceof RelationsInvalidationMsg && !((RelationsInvalidationMsg) msg).getEntityIds().contains(null)) {
+            builder.setRelationsInvalidation(ClusterAPIProtos.RelationsInvalidation.newBuilder()
+                    .addAllEntities(toEntityUids(((RelationsInvalidationMsg) msg).getEntityIds())));
+        } else if (msg instanceof AlarmSeverityInvalidationMsg && !((AlarmSeverityInvalidationMsg) msg).getEntityIds().contains(null)) {
+            builder.setAlarmSeverityInvalidation(ClusterAPIProtos.AlarmSeverityInvalidation.newBuilder()
+                    .addAllEntities(toEntityUids(((AlarmSeverityInvalidationMsg) msg).getEntityIds())));
+        } else {
+            builder.setData(serialize(msg));
+        }
+        return builder.build();
+    }
+
+    public static ToAllNodesMsg fromProto(ClusterAPIProtos.ToAllNodesRpcMessage msg) {
+        if (msg.hasTsKvLatestInvalidation()) {
+            ClusterAPIProtos.TsKvLatestInvalidation proto = msg.getTsKvLatestInvalidation();
+            EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), toUUID(proto.getEntityId()));
+            return new TsKvLatestInvalidationMsg(entityId, new ArrayList<>(proto.getKeysList()));
+        } else if (msg.hasDeviceCredentialsInvalidation()) {
+            return new DeviceCredentialsInvalidationMsg(new DeviceId(toUUID(msg.getDeviceCredentialsInvalidation().getDeviceId())));
+        } else if (msg.hasRelationsInvalidation()) {
+            return new RelationsInvalidationMsg(toEntityIds(msg.getRelationsInvalidation().getEntitiesList()));
+        } else if (msg.hasAlarmSeverityInvalidation()) {
+            return new AlarmSeverityInvalidationMsg(toEntityIds(msg.getAlarmSeverityInvalidation().getEntitiesList()));
+        } else {
+            return deserialize(msg.getData());
+        }
+    }
+
+    private static List<ClusterAPIProtos.EntityUid> toEntityUids(List<EntityId> entityIds) {
+        List<ClusterAPIProtos.EntityUid> result = new ArrayList<>(entityIds.size());
+        for (EntityId entityId : entityIds) {
+            result.add(ClusterAPIProtos.EntityUid.newBuilder()
+                    .setEntityType(entityId.getEntityType().name())
+                    .setEntityId(toUid(entityId)).build());
+        }
+        return result;
+    }
+
+    private static List<EntityId> toEntityIds(List<ClusterAPIProtos.EntityUid> protos) {
+        List<EntityId> result = new ArrayList<>(protos.size());
+        for (ClusterAPIProtos.EntityUid proto : protos) {
+            result.add(EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), toUUID(proto.getEntityId())));
+        }
+        return result;
+    }
+
+    private static ClusterAPIProtos.DeviceActorMessage encode(ToDeviceActorMsg msg) {
+        if (msg.getTenantId() == null || msg.getDeviceId() == null || msg.getSessionId() == null
+                || msg.getSessionId().toUidStr() == null || msg.getSessionType() == null) {
+            return null;
+        }
+        ClusterAPIProtos.DeviceActorMessage.Builder builder = ClusterAPIProtos.DeviceActorMessage.newBuilder();
+        if (!encodePayload(msg.getPayload(), builder)) {
+            return null;
+        }
+        builder.setTenantId(toUid(msg.getTenantId()));
+        if (msg.getCustomerId() != null) {
+            builder.setCustomerId(toUid(msg.getCustomerId()));
+        }
+        builder.setDeviceId(toUid(msg.getDeviceId()));
+        builder.setSessionId(msg.getSessionId().toUidStr());
+        builder.setSessionType(msg.getSessionType() == SessionType.SYNC ? ClusterAPIProtos.SessionType.SYNC : ClusterAPIProtos.SessionType.ASYNC);
+        msg.getServerAddress().ifPresent(address -> builder.setServerAddress(ClusterAPIProtos.ServerAddress.newBuilder()
+                .setHost(address.getHost()).setPort(address.getPort())));
+        return builder.build();
+    }
+
+    private static boolean encodePayload(FromDeviceMsg payload, ClusterAPIProtos.DeviceActorMessage.Builder builder) {
+        if (payload == null) {
+            return false;
+        }
+        switch (payload.getMsgType()) {
+            case POST_TELEMETRY_REQUEST:
+                TelemetryUploadRequest telemetryRequest = (TelemetryUploadRequest) payload;
+                if (telemetryRequest.getRequestId() == null) {
+                    return false;
+                }
+                ClusterAPIProtos.TelemetryUploadRequest.Builder telemetry = ClusterAPIProtos.TelemetryUploadRequest.newBuilder()
+                        .setRequestId(telemetryRequest.getRequestId());
+                for (Map.Entry<Long, List<KvEntry>> entry : telemetryRequest.getData().entrySet()) {
+                    ClusterAPIProtos.TsKeyValueList.Builder tsKvList = ClusterAPIProtos.TsKeyValueList.newBuilder().setTs(entry.getKey());
+                    for (KvEntry kvEntry : entry.getValue()) {
+                        ClusterAPIProtos.KeyValue kv = toKeyValue(kvEntry);
+                        if (kv == null) {
+                            return false;
+                        }
+                        tsKvList.addKv(kv);
+                    }
+                    telemetry.addData(tsKvList);
+                }
+                builder.setTelemetryUploadRequest(telemetry);
+                return true;
+            case POST_ATTRIBUTES_REQUEST:
+                UpdateAttributesRequest attributesRequest = (UpdateAttributesRequest) payload;
+                if (attributesRequest.getRequestId() == null) {
+                    return false;
+                }
+                ClusterAPIProtos.UpdateAttributesRequest.Builder attributes = ClusterAPIProtos.UpdateAttributesRequest.newBuilder()
+                        .setRequestId(attributesRequest.getRequestId());
+                for (AttributeKvEntry attribute : attributesRequest.getAttributes()) {
+                    ClusterAPIProtos.AttributeKeyValue attributeKv = toAttributeKeyValue(attribute);
+                    if (attributeKv == null) {
+                        return false;
+                    }
+                    attributes.addAttributes(attributeKv);
+                }
+                builder.setUpdateAttributesRequest(attributes);
+                return true;
+            case GET_ATTRIBUTES_REQUEST:
+                GetAttributesRequest getAttributesRequest = (GetAttributesRequest) payload;
+                Optional<Set<String>> clientKeys = getAttributesRequest.getClientAttributeNames();
+                Optional<Set<String>> sharedKeys = getAttributesRequest.getSharedAttributeNames();
+                if (getAttributesRequest.getRequestId() == null
+                        || clientKeys.map(keys -> keys.contains(null)).orElse(false)
+                        || sharedKeys.map(keys -> keys.contains(null)).orElse(false)) {
+                    return false;
+                }
+                ClusterAPIProtos.GetAttributesRequest.Builder getAttributes = ClusterAPIProtos.GetAttributesRequest.newBuilder()
+                        .setRequestId(getAttributesRequest.getRequestId())
+                        .setHasClientKeys(clientKeys.isPresent())
+                        .setHasSharedKeys(sharedKeys.isPresent());
+                clientKeys.ifPresent(getAttributes::addAllClientKeys);
+                sharedKeys.ifPresent(getAttributes::addAllSharedKeys);
+                builder.setGetAttributesRequest(getAttributes);
+                return true;
+            case TO_DEVICE_RPC_RESPONSE:
+                ToDeviceRpcResponseMsg rpcResponse = (ToDeviceRpcResponseMsg) payload;
+                if (rpcResponse.getData() == null) {
+                    return false;
+                }
+                builder.setToDeviceRpcResponse(ClusterAPIProtos.ToDeviceRpcResponse.newBuilder()
+                        .setRequestId(rpcResponse.getRequestId())
+                        .setData(rpcResponse.getData()));
+                return true;
+            case TO_SERVER_RPC_REQUEST:
+                ToServerRpcRequestMsg rpcRequest = (ToServerRpcRequestMsg) payload;
+                if (rpcRequest.getMethod() == null || rpcRequest.getParams() == null) {
+                    return false;
+                }
+                builder.setToServerRpcRequest(ClusterAPIProtos.ToServerRpcRequest.newBuilder()
+                        .setRequestId(rpcRequest.getRequestId())
+                        .setMethod(rpcRequest.getMethod())
+                        .setParams(rpcRequest.getParams()));
+                return true;
+            case SESSION_OPEN:
+                builder.setSessionEvent(ClusterAPIProtos.SessionEvent.SESSION_OPEN);
+                return true;
+            case SESSION_CLOSE:
+                builder.setSessionEvent(ClusterAPIProtos.SessionEvent.SESSION_CLOSE);
+                return true;
+            case SUBSCRIBE_ATTRIBUTES_REQUEST:
+                builder.setSessionEvent(ClusterAPIProtos.SessionEvent.SUBSCRIBE_ATTRIBUTES);
+                return true;
+            case UNSUBSCRIBE_ATTRIBUTES_REQUEST:
+                builder.setSessionEvent(ClusterAPIProtos.SessionEvent.UNSUBSCRIBE_ATTRIBUTES);
+                return true;
+            case SUBSCRIBE_RPC_COMMANDS_REQUEST:
+                builder.setSessionEvent(ClusterAPIProtos.SessionEvent.SUBSCRIBE_RPC_COMMANDS);
+                return true;
+            case UNSUBSCRIBE_RPC_COMMANDS_REQUEST:
+                builder.setSessionEvent(ClusterAPIProtos.SessionEvent.UNSUBSCRIBE_RPC_COMMANDS);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static ToDeviceActorMsg decode(ClusterAPIProtos.DeviceActorMessage proto) {
+        ServerAddress serverAddress = proto.hasServerAddress()
+                ? new ServerAddress(proto.getServerAddress().getHost(), proto.getServerAddress().getPort()) : null;
+        CustomerId customerId = proto.hasCustomerId() ? new CustomerId(toUUID(proto.getCustomerId())) : null;
+        SessionType sessionType = proto.getSessionType() == ClusterAPIProtos.SessionType.SYNC ? SessionType.SYNC : SessionType.ASYNC;
+        return new BasicToDeviceActorMsg(serverAddress, new TenantId(toUUID(proto.getTenantId())), customerId,
+                new DeviceId(toUUID(proto.getDeviceId())), new RemoteSessionId(proto.getSessionId()), sessionType, decodePayload(proto));
+    }
+
+    private static FromDeviceMsg decodePayload(ClusterAPIProtos.DeviceActorMessage proto) {
+        switch (proto.getPayloadCase()) {
+            case TELEMETRYUPLOADREQUEST:
+                ClusterAPIProtos.TelemetryUploadRequest telemetry = proto.getTelemetryUploadRequest();
+                BasicTelemetryUploadRequest telemetryRequest = new BasicTelemetryUploadRequest(telemetry.getRequestId());
+                for (ClusterAPIProtos.TsKeyValueList tsKvList : telemetry.getDataList()) {
+                    for (ClusterAPIProtos.KeyValue kv : tsKvList.getKvList()) {
+                        telemetryRequest.add(tsKvList.getTs(), toKvEntry(kv));
+                    }
+                }
+                return telemetryRequest;
+            case UPDATEATTRIBUTESREQUEST:
+                ClusterAPIProtos.UpdateAttributesRequest attributes = proto.getUpdateAttributesRequest();
+                BasicUpdateAttributesRequest attributesRequest = new BasicUpdateAttributesRequest(attributes.getRequestId());
+                attributes.getAttributesList().forEach(attribute -> attributesRequest.add(toAttributeKvEntry(attribute)));
+                return attributesRequest;
+            case GETATTRIBUTESREQUEST:
+                ClusterAPIProtos.GetAttributesRequest getAttributes = proto.getGetAttributesRequest();
+                return new BasicGetAttributesRequest(getAttributes.getRequestId(),
+                        getAttributes.getHasClientKeys() ? new HashSet<>(getAttributes.getClientKeysList()) : null,
+                        getAttributes.getHasSharedKeys() ? new HashSet<>(getAttributes.getSharedKeysList()) : null);
+            case TODEVICERPCRESPONSE:
+                ClusterAPIProtos.ToDeviceRpcResponse rpcResponse = proto.getToDeviceRpcResponse();
+                return new ToDeviceRpcResponseMsg(rpcResponse.getRequestId(), rpcResponse.getData());
+            case TOSERVERRPCREQUEST:
+                ClusterAPIProtos.ToServerRpcRequest rpcRequest = proto.getToServerRpcRequest();
+                return new ToServerRpcRequestMsg(rpcRequest.getRequestId(), rpcRequest.getMethod(), rpcRequest.getParams());
+            case SESSIONEVENT:
+                switch (proto.getSessionEvent()) {
+                    case SESSION_OPEN:
+                        return new SessionOpenMsg();
+                    case SESSION_CLOSE:
+                        return new SessionCloseMsg();
+                    case SUBSCRIBE_ATTRIBUTES:
+                        return new AttributesSubscribeMsg();
+                    case UNSUBSCRIBE_ATTRIBUTES:
+                        return new AttributesUnsubscribeMsg();
+                    case SUBSCRIBE_RPC_COMMANDS:
+                        return new RpcSubscribeMsg();
+                    case UNSUBSCRIBE_RPC_COMMANDS:
+                        return new RpcUnsubscribeMsg();
+                }
+            default:
+                throw new IllegalArgumentException("Unsupported device actor message payload: " + proto.getPayloadCase());
+        }
+    }
+
+    private static boolean canEncode(DeviceAttributesEventNotificationMsg msg) {
+        if (msg.isDeleted()) {
+            return msg.getDeletedKeys() != null && msg.getDeletedKeys().stream()
+                    .allMatch(key -> key.getScope() != null && key.getAttributeKey() != null);
+        } else {
+            return msg.getScope() != null && msg.getValues() != null && msg.getValues().stream()
+                    .allMatch(value -> toAttributeKeyValue(value) != null);
+        }
+    }
+
+    private static ClusterAPIProtos.DeviceAttributesEvent encode(DeviceAttributesEventNotificationMsg msg) {
+        ClusterAPIProtos.DeviceAttributesEvent.Builder builder = ClusterAPIProtos.DeviceAttributesEvent.newBuilder()
+                .setTenantId(toUid(msg.getTenantId()))
+                .setDeviceId(toUid(msg.getDeviceId()))
+                .setDeleted(msg.isDeleted());
+        if (msg.isDeleted()) {
+            msg.getDeletedKeys().forEach(key -> builder.addDeletedKeys(ClusterAPIProtos.AttributeKey.newBuilder()
+                    .setScope(key.getScope()).setKey(key.getAttributeKey())));
+        } else {
+            builder.setScope(msg.getScope());
+            msg.getValues().forEach(value -> builder.addValues(toAttributeKeyValue(value)));
+        }
+        return builder.build();
+    }
+
+    private static DeviceAttributesEventNotificationMsg decode(ClusterAPIProtos.DeviceAttributesEvent proto) {
+        TenantId tenantId = new TenantId(toUUID(proto.getTenantId()));
+        DeviceId deviceId = new DeviceId(toUUID(proto.getDeviceId()));
+        if (proto.getDeleted()) {
+            Set<AttributeKey> keys = new HashSet<>();
+            proto.getDeletedKeysList().forEach(key -> keys.add(new AttributeKey(key.getScope(), key.getKey())));
+            return DeviceAttributesEventNotificationMsg.onDelete(tenantId, deviceId, keys);
+        } else {
+            List<AttributeKvEntry> values = new ArrayList<>(proto.getValuesCount());
+            proto.getValuesList().forEach(value -> values.add(toAttributeKvEntry(value)));
+            return DeviceAttributesEventNotificationMsg.onUpdate(tenantId, deviceId, proto.getScope(), values);
+        }
+    }
+
+    private static ClusterAPIProtos.AttributeKeyValue toAttributeKeyValue(AttributeKvEntry attribute) {
+        ClusterAPIProtos.KeyValue kv = toKeyValue(attribute);
+        if (kv == null) {
+            return null;
+        }
+        return ClusterAPIProtos.AttributeKeyValue.newBuilder().setKv(kv).setLastUpdateTs(attribute.getLastUpdateTs()).build();
+    }
+
+    private static AttributeKvEntry toAttributeKvEntry(ClusterAPIProtos.AttributeKeyValue proto) {
+        return new BaseAttributeKvEntry(toKvEntry(proto.getKv()), proto.getLastUpdateTs());
+    }
+
+    private static ClusterAPIProtos.KeyValue toKeyValue(KvEntry entry) {
+        if (entry.getKey() == null || entry.getDataType() == null) {
+            return null;
+        }
+        ClusterAPIProtos.KeyValue.Builder builder = ClusterAPIProtos.KeyValue.newBuilder().setKey(entry.getKey());
+        switch (entry.getDataType()) {
+            case BOOLEAN:
+                Optional<Boolean> boolValue = entry.getBooleanValue();
+                if (!boolValue.isPresent()) {
+                    return null;
+                }
+                return builder.setType(ClusterAPIProtos.KeyValueType.BOOLEAN_V).setBoolV(boolValue.get()).build();
+            case LONG:
+                Optional<Long> longValue = entry.getLongValue();
+                if (!longValue.isPresent()) {
+                    return null;
+                }
+                return builder.setType(ClusterAPIProtos.KeyValueType.LONG_V).setLongV(longValue.get()).build();
+            case DOUBLE:
+                Optional<Double> doubleValue = entry.getDoubleValue();
+                if (!doubleValue.isPresent()) {
+                    return null;
+                }
+                return builder.setType(ClusterAPIProtos.KeyValueType.DOUBLE_V).setDoubleV(doubleValue.get()).build();
+            case STRING:
+                Optional<String> strValue = entry.getStrValue();
+                if (!strValue.isPresent()) {
+                    return null;
+                }
+                return builder.setType(ClusterAPIProtos.KeyValueType.STRING_V).setStringV(strValue.get()).build();
+            default:
+                return null;
+        }
+    }
+
+    private static KvEntry toKvEntry(ClusterAPIProtos.KeyValue proto) {
+        switch (proto.getType()) {
+            case BOOLEAN_V:
+                return new BooleanDataEntry(proto.getKey(), proto.getBoolV());
+            case LONG_V:
+                return new LongDataEntry(proto.getKey(), proto.getLongV());
+            case DOUBLE_V:
+                return new DoubleDataEntry(proto.getKey(), proto.getDoubleV());
+            case STRING_V:
+                return new StringDataEntry(proto.getKey(), proto.getStringV());
+            default:
+                throw new IllegalArgumentException("Unsupported key value type: " + proto.getType());
+        }
+    }
+
+    private static ClusterAPIProtos.Uid toUid(EntityId entityId) {
+        UUID uuid = entityId.getId();
+        return ClusterAPIProtos.Uid.newBuilder()
+                .setPluginUuidMsb(uuid.getMostSignificantBits())
+                .setPluginUuidLsb(uuid.getLeastSignificantBits()).build();
+    }
+
+    private static UUID toUUID(ClusterAPIProtos.Uid uid) {
+        return new UUID(uid.getPluginUuidMsb(), uid.getPluginUuidLsb());
+    }
+
+    private static ByteString serialize(Serializable msg) {
+        return ByteString.copyFrom(SerializationUtils.serialize(msg));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T deserialize(ByteString data) {
+        return (T) SerializationUtils.deserialize(data.toByteArray());
+    }
+}
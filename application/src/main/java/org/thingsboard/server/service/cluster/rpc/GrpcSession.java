@@ -15,6 +15,9 @@
  */
 package org.thingsboard.server.service.cluster.rpc;
 
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -36,6 +39,8 @@ final public class GrpcSession implements Closeable {
     private StreamObserver<ClusterAPIProtos.ToRpcServerMessage> inputStream;
     private StreamObserver<ClusterAPIProtos.ToRpcServerMessage> outputStream;
 
+    private Runnable onReadyHandler;
+
     private boolean connected;
     private ServerAddress remoteServer;
 
@@ -56,7 +61,14 @@ final public class GrpcSession implements Closeable {
     }
 
     public void initInputStream() {
-        this.inputStream = new StreamObserver<ClusterAPIProtos.ToRpcServerMessage>() {
+        this.inputStream = new ClientResponseObserver<ClusterAPIProtos.ToRpcServerMessage, ClusterAPIProtos.ToRpcServerMessage>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<ClusterAPIProtos.ToRpcServerMessage> requestStream) {
+                if (onReadyHandler != null) {
+                    requestStream.setOnReadyHandler(onReadyHandler);
+                }
+            }
+
             @Override
             public void onNext(ClusterAPIProtos.ToRpcServerMessage msg) {
                 if (!connected) {
@@ -68,27 +80,7 @@ final public class GrpcSession implements Closeable {
                     }
                 }
                 if (connected) {
-                    if (msg.hasToPluginRpcMsg()) {
-                        listener.onToPluginRpcMsg(GrpcSession.this, msg.getToPluginRpcMsg());
-                    }
-                    if (msg.hasToDeviceActorRpcMsg()) {
-                        listener.onToDeviceActorRpcMsg(GrpcSession.this, msg.getToDeviceActorRpcMsg());
-                    }
-                    if (msg.hasToDeviceSessionActorRpcMsg()) {
-                        listener.onToDeviceSessionActorRpcMsg(GrpcSession.this, msg.getToDeviceSessionActorRpcMsg());
-                    }
-                    if (msg.hasToDeviceActorNotificationRpcMsg()) {
-                        listener.onToDeviceActorNotificationRpcMsg(GrpcSession.this, msg.getToDeviceActorNotificationRpcMsg());
-                    }
-                    if (msg.hasToDeviceRpcRequestRpcMsg()) {
-                        listener.onToDeviceRpcRequestRpcMsg(GrpcSession.this, msg.getToDeviceRpcRequestRpcMsg());
-                    }
-                    if (msg.hasToPluginRpcResponseRpcMsg()) {
-                        listener.onFromDeviceRpcResponseRpcMsg(GrpcSession.this, msg.getToPluginRpcResponseRpcMsg());
-                    }
-                    if (msg.hasToAllNodesRpcMsg()) {
-                        listener.onToAllNodesRpcMessage(GrpcSession.this, msg.getToAllNodesRpcMsg());
-                    }
+                    processMsg(msg);
                 }
             }
 
@@ -108,9 +100,45 @@ final public class GrpcSession implements Closeable {
     public void initOutputStream() {
         if (client) {
             listener.onConnected(GrpcSession.this);
+        } else if (onReadyHandler != null && outputStream instanceof CallStreamObserver) {
+            ((CallStreamObserver<ClusterAPIProtos.ToRpcServerMessage>) outputStream).setOnReadyHandler(onReadyHandler);
         }
     }
 
+    private void processMsg(ClusterAPIProtos.ToRpcServerMessage msg) {
+        if (msg.hasToPluginRpcMsg()) {
+            listener.onToPluginRpcMsg(this, msg.getToPluginRpcMsg());
+        }
+        if (msg.hasToDeviceActorRpcMsg()) {
+            listener.onToDeviceActorRpcMsg(this, msg.getToDeviceActorRpcMsg());
+        }
+        if (msg.hasToDeviceSessionActorRpcMsg()) {
+            listener.onToDeviceSessionActorRpcMsg(this, msg.getToDeviceSessionActorRpcMsg());
+        }
+        if (msg.hasToDeviceActorNotificationRpcMsg()) {
+            listener.onToDeviceActorNotificationRpcMsg(this, msg.getToDeviceActorNotificationRpcMsg());
+        }
+        if (msg.hasToDeviceRpcRequestRpcMsg()) {
+            listener.onToDeviceRpcRequestRpcMsg(this, msg.getToDeviceRpcRequestRpcMsg());
+        }
+        if (msg.hasToPluginRpcResponseRpcMsg()) {
+            listener.onFromDeviceRpcResponseRpcMsg(this, msg.getToPluginRpcResponseRpcMsg());
+        }
+        if (msg.hasToAllNodesRpcMsg()) {
+            listener.onToAllNodesRpcMessage(this, msg.getToAllNodesRpcMsg());
+        }
+        for (ClusterAPIProtos.ToRpcServerMessage batchMsg : msg.getBatchMsgsList()) {
+            processMsg(batchMsg);
+        }
+    }
+
+    /**
+     * Returns false if the transport buffer of the output stream is full and sending more messages would only buffer them locally.
+     */
+    public boolean isReady() {
+        return !(outputStream instanceof CallStreamObserver) || ((CallStreamObserver<ClusterAPIProtos.ToRpcServerMessage>) outputStream).isReady();
+    }
+
     public void sendMsg(ClusterAPIProtos.ToRpcServerMessage msg) {
         outputStream.onNext(msg);
     }
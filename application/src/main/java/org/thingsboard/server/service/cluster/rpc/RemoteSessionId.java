@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cluster.rpc;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.SessionId;
+
+/**
+ * Session id decoded from a cluster message. Only the unique string of the original session id is transferred.
+ */
+@Data
+public final class RemoteSessionId implements SessionId {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String uidStr;
+
+    @Override
+    public String toUidStr() {
+        return uidStr;
+    }
+}
@@ -24,6 +24,7 @@ import org.thingsboard.server.common.data.security.DeviceCredentials;
 import org.thingsboard.server.common.data.security.DeviceCredentialsFilter;
 import org.thingsboard.server.common.transport.auth.DeviceAuthResult;
 import org.thingsboard.server.common.transport.auth.DeviceAuthService;
+import org.thingsboard.server.dao.device.DeviceCredentialsCache;
 import org.thingsboard.server.dao.device.DeviceCredentialsService;
 import org.thingsboard.server.dao.device.DeviceService;
 
@@ -39,10 +40,13 @@ public class DefaultDeviceAuthService implements DeviceAuthService {
     @Autowired
     DeviceCredentialsService deviceCredentialsService;
 
+    @Autowired
+    DeviceCredentialsCache deviceCredentialsCache;
+
     @Override
     public DeviceAuthResult process(DeviceCredentialsFilter credentialsFilter) {
         log.trace("Lookup device credentials using filter {}", credentialsFilter);
-        DeviceCredentials credentials = deviceCredentialsService.findDeviceCredentialsByCredentialsId(credentialsFilter.getCredentialsId());
+        DeviceCredentials credentials = findDeviceCredentials(credentialsFilter.getCredentialsId());
         if (credentials != null) {
             log.trace("Credentials found {}", credentials);
             if (credentials.getCredentialsType() == credentialsFilter.getCredentialsType()) {
@@ -65,6 +69,16 @@ public class DefaultDeviceAuthService implements DeviceAuthService {
         }
     }
 
+    private DeviceCredentials findDeviceCredentials(String credentialsId) {
+        DeviceCredentials credentials = deviceCredentialsCache.get(credentialsId);
+        if (credentials == null) {
+            long stamp = deviceCredentialsCache.getStamp();
+            credentials = deviceCredentialsService.findDeviceCredentialsByCredentialsId(credentialsId);
+            deviceCredentialsCache.put(credentials, stamp);
+        }
+        return credentials;
+    }
+
     @Override
     public Optional<Device> findDeviceById(DeviceId deviceId) {
         return Optional.ofNullable(deviceService.findDeviceById(deviceId));
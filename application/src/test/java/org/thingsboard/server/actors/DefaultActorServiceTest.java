@@ -16,6 +16,8 @@
 package org.thingsboard.server.actors;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -23,6 +25,8 @@ import static org.mockito.Mockito.when;
 import java.util.*;
 
 import com.google.common.util.concurrent.Futures;
+import org.thingsboard.server.actors.device.DeviceActorStats;
+import org.thingsboard.server.actors.rpc.RpcOutboundStats;
 import org.thingsboard.server.actors.service.DefaultActorService;
 import org.thingsboard.server.common.data.id.*;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
@@ -44,6 +48,7 @@ import org.thingsboard.server.common.transport.auth.DeviceAuthService;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.data.kv.StringDataEntry;
@@ -143,12 +148,19 @@ public class DefaultActorServiceTest {
         ReflectionTestUtils.setField(actorContext, "attributesService", attributesService);
         ReflectionTestUtils.setField(actorContext, "componentService", componentService);
         ReflectionTestUtils.setField(actorContext, "eventService", eventService);
+        ReflectionTestUtils.setField(actorContext, "deviceActorStats", new DeviceActorStats());
+        ReflectionTestUtils.setField(actorContext, "rpcOutboundStats", new RpcOutboundStats());
+        ReflectionTestUtils.setField(actorContext, "rpcOutboundQueueSize", 1000);
+        ReflectionTestUtils.setField(actorContext, "deviceActorMaxPendingMsgs", 1000);
+        ReflectionTestUtils.setField(actorContext, "rpcOutboundBatchSize", 100);
 
 
         when(routingService.resolveById((EntityId) any())).thenReturn(Optional.empty());
 
         when(discoveryService.getCurrentServer()).thenReturn(serverInstance);
 
+        when(eventService.saveAsync(any())).thenReturn(Futures.immediateFuture(null));
+
         ruleMock = mock(RuleMetaData.class);
         when(ruleMock.getId()).thenReturn(ruleId);
         when(ruleMock.getState()).thenReturn(ComponentLifecycleState.ACTIVE);
@@ -185,6 +197,15 @@ public class DefaultActorServiceTest {
 
     @Test
     public void testBasicPostWithSyncSession() throws Exception {
+        testBasicPostWithSyncSession(false);
+    }
+
+    @Test
+    public void testBasicPostWithSyncSessionAfterFailedDeviceInit() throws Exception {
+        testBasicPostWithSyncSession(true);
+    }
+
+    private void testBasicPostWithSyncSession(boolean failFirstAttributesLoad) throws Exception {
         SessionContext ssnCtx = mock(SessionContext.class);
         KvEntry entry1 = new StringDataEntry("key1", "value1");
         KvEntry entry2 = new StringDataEntry("key2", "value2");
@@ -205,6 +226,7 @@ public class DefaultActorServiceTest {
         when(ssnCtx.getSessionType()).thenReturn(SessionType.SYNC);
         when(deviceAuthService.process(filter)).thenReturn(DeviceAuthResult.of(deviceId));
         when(deviceService.findDeviceById(deviceId)).thenReturn(device);
+        when(deviceService.findDeviceByIdAsync(deviceId)).thenReturn(Futures.immediateFuture(device));
 
         ObjectMapper ruleMapper = new ObjectMapper();
         when(ruleMock.getFilters()).thenReturn(ruleMapper.readTree(FILTERS_CONFIGURATION));
@@ -230,6 +252,17 @@ public class DefaultActorServiceTest {
         when(attributesService.findAll(deviceId, DataConstants.CLIENT_SCOPE)).thenReturn(Futures.immediateFuture(Collections.emptyList()));
         when(attributesService.findAll(deviceId, DataConstants.SHARED_SCOPE)).thenReturn(Futures.immediateFuture(Collections.emptyList()));
         when(attributesService.findAll(deviceId, DataConstants.SERVER_SCOPE)).thenReturn(Futures.immediateFuture(Collections.emptyList()));
+        Map<String, List<AttributeKvEntry>> attributes = new HashMap<>();
+        attributes.put(DataConstants.CLIENT_SCOPE, Collections.emptyList());
+        attributes.put(DataConstants.SHARED_SCOPE, Collections.emptyList());
+        attributes.put(DataConstants.SERVER_SCOPE, Collections.emptyList());
+        if (failFirstAttributesLoad) {
+            when(attributesService.findAll(eq(deviceId), anyCollectionOf(String.class)))
+                    .thenReturn(Futures.immediateFailedFuture(new RuntimeException("Database is not available")))
+                    .thenReturn(Futures.immediateFuture(attributes));
+        } else {
+            when(attributesService.findAll(eq(deviceId), anyCollectionOf(String.class))).thenReturn(Futures.immediateFuture(attributes));
+        }
 
         initActorSystem();
         Thread.sleep(1000);
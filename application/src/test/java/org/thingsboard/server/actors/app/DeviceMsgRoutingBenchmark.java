@@ -0,0 +1,155 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.app;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import com.datastax.driver.core.utils.UUIDs;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.service.DefaultActorService;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotificationMsg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Manual throughput benchmark of the device message routing hop.
+ * <p>
+ * Compares a single router on the app dispatcher, which is equivalent to routing through the app actor,
+ * with a pool of routers on the router dispatcher. Tenant actors are replaced with actors that only count messages.
+ * Parameters are passed as system properties: messages, devices, tenants and routers.
+ */
+public class DeviceMsgRoutingBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int messages = Integer.getInteger("messages", 2000000);
+        int devicesCount = Integer.getInteger("devices", 10000);
+        int tenantsCount = Integer.getInteger("tenants", 16);
+        int routersCount = Integer.getInteger("routers", Runtime.getRuntime().availableProcessors());
+        int producers = Runtime.getRuntime().availableProcessors();
+
+        ActorSystemContext context = new ActorSystemContext();
+        ActorSystem system = ActorSystem.create("benchmark", context.getConfig());
+        context.setActorSystem(system);
+
+        AtomicReference<CountDownLatch> latch = new AtomicReference<>();
+        Map<TenantId, ActorRef> tenantActors = new HashMap<>();
+        List<TenantId> tenants = new ArrayList<>();
+        for (int i = 0; i < tenantsCount; i++) {
+            TenantId tenantId = new TenantId(UUIDs.timeBased());
+            tenants.add(tenantId);
+            tenantActors.put(tenantId, system.actorOf(Props.create(CountingActor.class, latch)
+                    .withDispatcher(DefaultActorService.CORE_DISPATCHER_NAME)));
+        }
+        context.setAppActor(system.actorOf(Props.create(AppActorStub.class, tenantActors)));
+
+        DeviceCredentialsUpdateNotificationMsg[] msgs = new DeviceCredentialsUpdateNotificationMsg[devicesCount];
+        for (int i = 0; i < devicesCount; i++) {
+            msgs[i] = new DeviceCredentialsUpdateNotificationMsg(tenants.get(i % tenantsCount), new DeviceId(UUIDs.timeBased()));
+        }
+
+        ActorRef[] singleRouter = {system.actorOf(Props.create(new DeviceMsgRouterActor.ActorCreator(context))
+                .withDispatcher(DefaultActorService.APP_DISPATCHER_NAME))};
+        ActorRef[] routerPool = new ActorRef[routersCount];
+        for (int i = 0; i < routersCount; i++) {
+            routerPool[i] = system.actorOf(Props.create(new DeviceMsgRouterActor.ActorCreator(context))
+                    .withDispatcher(DefaultActorService.ROUTER_DISPATCHER_NAME));
+        }
+
+        try {
+            for (int i = 0; i < ITERATIONS; i++) {
+                context.setDeviceMsgRouters(singleRouter);
+                run("single router", context, msgs, messages, producers, latch);
+                context.setDeviceMsgRouters(routerPool);
+                run(routersCount + " routers", context, msgs, messages, producers, latch);
+            }
+        } finally {
+            system.terminate();
+        }
+    }
+
+    private static void run(String name, ActorSystemContext context, DeviceCredentialsUpdateNotificationMsg[] msgs,
+                            int messages, int producers, AtomicReference<CountDownLatch> latch) throws InterruptedException {
+        latch.set(new CountDownLatch(messages));
+        int perProducer = messages / producers;
+        List<Thread> threads = new ArrayList<>();
+        long startTs = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            int count = p == producers - 1 ? messages - perProducer * (producers - 1) : perProducer;
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < count; i++) {
+                    DeviceCredentialsUpdateNotificationMsg msg = msgs[random.nextInt(msgs.length)];
+                    context.getDeviceMsgRouter(msg.getDeviceId()).tell(msg, ActorRef.noSender());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!latch.get().await(5, TimeUnit.MINUTES)) {
+            System.out.println(name + ": timeout, " + latch.get().getCount() + " messages were not delivered");
+            return;
+        }
+        long elapsedMs = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs), 1);
+        System.out.println(String.format("%s: %d messages in %d ms, %d msg/s", name, messages, elapsedMs, messages * 1000L / elapsedMs));
+    }
+
+    public static class CountingActor extends UntypedActor {
+
+        private final AtomicReference<CountDownLatch> latch;
+
+        public CountingActor(AtomicReference<CountDownLatch> latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onReceive(Object msg) throws Exception {
+            latch.get().countDown();
+        }
+    }
+
+    public static class AppActorStub extends UntypedActor {
+
+        private final Map<TenantId, ActorRef> tenantActors;
+
+        public AppActorStub(Map<TenantId, ActorRef> tenantActors) {
+            this.tenantActors = tenantActors;
+        }
+
+        @Override
+        public void onReceive(Object msg) throws Exception {
+            if (msg instanceof TenantActorRequestMsg) {
+                TenantId tenantId = ((TenantActorRequestMsg) msg).getTenantId();
+                sender().tell(new TenantActorResponseMsg(tenantId, tenantActors.get(tenantId)), self());
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller.plugin;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.data.kv.TsKvQuery;
+import org.thingsboard.server.controller.AbstractControllerTest;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+import org.thingsboard.server.extensions.api.plugins.PluginCallback;
+import org.thingsboard.server.extensions.api.plugins.PluginContext;
+import org.thingsboard.server.extensions.api.plugins.ws.BasicPluginWebsocketSessionRef;
+import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketMsgFormat;
+import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketSessionRef;
+import org.thingsboard.server.extensions.api.plugins.ws.SessionEvent;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeablePluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.SessionEventPluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.TextPluginWebSocketMsg;
+import org.thingsboard.server.extensions.core.plugin.telemetry.SubscriptionManager;
+import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryWebsocketMsgHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Streams chunked history commands from the embedded cassandra through a telemetry plugin handler
+ * and a fake websocket session that records the replies.
+ */
+public class TelemetryHistoryChunkingTest extends AbstractControllerTest {
+
+    private static final String SESSION_ID = "history-session";
+    private static final long BASE_TS = 1000000L;
+    private static final int TEMPERATURE_COUNT = 25;
+    private static final int HUMIDITY_COUNT = 7;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private TimeseriesService tsService;
+
+    private DeviceId deviceId;
+    private TelemetryWebsocketMsgHandler handler;
+    private PluginContext ctx;
+    private PluginWebsocketSessionRef sessionRef;
+    private List<JsonNode> replies;
+    private boolean closeOnFirstReply;
+    private boolean confirmWrites;
+    private List<PluginCallback<Void>> pendingWrites;
+
+    @Before
+    public void beforeTest() throws Exception {
+        deviceId = new DeviceId(UUIDs.timeBased());
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 1; i <= TEMPERATURE_COUNT; i++) {
+            entries.add(new BasicTsKvEntry(BASE_TS + i * 1000, new LongDataEntry("temperature", (long) i)));
+        }
+        for (int i = 1; i <= HUMIDITY_COUNT; i++) {
+            entries.add(new BasicTsKvEntry(BASE_TS + i * 1000, new LongDataEntry("humidity", (long) i)));
+        }
+        tsService.save(deviceId, entries, 0).get();
+
+        replies = new ArrayList<>();
+        closeOnFirstReply = false;
+        confirmWrites = true;
+        pendingWrites = new ArrayList<>();
+        handler = new TelemetryWebsocketMsgHandler(mock(SubscriptionManager.class));
+        sessionRef = new BasicPluginWebsocketSessionRef(SESSION_ID, null, null, null, null, null, PluginWebsocketMsgFormat.JSON);
+        ctx = mock(PluginContext.class);
+        doAnswer(invocation -> {
+            MergeablePluginWebSocketMsg update = (MergeablePluginWebSocketMsg) invocation.getArguments()[0];
+            TextPluginWebSocketMsg msg = (TextPluginWebSocketMsg) update.getPayload().encode(sessionRef);
+            replies.add(mapper.readTree(msg.getPayload()));
+            return null;
+        }).when(ctx).send(any());
+        doAnswer(invocation -> {
+            TextPluginWebSocketMsg msg = (TextPluginWebSocketMsg) invocation.getArguments()[0];
+            @SuppressWarnings("unchecked")
+            PluginCallback<Void> callback = (PluginCallback<Void>) invocation.getArguments()[1];
+            replies.add(mapper.readTree(msg.getPayload()));
+            if (closeOnFirstReply) {
+                handler.process(ctx, new SessionEventPluginWebSocketMsg(sessionRef, SessionEvent.onClosed()));
+            }
+            if (confirmWrites) {
+                callback.onSuccess(ctx, null);
+            } else {
+                pendingWrites.add(callback);
+            }
+            return null;
+        }).when(ctx).send(any(), any());
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<TsKvQuery> queries = (List<TsKvQuery>) invocation.getArguments()[1];
+            @SuppressWarnings("unchecked")
+            PluginCallback<List<TsKvEntry>> callback = (PluginCallback<List<TsKvEntry>>) invocation.getArguments()[2];
+            callback.onSuccess(ctx, tsService.findAll(deviceId, queries).get());
+            return null;
+        }).when(ctx).loadTimeseries(any(), any(), any());
+        handler.process(ctx, new SessionEventPluginWebSocketMsg(sessionRef, SessionEvent.onEstablished()));
+    }
+
+    @Test
+    public void testRawHistoryIsSentInPages() throws Exception {
+        sendHistoryCmd("temperature,humidity", BASE_TS, BASE_TS + TEMPERATURE_COUNT * 1000, 0, 100, "NONE", 10);
+
+        assertHasMoreFlags();
+        Map<String, List<Integer>> chunkSizes = new HashMap<>();
+        Map<String, List<Long>> tsByKey = new HashMap<>();
+        List<String> keyOrder = new ArrayList<>();
+        for (JsonNode reply : replies) {
+            Assert.assertEquals(1, reply.get("subscriptionId").asInt());
+            Assert.assertEquals(1, reply.get("data").size());
+            String key = reply.get("data").fieldNames().next();
+            if (keyOrder.isEmpty() || !keyOrder.get(keyOrder.size() - 1).equals(key)) {
+                Assert.assertFalse("Chunks of " + key + " are interleaved with other keys", keyOrder.contains(key));
+                keyOrder.add(key);
+            }
+            JsonNode values = reply.get("data").get(key);
+            chunkSizes.computeIfAbsent(key, k -> new ArrayList<>()).add(values.size());
+            List<Long> ts = tsByKey.computeIfAbsent(key, k -> new ArrayList<>());
+            values.forEach(v -> ts.add(v.get(0).asLong()));
+        }
+        Assert.assertEquals(Arrays.asList(10, 10, 5), chunkSizes.get("temperature"));
+        Assert.assertEquals(Arrays.asList(HUMIDITY_COUNT), chunkSizes.get("humidity"));
+        Assert.assertEquals(expectedDescTs(TEMPERATURE_COUNT, TEMPERATURE_COUNT), tsByKey.get("temperature"));
+        Assert.assertEquals(expectedDescTs(HUMIDITY_COUNT, HUMIDITY_COUNT), tsByKey.get("humidity"));
+    }
+
+    @Test
+    public void testRawHistoryStopsAtLimit() throws Exception {
+        sendHistoryCmd("temperature", BASE_TS, BASE_TS + TEMPERATURE_COUNT * 1000, 0, 15, "NONE", 10);
+
+        assertHasMoreFlags();
+        Assert.assertEquals(2, replies.size());
+        Assert.assertEquals(10, replies.get(0).get("data").get("temperature").size());
+        Assert.assertEquals(5, replies.get(1).get("data").get("temperature").size());
+        List<Long> ts = new ArrayList<>();
+        replies.forEach(r -> r.get("data").get("temperature").forEach(v -> ts.add(v.get(0).asLong())));
+        Assert.assertEquals(expectedDescTs(TEMPERATURE_COUNT, 15), ts);
+    }
+
+    @Test
+    public void testAggregatedHistoryIsSentInWindows() throws Exception {
+        sendHistoryCmd("temperature", BASE_TS, BASE_TS + TEMPERATURE_COUNT * 1000, 5000, 100, "COUNT", 2);
+
+        assertHasMoreFlags();
+        Assert.assertEquals(3, replies.size());
+        int[] expectedSizes = {2, 2, 1};
+        List<Long> ts = new ArrayList<>();
+        for (int i = 0; i < replies.size(); i++) {
+            JsonNode values = replies.get(i).get("data").get("temperature");
+            Assert.assertEquals(expectedSizes[i], values.size());
+            for (JsonNode value : values) {
+                ts.add(value.get(0).asLong());
+                Assert.assertEquals(5, value.get(1).asLong());
+            }
+        }
+        Assert.assertEquals(Arrays.asList(BASE_TS + 2500, BASE_TS + 7500, BASE_TS + 12500, BASE_TS + 17500, BASE_TS + 22500), ts);
+    }
+
+    @Test
+    public void testHistoryStopsWhenSessionIsClosed() throws Exception {
+        closeOnFirstReply = true;
+        sendHistoryCmd("temperature", BASE_TS, BASE_TS + TEMPERATURE_COUNT * 1000, 0, 100, "NONE", 10);
+
+        Assert.assertEquals(1, replies.size());
+        Assert.assertTrue(replies.get(0).get("hasMore").asBoolean());
+    }
+
+    @Test
+    public void testNextPageIsRequestedOnlyAfterChunkIsWritten() throws Exception {
+        confirmWrites = false;
+        sendHistoryCmd("temperature", BASE_TS, BASE_TS + TEMPERATURE_COUNT * 1000, 0, 100, "NONE", 10);
+
+        for (int i = 1; i <= 3; i++) {
+            Assert.assertEquals(i, replies.size());
+            Assert.assertEquals(1, pendingWrites.size());
+            verify(ctx, times(i)).loadTimeseries(any(), any(), any());
+            pendingWrites.remove(0).onSuccess(ctx, null);
+        }
+        assertHasMoreFlags();
+        Assert.assertEquals(3, replies.size());
+        Assert.assertTrue(pendingWrites.isEmpty());
+        verify(ctx, times(3)).loadTimeseries(any(), any(), any());
+    }
+
+    @Test
+    public void testHistoryStopsWhenChunkIsDiscarded() throws Exception {
+        confirmWrites = false;
+        sendHistoryCmd("temperature", BASE_TS, BASE_TS + TEMPERATURE_COUNT * 1000, 0, 100, "NONE", 10);
+
+        pendingWrites.remove(0).onFailure(ctx, new IllegalStateException("Session is closed!"));
+        Assert.assertEquals(1, replies.size());
+        Assert.assertTrue(pendingWrites.isEmpty());
+        verify(ctx, times(1)).loadTimeseries(any(), any(), any());
+    }
+
+    private void sendHistoryCmd(String keys, long startTs, long endTs, long interval, int limit, String agg, int chunkSize) throws Exception {
+        String cmd = "{\"historyCmds\":[{\"cmdId\":1,\"entityType\":\"" + EntityType.DEVICE + "\",\"entityId\":\"" + deviceId.getId()
+                + "\",\"keys\":\"" + keys + "\",\"startTs\":" + startTs + ",\"endTs\":" + endTs + ",\"interval\":" + interval
+                + ",\"limit\":" + limit + ",\"agg\":\"" + agg + "\",\"chunkSize\":" + chunkSize + "}]}";
+        handler.process(ctx, new TextPluginWebSocketMsg(sessionRef, cmd));
+    }
+
+    private void assertHasMoreFlags() {
+        Assert.assertFalse(replies.isEmpty());
+        for (int i = 0; i < replies.size(); i++) {
+            JsonNode hasMore = replies.get(i).get("hasMore");
+            boolean last = i == replies.size() - 1;
+            Assert.assertEquals("Reply " + i, !last, hasMore != null && hasMore.asBoolean());
+        }
+    }
+
+    private static List<Long> expectedDescTs(int newest, int count) {
+        List<Long> result = new ArrayList<>(count);
+        for (int i = newest; i > newest - count; i--) {
+            result.add(BASE_TS + i * 1000);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller.plugin;
+
+import com.google.common.util.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketSessionRef;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeablePluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeableUpdate;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.PluginWebsocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.TextPluginWebSocketMsg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WebSocketOutboundQueueTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private ExecutorService executor;
+    private CountDownLatch unblock;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(2);
+        unblock = new CountDownLatch(1);
+    }
+
+    @After
+    public void after() {
+        unblock.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBlockedSessionDoesNotStallOtherSessions() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> slowReceived = Collections.synchronizedList(new ArrayList<>());
+        WebSocketSession slowSession = blockingSession("slow", slowReceived, blocked);
+        List<String> fastReceived = Collections.synchronizedList(new ArrayList<>());
+        WebSocketSession fastSession = session("fast", fastReceived);
+
+        WebSocketOutboundQueue slowQueue = new WebSocketOutboundQueue(slowSession, executor, 1000, 500, WebSocketOverflowPolicy.CLOSE);
+        WebSocketOutboundQueue fastQueue = new WebSocketOutboundQueue(fastSession, executor, 1000, 500, WebSocketOverflowPolicy.CLOSE);
+
+        slowQueue.send(new TextMessage("0"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i <= 200; i++) {
+            slowQueue.send(new TextMessage(Integer.toString(i)));
+            fastQueue.send(new TextMessage(Integer.toString(i)));
+        }
+
+        awaitSize(fastReceived, 200);
+        Assert.assertEquals(expectedRange(1, 200), fastReceived);
+        Assert.assertTrue(slowReceived.isEmpty());
+        Assert.assertEquals(200, slowQueue.getSize());
+
+        unblock.countDown();
+        awaitSize(slowReceived, 201);
+        Assert.assertEquals(expectedRange(0, 200), slowReceived);
+        Assert.assertEquals(0, slowQueue.getDroppedCount());
+    }
+
+    @Test
+    public void testDropOldestOnOverflow() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(blockingSession("slow", received, blocked),
+                executor, 10, 5, WebSocketOverflowPolicy.DROP_OLDEST);
+
+        queue.send(new TextMessage("0"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i <= 30; i++) {
+            queue.send(new TextMessage(Integer.toString(i)));
+        }
+        Assert.assertEquals(10, queue.getSize());
+        Assert.assertEquals(20, queue.getDroppedCount());
+
+        unblock.countDown();
+        awaitSize(received, 11);
+        List<String> expected = new ArrayList<>(Collections.singletonList("0"));
+        expected.addAll(expectedRange(21, 30));
+        Assert.assertEquals(expected, received);
+    }
+
+    @Test
+    public void testConflateUpdatesOfSameSubscriptionOnOverflow() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(blockingSession("slow", received, blocked),
+                executor, 4, 2, WebSocketOverflowPolicy.CONFLATE);
+
+        queue.send(new TextMessage("first"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i <= 10; i++) {
+            String key = i % 2 == 1 ? "odd" : "even";
+            queue.send(update(1, key, "a" + i));
+            queue.send(update(2, key, "b" + i));
+        }
+        Assert.assertEquals(4, queue.getSize());
+        Assert.assertEquals(16, queue.getMergedCount());
+        Assert.assertEquals(0, queue.getDroppedCount());
+
+        unblock.countDown();
+        awaitSize(received, 5);
+        Assert.assertEquals("first", received.get(0));
+        Assert.assertEquals(expected("1:{odd=a1}", "2:{odd=b1}", "1:{even=a10, odd=a9}", "2:{even=b10, odd=b9}"), received.subList(1, 5));
+    }
+
+    @Test
+    public void testConflateDropsOldestIfUpdatesCantBeMerged() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(blockingSession("slow", received, blocked),
+                executor, 2, 1, WebSocketOverflowPolicy.CONFLATE);
+
+        queue.send(new TextMessage("first"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        queue.send(new TextMessage("text"));
+        queue.send(update(1, "key", "a1"));
+        queue.send(new MergeablePluginWebSocketMsg(null, new TestUpdate(1, null)));
+        Assert.assertEquals(2, queue.getSize());
+        Assert.assertEquals(1, queue.getDroppedCount());
+
+        unblock.countDown();
+        awaitSize(received, 3);
+        Assert.assertEquals(expected("first", "1:{key=a1}", "1:error"), received);
+    }
+
+    @Test
+    public void testCloseOnOverflow() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        WebSocketSession session = blockingSession("slow", received, blocked);
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(session, executor, 10, 5, WebSocketOverflowPolicy.CLOSE);
+
+        queue.send(new TextMessage("0"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i <= 11; i++) {
+            queue.send(new TextMessage(Integer.toString(i)));
+        }
+
+        verify(session, timeout(TIMEOUT_MS)).close(CloseStatus.POLICY_VIOLATION.withReason("Outbound queue is full!"));
+        Assert.assertTrue(queue.isClosed());
+        Assert.assertEquals(0, queue.getSize());
+        unblock.countDown();
+        Thread.sleep(100);
+        Assert.assertEquals(Collections.singletonList("0"), received);
+    }
+
+    @Test
+    public void testCloseAfterQueuedMessagesAreSent() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        WebSocketSession session = session("session", received);
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(session, executor, 1000, 500, WebSocketOverflowPolicy.CLOSE);
+
+        for (int i = 1; i <= 10; i++) {
+            queue.send(new TextMessage(Integer.toString(i)));
+        }
+        queue.close(CloseStatus.NORMAL);
+        queue.send(new TextMessage("11"));
+
+        verify(session, timeout(TIMEOUT_MS)).close(CloseStatus.NORMAL);
+        Assert.assertEquals(expectedRange(1, 10), received);
+    }
+
+    @Test
+    public void testFlowControlledMessagesBypassOverflowPolicy() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(blockingSession("slow", received, blocked),
+                executor, 2, 1, WebSocketOverflowPolicy.CLOSE);
+
+        queue.send(new TextMessage("first"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i <= 5; i++) {
+            queue.send(new TextMessage("h" + i), resultCallback("h" + i, results));
+        }
+        queue.send(new TextMessage("u1"));
+        queue.send(new TextMessage("u2"));
+        Assert.assertFalse(queue.isClosed());
+        Assert.assertEquals(7, queue.getSize());
+        Assert.assertTrue(results.isEmpty());
+
+        unblock.countDown();
+        awaitSize(received, 8);
+        Assert.assertEquals(expected("first", "h1", "h2", "h3", "h4", "h5", "u1", "u2"), received);
+        awaitSize(results, 5);
+        Assert.assertEquals(expected("h1:sent", "h2:sent", "h3:sent", "h4:sent", "h5:sent"), results);
+        Assert.assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testFlowControlledMessagesFailIfSessionIsClosed() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(blockingSession("slow", received, blocked),
+                executor, 2, 1, WebSocketOverflowPolicy.CLOSE);
+
+        queue.send(new TextMessage("first"));
+        Assert.assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        queue.send(new TextMessage("h1"), resultCallback("h1", results));
+        for (int i = 1; i <= 3; i++) {
+            queue.send(new TextMessage("u" + i));
+        }
+        Assert.assertTrue(queue.isClosed());
+        queue.send(new TextMessage("h2"), resultCallback("h2", results));
+        Assert.assertEquals(expected("h1:failed", "h2:failed"), results);
+
+        unblock.countDown();
+        Thread.sleep(100);
+        Assert.assertEquals(Collections.singletonList("first"), received);
+    }
+
+    private static FutureCallback<Void> resultCallback(String name, List<String> results) {
+        return new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                results.add(name + ":sent");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                results.add(name + ":failed");
+            }
+        };
+    }
+
+    private static MergeablePluginWebSocketMsg update(int subscriptionId, String key, String value) {
+        return new MergeablePluginWebSocketMsg(null, new TestUpdate(subscriptionId, Collections.singletonMap(key, value)));
+    }
+
+    /**
+     * Update with values by key, or an error update that can't be merged if values are null.
+     */
+    private static class TestUpdate implements MergeableUpdate {
+        private final int subscriptionId;
+        private final Map<String, String> values;
+
+        private TestUpdate(int subscriptionId, Map<String, String> values) {
+            this.subscriptionId = subscriptionId;
+            this.values = values;
+        }
+
+        @Override
+        public int getSubscriptionId() {
+            return subscriptionId;
+        }
+
+        @Override
+        public MergeableUpdate merge(MergeableUpdate next) {
+            TestUpdate nextUpdate = (TestUpdate) next;
+            if (values == null || nextUpdate.values == null) {
+                return null;
+            }
+            Map<String, String> merged = new TreeMap<>(values);
+            merged.putAll(nextUpdate.values);
+            return new TestUpdate(subscriptionId, merged);
+        }
+
+        @Override
+        public PluginWebsocketMsg<?> encode(PluginWebsocketSessionRef sessionRef) {
+            return new TextPluginWebSocketMsg(sessionRef, subscriptionId + ":" + (values != null ? values : "error"));
+        }
+    }
+
+    private WebSocketSession session(String id, List<String> received) throws Exception {
+        return blockingSession(id, received, null);
+    }
+
+    /**
+     * Session that blocks the sender on the first message until the test releases it.
+     */
+    private WebSocketSession blockingSession(String id, List<String> received, CountDownLatch blocked) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> msg = (WebSocketMessage<?>) invocation.getArguments()[0];
+            if (blocked != null && blocked.getCount() > 0) {
+                blocked.countDown();
+                unblock.await();
+            }
+            received.add((String) msg.getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private void awaitSize(List<String> received, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (received.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(size, received.size());
+    }
+
+    private static List<String> expectedRange(int from, int to) {
+        List<String> expected = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            expected.add(Integer.toString(i));
+        }
+        return expected;
+    }
+
+    private static List<String> expected(String... values) {
+        List<String> expected = new ArrayList<>();
+        Collections.addAll(expected, values);
+        return expected;
+    }
+}
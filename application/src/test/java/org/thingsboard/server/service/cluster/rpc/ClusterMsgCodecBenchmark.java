@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cluster.rpc;
+
+import com.datastax.driver.core.utils.UUIDs;
+import org.springframework.util.SerializationUtils;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.cluster.ServerAddress;
+import org.thingsboard.server.common.msg.core.BasicTelemetryUploadRequest;
+import org.thingsboard.server.common.msg.device.BasicToDeviceActorMsg;
+import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+import org.thingsboard.server.common.msg.session.SessionType;
+import org.thingsboard.server.gen.cluster.ClusterAPIProtos;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual benchmark of device actor message encoding for cluster RPC.
+ * <p>
+ * Compares message size and encode/decode time of the protobuf codec with java serialization for a typical
+ * telemetry upload. Parameters are passed as system properties: messages and keys (per message).
+ */
+public class ClusterMsgCodecBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int messages = Integer.getInteger("messages", 200000);
+        int keys = Integer.getInteger("keys", 8);
+
+        BasicTelemetryUploadRequest request = new BasicTelemetryUploadRequest(42);
+        long ts = System.currentTimeMillis();
+        for (int i = 0; i < keys; i++) {
+            switch (i % 4) {
+                case 0:
+                    request.add(ts, new LongDataEntry("longKey" + i, (long) i));
+                    break;
+                case 1:
+                    request.add(ts, new DoubleDataEntry("doubleKey" + i, i / 3.0));
+                    break;
+                case 2:
+                    request.add(ts, new BooleanDataEntry("boolKey" + i, true));
+                    break;
+                default:
+                    request.add(ts, new StringDataEntry("strKey" + i, "value" + i));
+            }
+        }
+        ToDeviceActorMsg msg = new BasicToDeviceActorMsg(new ServerAddress("localhost", 9001),
+                new TenantId(UUIDs.timeBased()), new CustomerId(UUIDs.timeBased()), new DeviceId(UUIDs.timeBased()),
+                new RemoteSessionId(UUIDs.timeBased().toString()), SessionType.ASYNC, request);
+
+        ClusterAPIProtos.ToDeviceActorRpcMessage proto = ClusterMsgCodec.toProto(msg);
+        if (!proto.hasMsg() || !ClusterMsgCodec.toProto(ClusterMsgCodec.fromProto(proto)).equals(proto)) {
+            throw new IllegalStateException("Protobuf roundtrip doesn't preserve the message!");
+        }
+        byte[] serialized = SerializationUtils.serialize(msg);
+        System.out.println(String.format("message size: protobuf %d bytes, java serialization %d bytes",
+                proto.getSerializedSize(), serialized.length));
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long startTs = System.nanoTime();
+            long bytes = 0;
+            for (int m = 0; m < messages; m++) {
+                byte[] data = ClusterMsgCodec.toProto(msg).toByteArray();
+                bytes += data.length;
+                try {
+                    ClusterMsgCodec.fromProto(ClusterAPIProtos.ToDeviceActorRpcMessage.parseFrom(data));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            print("protobuf", messages, bytes, startTs);
+
+            startTs = System.nanoTime();
+            bytes = 0;
+            for (int m = 0; m < messages; m++) {
+                byte[] data = SerializationUtils.serialize(msg);
+                bytes += data.length;
+                SerializationUtils.deserialize(data);
+            }
+            print("java serialization", messages, bytes, startTs);
+        }
+    }
+
+    private static void print(String name, int messages, long bytes, long startTs) {
+        long elapsedMs = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs), 1);
+        System.out.println(String.format("%s: %d messages, %d bytes in %d ms, %d msg/s",
+                name, messages, bytes, elapsedMs, messages * 1000L / elapsedMs));
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cluster.rpc;
+
+import com.datastax.driver.core.utils.UUIDs;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKey;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.alarm.AlarmSeverityInvalidationMsg;
+import org.thingsboard.server.common.msg.cluster.ServerAddress;
+import org.thingsboard.server.common.msg.core.AttributesSubscribeMsg;
+import org.thingsboard.server.common.msg.core.AttributesUnsubscribeMsg;
+import org.thingsboard.server.common.msg.core.BasicGetAttributesRequest;
+import org.thingsboard.server.common.msg.core.BasicTelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.BasicUpdateAttributesRequest;
+import org.thingsboard.server.common.msg.core.GetAttributesRequest;
+import org.thingsboard.server.common.msg.core.RpcSubscribeMsg;
+import org.thingsboard.server.common.msg.core.RpcUnsubscribeMsg;
+import org.thingsboard.server.common.msg.core.SessionCloseMsg;
+import org.thingsboard.server.common.msg.core.SessionOpenMsg;
+import org.thingsboard.server.common.msg.core.TelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.ToDeviceRpcResponseMsg;
+import org.thingsboard.server.common.msg.core.ToServerRpcRequestMsg;
+import org.thingsboard.server.common.msg.core.UpdateAttributesRequest;
+import org.thingsboard.server.common.msg.device.BasicToDeviceActorMsg;
+import org.thingsboard.server.common.msg.device.DeviceCredentialsInvalidationMsg;
+import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+import org.thingsboard.server.common.msg.kv.TsKvLatestInvalidationMsg;
+import org.thingsboard.server.common.msg.relation.RelationsInvalidationMsg;
+import org.thingsboard.server.common.msg.session.FromDeviceMsg;
+import org.thingsboard.server.common.msg.session.SessionType;
+import org.thingsboard.server.extensions.api.device.DeviceAttributesEventNotificationMsg;
+import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotificationMsg;
+import org.thingsboard.server.gen.cluster.ClusterAPIProtos;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class ClusterMsgCodecTest {
+
+    private final TenantId tenantId = new TenantId(UUIDs.timeBased());
+    private final CustomerId customerId = new CustomerId(UUIDs.timeBased());
+    private final DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+    @Test
+    public void testTelemetryUploadRequest() throws Exception {
+        BasicTelemetryUploadRequest request = new BasicTelemetryUploadRequest(1);
+        request.add(10L, new LongDataEntry("long", Long.MAX_VALUE));
+        request.add(10L, new DoubleDataEntry("double", -0.5));
+        request.add(20L, new BooleanDataEntry("bool", true));
+        request.add(20L, new StringDataEntry("str", "value"));
+
+        ToDeviceActorMsg decoded = roundTrip(request, SessionType.ASYNC, true);
+        assertHeader(decoded, SessionType.ASYNC, true);
+        TelemetryUploadRequest result = (TelemetryUploadRequest) decoded.getPayload();
+        Assert.assertEquals(request.getRequestId(), result.getRequestId());
+        Assert.assertEquals(request.getData(), result.getData());
+    }
+
+    @Test
+    public void testUpdateAttributesRequest() throws Exception {
+        BasicUpdateAttributesRequest request = new BasicUpdateAttributesRequest(2);
+        request.add(new BaseAttributeKvEntry(new StringDataEntry("str", ""), 42L));
+        request.add(new BaseAttributeKvEntry(new LongDataEntry("long", -1L), 43L));
+
+        ToDeviceActorMsg decoded = roundTrip(request, SessionType.SYNC, false);
+        assertHeader(decoded, SessionType.SYNC, false);
+        UpdateAttributesRequest result = (UpdateAttributesRequest) decoded.getPayload();
+        Assert.assertEquals(request.getRequestId(), result.getRequestId());
+        Assert.assertEquals(request.getAttributes(), result.getAttributes());
+    }
+
+    @Test
+    public void testGetAttributesRequest() throws Exception {
+        Set<String> clientKeys = new HashSet<>(Arrays.asList("a", "b"));
+        GetAttributesRequest result = (GetAttributesRequest) roundTrip(
+                new BasicGetAttributesRequest(3, clientKeys, Collections.emptySet()), SessionType.ASYNC, false).getPayload();
+        Assert.assertEquals(Integer.valueOf(3), result.getRequestId());
+        Assert.assertEquals(Optional.of(clientKeys), result.getClientAttributeNames());
+        Assert.assertEquals(Optional.of(Collections.emptySet()), result.getSharedAttributeNames());
+    }
+
+    @Test
+    public void testGetAttributesRequestWithNullKeySets() throws Exception {
+        GetAttributesRequest result = (GetAttributesRequest) roundTrip(
+                new BasicGetAttributesRequest(4, null, null), SessionType.ASYNC, false).getPayload();
+        Assert.assertEquals(Integer.valueOf(4), result.getRequestId());
+        Assert.assertFalse(result.getClientAttributeNames().isPresent());
+        Assert.assertFalse(result.getSharedAttributeNames().isPresent());
+    }
+
+    @Test
+    public void testRpcMessages() throws Exception {
+        ToDeviceRpcResponseMsg response = new ToDeviceRpcResponseMsg(5, "{\"result\":true}");
+        Assert.assertEquals(response, roundTrip(response, SessionType.ASYNC, true).getPayload());
+
+        ToServerRpcRequestMsg request = new ToServerRpcRequestMsg(6, "getTime", "{}");
+        Assert.assertEquals(request, roundTrip(request, SessionType.SYNC, true).getPayload());
+    }
+
+    @Test
+    public void testSessionEvents() throws Exception {
+        List<FromDeviceMsg> events = Arrays.asList(new SessionOpenMsg(), new SessionCloseMsg(),
+                new AttributesSubscribeMsg(), new AttributesUnsubscribeMsg(), new RpcSubscribeMsg(), new RpcUnsubscribeMsg());
+        for (FromDeviceMsg event : events) {
+            ToDeviceActorMsg decoded = roundTrip(event, SessionType.ASYNC, true);
+            assertHeader(decoded, SessionType.ASYNC, true);
+            Assert.assertEquals(event.getClass(), decoded.getPayload().getClass());
+            Assert.assertEquals(event.getMsgType(), decoded.getPayload().getMsgType());
+        }
+    }
+
+    @Test
+    public void testNotEncodablePayloadIsSerialized() throws Exception {
+        ToDeviceRpcResponseMsg response = new ToDeviceRpcResponseMsg(7, null);
+        ClusterAPIProtos.ToDeviceActorRpcMessage proto = ClusterMsgCodec.toProto(toDeviceActorMsg(response, SessionType.ASYNC, true));
+        Assert.assertFalse(proto.hasMsg());
+        ToDeviceActorMsg decoded = ClusterMsgCodec.fromProto(ClusterAPIProtos.ToDeviceActorRpcMessage.parseFrom(proto.toByteArray()));
+        Assert.assertEquals(response, decoded.getPayload());
+    }
+
+    @Test
+    public void testAttributesUpdateNotification() throws Exception {
+        List<AttributeKvEntry> values = Arrays.asList(
+                new BaseAttributeKvEntry(new BooleanDataEntry("bool", false), 1L),
+                new BaseAttributeKvEntry(new DoubleDataEntry("double", 1.5), 2L));
+        DeviceAttributesEventNotificationMsg msg = DeviceAttributesEventNotificationMsg.onUpdate(tenantId, deviceId, "SHARED_SCOPE", values);
+
+        ClusterAPIProtos.ToDeviceActorNotificationRpcMessage proto = ClusterMsgCodec.toProto(msg);
+        Assert.assertTrue(proto.hasAttributesEvent());
+        DeviceAttributesEventNotificationMsg result = (DeviceAttributesEventNotificationMsg) ClusterMsgCodec.fromProto(
+                ClusterAPIProtos.ToDeviceActorNotificationRpcMessage.parseFrom(proto.toByteArray()));
+        Assert.assertEquals(tenantId, result.getTenantId());
+        Assert.assertEquals(deviceId, result.getDeviceId());
+        Assert.assertFalse(result.isDeleted());
+        Assert.assertEquals("SHARED_SCOPE", result.getScope());
+        Assert.assertEquals(values, result.getValues());
+    }
+
+    @Test
+    public void testDeletedAttributesNotification() throws Exception {
+        Set<AttributeKey> keys = new HashSet<>(Arrays.asList(new AttributeKey("SERVER_SCOPE", "a"), new AttributeKey("SHARED_SCOPE", "b")));
+        DeviceAttributesEventNotificationMsg msg = DeviceAttributesEventNotificationMsg.onDelete(tenantId, deviceId, keys);
+
+        ClusterAPIProtos.ToDeviceActorNotificationRpcMessage proto = ClusterMsgCodec.toProto(msg);
+        Assert.assertTrue(proto.hasAttributesEvent());
+        DeviceAttributesEventNotificationMsg result = (DeviceAttributesEventNotificationMsg) ClusterMsgCodec.fromProto(
+                ClusterAPIProtos.ToDeviceActorNotificationRpcMessage.parseFrom(proto.toByteArray()));
+        Assert.assertEquals(tenantId, result.getTenantId());
+        Assert.assertEquals(deviceId, result.getDeviceId());
+        Assert.assertTrue(result.isDeleted());
+        Assert.assertEquals(keys, result.getDeletedKeys());
+    }
+
+    @Test
+    public void testCredentialsUpdateNotification() throws Exception {
+        DeviceCredentialsUpdateNotificationMsg msg = new DeviceCredentialsUpdateNotificationMsg(tenantId, deviceId);
+        ClusterAPIProtos.ToDeviceActorNotificationRpcMessage proto = ClusterMsgCodec.toProto(msg);
+        Assert.assertTrue(proto.hasCredentialsUpdate());
+        Assert.assertEquals(msg, ClusterMsgCodec.fromProto(ClusterAPIProtos.ToDeviceActorNotificationRpcMessage.parseFrom(proto.toByteArray())));
+    }
+
+    @Test
+    public void testInvalidationMessages() throws Exception {
+        List<EntityId> entityIds = Arrays.asList(deviceId, new AssetId(UUIDs.timeBased()));
+
+        DeviceCredentialsInvalidationMsg credentialsMsg = new DeviceCredentialsInvalidationMsg(deviceId);
+        ClusterAPIProtos.ToAllNodesRpcMessage proto = ClusterMsgCodec.toProto(credentialsMsg);
+        Assert.assertTrue(proto.hasDeviceCredentialsInvalidation());
+        Assert.assertEquals(credentialsMsg, roundTrip(proto));
+
+        TsKvLatestInvalidationMsg tsKvMsg = new TsKvLatestInvalidationMsg(deviceId, Arrays.asList("a", "b"));
+        proto = ClusterMsgCodec.toProto(tsKvMsg);
+        Assert.assertTrue(proto.hasTsKvLatestInvalidation());
+        Assert.assertEquals(tsKvMsg, roundTrip(proto));
+
+        RelationsInvalidationMsg relationsMsg = new RelationsInvalidationMsg(entityIds);
+        proto = ClusterMsgCodec.toProto(relationsMsg);
+        Assert.assertTrue(proto.hasRelationsInvalidation());
+        Assert.assertEquals(relationsMsg, roundTrip(proto));
+
+        AlarmSeverityInvalidationMsg alarmMsg = new AlarmSeverityInvalidationMsg(entityIds);
+        proto = ClusterMsgCodec.toProto(alarmMsg);
+        Assert.assertTrue(proto.hasAlarmSeverityInvalidation());
+        Assert.assertEquals(alarmMsg, roundTrip(proto));
+    }
+
+    private ToDeviceActorMsg roundTrip(FromDeviceMsg payload, SessionType sessionType, boolean withAddress) throws Exception {
+        ClusterAPIProtos.ToDeviceActorRpcMessage proto = ClusterMsgCodec.toProto(toDeviceActorMsg(payload, sessionType, withAddress));
+        Assert.assertTrue("Payload is not encoded by the schema: " + payload.getMsgType(), proto.hasMsg());
+        return ClusterMsgCodec.fromProto(ClusterAPIProtos.ToDeviceActorRpcMessage.parseFrom(proto.toByteArray()));
+    }
+
+    private Object roundTrip(ClusterAPIProtos.ToAllNodesRpcMessage proto) throws Exception {
+        return ClusterMsgCodec.fromProto(ClusterAPIProtos.ToAllNodesRpcMessage.parseFrom(proto.toByteArray()));
+    }
+
+    private ToDeviceActorMsg toDeviceActorMsg(FromDeviceMsg payload, SessionType sessionType, boolean withAddress) {
+        return new BasicToDeviceActorMsg(withAddress ? new ServerAddress("localhost", 9001) : null,
+                tenantId, withAddress ? customerId : null, deviceId, new RemoteSessionId("session1"), sessionType, payload);
+    }
+
+    private void assertHeader(ToDeviceActorMsg msg, SessionType sessionType, boolean withAddress) {
+        Assert.assertEquals(tenantId, msg.getTenantId());
+        Assert.assertEquals(withAddress ? customerId : null, msg.getCustomerId());
+        Assert.assertEquals(deviceId, msg.getDeviceId());
+        Assert.assertEquals("session1", msg.getSessionId().toUidStr());
+        Assert.assertEquals(sessionType, msg.getSessionType());
+        Assert.assertEquals(withAddress ? Optional.of(new ServerAddress("localhost", 9001)) : Optional.empty(), msg.getServerAddress());
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg.kv;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.msg.cluster.ToAllNodesMsg;
+
+import java.util.List;
+
+/**
+ * Notifies other nodes that latest timeseries values of the entity were updated,
+ * so that locally cached values of these keys are no longer valid.
+ */
+@Data
+public final class TsKvLatestInvalidationMsg implements ToAllNodesMsg {
+
+    private final EntityId entityId;
+    private final List<String> keys;
+
+}
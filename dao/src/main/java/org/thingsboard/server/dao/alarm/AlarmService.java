@@ -20,6 +20,10 @@ import org.thingsboard.server.common.data.alarm.*;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.page.TimePageData;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Created by ashvayka on 11.05.17.
  */
@@ -27,6 +31,8 @@ public interface AlarmService {
 
     Alarm createOrUpdateAlarm(Alarm alarm);
 
+    ListenableFuture<Alarm> createOrUpdateAlarmAsync(Alarm alarm);
+
     ListenableFuture<Boolean> ackAlarm(AlarmId alarmId, long ackTs);
 
     ListenableFuture<Boolean> clearAlarm(AlarmId alarmId, long ackTs);
@@ -40,4 +46,9 @@ public interface AlarmService {
     AlarmSeverity findHighestAlarmSeverity(EntityId entityId, AlarmSearchStatus alarmSearchStatus,
                                            AlarmStatus alarmStatus);
 
+    ListenableFuture<Map<EntityId, AlarmSeverity>> findHighestAlarmSeverities(List<EntityId> entityIds, AlarmSearchStatus alarmSearchStatus,
+                                                                              AlarmStatus alarmStatus);
+
+    void invalidateAlarmSeverities(Collection<EntityId> entityIds);
+
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.alarm;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+import org.thingsboard.server.common.data.alarm.AlarmStatus;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.dao.cache.StampedCacheSupport;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache of alarm counts per severity and status of an entity, including alarms propagated from child entities.
+ * <p>
+ * Counts are loaded from the database on cache miss and are updated incrementally on alarm changes made by this node.
+ * Entities are marked as being updated before the alarm is saved and until the change is counted, so counts loaded
+ * in between are not cached and a change is never counted twice. Every invalidation of an entity bumps a version
+ * stamp of the entity, and counts loaded from the database are only cached if the stamp did not change during the load,
+ * see {@link StampedCacheSupport}.
+ */
+public class AlarmSeverityCache {
+
+    private static final int STAMPS_COUNT = 1024;
+
+    private final Cache<EntityId, AlarmSeverityCounts> counts;
+    private final StampedCacheSupport support;
+
+    public AlarmSeverityCache(long maxSize, long timeToLiveSec, long statsPrintIntervalMs) {
+        this.counts = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS)
+                .build();
+        this.support = new StampedCacheSupport("Alarm severity", STAMPS_COUNT, statsPrintIntervalMs,
+                () -> String.format("entities [%d]", counts.size()));
+    }
+
+    /**
+     * Returns stamp of the entity that should be passed to the put method of counts loaded from the database.
+     */
+    public long getStamp(EntityId entityId) {
+        return support.getStamp(entityId);
+    }
+
+    public AlarmSeverityCounts get(EntityId entityId) {
+        AlarmSeverityCounts result = counts.getIfPresent(entityId);
+        support.recordAccess(result != null);
+        return result;
+    }
+
+    public void put(EntityId entityId, AlarmSeverityCounts entityCounts, long stamp) {
+        support.putIfCurrent(entityId, stamp, () -> counts.put(entityId, entityCounts), () -> counts.invalidate(entityId));
+    }
+
+    /**
+     * Marks the entities as being updated. Must be called before the alarm is saved.
+     */
+    public void beginUpdate(Collection<EntityId> entityIds) {
+        entityIds.forEach(support::beginUpdate);
+    }
+
+    /**
+     * Moves an alarm of the entities from the old severity and status to the new ones once the alarm is saved.
+     * Old severity and status are null for a new alarm.
+     */
+    public void endUpdate(Collection<EntityId> entityIds, AlarmSeverity oldSeverity, AlarmStatus oldStatus,
+                          AlarmSeverity newSeverity, AlarmStatus newStatus) {
+        for (EntityId entityId : entityIds) {
+            AlarmSeverityCounts entityCounts = counts.getIfPresent(entityId);
+            if (entityCounts != null) {
+                if (oldSeverity != null && oldStatus != null) {
+                    entityCounts.add(oldSeverity, oldStatus, -1);
+                }
+                entityCounts.add(newSeverity, newStatus, 1);
+            }
+            support.endUpdate(entityId);
+        }
+    }
+
+    /**
+     * Ends the update of the entities if the alarm could not be saved. Counts are evicted, since it is unknown
+     * which part of the change is persisted.
+     */
+    public void abortUpdate(Collection<EntityId> entityIds) {
+        for (EntityId entityId : entityIds) {
+            counts.invalidate(entityId);
+            support.endUpdate(entityId);
+        }
+    }
+
+    public void invalidate(Collection<EntityId> entityIds) {
+        for (EntityId entityId : entityIds) {
+            support.bumpStamp(entityId);
+            counts.invalidate(entityId);
+        }
+    }
+}
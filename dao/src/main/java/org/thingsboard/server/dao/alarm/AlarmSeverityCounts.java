@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.alarm;
+
+import org.thingsboard.server.common.data.alarm.AlarmSearchStatus;
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+import org.thingsboard.server.common.data.alarm.AlarmStatus;
+
+/**
+ * Counts of active alarms of an entity per severity and status. Cleared alarms are not counted.
+ */
+public class AlarmSeverityCounts {
+
+    private static final AlarmSeverity[] SEVERITIES = AlarmSeverity.values();
+    private static final AlarmStatus[] STATUSES = AlarmStatus.values();
+
+    private final long[] counts = new long[SEVERITIES.length * STATUSES.length];
+
+    public synchronized void add(AlarmSeverity severity, AlarmStatus status, long delta) {
+        if (!status.isCleared()) {
+            counts[idx(severity, status)] += delta;
+        }
+    }
+
+    public synchronized long get(AlarmSeverity severity, AlarmStatus status) {
+        return counts[idx(severity, status)];
+    }
+
+    /**
+     * Returns the highest severity of active alarms that match the search status, or the status if search status is not set.
+     * Returns null if there are no such alarms.
+     */
+    public synchronized AlarmSeverity getHighestSeverity(AlarmSearchStatus searchStatus, AlarmStatus status) {
+        for (AlarmSeverity severity : SEVERITIES) {
+            for (AlarmStatus alarmStatus : STATUSES) {
+                if (counts[idx(severity, alarmStatus)] > 0 && matches(alarmStatus, searchStatus, status)) {
+                    return severity;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the search status, or the status if search status is not set, matches cleared alarms.
+     */
+    static boolean matchesCleared(AlarmSearchStatus searchStatus, AlarmStatus status) {
+        for (AlarmStatus alarmStatus : STATUSES) {
+            if (alarmStatus.isCleared() && matches(alarmStatus, searchStatus, status)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean matches(AlarmStatus alarmStatus, AlarmSearchStatus searchStatus, AlarmStatus status) {
+        if (searchStatus == null) {
+            return status == null || status == alarmStatus;
+        }
+        switch (searchStatus) {
+            case ACTIVE:
+                return !alarmStatus.isCleared();
+            case CLEARED:
+                return alarmStatus.isCleared();
+            case ACK:
+                return alarmStatus.isAck();
+            case UNACK:
+                return !alarmStatus.isAck();
+            default:
+                return true;
+        }
+    }
+
+    private static int idx(AlarmSeverity severity, AlarmStatus status) {
+        return severity.ordinal() * STATUSES.length + status.ordinal();
+    }
+}
@@ -18,15 +18,23 @@ package org.thingsboard.server.dao.alarm;
 
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.alarm.*;
 import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.TimePageData;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
@@ -45,11 +53,19 @@ import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.dao.service.Validator.validateId;
@@ -72,11 +88,45 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     @Autowired
     private EntityService entityService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${alarms.processing.pool_size}")
+    private int processingPoolSize;
+
+    @Value("${alarms.processing.queue_size}")
+    private int processingQueueSize;
+
+    @Value("${cache.alarm_severity.enabled}")
+    private boolean severityCacheEnabled;
+
+    @Value("${cache.alarm_severity.max_size}")
+    private long severityCacheMaxSize;
+
+    @Value("${cache.alarm_severity.time_to_live}")
+    private long severityCacheTtl;
+
+    @Value("${cache.stats_print_interval_ms}")
+    private long severityCacheStatsPrintIntervalMs;
+
+    private AlarmSeverityCache severityCache;
+
+    private final Map<AlarmKey, AlarmUpdateQueue> alarmUpdates = new HashMap<>();
+
     protected ExecutorService readResultsProcessingExecutor;
 
     @PostConstruct
     public void startExecutor() {
-        readResultsProcessingExecutor = Executors.newCachedThreadPool();
+        readResultsProcessingExecutor = new ThreadPoolExecutor(processingPoolSize, processingPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(processingQueueSize),
+                new ThreadFactoryBuilder().setNameFormat("alarm-processing-%d").setDaemon(true).build(),
+                (r, e) -> {
+                    throw new RejectedExecutionException(e.isShutdown()
+                            ? "Alarm processing executor is stopped!" : "Alarm processing queue is full!");
+                });
+        if (severityCacheEnabled) {
+            severityCache = new AlarmSeverityCache(severityCacheMaxSize, severityCacheTtl, severityCacheStatsPrintIntervalMs);
+        }
     }
 
     @PreDestroy
@@ -88,105 +138,154 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
 
     @Override
     public Alarm createOrUpdateAlarm(Alarm alarm) {
-        alarmDataValidator.validate(alarm);
         try {
-            if (alarm.getStartTs() == 0L) {
-                alarm.setStartTs(System.currentTimeMillis());
-            }
-            if (alarm.getEndTs() == 0L) {
-                alarm.setEndTs(alarm.getStartTs());
+            return createOrUpdateAlarmAsync(alarm).get();
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Alarm> createOrUpdateAlarmAsync(Alarm alarm) {
+        alarmDataValidator.validate(alarm);
+        if (alarm.getStartTs() == 0L) {
+            alarm.setStartTs(System.currentTimeMillis());
+        }
+        if (alarm.getEndTs() == 0L) {
+            alarm.setEndTs(alarm.getStartTs());
+        }
+        if (alarm.getId() == null) {
+            return submitAlarmUpdate(alarm);
+        } else {
+            return updateAlarm(alarm);
+        }
+    }
+
+    /**
+     * Updates of the same originator and type are executed one after another, so that concurrent updates
+     * never create duplicate alarms. Updates that arrive while an update is in progress are merged into
+     * a single pending update, and all of them complete with its result.
+     */
+    private ListenableFuture<Alarm> submitAlarmUpdate(Alarm alarm) {
+        AlarmKey key = new AlarmKey(alarm.getTenantId(), alarm.getOriginator(), alarm.getType());
+        synchronized (alarmUpdates) {
+            AlarmUpdateQueue queue = alarmUpdates.get(key);
+            if (queue != null) {
+                if (queue.next == null) {
+                    queue.next = new Alarm(alarm);
+                    queue.nextFuture = SettableFuture.create();
+                } else {
+                    merge(queue.next, alarm);
+                }
+                return queue.nextFuture;
             }
-            if (alarm.getId() == null) {
-                Alarm existing = alarmDao.findLatestByOriginatorAndType(alarm.getTenantId(), alarm.getOriginator(), alarm.getType()).get();
-                if (existing == null || existing.getStatus().isCleared()) {
+            alarmUpdates.put(key, new AlarmUpdateQueue());
+        }
+        return processAlarmUpdate(key, alarm);
+    }
+
+    /**
+     * Failures to start the update complete the returned future as well, so that pending updates of the key
+     * are always processed and the key is removed once there are none.
+     */
+    private ListenableFuture<Alarm> processAlarmUpdate(AlarmKey key, Alarm alarm) {
+        ListenableFuture<Alarm> result;
+        try {
+            ListenableFuture<Alarm> existing = alarmDao.findLatestByOriginatorAndType(alarm.getTenantId(), alarm.getOriginator(), alarm.getType());
+            result = Futures.transform(existing, (AsyncFunction<Alarm, Alarm>) existingAlarm -> {
+                if (existingAlarm == null || existingAlarm.getStatus().isCleared()) {
                     return createAlarm(alarm);
                 } else {
-                    return updateAlarm(existing, alarm);
+                    return updateAlarm(existingAlarm, alarm);
                 }
-            } else {
-                return updateAlarm(alarm).get();
+            }, readResultsProcessingExecutor);
+        } catch (Exception e) {
+            log.warn("Failed to process alarm update: {}", alarm, e);
+            result = Futures.immediateFailedFuture(e);
+        }
+        result.addListener(() -> onAlarmUpdateProcessed(key), MoreExecutors.directExecutor());
+        return result;
+    }
+
+    private void onAlarmUpdateProcessed(AlarmKey key) {
+        Alarm next;
+        SettableFuture<Alarm> nextFuture;
+        synchronized (alarmUpdates) {
+            AlarmUpdateQueue queue = alarmUpdates.get(key);
+            if (queue == null) {
+                log.warn("Alarm update queue not found: {}", key);
+                return;
             }
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException(e);
+            if (queue.next == null) {
+                alarmUpdates.remove(key);
+                return;
+            }
+            next = queue.next;
+            nextFuture = queue.nextFuture;
+            queue.next = null;
+            queue.nextFuture = null;
         }
+        Futures.addCallback(processAlarmUpdate(key, next), new FutureCallback<Alarm>() {
+            @Override
+            public void onSuccess(@Nullable Alarm result) {
+                nextFuture.set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                nextFuture.setException(t);
+            }
+        });
     }
 
-    private Alarm createAlarm(Alarm alarm) throws InterruptedException, ExecutionException {
+    private ListenableFuture<Alarm> createAlarm(Alarm alarm) {
         log.debug("New Alarm : {}", alarm);
-        Alarm saved = alarmDao.save(alarm);
-        EntityRelationsQuery query = new EntityRelationsQuery();
-        query.setParameters(new RelationsSearchParameters(saved.getOriginator(), EntitySearchDirection.TO, Integer.MAX_VALUE));
-        List<EntityId> parentEntities = relationService.findByQuery(query).get().stream().map(r -> r.getFrom()).collect(Collectors.toList());
-        for (EntityId parentId : parentEntities) {
-            createAlarmRelation(parentId, saved.getId(), saved.getStatus(), true);
-        }
-        createAlarmRelation(alarm.getOriginator(), saved.getId(), saved.getStatus(), true);
-        return saved;
+        return saveAlarm(alarm, null, null);
     }
 
     protected ListenableFuture<Alarm> updateAlarm(Alarm update) {
         alarmDataValidator.validate(update);
-        return getAndUpdate(update.getId(), new Function<Alarm, Alarm>() {
-            @Nullable
-            @Override
-            public Alarm apply(@Nullable Alarm alarm) {
-                if (alarm == null) {
-                    return null;
-                } else {
-                    return updateAlarm(alarm, update);
-                }
+        return getAndUpdate(update.getId(), (AsyncFunction<Alarm, Alarm>) alarm -> {
+            if (alarm == null) {
+                return Futures.immediateFuture(null);
+            } else {
+                return updateAlarm(alarm, update);
             }
         });
     }
 
-    private Alarm updateAlarm(Alarm oldAlarm, Alarm newAlarm) {
+    private ListenableFuture<Alarm> updateAlarm(Alarm oldAlarm, Alarm newAlarm) {
         AlarmStatus oldStatus = oldAlarm.getStatus();
-        AlarmStatus newStatus = newAlarm.getStatus();
-        Alarm result = alarmDao.save(merge(oldAlarm, newAlarm));
-        if (oldStatus != newStatus) {
-            updateRelations(oldAlarm, oldStatus, newStatus);
-        }
-        return result;
+        AlarmSeverity oldSeverity = oldAlarm.getSeverity();
+        return saveAlarm(merge(oldAlarm, newAlarm), oldSeverity, oldStatus);
     }
 
     @Override
     public ListenableFuture<Boolean> ackAlarm(AlarmId alarmId, long ackTime) {
-        return getAndUpdate(alarmId, new Function<Alarm, Boolean>() {
-            @Nullable
-            @Override
-            public Boolean apply(@Nullable Alarm alarm) {
-                if (alarm == null || alarm.getStatus().isAck()) {
-                    return false;
-                } else {
-                    AlarmStatus oldStatus = alarm.getStatus();
-                    AlarmStatus newStatus = oldStatus.isCleared() ? AlarmStatus.CLEARED_ACK : AlarmStatus.ACTIVE_ACK;
-                    alarm.setStatus(newStatus);
-                    alarm.setAckTs(ackTime);
-                    alarmDao.save(alarm);
-                    updateRelations(alarm, oldStatus, newStatus);
-                    return true;
-                }
+        return getAndUpdate(alarmId, (AsyncFunction<Alarm, Boolean>) alarm -> {
+            if (alarm == null || alarm.getStatus().isAck()) {
+                return Futures.immediateFuture(false);
+            } else {
+                AlarmStatus oldStatus = alarm.getStatus();
+                AlarmStatus newStatus = oldStatus.isCleared() ? AlarmStatus.CLEARED_ACK : AlarmStatus.ACTIVE_ACK;
+                alarm.setStatus(newStatus);
+                alarm.setAckTs(ackTime);
+                return Futures.transform(saveAlarm(alarm, alarm.getSeverity(), oldStatus), (Function<Alarm, Boolean>) saved -> true);
             }
         });
     }
 
     @Override
     public ListenableFuture<Boolean> clearAlarm(AlarmId alarmId, long clearTime) {
-        return getAndUpdate(alarmId, new Function<Alarm, Boolean>() {
-            @Nullable
-            @Override
-            public Boolean apply(@Nullable Alarm alarm) {
-                if (alarm == null || alarm.getStatus().isCleared()) {
-                    return false;
-                } else {
-                    AlarmStatus oldStatus = alarm.getStatus();
-                    AlarmStatus newStatus = oldStatus.isAck() ? AlarmStatus.CLEARED_ACK : AlarmStatus.CLEARED_UNACK;
-                    alarm.setStatus(newStatus);
-                    alarm.setClearTs(clearTime);
-                    alarmDao.save(alarm);
-                    updateRelations(alarm, oldStatus, newStatus);
-                    return true;
-                }
+        return getAndUpdate(alarmId, (AsyncFunction<Alarm, Boolean>) alarm -> {
+            if (alarm == null || alarm.getStatus().isCleared()) {
+                return Futures.immediateFuture(false);
+            } else {
+                AlarmStatus oldStatus = alarm.getStatus();
+                AlarmStatus newStatus = oldStatus.isAck() ? AlarmStatus.CLEARED_ACK : AlarmStatus.CLEARED_UNACK;
+                alarm.setStatus(newStatus);
+                alarm.setClearTs(clearTime);
+                return Futures.transform(saveAlarm(alarm, alarm.getSeverity(), oldStatus), (Function<Alarm, Boolean>) saved -> true);
             }
         });
     }
@@ -248,51 +347,126 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     @Override
     public AlarmSeverity findHighestAlarmSeverity(EntityId entityId, AlarmSearchStatus alarmSearchStatus,
                                                                     AlarmStatus alarmStatus) {
-        TimePageLink nextPageLink = new TimePageLink(100);
-        boolean hasNext = true;
-        AlarmSeverity highestSeverity = null;
-        AlarmQuery query;
-        while (hasNext) {
-            query = new AlarmQuery(entityId, nextPageLink, alarmSearchStatus, alarmStatus, false);
-            List<AlarmInfo> alarms;
-            try {
-                alarms = alarmDao.findAlarms(query).get();
-            } catch (ExecutionException | InterruptedException e) {
-                log.warn("Failed to find highest alarm severity. EntityId: [{}], AlarmSearchStatus: [{}], AlarmStatus: [{}]",
-                        entityId, alarmSearchStatus, alarmStatus);
-                throw new RuntimeException(e);
+        try {
+            return findHighestAlarmSeverityAsync(entityId, alarmSearchStatus, alarmStatus).get();
+        } catch (ExecutionException | InterruptedException e) {
+            log.warn("Failed to find highest alarm severity. EntityId: [{}], AlarmSearchStatus: [{}], AlarmStatus: [{}]",
+                    entityId, alarmSearchStatus, alarmStatus);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Map<EntityId, AlarmSeverity>> findHighestAlarmSeverities(List<EntityId> entityIds, AlarmSearchStatus alarmSearchStatus,
+                                                                                     AlarmStatus alarmStatus) {
+        List<ListenableFuture<AlarmSeverity>> futures = entityIds.stream()
+                .map(entityId -> findHighestAlarmSeverityAsync(entityId, alarmSearchStatus, alarmStatus)).collect(Collectors.toList());
+        return Futures.transform(Futures.allAsList(futures), (Function<List<AlarmSeverity>, Map<EntityId, AlarmSeverity>>) severities -> {
+            Map<EntityId, AlarmSeverity> result = new HashMap<>();
+            for (int i = 0; i < entityIds.size(); i++) {
+                result.put(entityIds.get(i), severities.get(i));
             }
-            hasNext = alarms.size() == nextPageLink.getLimit();
-            if (hasNext) {
-                nextPageLink = new TimePageData<>(alarms, nextPageLink).getNextPageLink();
+            return result;
+        });
+    }
+
+    /**
+     * Active alarms are resolved from the severity counts. Cleared alarms are not counted, since they only accumulate,
+     * so they are paged only if the query matches them and no active alarm has critical severity.
+     */
+    private ListenableFuture<AlarmSeverity> findHighestAlarmSeverityAsync(EntityId entityId, AlarmSearchStatus alarmSearchStatus,
+                                                                          AlarmStatus alarmStatus) {
+        ListenableFuture<AlarmSeverity> activeSeverity = Futures.transform(findAlarmSeverityCounts(entityId),
+                (Function<AlarmSeverityCounts, AlarmSeverity>) counts -> counts.getHighestSeverity(alarmSearchStatus, alarmStatus));
+        if (!AlarmSeverityCounts.matchesCleared(alarmSearchStatus, alarmStatus)) {
+            return activeSeverity;
+        }
+        AlarmSearchStatus clearedSearchStatus;
+        AlarmStatus clearedStatus;
+        if (alarmSearchStatus == null) {
+            clearedSearchStatus = alarmStatus == null ? AlarmSearchStatus.CLEARED : null;
+            clearedStatus = alarmStatus;
+        } else if (alarmSearchStatus == AlarmSearchStatus.ACK || alarmSearchStatus == AlarmSearchStatus.UNACK) {
+            clearedSearchStatus = null;
+            clearedStatus = alarmSearchStatus == AlarmSearchStatus.ACK ? AlarmStatus.CLEARED_ACK : AlarmStatus.CLEARED_UNACK;
+        } else {
+            clearedSearchStatus = AlarmSearchStatus.CLEARED;
+            clearedStatus = null;
+        }
+        return Futures.transform(activeSeverity, (AsyncFunction<AlarmSeverity, AlarmSeverity>) severity -> {
+            if (severity == AlarmSeverity.CRITICAL) {
+                return Futures.immediateFuture(severity);
             }
-            if (alarms.isEmpty()) {
-                continue;
-            } else {
-                List<AlarmInfo> sorted = new ArrayList(alarms);
-                sorted.sort((p1, p2) -> p1.getSeverity().compareTo(p2.getSeverity()));
-                AlarmSeverity severity = sorted.get(0).getSeverity();
-                if (severity == AlarmSeverity.CRITICAL) {
-                    highestSeverity = severity;
-                    break;
-                } else if (highestSeverity == null) {
-                    highestSeverity = severity;
-                } else {
-                    highestSeverity = highestSeverity.compareTo(severity) < 0 ? highestSeverity : severity;
+            return findHighestAlarmSeverity(entityId, clearedSearchStatus, clearedStatus, new TimePageLink(100), severity);
+        });
+    }
+
+    private ListenableFuture<AlarmSeverity> findHighestAlarmSeverity(EntityId entityId, AlarmSearchStatus alarmSearchStatus, AlarmStatus alarmStatus,
+                                                                     TimePageLink pageLink, AlarmSeverity highestSeverity) {
+        AlarmQuery query = new AlarmQuery(entityId, pageLink, alarmSearchStatus, alarmStatus, false);
+        return Futures.transform(alarmDao.findAlarms(query), (AsyncFunction<List<AlarmInfo>, AlarmSeverity>) alarms -> {
+            AlarmSeverity severity = highestSeverity;
+            for (AlarmInfo alarm : alarms) {
+                if (alarm != null && (severity == null || alarm.getSeverity().compareTo(severity) < 0)) {
+                    severity = alarm.getSeverity();
                 }
             }
+            if (severity != AlarmSeverity.CRITICAL && alarms.size() == pageLink.getLimit()) {
+                return findHighestAlarmSeverity(entityId, alarmSearchStatus, alarmStatus,
+                        new TimePageData<>(alarms, pageLink).getNextPageLink(), severity);
+            } else {
+                return Futures.immediateFuture(severity);
+            }
+        });
+    }
+
+    @Override
+    public void invalidateAlarmSeverities(Collection<EntityId> entityIds) {
+        if (severityCache != null) {
+            severityCache.invalidate(entityIds);
+        }
+    }
+
+    private ListenableFuture<AlarmSeverityCounts> findAlarmSeverityCounts(EntityId entityId) {
+        if (severityCache == null) {
+            return loadAlarmSeverityCounts(entityId, new TimePageLink(100), new AlarmSeverityCounts());
+        }
+        AlarmSeverityCounts cached = severityCache.get(entityId);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
         }
-        return highestSeverity;
+        long stamp = severityCache.getStamp(entityId);
+        return Futures.transform(loadAlarmSeverityCounts(entityId, new TimePageLink(100), new AlarmSeverityCounts()),
+                (Function<AlarmSeverityCounts, AlarmSeverityCounts>) counts -> {
+                    severityCache.put(entityId, counts, stamp);
+                    return counts;
+                });
     }
 
-    private void deleteRelation(EntityRelation alarmRelation) throws ExecutionException, InterruptedException {
+    private ListenableFuture<AlarmSeverityCounts> loadAlarmSeverityCounts(EntityId entityId, TimePageLink pageLink, AlarmSeverityCounts counts) {
+        AlarmQuery query = new AlarmQuery(entityId, pageLink, AlarmSearchStatus.ACTIVE, null, false);
+        return Futures.transform(alarmDao.findAlarms(query), (AsyncFunction<List<AlarmInfo>, AlarmSeverityCounts>) alarms -> {
+            for (AlarmInfo alarm : alarms) {
+                if (alarm != null) {
+                    counts.add(alarm.getSeverity(), alarm.getStatus(), 1);
+                }
+            }
+            if (alarms.size() == pageLink.getLimit()) {
+                return loadAlarmSeverityCounts(entityId, new TimePageData<>(alarms, pageLink).getNextPageLink(), counts);
+            } else {
+                return Futures.immediateFuture(counts);
+            }
+        });
+    }
+
+    private ListenableFuture<Boolean> deleteRelation(EntityRelation alarmRelation) {
         log.debug("Deleting Alarm relation: {}", alarmRelation);
-        relationService.deleteRelation(alarmRelation).get();
+        return relationService.deleteRelation(alarmRelation);
     }
 
-    private void createRelation(EntityRelation alarmRelation) throws ExecutionException, InterruptedException {
+    private ListenableFuture<Boolean> createRelation(EntityRelation alarmRelation) {
         log.debug("Creating Alarm relation: {}", alarmRelation);
-        relationService.saveRelation(alarmRelation).get();
+        return relationService.saveRelation(alarmRelation);
     }
 
     private Alarm merge(Alarm existing, Alarm alarm) {
@@ -314,52 +488,111 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         return existing;
     }
 
-    private void updateRelations(Alarm alarm, AlarmStatus oldStatus, AlarmStatus newStatus) {
-        try {
-            EntityRelationsQuery query = new EntityRelationsQuery();
-            query.setParameters(new RelationsSearchParameters(alarm.getOriginator(), EntitySearchDirection.TO, Integer.MAX_VALUE));
-            List<EntityId> parentEntities = relationService.findByQuery(query).get().stream().map(r -> r.getFrom()).collect(Collectors.toList());
-            for (EntityId parentId : parentEntities) {
-                updateAlarmRelation(parentId, alarm.getId(), oldStatus, newStatus);
-           }
-            updateAlarmRelation(alarm.getOriginator(), alarm.getId(), oldStatus, newStatus);
-        } catch (ExecutionException | InterruptedException e) {
-            log.warn("[{}] Failed to update relations. Old status: [{}], New status: [{}]", alarm.getId(), oldStatus, newStatus);
-            throw new RuntimeException(e);
+    /**
+     * Saves the alarm and updates its relations to the entities it is propagated to. Old severity and status are null
+     * for a new alarm. Cached severity counts of the entities are marked as being updated before the alarm is saved,
+     * so counts loaded concurrently are not cached, and the change is counted once the relations are written.
+     */
+    private ListenableFuture<Alarm> saveAlarm(Alarm alarm, AlarmSeverity oldSeverity, AlarmStatus oldStatus) {
+        AlarmStatus newStatus = alarm.getStatus();
+        boolean statusChanged = oldStatus != newStatus;
+        boolean severityChanged = oldSeverity != alarm.getSeverity();
+        if (!statusChanged && !(severityChanged && severityCache != null)) {
+            return Futures.immediateFuture(alarmDao.save(alarm));
         }
-    }
+        return Futures.transform(findAlarmEntities(alarm.getOriginator()), (AsyncFunction<List<EntityId>, Alarm>) entities -> {
+            if (severityCache != null) {
+                severityCache.beginUpdate(entities);
+            }
+            ListenableFuture<Alarm> result;
+            try {
+                Alarm saved = alarmDao.save(alarm);
+                List<ListenableFuture<Boolean>> futures = new ArrayList<>();
+                for (EntityId entityId : entities) {
+                    if (oldStatus == null) {
+                        futures.addAll(createAlarmRelations(entityId, saved.getId(), newStatus, true));
+                    } else if (statusChanged) {
+                        futures.addAll(updateAlarmRelations(entityId, saved.getId(), oldStatus, newStatus));
+                    }
+                }
+                result = Futures.transform(Futures.allAsList(futures), (Function<List<Boolean>, Alarm>) results -> saved);
+            } catch (Exception e) {
+                result = Futures.immediateFailedFuture(e);
+            }
+            if (severityCache != null) {
+                Futures.addCallback(result, new FutureCallback<Alarm>() {
+                    @Override
+                    public void onSuccess(@Nullable Alarm saved) {
+                        severityCache.endUpdate(entities, oldSeverity, oldStatus, alarm.getSeverity(), newStatus);
+                        eventPublisher.publishEvent(new AlarmSeverityInvalidationEvent(entities));
+                    }
 
-    private void createAlarmRelation(EntityId entityId, EntityId alarmId, AlarmStatus status, boolean createAnyRelation) {
-        try {
-            if (createAnyRelation) {
-                createRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM));
+                    @Override
+                    public void onFailure(Throwable t) {
+                        severityCache.abortUpdate(entities);
+                        eventPublisher.publishEvent(new AlarmSeverityInvalidationEvent(entities));
+                    }
+                });
             }
-            createRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.name(), RelationTypeGroup.ALARM));
-            createRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getClearSearchStatus().name(), RelationTypeGroup.ALARM));
-            createRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getAckSearchStatus().name(), RelationTypeGroup.ALARM));
-        } catch (ExecutionException | InterruptedException e) {
-            log.warn("[{}] Failed to create relation. Status: [{}]", alarmId, status);
-            throw new RuntimeException(e);
+            return result;
+        }, readResultsProcessingExecutor);
+    }
+
+    /**
+     * Returns the originator and all its parent entities, which the alarm is propagated to.
+     */
+    private ListenableFuture<List<EntityId>> findAlarmEntities(EntityId originator) {
+        EntityRelationsQuery query = new EntityRelationsQuery();
+        query.setParameters(new RelationsSearchParameters(originator, EntitySearchDirection.TO, Integer.MAX_VALUE));
+        return Futures.transform(relationService.findByQuery(query), (Function<List<EntityRelation>, List<EntityId>>) relations -> {
+            Set<EntityId> entities = new LinkedHashSet<>();
+            relations.forEach(relation -> entities.add(relation.getFrom()));
+            entities.add(originator);
+            return new ArrayList<>(entities);
+        });
+    }
+
+    private List<ListenableFuture<Boolean>> createAlarmRelations(EntityId entityId, EntityId alarmId, AlarmStatus status, boolean createAnyRelation) {
+        List<ListenableFuture<Boolean>> futures = new ArrayList<>();
+        if (createAnyRelation) {
+            futures.add(createRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM)));
+        }
+        for (String relationType : getRelationTypes(status)) {
+            futures.add(createRelation(new EntityRelation(entityId, alarmId, relationType, RelationTypeGroup.ALARM)));
         }
+        return futures;
     }
 
-    private void deleteAlarmRelation(EntityId entityId, EntityId alarmId, AlarmStatus status) {
-        try {
-            deleteRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.name(), RelationTypeGroup.ALARM));
-            deleteRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getClearSearchStatus().name(), RelationTypeGroup.ALARM));
-            deleteRelation(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getAckSearchStatus().name(), RelationTypeGroup.ALARM));
-        } catch (ExecutionException | InterruptedException e) {
-            log.warn("[{}] Failed to delete relation. Status: [{}]", alarmId, status);
-            throw new RuntimeException(e);
+    /**
+     * Only relations that differ between the old and the new status are changed, so deletions and creations
+     * never touch the same relation and can be executed in parallel.
+     */
+    private List<ListenableFuture<Boolean>> updateAlarmRelations(EntityId entityId, EntityId alarmId, AlarmStatus oldStatus, AlarmStatus newStatus) {
+        Set<String> oldTypes = getRelationTypes(oldStatus);
+        Set<String> newTypes = getRelationTypes(newStatus);
+        List<ListenableFuture<Boolean>> futures = new ArrayList<>();
+        for (String relationType : oldTypes) {
+            if (!newTypes.contains(relationType)) {
+                futures.add(deleteRelation(new EntityRelation(entityId, alarmId, relationType, RelationTypeGroup.ALARM)));
+            }
+        }
+        for (String relationType : newTypes) {
+            if (!oldTypes.contains(relationType)) {
+                futures.add(createRelation(new EntityRelation(entityId, alarmId, relationType, RelationTypeGroup.ALARM)));
+            }
         }
+        return futures;
     }
 
-    private void updateAlarmRelation(EntityId entityId, EntityId alarmId, AlarmStatus oldStatus, AlarmStatus newStatus) {
-        deleteAlarmRelation(entityId, alarmId, oldStatus);
-        createAlarmRelation(entityId, alarmId, newStatus, false);
+    private static Set<String> getRelationTypes(AlarmStatus status) {
+        Set<String> types = new LinkedHashSet<>();
+        types.add(ALARM_RELATION_PREFIX + status.name());
+        types.add(ALARM_RELATION_PREFIX + status.getClearSearchStatus().name());
+        types.add(ALARM_RELATION_PREFIX + status.getAckSearchStatus().name());
+        return types;
     }
 
-    private <T> ListenableFuture<T> getAndUpdate(AlarmId alarmId, Function<Alarm, T> function) {
+    private <T> ListenableFuture<T> getAndUpdate(AlarmId alarmId, AsyncFunction<Alarm, T> function) {
         validateId(alarmId, "Alarm id should be specified!");
         ListenableFuture<Alarm> entity = alarmDao.findAlarmByIdAsync(alarmId.getId());
         return Futures.transform(entity, function, readResultsProcessingExecutor);
@@ -392,4 +625,16 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                     }
                 }
             };
+
+    @Data
+    private static class AlarmKey {
+        private final TenantId tenantId;
+        private final EntityId originator;
+        private final String type;
+    }
+
+    private static class AlarmUpdateQueue {
+        private Alarm next;
+        private SettableFuture<Alarm> nextFuture;
+    }
 }
@@ -21,6 +21,7 @@ import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -34,6 +35,8 @@ public interface AttributesDao {
 
     ListenableFuture<List<AttributeKvEntry>> findAll(EntityId entityId, String attributeType);
 
+    ListenableFuture<Map<String, List<AttributeKvEntry>>> findAll(EntityId entityId, Collection<String> attributeTypes);
+
     ListenableFuture<Void> save(EntityId entityId, String attributeType, AttributeKvEntry attribute);
 
     ListenableFuture<List<Void>> removeAll(EntityId entityId, String attributeType, List<String> keys);
@@ -21,6 +21,7 @@ import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -34,6 +35,11 @@ public interface AttributesService {
 
     ListenableFuture<List<AttributeKvEntry>> findAll(EntityId entityId, String scope);
 
+    /**
+     * Finds all attributes of the given scopes in a single query. Scopes without attributes are mapped to empty lists.
+     */
+    ListenableFuture<Map<String, List<AttributeKvEntry>>> findAll(EntityId entityId, Collection<String> scopes);
+
     ListenableFuture<List<Void>> save(EntityId entityId, String scope, List<AttributeKvEntry> attributes);
 
     ListenableFuture<List<Void>> removeAll(EntityId entityId, String scope, List<String> attributeKeys);
@@ -29,6 +29,7 @@ import org.thingsboard.server.dao.service.Validator;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -60,6 +61,12 @@ public class BaseAttributesService implements AttributesService {
         return attributesDao.findAll(entityId, scope);
     }
 
+    @Override
+    public ListenableFuture<Map<String, List<AttributeKvEntry>>> findAll(EntityId entityId, Collection<String> scopes) {
+        scopes.forEach(scope -> validate(entityId, scope));
+        return attributesDao.findAll(entityId, scopes);
+    }
+
     @Override
     public ListenableFuture<List<Void>> save(EntityId entityId, String scope, List<AttributeKvEntry> attributes) {
         validate(entityId, scope);
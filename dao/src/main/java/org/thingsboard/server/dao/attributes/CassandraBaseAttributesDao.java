@@ -35,11 +35,14 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 import static org.thingsboard.server.dao.model.ModelConstants.*;
 
@@ -100,6 +103,27 @@ public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implem
                 , readResultsProcessingExecutor);
     }
 
+    @Override
+    public ListenableFuture<Map<String, List<AttributeKvEntry>>> findAll(EntityId entityId, Collection<String> attributeTypes) {
+        Select.Where select = select().from(ATTRIBUTES_KV_CF)
+                .where(eq(ENTITY_TYPE_COLUMN, entityId.getEntityType()))
+                .and(eq(ENTITY_ID_COLUMN, entityId.getId()))
+                .and(in(ATTRIBUTE_TYPE_COLUMN, new ArrayList<>(attributeTypes)));
+        log.trace("Generated query [{}] for entityId {} and attributeTypes {}", select, entityId, attributeTypes);
+        return getFuture(executeAsyncRead(select), rs -> {
+            Map<String, List<AttributeKvEntry>> result = new HashMap<>();
+            attributeTypes.forEach(attributeType -> result.put(attributeType, new ArrayList<>()));
+            for (Row row : rs.all()) {
+                String key = row.getString(ModelConstants.ATTRIBUTE_KEY_COLUMN);
+                AttributeKvEntry kvEntry = convertResultToAttributesKvEntry(key, row);
+                if (kvEntry != null) {
+                    result.get(row.getString(ATTRIBUTE_TYPE_COLUMN)).add(kvEntry);
+                }
+            }
+            return result;
+        });
+    }
+
     @Override
     public ListenableFuture<Void> save(EntityId entityId, String attributeType, AttributeKvEntry attribute) {
         BoundStatement stmt = getSaveStmt().bind();
@@ -125,7 +149,7 @@ public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implem
             stmt.setToNull(8);
         }
         log.trace("Generated save stmt [{}] for entityId {} and attributeType {} and attribute", stmt, entityId, attributeType, attribute);
-        return getFuture(executeAsyncWrite(stmt), rs -> null);
+        return getFutureInline(executeAsyncWrite(stmt), rs -> null);
     }
 
     @Override
@@ -144,7 +168,7 @@ public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implem
                 .and(eq(ATTRIBUTE_TYPE_COLUMN, attributeType))
                 .and(eq(ATTRIBUTE_KEY_COLUMN, key));
         log.debug("Remove request: {}", delete.toString());
-        return getFuture(getSession().executeAsync(delete), rs -> null);
+        return getFutureInline(getSession().executeAsync(delete), rs -> null);
     }
 
     private PreparedStatement getSaveStmt() {
@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Version stamps and access statistics shared by the local caches of DAO services.
+ * <p>
+ * Every change of a cached entity bumps a version stamp of the entity. Values loaded from the database are only cached
+ * if the stamp read before the load did not change, and they are evicted again if the stamp changed while they were
+ * being cached, so a slow read never overwrites a newer state. Stamps are striped by hash of the key, so a change of
+ * one entity may also prevent caching of another one.
+ * <p>
+ * Caches that apply changes incrementally mark the keys with {@link #beginUpdate} before the database is written and
+ * with {@link #endUpdate} once the change is applied. Loaded values are not cached in between, since it is unknown
+ * whether they already contain the change.
+ */
+@Slf4j
+public class StampedCacheSupport {
+
+    private final String name;
+    private final AtomicLongArray stamps;
+    private final AtomicIntegerArray pendingUpdates;
+    private final long statsPrintIntervalMs;
+    private final Supplier<String> sizeStats;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile long lastStatsPrintTs;
+
+    /**
+     * Keys are striped over the given amount of stamps, 1 shares a single stamp between all keys.
+     * Size statistics supplier returns the size part of logged statistics, e.g. "values [10]".
+     */
+    public StampedCacheSupport(String name, int stampsCount, long statsPrintIntervalMs, Supplier<String> sizeStats) {
+        this.name = name;
+        this.stamps = new AtomicLongArray(stampsCount);
+        this.pendingUpdates = new AtomicIntegerArray(stampsCount);
+        this.statsPrintIntervalMs = statsPrintIntervalMs;
+        this.sizeStats = sizeStats;
+        this.lastStatsPrintTs = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns stamp of the key that should be passed to {@link #putIfCurrent} of values loaded from the database.
+     */
+    public long getStamp(Object key) {
+        return stamps.get(stampIdx(key));
+    }
+
+    /**
+     * Bumps stamp of the key, so values that are being loaded are not cached. Must be called before the cached
+     * values of the key are changed or evicted.
+     */
+    public void bumpStamp(Object key) {
+        stamps.incrementAndGet(stampIdx(key));
+    }
+
+    /**
+     * Marks the key as being updated before the change is written to the database.
+     */
+    public void beginUpdate(Object key) {
+        int idx = stampIdx(key);
+        pendingUpdates.incrementAndGet(idx);
+        stamps.incrementAndGet(idx);
+    }
+
+    /**
+     * Ends the update started by {@link #beginUpdate}, after the change is written and applied to the cached value.
+     */
+    public void endUpdate(Object key) {
+        int idx = stampIdx(key);
+        stamps.incrementAndGet(idx);
+        pendingUpdates.decrementAndGet(idx);
+    }
+
+    /**
+     * Runs the put action if the stamp of the key did not change and the key is not being updated, and the evict
+     * action if the stamp changed while the put action was running. Returns true if the value was put.
+     */
+    public boolean putIfCurrent(Object key, long stamp, Runnable put, Runnable evict) {
+        if (getStamp(key) != stamp || pendingUpdates.get(stampIdx(key)) > 0) {
+            return false;
+        }
+        put.run();
+        if (getStamp(key) != stamp) {
+            evict.run();
+            return false;
+        }
+        return true;
+    }
+
+    public void recordAccess(boolean hit) {
+        if (hit) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        printStats();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    private void printStats() {
+        long ts = System.currentTimeMillis();
+        if (statsPrintIntervalMs > 0 && ts - lastStatsPrintTs > statsPrintIntervalMs) {
+            lastStatsPrintTs = ts;
+            log.info("{} cache stats: {}, hits [{}], misses [{}], hit ratio [{}]",
+                    name, sizeStats.get(), hitCount.get(), missCount.get(), String.format("%.3f", getHitRatio()));
+        }
+    }
+
+    private int stampIdx(Object key) {
+        return (Objects.hashCode(key) & Integer.MAX_VALUE) % stamps.length();
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.device;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.security.DeviceCredentials;
+import org.thingsboard.server.dao.cache.StampedCacheSupport;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache of device credentials keyed by credentials id, used in front of {@link DeviceCredentialsService}
+ * and the hazelcast cache for device authentication.
+ * <p>
+ * Entries are invalidated by device id, since other cluster nodes are only notified about the device whose
+ * credentials were changed. Credentials are loaded by credentials id, so a single stamp is shared by all devices.
+ * Every invalidation bumps the stamp, and credentials loaded from the service are only cached if the stamp did not
+ * change during the load, see {@link StampedCacheSupport}.
+ */
+@Component
+public class DeviceCredentialsCache {
+
+    @Value("${cache.device_credentials_local.enabled}")
+    private boolean enabled;
+
+    @Value("${cache.device_credentials_local.max_size}")
+    private long maxSize;
+
+    @Value("${cache.device_credentials_local.time_to_live}")
+    private long timeToLiveSec;
+
+    @Value("${cache.stats_print_interval_ms}")
+    private long statsPrintIntervalMs;
+
+    private Cache<String, DeviceCredentials> credentials;
+    private final ConcurrentMap<DeviceId, String> credentialsIds = new ConcurrentHashMap<>();
+    private StampedCacheSupport support;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            credentials = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS)
+                    .<String, DeviceCredentials>removalListener(notification -> {
+                        if (notification.getCause() != RemovalCause.REPLACED && notification.getValue() != null) {
+                            credentialsIds.remove(notification.getValue().getDeviceId(), notification.getKey());
+                        }
+                    })
+                    .build();
+            support = new StampedCacheSupport("Device credentials", 1, statsPrintIntervalMs,
+                    () -> String.format("size [%d]", credentials.size()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns stamp that should be passed to {@link #put(DeviceCredentials, long)} of credentials loaded from the service.
+     */
+    public long getStamp() {
+        return enabled ? support.getStamp(null) : 0L;
+    }
+
+    public DeviceCredentials get(String credentialsId) {
+        if (!enabled) {
+            return null;
+        }
+        DeviceCredentials result = credentials.getIfPresent(credentialsId);
+        support.recordAccess(result != null);
+        return result;
+    }
+
+    public void put(DeviceCredentials deviceCredentials, long loadStamp) {
+        if (!enabled || deviceCredentials == null || deviceCredentials.getDeviceId() == null) {
+            return;
+        }
+        String credentialsId = deviceCredentials.getCredentialsId();
+        support.putIfCurrent(null, loadStamp, () -> {
+            credentialsIds.put(deviceCredentials.getDeviceId(), credentialsId);
+            DeviceCredentials previous = credentials.asMap().put(credentialsId, deviceCredentials);
+            if (previous != null && !deviceCredentials.getDeviceId().equals(previous.getDeviceId())) {
+                credentialsIds.remove(previous.getDeviceId(), credentialsId);
+            }
+        }, () -> credentials.invalidate(credentialsId));
+    }
+
+    public void invalidate(DeviceId deviceId) {
+        if (!enabled) {
+            return;
+        }
+        support.bumpStamp(null);
+        String credentialsId = deviceId != null ? credentialsIds.remove(deviceId) : null;
+        if (credentialsId != null) {
+            credentials.invalidate(credentialsId);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.thingsboard.server.common.data.Device;
@@ -44,6 +45,12 @@ public class DeviceCredentialsServiceImpl implements DeviceCredentialsService {
     @Autowired
     private DeviceService deviceService;
 
+    @Autowired
+    private DeviceCredentialsCache deviceCredentialsCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public DeviceCredentials findDeviceCredentialsByDeviceId(DeviceId deviceId) {
         log.trace("Executing findDeviceCredentialsByDeviceId [{}]", deviceId);
@@ -62,7 +69,9 @@ public class DeviceCredentialsServiceImpl implements DeviceCredentialsService {
     @Override
     @CacheEvict(cacheNames = DEVICE_CREDENTIALS_CACHE, keyGenerator="previousDeviceCredentialsId", beforeInvocation = true)
     public DeviceCredentials updateDeviceCredentials(DeviceCredentials deviceCredentials) {
-        return saveOrUpdare(deviceCredentials);
+        DeviceCredentials result = saveOrUpdare(deviceCredentials);
+        deviceCredentialsCache.invalidate(deviceCredentials.getDeviceId());
+        return result;
     }
 
     @Override
@@ -91,6 +100,8 @@ public class DeviceCredentialsServiceImpl implements DeviceCredentialsService {
     public void deleteDeviceCredentials(DeviceCredentials deviceCredentials) {
         log.trace("Executing deleteDeviceCredentials [{}]", deviceCredentials);
         deviceCredentialsDao.removeById(deviceCredentials.getUuidId());
+        deviceCredentialsCache.invalidate(deviceCredentials.getDeviceId());
+        eventPublisher.publishEvent(new DeviceCredentialsInvalidationEvent(deviceCredentials.getDeviceId()));
     }
 
     private DataValidator<DeviceCredentials> credentialsValidator =
@@ -15,10 +15,18 @@
  */
 package org.thingsboard.server.dao.event;
 
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -27,8 +35,12 @@ import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.dao.exception.DataValidationException;
 import org.thingsboard.server.dao.service.DataValidator;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -37,10 +49,86 @@ public class BaseEventService implements EventService {
     @Autowired
     public EventDao eventDao;
 
+    @Value("${events.write_buffer.enabled}")
+    private boolean writeBufferEnabled;
+
+    @Value("${events.write_buffer.queue_size}")
+    private int writeBufferQueueSize;
+
+    @Value("${events.write_buffer.batch_size}")
+    private int writeBufferBatchSize;
+
+    @Value("${events.write_buffer.flush_interval_ms}")
+    private long writeBufferFlushIntervalMs;
+
+    @Value("${events.write_buffer.stats_print_interval_ms}")
+    private long writeBufferStatsPrintIntervalMs;
+
+    @Value("${events.ttl.stats}")
+    private long statsTtl;
+
+    @Value("${events.ttl.error}")
+    private long errorTtl;
+
+    @Value("${events.ttl.lc_event}")
+    private long lcEventTtl;
+
+    @Value("${events.ttl.alarm}")
+    private long alarmTtl;
+
+    @Value("${events.ttl.default}")
+    private long defaultTtl;
+
+    @Value("${events.uid_cache.enabled}")
+    private boolean uidCacheEnabled;
+
+    @Value("${events.uid_cache.max_size}")
+    private long uidCacheMaxSize;
+
+    @Value("${events.uid_cache.time_to_live}")
+    private long uidCacheTtl;
+
+    private EventBatchWriter batchWriter;
+
+    private Cache<EventUid, Boolean> uidCache;
+
+    @PostConstruct
+    public void init() {
+        if (writeBufferEnabled) {
+            batchWriter = new EventBatchWriter((type, events) -> eventDao.saveAllAsync(events, getTtl(type)),
+                    writeBufferQueueSize, writeBufferBatchSize, writeBufferFlushIntervalMs, writeBufferStatsPrintIntervalMs);
+            batchWriter.start();
+        }
+        if (uidCacheEnabled) {
+            uidCache = CacheBuilder.newBuilder()
+                    .maximumSize(uidCacheMaxSize)
+                    .expireAfterWrite(uidCacheTtl, TimeUnit.SECONDS)
+                    .build();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (batchWriter != null) {
+            batchWriter.stop();
+        }
+    }
+
     @Override
     public Event save(Event event) {
         eventValidator.validate(event);
-        return eventDao.save(event);
+        return eventDao.save(event, getTtl(event.getType()));
+    }
+
+    @Override
+    public ListenableFuture<Event> saveAsync(Event event) {
+        eventValidator.validate(event);
+        if (batchWriter != null) {
+            return batchWriter.add(event);
+        } else {
+            return Futures.transform(eventDao.saveAllAsync(Collections.singletonList(event), getTtl(event.getType())),
+                    (Function<List<Event>, Event>) events -> events.get(0));
+        }
     }
 
     @Override
@@ -49,7 +137,16 @@ public class BaseEventService implements EventService {
         if (StringUtils.isEmpty(event.getUid())) {
             throw new DataValidationException("Event uid should be specified!.");
         }
-        return eventDao.saveIfNotExists(event);
+        EventUid eventUid = uidCache != null ? new EventUid(event.getTenantId(), event.getEntityId(), event.getType(), event.getUid()) : null;
+        if (eventUid != null && uidCache.getIfPresent(eventUid) != null) {
+            log.trace("Event [{}] is already saved", eventUid);
+            return Optional.empty();
+        }
+        Optional<Event> saved = eventDao.saveIfNotExists(event, getTtl(event.getType()));
+        if (eventUid != null) {
+            uidCache.put(eventUid, Boolean.TRUE);
+        }
+        return saved;
     }
 
     @Override
@@ -82,6 +179,21 @@ public class BaseEventService implements EventService {
         return new TimePageData<>(events, pageLink);
     }
 
+    private long getTtl(String eventType) {
+        switch (eventType) {
+            case DataConstants.STATS:
+                return statsTtl;
+            case DataConstants.ERROR:
+                return errorTtl;
+            case DataConstants.LC_EVENT:
+                return lcEventTtl;
+            case DataConstants.ALARM:
+                return alarmTtl;
+            default:
+                return defaultTtl;
+        }
+    }
+
     private DataValidator<Event> eventValidator =
             new DataValidator<Event>() {
                 @Override
@@ -97,4 +209,12 @@ public class BaseEventService implements EventService {
                     }
                 }
             };
+
+    @Data
+    private static class EventUid {
+        private final TenantId tenantId;
+        private final EntityId entityId;
+        private final String type;
+        private final String uid;
+    }
 }
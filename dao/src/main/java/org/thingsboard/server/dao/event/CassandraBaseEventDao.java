@@ -16,10 +16,15 @@
 package org.thingsboard.server.dao.event;
 
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
@@ -34,6 +39,7 @@ import org.thingsboard.server.dao.util.NoSqlDao;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.nosql.EventEntity;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -62,30 +68,40 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
 
     @Override
     public Event save(Event event) {
-        log.debug("Save event [{}] ", event);
-        if (event.getTenantId() == null) {
-            log.trace("Save system event with predefined id {}", systemTenantId);
-            event.setTenantId(systemTenantId);
-        }
-        if (event.getId() == null) {
-            event.setId(new EventId(UUIDs.timeBased()));
-        }
-        if (StringUtils.isEmpty(event.getUid())) {
-            event.setUid(event.getId().toString());
-        }
-        return save(new EventEntity(event), false).orElse(null);
+        return save(event, 0);
     }
 
     @Override
     public Optional<Event> saveIfNotExists(Event event) {
-        if (event.getTenantId() == null) {
-            log.trace("Save system event with predefined id {}", systemTenantId);
-            event.setTenantId(systemTenantId);
-        }
-        if (event.getId() == null) {
-            event.setId(new EventId(UUIDs.timeBased()));
+        return saveIfNotExists(event, 0);
+    }
+
+    @Override
+    public Event save(Event event, long ttl) {
+        log.debug("Save event [{}] ", event);
+        prepare(event, true);
+        EventEntity entity = new EventEntity(event);
+        return toData(executeWrite(getInsert(entity, false, ttl)), entity).orElse(null);
+    }
+
+    @Override
+    public Optional<Event> saveIfNotExists(Event event, long ttl) {
+        prepare(event, false);
+        EventEntity entity = new EventEntity(event);
+        return toData(executeWrite(getInsert(entity, true, ttl)), entity);
+    }
+
+    @Override
+    public ListenableFuture<List<Event>> saveAllAsync(List<Event> events, long ttl) {
+        log.debug("Save [{}] events asynchronously", events.size());
+        List<ListenableFuture<Event>> futures = new ArrayList<>(events.size());
+        for (Event event : events) {
+            prepare(event, true);
+            EventEntity entity = new EventEntity(event);
+            ResultSetFuture rsFuture = executeAsyncWrite(getInsert(entity, false, ttl));
+            futures.add(Futures.transform(rsFuture, (Function<ResultSet, Event>) rs -> toData(rs, entity).orElse(null)));
         }
-        return save(new EventEntity(event), true);
+        return Futures.allAsList(futures);
     }
 
     @Override
@@ -134,10 +150,20 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
         return DaoUtil.convertDataList(entities);
     }
 
-    private Optional<Event> save(EventEntity entity, boolean ifNotExists) {
-        if (entity.getId() == null) {
-            entity.setId(UUIDs.timeBased());
+    private void prepare(Event event, boolean generateUid) {
+        if (event.getTenantId() == null) {
+            log.trace("Save system event with predefined id {}", systemTenantId);
+            event.setTenantId(systemTenantId);
         }
+        if (event.getId() == null) {
+            event.setId(new EventId(UUIDs.timeBased()));
+        }
+        if (generateUid && StringUtils.isEmpty(event.getUid())) {
+            event.setUid(event.getId().toString());
+        }
+    }
+
+    private Statement getInsert(EventEntity entity, boolean ifNotExists, long ttl) {
         Insert insert = QueryBuilder.insertInto(getColumnFamilyName())
                 .value(ModelConstants.ID_PROPERTY, entity.getId())
                 .value(ModelConstants.EVENT_TENANT_ID_PROPERTY, entity.getTenantId())
@@ -149,7 +175,13 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
         if (ifNotExists) {
             insert = insert.ifNotExists();
         }
-        ResultSet rs = executeWrite(insert);
+        if (ttl > 0) {
+            insert.using(QueryBuilder.ttl((int) ttl));
+        }
+        return insert;
+    }
+
+    private Optional<Event> toData(ResultSet rs, EventEntity entity) {
         if (rs.wasApplied()) {
             return Optional.of(DaoUtil.getData(entity));
         } else {
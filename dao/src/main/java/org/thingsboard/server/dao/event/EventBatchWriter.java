@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.event;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.Event;
+import org.thingsboard.server.dao.util.WriteBehindDispatcher;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Write-behind buffer for events that are not saved with "if not exists" semantics, like component statistics,
+ * errors and lifecycle events.
+ * <p>
+ * Events are queued and drained by a {@link WriteBehindDispatcher}, either once the batch size is reached or once
+ * the flush interval passes after the first queued event. Every drained chunk is grouped by event type, so that
+ * all events of a group share the same time to live, and saved with a single call of the saver.
+ */
+@Slf4j
+public class EventBatchWriter {
+
+    private final BiFunction<String, List<Event>, ListenableFuture<List<Event>>> saver;
+    private final WriteBehindDispatcher<EventWriteRequest> dispatcher;
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public EventBatchWriter(BiFunction<String, List<Event>, ListenableFuture<List<Event>>> saver, int queueSize, int batchSize,
+                            long flushIntervalMs, long statsPrintIntervalMs) {
+        this.saver = saver;
+        this.dispatcher = new WriteBehindDispatcher<>("Event", queueSize, batchSize, flushIntervalMs, this::flush,
+                (chunk, t) -> chunk.forEach(request -> request.future.setException(t)), statsPrintIntervalMs, this::getStats);
+    }
+
+    public void start() {
+        dispatcher.start();
+    }
+
+    public void stop() {
+        dispatcher.stop();
+    }
+
+    public ListenableFuture<Event> add(Event event) {
+        EventWriteRequest request = new EventWriteRequest(event);
+        if (!dispatcher.offer(request)) {
+            overflowCount.incrementAndGet();
+            log.trace("Event write buffer is full, saving event directly: {}", event);
+            save(event.getType(), Collections.singletonList(request));
+        }
+        return request.future;
+    }
+
+    public int getQueueSize() {
+        return dispatcher.getQueueSize();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    private void flush(List<EventWriteRequest> chunk) {
+        flushCount.incrementAndGet();
+        Map<String, List<EventWriteRequest>> groups = new LinkedHashMap<>();
+        for (EventWriteRequest request : chunk) {
+            groups.computeIfAbsent(request.event.getType(), type -> new ArrayList<>()).add(request);
+        }
+        groups.forEach(this::save);
+    }
+
+    private void save(String type, List<EventWriteRequest> requests) {
+        eventCount.addAndGet(requests.size());
+        List<Event> events = new ArrayList<>(requests.size());
+        requests.forEach(request -> events.add(request.event));
+        try {
+            Futures.addCallback(saver.apply(type, events), new FutureCallback<List<Event>>() {
+                @Override
+                public void onSuccess(@Nullable List<Event> result) {
+                    for (int i = 0; i < requests.size(); i++) {
+                        requests.get(i).future.set(result != null ? result.get(i) : null);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    onSaveFailure(type, requests, t);
+                }
+            });
+        } catch (Throwable t) {
+            onSaveFailure(type, requests, t);
+        }
+    }
+
+    private void onSaveFailure(String type, List<EventWriteRequest> requests, Throwable t) {
+        failureCount.addAndGet(requests.size());
+        log.warn("Failed to save {} events of type [{}]", requests.size(), type, t);
+        requests.forEach(request -> request.future.setException(t));
+    }
+
+    private String getStats() {
+        long flushes = flushCount.get();
+        long events = eventCount.get();
+        return String.format("flushes [%d], events [%d], avg flush size [%d], overflow [%d], failures [%d]",
+                flushes, events, flushes > 0 ? events / flushes : 0, overflowCount.get(), failureCount.get());
+    }
+
+    private static class EventWriteRequest {
+        private final Event event;
+        private final SettableFuture<Event> future = SettableFuture.create();
+
+        private EventWriteRequest(Event event) {
+            this.event = event;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.event;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.common.data.Event;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.page.TimePageLink;
@@ -45,6 +46,33 @@ public interface EventDao extends Dao<Event> {
      */
     Optional<Event> saveIfNotExists(Event event);
 
+    /**
+     * Save or update event object with the time to live
+     *
+     * @param event the event object
+     * @param ttl the time to live in seconds, 0 means no expiration
+     * @return saved event object
+     */
+    Event save(Event event, long ttl);
+
+    /**
+     * Save event object with the time to live if it is not yet saved
+     *
+     * @param event the event object
+     * @param ttl the time to live in seconds, 0 means no expiration
+     * @return saved event object
+     */
+    Optional<Event> saveIfNotExists(Event event, long ttl);
+
+    /**
+     * Save event objects with the same time to live asynchronously, batching writes where possible
+     *
+     * @param events the event objects
+     * @param ttl the time to live in seconds, 0 means no expiration
+     * @return saved event objects in the same order
+     */
+    ListenableFuture<List<Event>> saveAllAsync(List<Event> events, long ttl);
+
     /**
      * Find event by tenantId, entityId and eventUid.
      *
@@ -35,7 +35,7 @@ public final class TsKvEntity implements ToData<TsKvEntry> {
     }
 
     public TsKvEntity(Double avgLongValue, Double avgDoubleValue) {
-        this.longValue = avgLongValue.longValue();
+        this.longValue = avgLongValue != null ? avgLongValue.longValue() : null;
         this.doubleValue = avgDoubleValue;
     }
 
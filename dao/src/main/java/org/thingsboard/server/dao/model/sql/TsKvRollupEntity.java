@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.model.sql;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.ToData;
+import org.thingsboard.server.dao.timeseries.TsKvRollupBucket;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+import static org.thingsboard.server.dao.model.ModelConstants.*;
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "ts_kv_rollup")
+@IdClass(TsKvRollupCompositeKey.class)
+public final class TsKvRollupEntity implements ToData<TsKvRollupBucket> {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = ENTITY_TYPE_COLUMN)
+    private EntityType entityType;
+
+    @Id
+    @Column(name = ENTITY_ID_COLUMN)
+    private UUID entityId;
+
+    @Id
+    @Column(name = KEY_COLUMN)
+    private String key;
+
+    @Id
+    @Column(name = ROLLUP_STEP_COLUMN)
+    private long step;
+
+    @Id
+    @Column(name = TS_COLUMN)
+    private long ts;
+
+    @Column(name = BOOLEAN_COUNT_COLUMN)
+    private long boolCount;
+
+    @Column(name = STRING_COUNT_COLUMN)
+    private long strCount;
+
+    @Column(name = LONG_COUNT_COLUMN)
+    private long longCount;
+
+    @Column(name = DOUBLE_COUNT_COLUMN)
+    private long doubleCount;
+
+    @Column(name = LONG_SUM_COLUMN)
+    private long longSum;
+
+    @Column(name = DOUBLE_SUM_COLUMN)
+    private double doubleSum;
+
+    @Column(name = BOOLEAN_MIN_COLUMN)
+    private boolean boolMin;
+
+    @Column(name = BOOLEAN_MAX_COLUMN)
+    private boolean boolMax;
+
+    @Column(name = STRING_MIN_COLUMN)
+    private String strMin;
+
+    @Column(name = STRING_MAX_COLUMN)
+    private String strMax;
+
+    @Column(name = LONG_MIN_COLUMN)
+    private long longMin;
+
+    @Column(name = LONG_MAX_COLUMN)
+    private long longMax;
+
+    @Column(name = DOUBLE_MIN_COLUMN)
+    private double doubleMin;
+
+    @Column(name = DOUBLE_MAX_COLUMN)
+    private double doubleMax;
+
+    @Column(name = ROLLUP_VERSION_COLUMN)
+    private long version;
+
+    public TsKvRollupEntity(EntityType entityType, UUID entityId, String key, long step, TsKvRollupBucket bucket, long version) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.key = key;
+        this.step = step;
+        this.ts = bucket.getTs();
+        this.boolCount = bucket.getBoolCount();
+        this.strCount = bucket.getStrCount();
+        this.longCount = bucket.getLongCount();
+        this.doubleCount = bucket.getDoubleCount();
+        this.longSum = bucket.getLongSum();
+        this.doubleSum = bucket.getDoubleSum();
+        this.boolMin = bucket.isBoolMin();
+        this.boolMax = bucket.isBoolMax();
+        this.strMin = bucket.getStrMin();
+        this.strMax = bucket.getStrMax();
+        this.longMin = bucket.getLongMin();
+        this.longMax = bucket.getLongMax();
+        this.doubleMin = bucket.getDoubleMin();
+        this.doubleMax = bucket.getDoubleMax();
+        this.version = version;
+    }
+
+    @Override
+    public TsKvRollupBucket toData() {
+        TsKvRollupBucket bucket = new TsKvRollupBucket(ts);
+        bucket.setBoolCount(boolCount);
+        bucket.setStrCount(strCount);
+        bucket.setLongCount(longCount);
+        bucket.setDoubleCount(doubleCount);
+        bucket.setLongSum(longSum);
+        bucket.setDoubleSum(doubleSum);
+        bucket.setBoolMin(boolMin);
+        bucket.setBoolMax(boolMax);
+        bucket.setStrMin(strMin);
+        bucket.setStrMax(strMax);
+        bucket.setLongMin(longMin);
+        bucket.setLongMax(longMax);
+        bucket.setDoubleMin(doubleMin);
+        bucket.setDoubleMax(doubleMax);
+        return bucket;
+    }
+}
@@ -18,41 +18,71 @@ package org.thingsboard.server.dao.nosql;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by ashvayka on 21.02.17.
  */
 public abstract class CassandraAbstractAsyncDao extends CassandraAbstractDao {
 
-    protected ExecutorService readResultsProcessingExecutor;
+    @Autowired
+    private CassandraResultsProcessingExecutor resultsProcessingExecutor;
+
+    protected Executor readResultsProcessingExecutor;
 
     @PostConstruct
     public void startExecutor() {
-        readResultsProcessingExecutor = Executors.newCachedThreadPool();
+        readResultsProcessingExecutor = resultsProcessingExecutor.forDao(getClass().getSimpleName());
     }
 
     @PreDestroy
     public void stopExecutor() {
-        if (readResultsProcessingExecutor != null) {
-            readResultsProcessingExecutor.shutdownNow();
-        }
+        // shared executor is stopped together with the application context
     }
 
     protected <T> ListenableFuture<T> getFuture(ResultSetFuture future, java.util.function.Function<ResultSet, T> transformer) {
+        return getFuture(future, transformer, readResultsProcessingExecutor);
+    }
+
+    /**
+     * Converts result on the driver I/O thread that completed the query. Only use for cheap conversions
+     * that never fetch more pages, e.g. of write results or single row lookups.
+     */
+    protected <T> ListenableFuture<T> getFutureInline(ResultSetFuture future, java.util.function.Function<ResultSet, T> transformer) {
+        return getFuture(future, transformer, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Returns the results processing executor for the callback. If the executor rejects the callback, it is failed
+     * on the submitting thread, so it is always notified. Transformations fail on rejection by themselves.
+     */
+    protected Executor getCallbackExecutor(FutureCallback<?> callback) {
+        return command -> {
+            try {
+                readResultsProcessingExecutor.execute(command);
+            } catch (RejectedExecutionException e) {
+                callback.onFailure(e);
+            }
+        };
+    }
+
+    private <T> ListenableFuture<T> getFuture(ResultSetFuture future, java.util.function.Function<ResultSet, T> transformer, Executor executor) {
         return Futures.transform(future, new Function<ResultSet, T>() {
             @Nullable
             @Override
             public T apply(@Nullable ResultSet input) {
                 return transformer.apply(input);
             }
-        }, readResultsProcessingExecutor);
+        }, executor);
     }
 }
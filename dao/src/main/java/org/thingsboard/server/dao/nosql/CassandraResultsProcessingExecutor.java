@@ -0,0 +1,183 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.nosql;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.util.NoSqlDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded thread pool shared by all cassandra DAOs to process results of async queries.
+ * <p>
+ * Once the queue is full, tasks are rejected and counted. The submitting thread is usually a driver I/O thread,
+ * so rejected results are never processed by it; the result futures of the DAOs fail with
+ * {@link RejectedExecutionException} instead. Every DAO gets its own {@link DaoExecutor} view of the pool that
+ * tracks pending tasks, queue wait and processing time of that DAO.
+ */
+@Component
+@NoSqlDao
+@Slf4j
+public class CassandraResultsProcessingExecutor {
+
+    @Value("${cassandra.query.results_processing.pool_size}")
+    private int poolSize;
+
+    @Value("${cassandra.query.results_processing.queue_size}")
+    private int queueSize;
+
+    @Value("${cassandra.query.results_processing.stats_print_interval_ms}")
+    private long statsPrintIntervalMs;
+
+    private final ConcurrentMap<String, DaoExecutor> daoExecutors = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong lastStatsPrintTs = new AtomicLong();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        lastStatsPrintTs.set(System.currentTimeMillis());
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("cassandra-results-%d").setDaemon(true).build(),
+                (r, e) -> {
+                    if (e.isShutdown()) {
+                        throw new RejectedExecutionException("Cassandra results processing executor is stopped!");
+                    }
+                    rejectedCount.incrementAndGet();
+                    throw new RejectedExecutionException("Cassandra results processing queue is full!");
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public Executor forDao(String name) {
+        return daoExecutors.computeIfAbsent(name, DaoExecutor::new);
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public Map<String, DaoExecutor> getDaoExecutors() {
+        return daoExecutors;
+    }
+
+    private void printStats() {
+        long ts = System.currentTimeMillis();
+        long lastTs = lastStatsPrintTs.get();
+        if (statsPrintIntervalMs > 0 && ts - lastTs > statsPrintIntervalMs && lastStatsPrintTs.compareAndSet(lastTs, ts)) {
+            log.info("Cassandra results processing stats: queue size [{}], active threads [{}], rejected [{}]",
+                    getQueueSize(), getActiveCount(), rejectedCount.get());
+            daoExecutors.values().forEach(daoExecutor -> {
+                if (daoExecutor.getCompletedCount() > 0) {
+                    log.info("[{}] pending [{}], completed [{}], avg queue time [{}] ms, avg processing time [{}] ms",
+                            daoExecutor.getName(), daoExecutor.getPendingCount(), daoExecutor.getCompletedCount(),
+                            String.format("%.3f", daoExecutor.getAvgQueueTimeMs()),
+                            String.format("%.3f", daoExecutor.getAvgProcessingTimeMs()));
+                }
+            });
+        }
+    }
+
+    public class DaoExecutor implements Executor {
+
+        private final String name;
+        private final AtomicLong pendingCount = new AtomicLong();
+        private final AtomicLong completedCount = new AtomicLong();
+        private final AtomicLong queueTimeNanos = new AtomicLong();
+        private final AtomicLong processingTimeNanos = new AtomicLong();
+
+        private DaoExecutor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            long submitTs = System.nanoTime();
+            pendingCount.incrementAndGet();
+            try {
+                executor.execute(() -> run(command, submitTs));
+            } catch (RejectedExecutionException e) {
+                pendingCount.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private void run(Runnable command, long submitTs) {
+            long startTs = System.nanoTime();
+            pendingCount.decrementAndGet();
+            try {
+                command.run();
+            } finally {
+                long endTs = System.nanoTime();
+                queueTimeNanos.addAndGet(startTs - submitTs);
+                processingTimeNanos.addAndGet(endTs - startTs);
+                completedCount.incrementAndGet();
+                printStats();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getPendingCount() {
+            return pendingCount.get();
+        }
+
+        public long getCompletedCount() {
+            return completedCount.get();
+        }
+
+        public double getAvgQueueTimeMs() {
+            long completed = completedCount.get();
+            return completed > 0 ? queueTimeNanos.get() / 1000000.0 / completed : 0.0;
+        }
+
+        public double getAvgProcessingTimeMs() {
+            long completed = completedCount.get();
+            return completed > 0 ? processingTimeNanos.get() / 1000000.0 / completed : 0.0;
+        }
+    }
+}
@@ -124,7 +124,7 @@ public class BaseRelationDao extends CassandraAbstractAsyncDao implements Relati
                 .setString(3, to.getEntityType().name())
                 .set(4, typeGroup, relationTypeGroupCodec)
                 .setString(5, relationType);
-        return getFuture(executeAsyncRead(stmt), rs -> rs != null ? rs.one() != null : false);
+        return getFutureInline(executeAsyncRead(stmt), rs -> rs != null ? rs.one() != null : false);
     }
 
     @Override
@@ -297,7 +297,7 @@ public class BaseRelationDao extends CassandraAbstractAsyncDao implements Relati
     }
 
     private ListenableFuture<Boolean> getBooleanListenableFuture(ResultSetFuture rsFuture) {
-        return getFuture(rsFuture, rs -> rs != null ? rs.wasApplied() : false);
+        return getFutureInline(rsFuture, rs -> rs != null ? rs.wasApplied() : false);
     }
 
     private List<EntityRelation> getEntityRelations(ResultSet rs) {
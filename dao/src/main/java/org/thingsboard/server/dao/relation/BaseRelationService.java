@@ -21,6 +21,8 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -31,9 +33,11 @@ import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.dao.exception.DataValidationException;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Created by ashvayka on 28.04.17.
@@ -48,6 +52,39 @@ public class BaseRelationService implements RelationService {
     @Autowired
     private EntityService entityService;
 
+    @Value("${relations.query.max_concurrency}")
+    private int queryMaxConcurrency;
+
+    @Value("${relations.query.max_results}")
+    private int queryMaxResults;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${cache.relations.enabled}")
+    private boolean cacheEnabled;
+
+    @Value("${cache.relations.max_size}")
+    private long cacheMaxSize;
+
+    @Value("${cache.relations.time_to_live}")
+    private long cacheTtl;
+
+    @Value("${cache.relations.entity_name_time_to_live}")
+    private long cacheEntityNameTtl;
+
+    @Value("${cache.stats_print_interval_ms}")
+    private long cacheStatsPrintIntervalMs;
+
+    private RelationCache relationCache;
+
+    @PostConstruct
+    public void init() {
+        if (cacheEnabled) {
+            relationCache = new RelationCache(cacheMaxSize, cacheTtl, cacheEntityNameTtl, cacheStatsPrintIntervalMs);
+        }
+    }
+
     @Override
     public ListenableFuture<Boolean> checkRelation(EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing checkRelation [{}][{}][{}][{}]", from, to, relationType, typeGroup);
@@ -59,21 +96,21 @@ public class BaseRelationService implements RelationService {
     public ListenableFuture<Boolean> saveRelation(EntityRelation relation) {
         log.trace("Executing saveRelation [{}]", relation);
         validate(relation);
-        return relationDao.saveRelation(relation);
+        return invalidateOnSuccess(relationDao.saveRelation(relation), relation.getFrom(), relation.getTo(), relation.getTypeGroup());
     }
 
     @Override
     public ListenableFuture<Boolean> deleteRelation(EntityRelation relation) {
         log.trace("Executing deleteRelation [{}]", relation);
         validate(relation);
-        return relationDao.deleteRelation(relation);
+        return invalidateOnSuccess(relationDao.deleteRelation(relation), relation.getFrom(), relation.getTo(), relation.getTypeGroup());
     }
 
     @Override
     public ListenableFuture<Boolean> deleteRelation(EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing deleteRelation [{}][{}][{}][{}]", from, to, relationType, typeGroup);
         validate(from, to, relationType, typeGroup);
-        return relationDao.deleteRelation(from, to, relationType, typeGroup);
+        return invalidateOnSuccess(relationDao.deleteRelation(from, to, relationType, typeGroup), from, to, typeGroup);
     }
 
     @Override
@@ -98,9 +135,30 @@ public class BaseRelationService implements RelationService {
 
         ListenableFuture<Boolean> inboundFuture = Futures.transform(inboundDeletions, getListToBooleanFunction());
 
-        ListenableFuture<Boolean> outboundFuture = relationDao.deleteOutboundRelations(entity);
+        if (relationCache == null) {
+            ListenableFuture<Boolean> outboundFuture = relationDao.deleteOutboundRelations(entity);
+            return Futures.transform(Futures.allAsList(Arrays.asList(inboundFuture, outboundFuture)), getListToBooleanFunction());
+        }
+
+        // Outbound relations are fetched before deletion to invalidate cached inbound relations of their targets
+        ListenableFuture<List<EntityRelation>> outboundRelations = relationDao.findAllByFrom(entity, RelationTypeGroup.COMMON);
+        ListenableFuture<Boolean> outboundFuture = Futures.transform(outboundRelations,
+                (AsyncFunction<List<EntityRelation>, Boolean>) relations -> relationDao.deleteOutboundRelations(entity));
+
+        ListenableFuture<Boolean> result = Futures.transform(Futures.allAsList(Arrays.asList(inboundFuture, outboundFuture)), getListToBooleanFunction());
+        return Futures.transform(result, (Function<Boolean, Boolean>) deleted -> {
+            List<EntityRelation> relations = new ArrayList<>(Futures.getUnchecked(outboundRelations));
+            Futures.getUnchecked(inboundRelations).forEach(relations::addAll);
+            invalidateEntityRelations(entity, relations);
+            return deleted;
+        });
+    }
 
-        return Futures.transform(Futures.allAsList(Arrays.asList(inboundFuture, outboundFuture)), getListToBooleanFunction());
+    @Override
+    public void invalidateRelations(Collection<EntityId> entityIds) {
+        if (relationCache != null) {
+            relationCache.invalidate(entityIds);
+        }
     }
 
     @Override
@@ -108,7 +166,7 @@ public class BaseRelationService implements RelationService {
         log.trace("Executing findByFrom [{}][{}]", from, typeGroup);
         validate(from);
         validateTypeGroup(typeGroup);
-        return relationDao.findAllByFrom(from, typeGroup);
+        return findAllByFrom(from, typeGroup);
     }
 
     @Override
@@ -116,7 +174,7 @@ public class BaseRelationService implements RelationService {
         log.trace("Executing findInfoByFrom [{}][{}]", from, typeGroup);
         validate(from);
         validateTypeGroup(typeGroup);
-        ListenableFuture<List<EntityRelation>> relations = relationDao.findAllByFrom(from, typeGroup);
+        ListenableFuture<List<EntityRelation>> relations = findAllByFrom(from, typeGroup);
         ListenableFuture<List<EntityRelationInfo>> relationsInfo = Futures.transform(relations,
                 (AsyncFunction<List<EntityRelation>, List<EntityRelationInfo>>) relations1 -> {
             List<ListenableFuture<EntityRelationInfo>> futures = new ArrayList<>();
@@ -136,6 +194,9 @@ public class BaseRelationService implements RelationService {
         validate(from);
         validateType(relationType);
         validateTypeGroup(typeGroup);
+        if (isCached(typeGroup)) {
+            return filterByType(findAllByFrom(from, typeGroup), relationType);
+        }
         return relationDao.findAllByFromAndType(from, relationType, typeGroup);
     }
 
@@ -144,7 +205,7 @@ public class BaseRelationService implements RelationService {
         log.trace("Executing findByTo [{}][{}]", to, typeGroup);
         validate(to);
         validateTypeGroup(typeGroup);
-        return relationDao.findAllByTo(to, typeGroup);
+        return findAllByTo(to, typeGroup);
     }
 
     @Override
@@ -152,7 +213,7 @@ public class BaseRelationService implements RelationService {
         log.trace("Executing findInfoByTo [{}][{}]", to, typeGroup);
         validate(to);
         validateTypeGroup(typeGroup);
-        ListenableFuture<List<EntityRelation>> relations = relationDao.findAllByTo(to, typeGroup);
+        ListenableFuture<List<EntityRelation>> relations = findAllByTo(to, typeGroup);
         ListenableFuture<List<EntityRelationInfo>> relationsInfo = Futures.transform(relations,
                 (AsyncFunction<List<EntityRelation>, List<EntityRelationInfo>>) relations1 -> {
                     List<ListenableFuture<EntityRelationInfo>> futures = new ArrayList<>();
@@ -169,7 +230,7 @@ public class BaseRelationService implements RelationService {
     private ListenableFuture<EntityRelationInfo> fetchRelationInfoAsync(EntityRelation relation,
                                                                         Function<EntityRelation, EntityId> entityIdGetter,
                                                                         BiConsumer<EntityRelationInfo, String> entityNameSetter) {
-        ListenableFuture<String> entityName = entityService.fetchEntityNameAsync(entityIdGetter.apply(relation));
+        ListenableFuture<String> entityName = fetchEntityNameAsync(entityIdGetter.apply(relation));
         ListenableFuture<EntityRelationInfo> entityRelationInfo =
                 Futures.transform(entityName, (Function<String, EntityRelationInfo>) entityName1 -> {
                     EntityRelationInfo entityRelationInfo1 = new EntityRelationInfo(relation);
@@ -185,6 +246,9 @@ public class BaseRelationService implements RelationService {
         validate(to);
         validateType(relationType);
         validateTypeGroup(typeGroup);
+        if (isCached(typeGroup)) {
+            return filterByType(findAllByTo(to, typeGroup), relationType);
+        }
         return relationDao.findAllByToAndType(to, relationType, typeGroup);
     }
 
@@ -199,28 +263,23 @@ public class BaseRelationService implements RelationService {
 
         int maxLvl = params.getMaxLevel() > 0 ? params.getMaxLevel() : Integer.MAX_VALUE;
 
-        try {
-            ListenableFuture<Set<EntityRelation>> relationSet = findRelationsRecursively(params.getEntityId(), params.getDirection(), maxLvl, new ConcurrentHashMap<>());
-            return Futures.transform(relationSet, (Function<Set<EntityRelation>, List<EntityRelation>>) input -> {
-                List<EntityRelation> relations = new ArrayList<>();
-                for (EntityRelation relation : input) {
-                    if (filters == null || filters.isEmpty()) {
-                        relations.add(relation);
-                    } else {
-                        for (EntityTypeFilter filter : filters) {
-                            if (match(filter, relation, params.getDirection())) {
-                                relations.add(relation);
-                                break;
-                            }
+        ListenableFuture<Set<EntityRelation>> relationSet = findRelationsRecursively(params.getEntityId(), params.getDirection(), maxLvl);
+        return Futures.transform(relationSet, (Function<Set<EntityRelation>, List<EntityRelation>>) input -> {
+            List<EntityRelation> relations = new ArrayList<>();
+            for (EntityRelation relation : input) {
+                if (filters == null || filters.isEmpty()) {
+                    relations.add(relation);
+                } else {
+                    for (EntityTypeFilter filter : filters) {
+                        if (match(filter, relation, params.getDirection())) {
+                            relations.add(relation);
+                            break;
                         }
                     }
                 }
-                return relations;
-            });
-        } catch (Exception e) {
-            log.warn("Failed to query relations: [{}]", query, e);
-            throw new RuntimeException(e);
-        }
+            }
+            return relations;
+        });
     }
 
     @Override
@@ -311,38 +370,89 @@ public class BaseRelationService implements RelationService {
         }
     }
 
-    private ListenableFuture<Set<EntityRelation>> findRelationsRecursively(final EntityId rootId, final EntitySearchDirection direction, int lvl,
-                                                                           final ConcurrentHashMap<EntityId, Boolean> uniqueMap) throws Exception {
-        if (lvl == 0) {
-            return Futures.immediateFuture(Collections.emptySet());
+    private ListenableFuture<List<EntityRelation>> findAllByFrom(EntityId from, RelationTypeGroup typeGroup) {
+        return findCached(from, EntitySearchDirection.FROM, typeGroup, () -> relationDao.findAllByFrom(from, typeGroup));
+    }
+
+    private ListenableFuture<List<EntityRelation>> findAllByTo(EntityId to, RelationTypeGroup typeGroup) {
+        return findCached(to, EntitySearchDirection.TO, typeGroup, () -> relationDao.findAllByTo(to, typeGroup));
+    }
+
+    private ListenableFuture<List<EntityRelation>> findCached(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup,
+                                                              Supplier<ListenableFuture<List<EntityRelation>>> loader) {
+        if (!isCached(typeGroup)) {
+            return loader.get();
         }
-        lvl--;
-        //TODO: try to remove this blocking operation
-        Set<EntityRelation> children = new HashSet<>(findRelations(rootId, direction).get());
-        Set<EntityId> childrenIds = new HashSet<>();
-        for (EntityRelation childRelation : children) {
-            log.info("Found Relation: {}", childRelation);
-            EntityId childId;
-            if (direction == EntitySearchDirection.FROM) {
-                childId = childRelation.getTo();
-            } else {
-                childId = childRelation.getFrom();
-            }
-            if (uniqueMap.putIfAbsent(childId, Boolean.TRUE) == null) {
-                log.info("Adding Relation: {}", childId);
-                if (childrenIds.add(childId)) {
-                    log.info("Added Relation: {}", childId);
+        List<EntityRelation> cached = relationCache.get(entityId, direction, typeGroup);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        long stamp = relationCache.getStamp(entityId);
+        return Futures.transform(loader.get(), (Function<List<EntityRelation>, List<EntityRelation>>) relations ->
+                relationCache.put(entityId, direction, typeGroup, relations, stamp));
+    }
+
+    private ListenableFuture<List<EntityRelation>> filterByType(ListenableFuture<List<EntityRelation>> relations, String relationType) {
+        return Futures.transform(relations, (Function<List<EntityRelation>, List<EntityRelation>>) input ->
+                input.stream().filter(relation -> relationType.equals(relation.getType())).collect(Collectors.toList()));
+    }
+
+    private ListenableFuture<String> fetchEntityNameAsync(EntityId entityId) {
+        if (relationCache == null) {
+            return entityService.fetchEntityNameAsync(entityId);
+        }
+        String cached = relationCache.getName(entityId);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        long stamp = relationCache.getStamp(entityId);
+        return Futures.transform(entityService.fetchEntityNameAsync(entityId), (Function<String, String>) name -> {
+            relationCache.putName(entityId, name, stamp);
+            return name;
+        });
+    }
+
+    /**
+     * Alarm relations are not cached, since they are changed on every alarm creation and are read by alarm queries.
+     */
+    private boolean isCached(RelationTypeGroup typeGroup) {
+        return relationCache != null && typeGroup != RelationTypeGroup.ALARM;
+    }
+
+    private <T> ListenableFuture<T> invalidateOnSuccess(ListenableFuture<T> future, EntityId from, EntityId to, RelationTypeGroup typeGroup) {
+        if (!isCached(typeGroup)) {
+            return future;
+        }
+        return Futures.transform(future, (Function<T, T>) result -> {
+            relationCache.invalidate(from, EntitySearchDirection.FROM, typeGroup);
+            relationCache.invalidate(to, EntitySearchDirection.TO, typeGroup);
+            eventPublisher.publishEvent(new RelationsInvalidationEvent(Arrays.asList(from, to)));
+            return result;
+        });
+    }
+
+    private void invalidateEntityRelations(EntityId entity, List<EntityRelation> relations) {
+        Set<EntityId> entityIds = new LinkedHashSet<>();
+        entityIds.add(entity);
+        relationCache.invalidate(Collections.singletonList(entity));
+        for (EntityRelation relation : relations) {
+            if (isCached(relation.getTypeGroup())) {
+                if (entity.equals(relation.getFrom())) {
+                    relationCache.invalidate(relation.getTo(), EntitySearchDirection.TO, relation.getTypeGroup());
+                    entityIds.add(relation.getTo());
+                } else {
+                    relationCache.invalidate(relation.getFrom(), EntitySearchDirection.FROM, relation.getTypeGroup());
+                    entityIds.add(relation.getFrom());
                 }
             }
         }
-        List<ListenableFuture<Set<EntityRelation>>> futures = new ArrayList<>();
-        for (EntityId entityId : childrenIds) {
-            futures.add(findRelationsRecursively(entityId, direction, lvl, uniqueMap));
-        }
-        //TODO: try to remove this blocking operation
-        List<Set<EntityRelation>> relations = Futures.successfulAsList(futures).get();
-        relations.forEach(r -> r.forEach(d -> children.add(d)));
-        return Futures.immediateFuture(children);
+        eventPublisher.publishEvent(new RelationsInvalidationEvent(new ArrayList<>(entityIds)));
+    }
+
+    private ListenableFuture<Set<EntityRelation>> findRelationsRecursively(final EntityId rootId, final EntitySearchDirection direction, int lvl) {
+        RelationsSearch search = new RelationsSearch(direction, lvl, queryMaxConcurrency, queryMaxResults,
+                entityId -> findRelations(entityId, direction));
+        return search.start(rootId);
     }
 
     private ListenableFuture<List<EntityRelation>> findRelations(final EntityId rootId, final EntitySearchDirection direction) {
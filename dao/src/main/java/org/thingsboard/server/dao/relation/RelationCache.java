@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.relation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Data;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+import org.thingsboard.server.dao.cache.StampedCacheSupport;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local cache of relations of an entity, keyed by entity, direction and type group, and of entity names
+ * that are shown together with relations.
+ * <p>
+ * Every invalidation of an entity bumps a version stamp of the entity, and values loaded from the database are only
+ * cached if the stamp did not change during the load, see {@link StampedCacheSupport}.
+ */
+public class RelationCache {
+
+    private static final int STAMPS_COUNT = 1024;
+
+    private final Cache<RelationsKey, List<EntityRelation>> relations;
+    private final Cache<EntityId, String> names;
+    private final StampedCacheSupport support;
+
+    private final AtomicLong nameHitCount = new AtomicLong();
+    private final AtomicLong nameMissCount = new AtomicLong();
+
+    public RelationCache(long maxSize, long timeToLiveSec, long nameTimeToLiveSec, long statsPrintIntervalMs) {
+        this.relations = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS)
+                .build();
+        this.names = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(nameTimeToLiveSec, TimeUnit.SECONDS)
+                .build();
+        this.support = new StampedCacheSupport("Relation", STAMPS_COUNT, statsPrintIntervalMs,
+                () -> String.format("relations [%d], names [%d], name hits [%d], name misses [%d]",
+                        relations.size(), names.size(), nameHitCount.get(), nameMissCount.get()));
+    }
+
+    /**
+     * Returns stamp of the entity that should be passed to the put methods of values loaded from the database.
+     */
+    public long getStamp(EntityId entityId) {
+        return support.getStamp(entityId);
+    }
+
+    public List<EntityRelation> get(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup) {
+        List<EntityRelation> result = relations.getIfPresent(new RelationsKey(entityId, direction, typeGroup));
+        support.recordAccess(result != null);
+        return result;
+    }
+
+    /**
+     * Caches relations loaded from the database and returns the cached, unmodifiable copy of them.
+     */
+    public List<EntityRelation> put(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup,
+                                    List<EntityRelation> entityRelations, long stamp) {
+        List<EntityRelation> result = Collections.unmodifiableList(entityRelations);
+        RelationsKey key = new RelationsKey(entityId, direction, typeGroup);
+        support.putIfCurrent(entityId, stamp, () -> relations.put(key, result), () -> relations.invalidate(key));
+        return result;
+    }
+
+    public String getName(EntityId entityId) {
+        String result = names.getIfPresent(entityId);
+        (result != null ? nameHitCount : nameMissCount).incrementAndGet();
+        return result;
+    }
+
+    public void putName(EntityId entityId, String name, long stamp) {
+        if (name != null) {
+            support.putIfCurrent(entityId, stamp, () -> names.put(entityId, name), () -> names.invalidate(entityId));
+        }
+    }
+
+    public void invalidate(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup) {
+        support.bumpStamp(entityId);
+        relations.invalidate(new RelationsKey(entityId, direction, typeGroup));
+    }
+
+    /**
+     * Invalidates relations of the entities in all directions and type groups, as well as their names.
+     */
+    public void invalidate(Collection<EntityId> entityIds) {
+        for (EntityId entityId : entityIds) {
+            support.bumpStamp(entityId);
+            for (EntitySearchDirection direction : EntitySearchDirection.values()) {
+                for (RelationTypeGroup typeGroup : RelationTypeGroup.values()) {
+                    relations.invalidate(new RelationsKey(entityId, direction, typeGroup));
+                }
+            }
+            names.invalidate(entityId);
+        }
+    }
+
+    @Data
+    private static class RelationsKey {
+        private final EntityId entityId;
+        private final EntitySearchDirection direction;
+        private final RelationTypeGroup typeGroup;
+    }
+}
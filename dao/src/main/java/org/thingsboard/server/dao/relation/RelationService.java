@@ -21,6 +21,7 @@ import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.relation.EntityRelationInfo;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -54,6 +55,8 @@ public interface RelationService {
 
     ListenableFuture<List<EntityRelationInfo>> findInfoByQuery(EntityRelationsQuery query);
 
+    void invalidateRelations(Collection<EntityId> entityIds);
+
 //    TODO: This method may be useful for some validations in the future
 //    ListenableFuture<Boolean> checkRecursiveRelation(EntityId from, EntityId to);
 
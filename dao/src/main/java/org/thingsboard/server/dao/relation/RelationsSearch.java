@@ -0,0 +1,190 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.relation;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Asynchronous breadth-first search of relations, starting from the root entity.
+ * <p>
+ * Entities of a level are queried in parallel, with at most <code>maxConcurrency</code> queries in flight, and
+ * the next level is started once all queries of the current level are done. Every entity is queried at most once.
+ * The search stops at <code>maxLevel</code>, or once <code>maxResults</code> relations were found, if positive.
+ * No thread is blocked while waiting for queries.
+ */
+@Slf4j
+class RelationsSearch {
+
+    private final EntitySearchDirection direction;
+    private final int maxLevel;
+    private final int maxConcurrency;
+    private final int maxResults;
+    private final Function<EntityId, ListenableFuture<List<EntityRelation>>> fetchFunction;
+
+    private final SettableFuture<Set<EntityRelation>> result = SettableFuture.create();
+    private final Set<EntityRelation> relations = new LinkedHashSet<>();
+    private final Set<EntityId> visited = new HashSet<>();
+    private Iterator<EntityId> frontier;
+    private List<EntityId> nextFrontier = new ArrayList<>();
+    private int level;
+    private int inFlight;
+    private boolean done;
+    private boolean stepping;
+
+    RelationsSearch(EntitySearchDirection direction, int maxLevel, int maxConcurrency, int maxResults,
+                    Function<EntityId, ListenableFuture<List<EntityRelation>>> fetchFunction) {
+        this.direction = direction;
+        this.maxLevel = maxLevel;
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.maxResults = maxResults;
+        this.fetchFunction = fetchFunction;
+    }
+
+    ListenableFuture<Set<EntityRelation>> start(EntityId rootId) {
+        if (maxLevel <= 0) {
+            return Futures.immediateFuture(Collections.emptySet());
+        }
+        synchronized (this) {
+            visited.add(rootId);
+            frontier = Collections.singletonList(rootId).iterator();
+        }
+        step();
+        return result;
+    }
+
+    /**
+     * Starts queries while below the concurrency limit and advances to the next level once the current one is done.
+     * Callbacks of futures that are already completed run within this method, so re-entrant calls return immediately
+     * and the outer call re-evaluates the state on its next iteration.
+     */
+    private void step() {
+        synchronized (this) {
+            if (stepping) {
+                return;
+            }
+            stepping = true;
+        }
+        while (true) {
+            EntityId entityId = null;
+            boolean complete = false;
+            synchronized (this) {
+                if (done) {
+                    stepping = false;
+                    return;
+                }
+                if (inFlight < maxConcurrency && frontier.hasNext()) {
+                    entityId = frontier.next();
+                    inFlight++;
+                } else if (inFlight == 0 && !frontier.hasNext()) {
+                    level++;
+                    if (nextFrontier.isEmpty() || level >= maxLevel) {
+                        done = true;
+                        complete = true;
+                        stepping = false;
+                    } else {
+                        frontier = nextFrontier.iterator();
+                        nextFrontier = new ArrayList<>();
+                        continue;
+                    }
+                } else {
+                    stepping = false;
+                    return;
+                }
+            }
+            if (complete) {
+                result.set(relations);
+                return;
+            }
+            fetch(entityId);
+        }
+    }
+
+    private void fetch(EntityId entityId) {
+        ListenableFuture<List<EntityRelation>> future;
+        try {
+            future = fetchFunction.apply(entityId);
+        } catch (Exception e) {
+            onFailure(e);
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<List<EntityRelation>>() {
+            @Override
+            public void onSuccess(List<EntityRelation> found) {
+                onFetched(found);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                RelationsSearch.this.onFailure(t);
+            }
+        });
+    }
+
+    private void onFetched(List<EntityRelation> found) {
+        boolean complete = false;
+        synchronized (this) {
+            inFlight--;
+            if (done) {
+                return;
+            }
+            if (found != null) {
+                for (EntityRelation relation : found) {
+                    relations.add(relation);
+                    EntityId childId = direction == EntitySearchDirection.FROM ? relation.getTo() : relation.getFrom();
+                    if (visited.add(childId)) {
+                        nextFrontier.add(childId);
+                    }
+                    if (maxResults > 0 && relations.size() >= maxResults) {
+                        log.debug("Relations search stopped at level [{}] after [{}] relations", level, relations.size());
+                        done = true;
+                        complete = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if (complete) {
+            result.set(relations);
+        } else {
+            step();
+        }
+    }
+
+    private void onFailure(Throwable t) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+        }
+        result.setException(t);
+    }
+}
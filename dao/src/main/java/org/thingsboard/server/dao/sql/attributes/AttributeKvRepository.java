@@ -21,6 +21,7 @@ import org.thingsboard.server.dao.util.SqlDao;
 import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
 import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,5 +31,9 @@ public interface AttributeKvRepository extends CrudRepository<AttributeKvEntity,
     List<AttributeKvEntity> findAllByEntityTypeAndEntityIdAndAttributeType(EntityType entityType,
                                                                            UUID entityId,
                                                                            String attributeType);
+
+    List<AttributeKvEntity> findAllByEntityTypeAndEntityIdAndAttributeTypeIn(EntityType entityType,
+                                                                             UUID entityId,
+                                                                             Collection<String> attributeTypes);
 }
 
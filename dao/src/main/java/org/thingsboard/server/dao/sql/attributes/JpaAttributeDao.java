@@ -29,8 +29,11 @@ import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
 import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -80,6 +83,20 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                                 attributeType))));
     }
 
+    @Override
+    public ListenableFuture<Map<String, List<AttributeKvEntry>>> findAll(EntityId entityId, Collection<String> attributeTypes) {
+        return service.submit(() -> {
+            Map<String, List<AttributeKvEntry>> result = new HashMap<>();
+            attributeTypes.forEach(attributeType -> result.put(attributeType, new ArrayList<>()));
+            attributeKvRepository.findAllByEntityTypeAndEntityIdAndAttributeTypeIn(
+                    entityId.getEntityType(),
+                    entityId.getId(),
+                    attributeTypes)
+                    .forEach(entity -> result.get(entity.getAttributeType()).add(entity.toData()));
+            return result;
+        });
+    }
+
     @Override
     public ListenableFuture<Void> save(EntityId entityId, String attributeType, AttributeKvEntry attribute) {
         AttributeKvEntity entity = new AttributeKvEntity();
@@ -16,6 +16,8 @@
 package org.thingsboard.server.dao.sql.event;
 
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -88,6 +90,32 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
         return save(new EventEntity(event), true);
     }
 
+    @Override
+    public Event save(Event event, long ttl) {
+        return save(event);
+    }
+
+    @Override
+    public Optional<Event> saveIfNotExists(Event event, long ttl) {
+        return saveIfNotExists(event);
+    }
+
+    @Override
+    public ListenableFuture<List<Event>> saveAllAsync(List<Event> events, long ttl) {
+        return service.submit(() -> {
+            List<EventEntity> entities = new ArrayList<>(events.size());
+            for (Event event : events) {
+                if (event.getId() == null) {
+                    event.setId(new EventId(UUIDs.timeBased()));
+                }
+                EventEntity entity = new EventEntity(event);
+                prepare(entity);
+                entities.add(entity);
+            }
+            return DaoUtil.convertDataList(Lists.newArrayList(eventRepository.save(entities)));
+        });
+    }
+
     @Override
     public Event findEvent(UUID tenantId, EntityId entityId, String eventType, String eventUid) {
         return DaoUtil.getData(eventRepository.findByTenantIdAndEntityTypeAndEntityIdAndEventTypeAndEventUid(
@@ -110,6 +138,16 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
 
     public Optional<Event> save(EventEntity entity, boolean ifNotExists) {
         log.debug("Save event [{}] ", entity);
+        prepare(entity);
+        if (ifNotExists &&
+                eventRepository.findByTenantIdAndEntityTypeAndEntityIdAndEventTypeAndEventUid(
+                        entity.getTenantId(), entity.getEntityType(), entity.getEntityId(), entity.getEventType(), entity.getEventUid()) != null) {
+            return Optional.empty();
+        }
+        return Optional.of(DaoUtil.getData(eventRepository.save(entity)));
+    }
+
+    private void prepare(EventEntity entity) {
         if (entity.getTenantId() == null) {
             log.trace("Save system event with predefined id {}", systemTenantId);
             entity.setTenantId(systemTenantId);
@@ -120,11 +158,6 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
         if (StringUtils.isEmpty(entity.getEventUid())) {
             entity.setEventUid(entity.getId().toString());
         }
-        if (ifNotExists &&
-                eventRepository.findByTenantIdAndEntityTypeAndEntityId(entity.getTenantId(), entity.getEntityType(), entity.getEntityId()) != null) {
-            return Optional.empty();
-        }
-        return Optional.of(DaoUtil.getData(eventRepository.save(entity)));
     }
 
     private Specification<EventEntity> getEntityFieldsSpec(UUID tenantId, EntityId entityId, String eventType) {
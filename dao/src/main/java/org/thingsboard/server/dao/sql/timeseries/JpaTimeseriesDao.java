@@ -21,6 +21,9 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -34,16 +37,24 @@ import org.thingsboard.server.dao.model.sql.TsKvLatestCompositeKey;
 import org.thingsboard.server.dao.model.sql.TsKvLatestEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
+import org.thingsboard.server.dao.timeseries.TsKvRollupBucket;
+import org.thingsboard.server.dao.timeseries.TsKvRollupDao;
+import org.thingsboard.server.dao.timeseries.TsKvRollupManager;
+import org.thingsboard.server.dao.timeseries.TsKvRollupSource;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 @SqlDao
-public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService implements TimeseriesDao {
+public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService implements TimeseriesDao, TsKvRollupSource, ApplicationListener<ContextClosedEvent> {
 
     @Autowired
     private TsKvRepository tsKvRepository;
@@ -51,6 +62,44 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
     @Autowired
     private TsKvLatestRepository tsKvLatestRepository;
 
+    @Autowired
+    private TsKvRollupDao rollupDao;
+
+    @Value("${ts_rollup.enabled}")
+    private boolean rollupEnabled;
+
+    @Value("${ts_rollup.steps}")
+    private String rollupSteps;
+
+    @Value("${ts_rollup.flush_interval_ms}")
+    private long rollupFlushIntervalMs;
+
+    private TsKvRollupManager rollupManager;
+
+    @PostConstruct
+    public void init() {
+        if (rollupEnabled) {
+            rollupManager = new TsKvRollupManager(rollupDao, this, TsKvRollupManager.parseSteps(rollupSteps), false,
+                    rollupFlushIntervalMs);
+            rollupManager.start();
+        }
+    }
+
+    /**
+     * Rollups are flushed once the context is closing, while repositories are still available.
+     */
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        stop();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rollupManager != null) {
+            rollupManager.stop();
+        }
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, List<TsKvQuery> queries) {
         List<ListenableFuture<List<TsKvEntry>>> futures = queries
@@ -75,74 +124,123 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
         } else {
-            long stepTs = query.getStartTs();
-            List<ListenableFuture<TsKvEntry>> futures = new ArrayList<>();
-            while (stepTs < query.getEndTs()) {
-                long startTs = stepTs;
-                long endTs = stepTs + query.getInterval();
-                long ts = startTs + (endTs - startTs) / 2;
-                futures.add(findAndAggregateAsync(entityId, query.getKey(), startTs, endTs, ts, query.getAggregation()));
-                stepTs = endTs;
+            if (rollupManager != null) {
+                long interval = Math.max(query.getInterval(), 1);
+                Optional<Long> rollupStep = rollupManager.findStep(query.getStartTs(), query.getEndTs(), interval);
+                if (rollupStep.isPresent()) {
+                    return rollupManager.findAllAsync(entityId, query.getKey(), query.getAggregation(),
+                            query.getStartTs(), query.getEndTs(), interval, rollupStep.get());
+                }
             }
-            return Futures.allAsList(futures);
+            return service.submit(() -> findAndAggregate(entityId, query));
         }
     }
 
-    private ListenableFuture<TsKvEntry> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
-        TsKvEntity entity;
-        switch (aggregation) {
+    /**
+     * Aggregates all intervals of the query with a single GROUP BY statement.
+     * Each row of the result is [bucket, aggregated values...], where bucket is (ts - startTs) / interval.
+     * Empty intervals are not returned by the database and are skipped.
+     */
+    private List<TsKvEntry> findAndAggregate(EntityId entityId, TsKvQuery query) {
+        String id = entityId.getId().toString();
+        String entityType = entityId.getEntityType().name();
+        long startTs = query.getStartTs();
+        long endTs = query.getEndTs();
+        long interval = Math.max(query.getInterval(), 1);
+        List<Object[]> rows;
+        switch (query.getAggregation()) {
             case AVG:
-                entity = tsKvRepository.findAvg(
-                            entityId.getId(),
-                            entityId.getEntityType(),
-                            key,
-                            startTs,
-                            endTs);
-
+                rows = tsKvRepository.findAvgByInterval(id, entityType, query.getKey(), startTs, endTs, interval);
                 break;
             case MAX:
-                entity = tsKvRepository.findMax(
-                        entityId.getId(),
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
+                rows = tsKvRepository.findMaxByInterval(id, entityType, query.getKey(), startTs, endTs, interval);
                 break;
             case MIN:
-                entity = tsKvRepository.findMin(
-                        entityId.getId(),
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
+                rows = tsKvRepository.findMinByInterval(id, entityType, query.getKey(), startTs, endTs, interval);
                 break;
             case SUM:
-                entity = tsKvRepository.findSum(
-                        entityId.getId(),
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
+                rows = tsKvRepository.findSumByInterval(id, entityType, query.getKey(), startTs, endTs, interval);
                 break;
             case COUNT:
-                entity = tsKvRepository.findCount(
-                        entityId.getId(),
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
+                rows = tsKvRepository.findCountByInterval(id, entityType, query.getKey(), startTs, endTs, interval);
+                break;
+            default:
+                return Collections.emptyList();
+        }
+        List<TsKvEntry> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            TsKvEntity entity = toAggregatedEntity(query.getAggregation(), row);
+            if (entity != null) {
+                long bucketStartTs = startTs + toLong(row[0]) * interval;
+                entity.setKey(query.getKey());
+                entity.setTs(bucketStartTs + interval / 2);
+                result.add(entity.toData());
+            }
+        }
+        return result;
+    }
 
+    @Override
+    public ListenableFuture<TsKvRollupBucket> aggregate(EntityId entityId, String key, long bucketTs, long fromTs, long toTs) {
+        return service.submit(() -> {
+            Object[] row = tsKvRepository.findRollup(entityId.getId().toString(), entityId.getEntityType().name(), key, fromTs, toTs).get(0);
+            TsKvRollupBucket bucket = new TsKvRollupBucket(bucketTs);
+            bucket.setBoolCount(toLong(row[0]));
+            bucket.setStrCount(toLong(row[1]));
+            bucket.setLongCount(toLong(row[2]));
+            bucket.setDoubleCount(toLong(row[3]));
+            if (bucket.getLongCount() > 0) {
+                bucket.setLongSum(toLong(row[4]));
+                bucket.setLongMin(toLong(row[10]));
+                bucket.setLongMax(toLong(row[11]));
+            }
+            if (bucket.getDoubleCount() > 0) {
+                bucket.setDoubleSum(toDouble(row[5]));
+                bucket.setDoubleMin(toDouble(row[12]));
+                bucket.setDoubleMax(toDouble(row[13]));
+            }
+            if (bucket.getBoolCount() > 0) {
+                bucket.setBoolMin((Boolean) row[6]);
+                bucket.setBoolMax((Boolean) row[7]);
+            }
+            bucket.setStrMin((String) row[8]);
+            bucket.setStrMax((String) row[9]);
+            return bucket;
+        });
+    }
+
+    private static TsKvEntity toAggregatedEntity(Aggregation aggregation, Object[] row) {
+        TsKvEntity entity;
+        switch (aggregation) {
+            case AVG:
+                entity = new TsKvEntity(toDouble(row[1]), toDouble(row[2]));
+                break;
+            case SUM:
+                entity = new TsKvEntity(toLong(row[1]), toDouble(row[2]));
+                break;
+            case MIN:
+            case MAX:
+                entity = new TsKvEntity((String) row[1], toLong(row[2]), toDouble(row[3]));
+                break;
+            case COUNT:
+                entity = new TsKvEntity(toLong(row[1]), toLong(row[2]), toLong(row[3]), toLong(row[4]));
                 break;
             default:
-                entity = null;
+                return null;
         }
-        if (entity != null){
-            entity.setTs(ts);
+        if (entity.getStrValue() == null && entity.getLongValue() == null
+                && entity.getDoubleValue() == null && entity.getBooleanValue() == null) {
+            return null;
         }
-        return service.submit(() -> DaoUtil.getData(entity));
+        return entity;
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    private static Double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : null;
     }
 
     private ListenableFuture<List<TsKvEntry>> findAllAsyncWithLimit(EntityId entityId, TsKvQuery query) {
@@ -188,10 +286,14 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
         entity.setDoubleValue(tsKvEntry.getDoubleValue().orElse(null));
         entity.setLongValue(tsKvEntry.getLongValue().orElse(null));
         entity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
-        return service.submit(() -> {
+        ListenableFuture<Void> future = service.submit(() -> {
             tsKvRepository.save(entity);
             return null;
         });
+        if (rollupManager != null) {
+            rollupManager.update(entityId, tsKvEntry, future);
+        }
+        return future;
     }
 
     @Override
@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.timeseries;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.dao.DaoUtil;
+import org.thingsboard.server.dao.model.sql.TsKvRollupEntity;
+import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
+import org.thingsboard.server.dao.timeseries.TsKvRollupBucket;
+import org.thingsboard.server.dao.timeseries.TsKvRollupDao;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import java.util.List;
+
+@Component
+@SqlDao
+public class JpaTsKvRollupDao extends JpaAbstractDaoListeningExecutorService implements TsKvRollupDao {
+
+    @Autowired
+    private TsKvRollupRepository tsKvRollupRepository;
+
+    @Override
+    public ListenableFuture<List<TsKvRollupBucket>> findAll(EntityId entityId, String key, long step, long startTs, long endTs) {
+        return service.submit(() ->
+                DaoUtil.convertDataList(
+                        tsKvRollupRepository.findAllByInterval(
+                                entityId.getId(),
+                                entityId.getEntityType(),
+                                key,
+                                step,
+                                startTs,
+                                endTs)));
+    }
+
+    @Override
+    public ListenableFuture<Void> save(EntityId entityId, String key, long step, TsKvRollupBucket bucket, long version) {
+        TsKvRollupEntity e = new TsKvRollupEntity(entityId.getEntityType(), entityId.getId(), key, step, bucket, version);
+        // string values are ignored without string count, empty strings avoid binding of untyped nulls
+        return service.submit(() -> {
+            tsKvRollupRepository.saveIfNewer(e.getEntityType().name(), e.getEntityId().toString(), e.getKey(), e.getStep(), e.getTs(),
+                    e.getBoolCount(), e.getStrCount(), e.getLongCount(), e.getDoubleCount(), e.getLongSum(), e.getDoubleSum(),
+                    e.isBoolMin(), e.isBoolMax(), Strings.nullToEmpty(e.getStrMin()), Strings.nullToEmpty(e.getStrMax()),
+                    e.getLongMin(), e.getLongMax(), e.getDoubleMin(), e.getDoubleMax(), e.getVersion());
+            return null;
+        });
+    }
+}
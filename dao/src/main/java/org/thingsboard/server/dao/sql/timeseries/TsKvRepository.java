@@ -87,4 +87,71 @@ public interface TsKvRepository extends CrudRepository<TsKvEntity, TsKvComposite
                        @Param("entityKey") String entityKey,
                        @Param("startTs") long startTs,
                        @Param("endTs") long endTs);
+
+    @Query(value = "SELECT (ts - :startTs) / :interval AS bucket, " +
+            "MAX(str_v) AS str_v, MAX(long_v) AS long_v, MAX(dbl_v) AS dbl_v FROM ts_kv " +
+            "WHERE entity_id = CAST(:entityId AS uuid) AND entity_type = :entityType " +
+            "AND key = :entityKey AND ts > :startTs AND ts < :endTs GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> findMaxByInterval(@Param("entityId") String entityId,
+                                     @Param("entityType") String entityType,
+                                     @Param("entityKey") String entityKey,
+                                     @Param("startTs") long startTs,
+                                     @Param("endTs") long endTs,
+                                     @Param("interval") long interval);
+
+    @Query(value = "SELECT (ts - :startTs) / :interval AS bucket, " +
+            "MIN(str_v) AS str_v, MIN(long_v) AS long_v, MIN(dbl_v) AS dbl_v FROM ts_kv " +
+            "WHERE entity_id = CAST(:entityId AS uuid) AND entity_type = :entityType " +
+            "AND key = :entityKey AND ts > :startTs AND ts < :endTs GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> findMinByInterval(@Param("entityId") String entityId,
+                                     @Param("entityType") String entityType,
+                                     @Param("entityKey") String entityKey,
+                                     @Param("startTs") long startTs,
+                                     @Param("endTs") long endTs,
+                                     @Param("interval") long interval);
+
+    @Query(value = "SELECT (ts - :startTs) / :interval AS bucket, " +
+            "COUNT(bool_v) AS bool_v, COUNT(str_v) AS str_v, COUNT(long_v) AS long_v, COUNT(dbl_v) AS dbl_v FROM ts_kv " +
+            "WHERE entity_id = CAST(:entityId AS uuid) AND entity_type = :entityType " +
+            "AND key = :entityKey AND ts > :startTs AND ts < :endTs GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> findCountByInterval(@Param("entityId") String entityId,
+                                       @Param("entityType") String entityType,
+                                       @Param("entityKey") String entityKey,
+                                       @Param("startTs") long startTs,
+                                       @Param("endTs") long endTs,
+                                       @Param("interval") long interval);
+
+    @Query(value = "SELECT (ts - :startTs) / :interval AS bucket, " +
+            "AVG(long_v) AS long_v, AVG(dbl_v) AS dbl_v FROM ts_kv " +
+            "WHERE entity_id = CAST(:entityId AS uuid) AND entity_type = :entityType " +
+            "AND key = :entityKey AND ts > :startTs AND ts < :endTs GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> findAvgByInterval(@Param("entityId") String entityId,
+                                     @Param("entityType") String entityType,
+                                     @Param("entityKey") String entityKey,
+                                     @Param("startTs") long startTs,
+                                     @Param("endTs") long endTs,
+                                     @Param("interval") long interval);
+
+    @Query(value = "SELECT (ts - :startTs) / :interval AS bucket, " +
+            "SUM(long_v) AS long_v, SUM(dbl_v) AS dbl_v FROM ts_kv " +
+            "WHERE entity_id = CAST(:entityId AS uuid) AND entity_type = :entityType " +
+            "AND key = :entityKey AND ts > :startTs AND ts < :endTs GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> findSumByInterval(@Param("entityId") String entityId,
+                                     @Param("entityType") String entityType,
+                                     @Param("entityKey") String entityKey,
+                                     @Param("startTs") long startTs,
+                                     @Param("endTs") long endTs,
+                                     @Param("interval") long interval);
+
+    @Query(value = "SELECT COUNT(bool_v) AS bool_count, COUNT(str_v) AS str_count, COUNT(long_v) AS long_count, " +
+            "COUNT(dbl_v) AS dbl_count, SUM(long_v) AS long_sum, SUM(dbl_v) AS dbl_sum, " +
+            "BOOL_AND(bool_v) AS bool_min, BOOL_OR(bool_v) AS bool_max, MIN(str_v) AS str_min, MAX(str_v) AS str_max, " +
+            "MIN(long_v) AS long_min, MAX(long_v) AS long_max, MIN(dbl_v) AS dbl_min, MAX(dbl_v) AS dbl_max FROM ts_kv " +
+            "WHERE entity_id = CAST(:entityId AS uuid) AND entity_type = :entityType " +
+            "AND key = :entityKey AND ts >= :startTs AND ts < :endTs", nativeQuery = true)
+    List<Object[]> findRollup(@Param("entityId") String entityId,
+                              @Param("entityType") String entityType,
+                              @Param("entityKey") String entityKey,
+                              @Param("startTs") long startTs,
+                              @Param("endTs") long endTs);
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.timeseries;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.sql.TsKvRollupCompositeKey;
+import org.thingsboard.server.dao.model.sql.TsKvRollupEntity;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.UUID;
+
+@SqlDao
+public interface TsKvRollupRepository extends CrudRepository<TsKvRollupEntity, TsKvRollupCompositeKey> {
+
+    @Query("SELECT r FROM TsKvRollupEntity r WHERE r.entityId = :entityId " +
+            "AND r.entityType = :entityType AND r.key = :entityKey AND r.step = :step " +
+            "AND r.ts >= :startTs AND r.ts < :endTs ORDER BY r.ts ASC")
+    List<TsKvRollupEntity> findAllByInterval(@Param("entityId") UUID entityId,
+                                             @Param("entityType") EntityType entityType,
+                                             @Param("entityKey") String key,
+                                             @Param("step") long step,
+                                             @Param("startTs") long startTs,
+                                             @Param("endTs") long endTs);
+
+    /**
+     * Inserts or overwrites the bucket unless the stored bucket has a greater version.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO ts_kv_rollup (" +
+            "entity_type, entity_id, key, step, ts, bool_cnt, str_cnt, long_cnt, dbl_cnt, long_sum, " +
+            "dbl_sum, bool_min, bool_max, str_min, str_max, long_min, long_max, dbl_min, dbl_max, version) VALUES (" +
+            ":entityType, CAST(:entityId AS uuid), :entityKey, :step, :ts, :boolCount, :strCount, " +
+            ":longCount, :doubleCount, :longSum, :doubleSum, :boolMin, :boolMax, :strMin, " +
+            ":strMax, :longMin, :longMax, :doubleMin, :doubleMax, :version) " +
+            "ON CONFLICT (entity_type, entity_id, key, step, ts) DO UPDATE SET " +
+            "bool_cnt = EXCLUDED.bool_cnt, str_cnt = EXCLUDED.str_cnt, long_cnt = EXCLUDED.long_cnt, dbl_cnt = EXCLUDED.dbl_cnt, " +
+            "long_sum = EXCLUDED.long_sum, dbl_sum = EXCLUDED.dbl_sum, bool_min = EXCLUDED.bool_min, bool_max = EXCLUDED.bool_max, " +
+            "str_min = EXCLUDED.str_min, str_max = EXCLUDED.str_max, long_min = EXCLUDED.long_min, long_max = EXCLUDED.long_max, " +
+            "dbl_min = EXCLUDED.dbl_min, dbl_max = EXCLUDED.dbl_max, version = EXCLUDED.version " +
+            "WHERE COALESCE(ts_kv_rollup.version, 0) < EXCLUDED.version", nativeQuery = true)
+    void saveIfNewer(@Param("entityType") String entityType,
+                     @Param("entityId") String entityId,
+                     @Param("entityKey") String entityKey,
+                     @Param("step") long step,
+                     @Param("ts") long ts,
+                     @Param("boolCount") long boolCount,
+                     @Param("strCount") long strCount,
+                     @Param("longCount") long longCount,
+                     @Param("doubleCount") long doubleCount,
+                     @Param("longSum") long longSum,
+                     @Param("doubleSum") double doubleSum,
+                     @Param("boolMin") boolean boolMin,
+                     @Param("boolMax") boolean boolMax,
+                     @Param("strMin") String strMin,
+                     @Param("strMax") String strMax,
+                     @Param("longMin") long longMin,
+                     @Param("longMax") long longMax,
+                     @Param("doubleMin") double doubleMin,
+                     @Param("doubleMax") double doubleMax,
+                     @Param("version") long version);
+}
@@ -20,6 +20,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
@@ -27,6 +28,7 @@ import org.thingsboard.server.common.data.kv.TsKvQuery;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.service.Validator;
 
+import javax.annotation.PostConstruct;
 import java.util.Collection;
 import java.util.List;
 
@@ -44,6 +46,27 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Autowired
     private TimeseriesDao timeseriesDao;
 
+    @Value("${cache.ts_latest.enabled}")
+    private boolean latestCacheEnabled;
+
+    @Value("${cache.ts_latest.max_size}")
+    private long latestCacheMaxSize;
+
+    @Value("${cache.ts_latest.time_to_live}")
+    private long latestCacheTtl;
+
+    @Value("${cache.stats_print_interval_ms}")
+    private long latestCacheStatsPrintIntervalMs;
+
+    private TsKvLatestCache latestCache;
+
+    @PostConstruct
+    public void init() {
+        if (latestCacheEnabled) {
+            latestCache = new TsKvLatestCache(latestCacheMaxSize, latestCacheTtl, latestCacheStatsPrintIntervalMs);
+        }
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAll(EntityId entityId, List<TsKvQuery> queries) {
         validate(entityId);
@@ -56,14 +79,25 @@ public class BaseTimeseriesService implements TimeseriesService {
         validate(entityId);
         List<ListenableFuture<TsKvEntry>> futures = Lists.newArrayListWithExpectedSize(keys.size());
         keys.forEach(key -> Validator.validateString(key, "Incorrect key " + key));
-        keys.forEach(key -> futures.add(timeseriesDao.findLatest(entityId, key)));
+        keys.forEach(key -> futures.add(findLatest(entityId, key)));
         return Futures.allAsList(futures);
     }
 
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(EntityId entityId) {
         validate(entityId);
-        return timeseriesDao.findAllLatest(entityId);
+        if (latestCache == null) {
+            return timeseriesDao.findAllLatest(entityId);
+        }
+        List<TsKvEntry> cached = latestCache.getAll(entityId);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        long stamp = latestCache.getStamp(entityId);
+        return Futures.transform(timeseriesDao.findAllLatest(entityId), (List<TsKvEntry> entries) -> {
+            latestCache.putAll(entityId, entries, stamp);
+            return entries;
+        });
     }
 
     @Override
@@ -89,12 +123,45 @@ public class BaseTimeseriesService implements TimeseriesService {
         return Futures.allAsList(futures);
     }
 
+    @Override
+    public void invalidateLatest(EntityId entityId, Collection<String> keys) {
+        if (latestCache != null) {
+            latestCache.invalidate(entityId, keys);
+        }
+    }
+
+    private ListenableFuture<TsKvEntry> findLatest(EntityId entityId, String key) {
+        if (latestCache == null) {
+            return timeseriesDao.findLatest(entityId, key);
+        }
+        TsKvEntry cached = latestCache.get(entityId, key);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        long stamp = latestCache.getStamp(entityId);
+        return Futures.transform(timeseriesDao.findLatest(entityId, key), (TsKvEntry entry) -> {
+            latestCache.put(entityId, entry, stamp);
+            return entry;
+        });
+    }
+
     private void saveAndRegisterFutures(List<ListenableFuture<Void>> futures, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         futures.add(timeseriesDao.savePartition(entityId, tsKvEntry.getTs(), tsKvEntry.getKey(), ttl));
-        futures.add(timeseriesDao.saveLatest(entityId, tsKvEntry));
+        futures.add(saveLatest(entityId, tsKvEntry));
         futures.add(timeseriesDao.save(entityId, tsKvEntry, ttl));
     }
 
+    private ListenableFuture<Void> saveLatest(EntityId entityId, TsKvEntry tsKvEntry) {
+        ListenableFuture<Void> future = timeseriesDao.saveLatest(entityId, tsKvEntry);
+        if (latestCache == null) {
+            return future;
+        }
+        return Futures.transform(future, (Void v) -> {
+            latestCache.update(entityId, tsKvEntry);
+            return v;
+        });
+    }
+
     private static void validate(EntityId entityId) {
         Validator.validateEntityId(entityId, "Incorrect entityId " + entityId);
     }
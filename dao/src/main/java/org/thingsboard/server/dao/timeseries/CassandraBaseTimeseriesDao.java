@@ -19,11 +19,14 @@ import com.datastax.driver.core.*;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -40,8 +43,11 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
@@ -52,7 +58,7 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 @Component
 @Slf4j
 @NoSqlDao
-public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implements TimeseriesDao {
+public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implements TimeseriesDao, TsKvRollupSource {
 
     @Value("${cassandra.query.min_aggregation_step_ms}")
     private int minAggregationStepMs;
@@ -60,14 +66,63 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
     @Value("${cassandra.query.ts_key_value_partitioning}")
     private String partitioning;
 
+    @Value("${cassandra.query.ts_write_buffer.enabled}")
+    private boolean writeBufferEnabled;
+
+    @Value("${cassandra.query.ts_write_buffer.queue_size}")
+    private int writeBufferQueueSize;
+
+    @Value("${cassandra.query.ts_write_buffer.batch_size}")
+    private int writeBufferBatchSize;
+
+    @Value("${cassandra.query.ts_write_buffer.linger_ms}")
+    private long writeBufferLingerMs;
+
+    @Value("${cassandra.query.ts_write_buffer.stats_print_interval_ms}")
+    private long writeBufferStatsPrintIntervalMs;
+
+    @Value("${cassandra.query.ts_partitions_cache.enabled}")
+    private boolean partitionsCacheEnabled;
+
+    @Value("${cassandra.query.ts_partitions_cache.max_size}")
+    private long partitionsCacheMaxSize;
+
+    @Value("${cassandra.query.ts_partitions_cache.time_to_live}")
+    private long partitionsCacheTtl;
+
+    @Value("${cassandra.query.ts_streaming_aggregation.enabled}")
+    private boolean streamingAggregationEnabled;
+
+    @Value("${cassandra.query.ts_streaming_aggregation.min_intervals}")
+    private int streamingAggregationMinIntervals;
+
+    @Value("${ts_rollup.enabled}")
+    private boolean rollupEnabled;
+
+    @Value("${ts_rollup.steps}")
+    private String rollupSteps;
+
+    @Value("${ts_rollup.flush_interval_ms}")
+    private long rollupFlushIntervalMs;
+
+    @Autowired
+    private TsKvRollupDao rollupDao;
+
     private TsPartitionDate tsFormat;
 
+    private TsKvBatchWriter batchWriter;
+
+    private Cache<TsKvBatchKey, Boolean> partitionsCache;
+
+    private TsKvRollupManager rollupManager;
+
     private PreparedStatement partitionInsertStmt;
     private PreparedStatement partitionInsertTtlStmt;
     private PreparedStatement[] latestInsertStmts;
     private PreparedStatement[] saveStmts;
     private PreparedStatement[] saveTtlStmts;
     private PreparedStatement[] fetchStmts;
+    private PreparedStatement fetchRawStmt;
     private PreparedStatement findLatestStmt;
     private PreparedStatement findAllLatestStmt;
 
@@ -82,10 +137,33 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
             log.warn("Incorrect configuration of partitioning {}", partitioning);
             throw new RuntimeException("Failed to parse partitioning property: " + partitioning + "!");
         }
+        if (writeBufferEnabled) {
+            batchWriter = new TsKvBatchWriter(this::executeAsyncWrite, writeBufferQueueSize, writeBufferBatchSize,
+                    writeBufferLingerMs, writeBufferStatsPrintIntervalMs);
+            batchWriter.start();
+        }
+        if (partitionsCacheEnabled) {
+            partitionsCache = CacheBuilder.newBuilder()
+                    .maximumSize(partitionsCacheMaxSize)
+                    .expireAfterWrite(partitionsCacheTtl, TimeUnit.SECONDS)
+                    .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                    .build();
+        }
+        if (rollupEnabled) {
+            rollupManager = new TsKvRollupManager(rollupDao, this, TsKvRollupManager.parseSteps(rollupSteps), true,
+                    rollupFlushIntervalMs);
+            rollupManager.start();
+        }
     }
 
     @PreDestroy
     public void stop() {
+        if (rollupManager != null) {
+            rollupManager.stop();
+        }
+        if (batchWriter != null) {
+            batchWriter.stop();
+        }
         super.stopExecutor();
     }
 
@@ -112,6 +190,16 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
             return findAllAsyncWithLimit(entityId, query);
         } else {
             long step = Math.max(query.getInterval(), minAggregationStepMs);
+            if (rollupManager != null) {
+                Optional<Long> rollupStep = rollupManager.findStep(query.getStartTs(), query.getEndTs(), step);
+                if (rollupStep.isPresent()) {
+                    return rollupManager.findAllAsync(entityId, query.getKey(), query.getAggregation(),
+                            query.getStartTs(), query.getEndTs(), step, rollupStep.get());
+                }
+            }
+            if (streamingAggregationEnabled && TsKvIntervalAggregator.getIntervalsCount(query.getStartTs(), query.getEndTs(), step) >= streamingAggregationMinIntervals) {
+                return findAndAggregateAllIntervalsAsync(entityId, query, step);
+            }
             long stepTs = query.getStartTs();
             List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
             while (stepTs < query.getEndTs()) {
@@ -141,7 +229,7 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         final SimpleListenableFuture<List<TsKvEntry>> resultFuture = new SimpleListenableFuture<>();
         final ListenableFuture<List<Long>> partitionsListFuture = Futures.transform(partitionsFuture, getPartitionsArrayFunction(), readResultsProcessingExecutor);
 
-        Futures.addCallback(partitionsListFuture, new FutureCallback<List<Long>>() {
+        FutureCallback<List<Long>> callback = new FutureCallback<List<Long>>() {
             @Override
             public void onSuccess(@Nullable List<Long> partitions) {
                 TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
@@ -151,8 +239,10 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
             @Override
             public void onFailure(Throwable t) {
                 log.error("[{}][{}] Failed to fetch partitions for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), minPartition, maxPartition, t);
+                resultFuture.setException(t);
             }
-        }, readResultsProcessingExecutor);
+        };
+        Futures.addCallback(partitionsListFuture, callback, getCallbackExecutor(callback));
 
         return resultFuture;
     }
@@ -176,7 +266,7 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
             stmt.setLong(5, cursor.getEndTs());
             stmt.setInt(6, cursor.getCurrentLimit());
 
-            Futures.addCallback(executeAsyncRead(stmt), new FutureCallback<ResultSet>() {
+            FutureCallback<ResultSet> callback = new FutureCallback<ResultSet>() {
                 @Override
                 public void onSuccess(@Nullable ResultSet result) {
                     cursor.addData(convertResultToTsKvEntryList(result.all()));
@@ -186,8 +276,10 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
                 @Override
                 public void onFailure(Throwable t) {
                     log.error("[{}][{}] Failed to fetch data for query {}-{}", stmt, t);
+                    resultFuture.setException(t);
                 }
-            }, readResultsProcessingExecutor);
+            };
+            Futures.addCallback(executeAsyncRead(stmt), callback, getCallbackExecutor(callback));
         }
     }
 
@@ -208,6 +300,105 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         return Futures.transform(aggregationChunks, new AggregatePartitionsFunction(aggregation, key, ts), readResultsProcessingExecutor);
     }
 
+    /**
+     * Fetches raw rows of every partition once for the whole query range and aggregates them into all intervals
+     * in a single pass.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAndAggregateAllIntervalsAsync(EntityId entityId, TsKvQuery query, long step) {
+        TsKvIntervalAggregator aggregator = new TsKvIntervalAggregator(query.getAggregation(), query.getKey(), query.getStartTs(), query.getEndTs(), step);
+        return Futures.transform(readRawRowsAsync(entityId, query.getKey(), query.getStartTs(), aggregator.getEndTs(), aggregator::update),
+                (Function<Void, List<TsKvEntry>>) v -> aggregator.toEntries(), readResultsProcessingExecutor);
+    }
+
+    @Override
+    public ListenableFuture<TsKvRollupBucket> aggregate(EntityId entityId, String key, long bucketTs, long fromTs, long toTs) {
+        TsKvRollupBucket bucket = new TsKvRollupBucket(bucketTs);
+        return Futures.transform(readRawRowsAsync(entityId, key, fromTs - 1, toTs - 1, row -> {
+            KvEntry kvEntry = toKvEntry(row, key);
+            if (kvEntry != null) {
+                bucket.add(kvEntry);
+            }
+        }), (Function<Void, TsKvRollupBucket>) v -> bucket, readResultsProcessingExecutor);
+    }
+
+    /**
+     * Passes raw rows of the key with <code>startTs &lt; ts &lt;= endTs</code> to the consumer. Partitions are read
+     * sequentially page by page, so only one page of rows is kept in memory.
+     */
+    private ListenableFuture<Void> readRawRowsAsync(EntityId entityId, String key, long startTs, long endTs, Consumer<Row> consumer) {
+        long minPartition = toPartitionTs(startTs);
+        long maxPartition = toPartitionTs(endTs);
+
+        ResultSetFuture partitionsFuture = fetchPartitions(entityId, key, minPartition, maxPartition);
+
+        final SimpleListenableFuture<Void> resultFuture = new SimpleListenableFuture<>();
+        final ListenableFuture<List<Long>> partitionsListFuture = Futures.transform(partitionsFuture, getPartitionsArrayFunction(), readResultsProcessingExecutor);
+
+        FutureCallback<List<Long>> callback = new FutureCallback<List<Long>>() {
+            @Override
+            public void onSuccess(@Nullable List<Long> partitions) {
+                readPartitionsSequentially(entityId, key, startTs, endTs, consumer, partitions.iterator(), resultFuture);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("[{}][{}] Failed to fetch partitions for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), minPartition, maxPartition, t);
+                resultFuture.setException(t);
+            }
+        };
+        Futures.addCallback(partitionsListFuture, callback, getCallbackExecutor(callback));
+
+        return resultFuture;
+    }
+
+    private void readPartitionsSequentially(EntityId entityId, String key, long startTs, long endTs, Consumer<Row> consumer,
+                                            Iterator<Long> partitions, SimpleListenableFuture<Void> resultFuture) {
+        if (!partitions.hasNext()) {
+            resultFuture.set(null);
+        } else {
+            long partition = partitions.next();
+            log.trace("Fetching data for partition [{}] for entityType {} and entityId {}", partition, entityId.getEntityType(), entityId.getId());
+            BoundStatement stmt = getFetchRawStmt().bind();
+            stmt.setString(0, entityId.getEntityType().name());
+            stmt.setUUID(1, entityId.getId());
+            stmt.setString(2, key);
+            stmt.setLong(3, partition);
+            stmt.setLong(4, startTs);
+            stmt.setLong(5, endTs);
+            log.debug("Generated query [{}] for entityType {} and entityId {}", stmt, entityId.getEntityType(), entityId.getId());
+            readPagesSequentially(executeAsyncRead(stmt), entityId, key, startTs, endTs, consumer, partitions, resultFuture);
+        }
+    }
+
+    private void readPagesSequentially(ListenableFuture<ResultSet> pageFuture, EntityId entityId, String key, long startTs, long endTs,
+                                       Consumer<Row> consumer, Iterator<Long> partitions, SimpleListenableFuture<Void> resultFuture) {
+        FutureCallback<ResultSet> callback = new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(@Nullable ResultSet rs) {
+                try {
+                    int available = rs.getAvailableWithoutFetching();
+                    for (int i = 0; i < available; i++) {
+                        consumer.accept(rs.one());
+                    }
+                    if (rs.isFullyFetched()) {
+                        readPartitionsSequentially(entityId, key, startTs, endTs, consumer, partitions, resultFuture);
+                    } else {
+                        readPagesSequentially(rs.fetchMoreResults(), entityId, key, startTs, endTs, consumer, partitions, resultFuture);
+                    }
+                } catch (Throwable t) {
+                    onFailure(t);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("[{}][{}] Failed to read data of key {} for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), key, startTs, endTs, t);
+                resultFuture.setException(t);
+            }
+        };
+        Futures.addCallback(pageFuture, callback, getCallbackExecutor(callback));
+    }
+
     private Function<ResultSet, List<Long>> getPartitionsArrayFunction() {
         return rows -> rows.all().stream()
                 .map(row -> row.getLong(ModelConstants.PARTITION_COLUMN)).collect(Collectors.toList());
@@ -245,7 +436,7 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         stmt.setUUID(1, entityId.getId());
         stmt.setString(2, key);
         log.debug("Generated query [{}] for entityType {} and entityId {}", stmt, entityId.getEntityType(), entityId.getId());
-        return getFuture(executeAsyncRead(stmt), rs -> convertResultToTsKvEntry(rs.one()));
+        return getFutureInline(executeAsyncRead(stmt), rs -> convertResultToTsKvEntry(rs.one()));
     }
 
     @Override
@@ -271,12 +462,22 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         if (ttl > 0) {
             stmt.setInt(6, (int) ttl);
         }
-        return getFuture(executeAsyncWrite(stmt), rs -> null);
+        TsKvBatchKey batchKey = new TsKvBatchKey(ModelConstants.TS_KV_CF, entityId.getEntityType().name(), entityId.getId(), tsKvEntry.getKey(), partition);
+        ListenableFuture<Void> future = writeAsync(batchKey, null, 0L, stmt);
+        if (rollupManager != null) {
+            rollupManager.update(entityId, tsKvEntry, future);
+        }
+        return future;
     }
 
     @Override
     public ListenableFuture<Void> savePartition(EntityId entityId, long tsKvEntryTs, String key, long ttl) {
         long partition = toPartitionTs(tsKvEntryTs);
+        TsKvBatchKey batchKey = new TsKvBatchKey(ModelConstants.TS_KV_PARTITIONS_CF, entityId.getEntityType().name(), entityId.getId(), key, partition);
+        if (partitionsCache != null && partitionsCache.getIfPresent(batchKey) != null) {
+            log.trace("Partition {} for the entity [{}-{}] and key {} is already saved", partition, entityId.getEntityType(), entityId.getId(), key);
+            return Futures.immediateFuture(null);
+        }
         log.debug("Saving partition {} for the entity [{}-{}] and key {}", partition, entityId.getEntityType(), entityId.getId(), key);
         BoundStatement stmt = (ttl == 0 ? getPartitionInsertStmt() : getPartitionInsertTtlStmt()).bind();
         stmt = stmt.setString(0, entityId.getEntityType().name())
@@ -284,9 +485,26 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
                 .setLong(2, partition)
                 .setString(3, key);
         if (ttl > 0) {
-            stmt.setInt(4, (int) ttl);
+            // Cached partition is not re-inserted until the cache entry expires, so the partition row
+            // has to outlive any data row written with the same ttl during that period.
+            long partitionTtl = partitionsCache != null ? ttl + partitionsCacheTtl : ttl;
+            stmt.setInt(4, (int) Math.min(partitionTtl, Integer.MAX_VALUE));
+        }
+        ListenableFuture<Void> future = writeAsync(batchKey, partition, 0L, stmt);
+        if (partitionsCache != null) {
+            Futures.addCallback(future, new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(@Nullable Void result) {
+                    partitionsCache.put(batchKey, Boolean.TRUE);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.warn("[{}][{}] Failed to save partition {} for key {}", entityId.getEntityType(), entityId.getId(), partition, key, t);
+                }
+            });
         }
-        return getFuture(executeAsyncWrite(stmt), rs -> null);
+        return future;
     }
 
     @Override
@@ -298,7 +516,16 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
                 .setString(2, tsKvEntry.getKey())
                 .setLong(3, tsKvEntry.getTs());
         addValue(tsKvEntry, stmt, 4);
-        return getFuture(executeAsyncWrite(stmt), rs -> null);
+        TsKvBatchKey batchKey = new TsKvBatchKey(ModelConstants.TS_KV_LATEST_CF, entityId.getEntityType().name(), entityId.getId(), null, 0L);
+        return writeAsync(batchKey, tsKvEntry.getKey(), tsKvEntry.getTs(), stmt);
+    }
+
+    private ListenableFuture<Void> writeAsync(TsKvBatchKey batchKey, Object rowKey, long version, Statement stmt) {
+        if (batchWriter != null) {
+            return batchWriter.add(batchKey, rowKey, version, stmt);
+        } else {
+            return getFutureInline(executeAsyncWrite(stmt), rs -> null);
+        }
     }
 
     private List<TsKvEntry> convertResultToTsKvEntryList(List<Row> rows) {
@@ -411,6 +638,25 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         return fetchStmts[aggType.ordinal()];
     }
 
+    private PreparedStatement getFetchRawStmt() {
+        if (fetchRawStmt == null) {
+            fetchRawStmt = getSession().prepare("SELECT " +
+                    ModelConstants.TS_COLUMN + "," +
+                    ModelConstants.LONG_VALUE_COLUMN + "," +
+                    ModelConstants.DOUBLE_VALUE_COLUMN + "," +
+                    ModelConstants.BOOLEAN_VALUE_COLUMN + "," +
+                    ModelConstants.STRING_VALUE_COLUMN + " " +
+                    "FROM " + ModelConstants.TS_KV_CF + " " +
+                    "WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ? " +
+                    "AND " + ModelConstants.ENTITY_ID_COLUMN + " = ? " +
+                    "AND " + ModelConstants.KEY_COLUMN + " = ? " +
+                    "AND " + ModelConstants.PARTITION_COLUMN + " = ? " +
+                    "AND " + ModelConstants.TS_COLUMN + " > ? " +
+                    "AND " + ModelConstants.TS_COLUMN + " <= ?");
+        }
+        return fetchRawStmt;
+    }
+
     private PreparedStatement getLatestStmt(DataType dataType) {
         if (latestInsertStmts == null) {
             latestInsertStmts = new PreparedStatement[DataType.values().length];
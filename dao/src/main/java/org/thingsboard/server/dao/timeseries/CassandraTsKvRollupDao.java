@@ -0,0 +1,208 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.nosql.CassandraAbstractAsyncDao;
+import org.thingsboard.server.dao.util.NoSqlDao;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+@NoSqlDao
+public class CassandraTsKvRollupDao extends CassandraAbstractAsyncDao implements TsKvRollupDao {
+
+    /**
+     * Amount of buckets stored in a single cassandra partition.
+     */
+    private static final long PARTITION_SIZE = 1000;
+
+    private static final String[] NUMERIC_COLUMNS = new String[]{
+            ModelConstants.BOOLEAN_COUNT_COLUMN, ModelConstants.STRING_COUNT_COLUMN,
+            ModelConstants.LONG_COUNT_COLUMN, ModelConstants.DOUBLE_COUNT_COLUMN,
+            ModelConstants.LONG_SUM_COLUMN, ModelConstants.DOUBLE_SUM_COLUMN,
+            ModelConstants.BOOLEAN_MIN_COLUMN, ModelConstants.BOOLEAN_MAX_COLUMN,
+            ModelConstants.LONG_MIN_COLUMN, ModelConstants.LONG_MAX_COLUMN,
+            ModelConstants.DOUBLE_MIN_COLUMN, ModelConstants.DOUBLE_MAX_COLUMN};
+
+    private PreparedStatement saveStmt;
+    private PreparedStatement saveWithStringsStmt;
+    private PreparedStatement findAllStmt;
+
+    @PostConstruct
+    public void init() {
+        super.startExecutor();
+    }
+
+    @PreDestroy
+    public void stop() {
+        super.stopExecutor();
+    }
+
+    @Override
+    public ListenableFuture<List<TsKvRollupBucket>> findAll(EntityId entityId, String key, long step, long startTs, long endTs) {
+        List<ListenableFuture<List<TsKvRollupBucket>>> futures = new ArrayList<>();
+        if (startTs < endTs) {
+            long lastPartition = toPartition(endTs - 1, step);
+            for (long partition = toPartition(startTs, step); partition <= lastPartition; partition += step * PARTITION_SIZE) {
+                BoundStatement stmt = getFindAllStmt().bind();
+                stmt.setString(0, entityId.getEntityType().name());
+                stmt.setUUID(1, entityId.getId());
+                stmt.setString(2, key);
+                stmt.setLong(3, step);
+                stmt.setLong(4, partition);
+                stmt.setLong(5, startTs);
+                stmt.setLong(6, endTs);
+                log.trace("Generated query [{}] for entityType {} and entityId {}", stmt, entityId.getEntityType(), entityId.getId());
+                futures.add(getFuture(executeAsyncRead(stmt), this::toBuckets));
+            }
+        }
+        return Futures.transform(Futures.allAsList(futures), new Function<List<List<TsKvRollupBucket>>, List<TsKvRollupBucket>>() {
+            @Nullable
+            @Override
+            public List<TsKvRollupBucket> apply(@Nullable List<List<TsKvRollupBucket>> results) {
+                List<TsKvRollupBucket> buckets = new ArrayList<>();
+                results.forEach(buckets::addAll);
+                return buckets;
+            }
+        }, readResultsProcessingExecutor);
+    }
+
+    @Override
+    public ListenableFuture<Void> save(EntityId entityId, String key, long step, TsKvRollupBucket bucket, long version) {
+        boolean withStrings = bucket.getStrCount() > 0;
+        BoundStatement stmt = (withStrings ? getSaveWithStringsStmt() : getSaveStmt()).bind();
+        stmt.setString(0, entityId.getEntityType().name());
+        stmt.setUUID(1, entityId.getId());
+        stmt.setString(2, key);
+        stmt.setLong(3, step);
+        stmt.setLong(4, toPartition(bucket.getTs(), step));
+        stmt.setLong(5, bucket.getTs());
+        stmt.setLong(6, bucket.getBoolCount());
+        stmt.setLong(7, bucket.getStrCount());
+        stmt.setLong(8, bucket.getLongCount());
+        stmt.setLong(9, bucket.getDoubleCount());
+        stmt.setLong(10, bucket.getLongSum());
+        stmt.setDouble(11, bucket.getDoubleSum());
+        stmt.setBool(12, bucket.isBoolMin());
+        stmt.setBool(13, bucket.isBoolMax());
+        stmt.setLong(14, bucket.getLongMin());
+        stmt.setLong(15, bucket.getLongMax());
+        stmt.setDouble(16, bucket.getDoubleMin());
+        stmt.setDouble(17, bucket.getDoubleMax());
+        if (withStrings) {
+            stmt.setString(18, bucket.getStrMin());
+            stmt.setString(19, bucket.getStrMax());
+        }
+        stmt.setLong(withStrings ? 20 : 18, TimeUnit.MILLISECONDS.toMicros(version));
+        log.trace("Generated save stmt [{}] for entityType {} and entityId {}", stmt, entityId.getEntityType(), entityId.getId());
+        return getFutureInline(executeAsyncWrite(stmt), rs -> null);
+    }
+
+    private static long toPartition(long ts, long step) {
+        long partitionDuration = step * PARTITION_SIZE;
+        return ts - Math.floorMod(ts, partitionDuration);
+    }
+
+    private List<TsKvRollupBucket> toBuckets(ResultSet rs) {
+        List<TsKvRollupBucket> buckets = new ArrayList<>();
+        for (Row row : rs.all()) {
+            buckets.add(toBucket(row));
+        }
+        return buckets;
+    }
+
+    private TsKvRollupBucket toBucket(Row row) {
+        TsKvRollupBucket bucket = new TsKvRollupBucket(row.getLong(ModelConstants.TS_COLUMN));
+        bucket.setBoolCount(row.getLong(ModelConstants.BOOLEAN_COUNT_COLUMN));
+        bucket.setStrCount(row.getLong(ModelConstants.STRING_COUNT_COLUMN));
+        bucket.setLongCount(row.getLong(ModelConstants.LONG_COUNT_COLUMN));
+        bucket.setDoubleCount(row.getLong(ModelConstants.DOUBLE_COUNT_COLUMN));
+        bucket.setLongSum(row.getLong(ModelConstants.LONG_SUM_COLUMN));
+        bucket.setDoubleSum(row.getDouble(ModelConstants.DOUBLE_SUM_COLUMN));
+        bucket.setBoolMin(row.getBool(ModelConstants.BOOLEAN_MIN_COLUMN));
+        bucket.setBoolMax(row.getBool(ModelConstants.BOOLEAN_MAX_COLUMN));
+        bucket.setStrMin(row.getString(ModelConstants.STRING_MIN_COLUMN));
+        bucket.setStrMax(row.getString(ModelConstants.STRING_MAX_COLUMN));
+        bucket.setLongMin(row.getLong(ModelConstants.LONG_MIN_COLUMN));
+        bucket.setLongMax(row.getLong(ModelConstants.LONG_MAX_COLUMN));
+        bucket.setDoubleMin(row.getDouble(ModelConstants.DOUBLE_MIN_COLUMN));
+        bucket.setDoubleMax(row.getDouble(ModelConstants.DOUBLE_MAX_COLUMN));
+        return bucket;
+    }
+
+    private PreparedStatement getSaveStmt() {
+        if (saveStmt == null) {
+            saveStmt = getSession().prepare(getSaveQuery(false));
+        }
+        return saveStmt;
+    }
+
+    private PreparedStatement getSaveWithStringsStmt() {
+        if (saveWithStringsStmt == null) {
+            saveWithStringsStmt = getSession().prepare(getSaveQuery(true));
+        }
+        return saveWithStringsStmt;
+    }
+
+    private static String getSaveQuery(boolean withStrings) {
+        int valuesCount = NUMERIC_COLUMNS.length + (withStrings ? 8 : 6);
+        StringBuilder values = new StringBuilder("?");
+        for (int i = 1; i < valuesCount; i++) {
+            values.append(", ?");
+        }
+        return "INSERT INTO " + ModelConstants.TS_KV_ROLLUP_CF +
+                "(" + ModelConstants.ENTITY_TYPE_COLUMN +
+                "," + ModelConstants.ENTITY_ID_COLUMN +
+                "," + ModelConstants.KEY_COLUMN +
+                "," + ModelConstants.ROLLUP_STEP_COLUMN +
+                "," + ModelConstants.PARTITION_COLUMN +
+                "," + ModelConstants.TS_COLUMN +
+                "," + String.join(",", NUMERIC_COLUMNS) +
+                (withStrings ? "," + ModelConstants.STRING_MIN_COLUMN + "," + ModelConstants.STRING_MAX_COLUMN : "") + ")" +
+                " VALUES(" + values + ") USING TIMESTAMP ?";
+    }
+
+    private PreparedStatement getFindAllStmt() {
+        if (findAllStmt == null) {
+            findAllStmt = getSession().prepare("SELECT * FROM " + ModelConstants.TS_KV_ROLLUP_CF +
+                    " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ? " +
+                    "AND " + ModelConstants.ENTITY_ID_COLUMN + " = ? " +
+                    "AND " + ModelConstants.KEY_COLUMN + " = ? " +
+                    "AND " + ModelConstants.ROLLUP_STEP_COLUMN + " = ? " +
+                    "AND " + ModelConstants.PARTITION_COLUMN + " = ? " +
+                    "AND " + ModelConstants.TS_COLUMN + " >= ? " +
+                    "AND " + ModelConstants.TS_COLUMN + " < ?");
+        }
+        return findAllStmt;
+    }
+}
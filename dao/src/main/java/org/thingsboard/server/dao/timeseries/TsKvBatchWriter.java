@@ -0,0 +1,229 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.dao.util.WriteBehindDispatcher;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Write-behind buffer for timeseries inserts.
+ * <p>
+ * Statements are queued and drained by a {@link WriteBehindDispatcher}. Every drained chunk is grouped by
+ * {@link TsKvBatchKey}, so only statements that target the same cassandra partition end up in the same
+ * UNLOGGED batch. Writes to the same row (e.g. latest value or partition of a key) are executed only once per chunk,
+ * the write with the highest version wins and the rest complete together with it.
+ */
+@Slf4j
+public class TsKvBatchWriter {
+
+    private final Function<Statement, ResultSetFuture> executor;
+    private final WriteBehindDispatcher<TsKvWriteRequest> dispatcher;
+    private final int batchSize;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong statementCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+
+    public TsKvBatchWriter(Function<Statement, ResultSetFuture> executor, int queueSize, int batchSize, long lingerMs, long statsPrintIntervalMs) {
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.dispatcher = new WriteBehindDispatcher<>("Timeseries", queueSize, batchSize * 100, lingerMs, this::flush,
+                (chunk, t) -> chunk.forEach(request -> request.future.setException(t)), statsPrintIntervalMs, this::getStats);
+    }
+
+    public void start() {
+        dispatcher.start();
+    }
+
+    public void stop() {
+        dispatcher.stop();
+    }
+
+    public ListenableFuture<Void> add(TsKvBatchKey key, Object rowKey, long version, Statement stmt) {
+        TsKvWriteRequest request = new TsKvWriteRequest(key, rowKey, version, stmt);
+        if (!dispatcher.offer(request)) {
+            overflowCount.incrementAndGet();
+            log.trace("Write buffer is full, executing statement directly: {}", stmt);
+            execute(stmt, request.future);
+        }
+        return request.future;
+    }
+
+    public int getQueueSize() {
+        return dispatcher.getQueueSize();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getStatementCount() {
+        return statementCount.get();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    private void flush(List<TsKvWriteRequest> chunk) {
+        Map<TsKvBatchKey, List<TsKvWriteRequest>> groups = new LinkedHashMap<>();
+        for (TsKvWriteRequest request : chunk) {
+            List<TsKvWriteRequest> group = groups.computeIfAbsent(request.key, k -> new ArrayList<>());
+            int duplicateIdx = request.rowKey != null ? findDuplicate(group, request.rowKey) : -1;
+            if (duplicateIdx >= 0) {
+                deduplicatedCount.incrementAndGet();
+                TsKvWriteRequest duplicate = group.get(duplicateIdx);
+                if (request.version >= duplicate.version) {
+                    group.set(duplicateIdx, request);
+                    Futures.addCallback(request.future, new ResultPropagator(duplicate.future));
+                } else {
+                    Futures.addCallback(duplicate.future, new ResultPropagator(request.future));
+                }
+            } else {
+                group.add(request);
+            }
+        }
+        for (List<TsKvWriteRequest> group : groups.values()) {
+            for (int i = 0; i < group.size(); i += batchSize) {
+                executeBatch(group.subList(i, Math.min(i + batchSize, group.size())));
+            }
+        }
+    }
+
+    private int findDuplicate(List<TsKvWriteRequest> group, Object rowKey) {
+        for (int i = 0; i < group.size(); i++) {
+            if (rowKey.equals(group.get(i).rowKey)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void executeBatch(List<TsKvWriteRequest> requests) {
+        int size = requests.size();
+        statementCount.addAndGet(size);
+        batchCount.incrementAndGet();
+        maxBatchSize.accumulateAndGet(size, Math::max);
+        if (size == 1) {
+            TsKvWriteRequest request = requests.get(0);
+            execute(request.stmt, request.future);
+        } else {
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            List<SettableFuture<Void>> futures = new ArrayList<>(size);
+            for (TsKvWriteRequest request : requests) {
+                batch.add(request.stmt);
+                futures.add(request.future);
+            }
+            Futures.addCallback(executor.apply(batch), new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(@Nullable ResultSet result) {
+                    futures.forEach(future -> future.set(null));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.warn("Failed to execute batch of {} timeseries statements", size, t);
+                    futures.forEach(future -> future.setException(t));
+                }
+            });
+        }
+    }
+
+    private void execute(Statement stmt, SettableFuture<Void> future) {
+        try {
+            Futures.addCallback(executor.apply(stmt), new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(@Nullable ResultSet result) {
+                    future.set(null);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    future.setException(t);
+                }
+            });
+        } catch (Throwable t) {
+            future.setException(t);
+        }
+    }
+
+    private String getStats() {
+        long batches = batchCount.get();
+        long statements = statementCount.get();
+        return String.format("batches [%d], statements [%d], avg batch size [%d], max batch size [%d], deduplicated [%d], overflow [%d]",
+                batches, statements, batches > 0 ? statements / batches : 0, maxBatchSize.get(), deduplicatedCount.get(), overflowCount.get());
+    }
+
+    private static class TsKvWriteRequest {
+        private final TsKvBatchKey key;
+        private final Object rowKey;
+        private final long version;
+        private final Statement stmt;
+        private final SettableFuture<Void> future = SettableFuture.create();
+
+        private TsKvWriteRequest(TsKvBatchKey key, Object rowKey, long version, Statement stmt) {
+            this.key = key;
+            this.rowKey = rowKey;
+            this.version = version;
+            this.stmt = stmt;
+        }
+    }
+
+    private static class ResultPropagator implements FutureCallback<Void> {
+        private final SettableFuture<Void> target;
+
+        private ResultPropagator(SettableFuture<Void> target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onSuccess(@Nullable Void result) {
+            target.set(null);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            target.setException(t);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.driver.core.Row;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass aggregation of raw timeseries rows into all intervals of a query.
+ * <p>
+ * Interval <code>i</code> covers <code>(startTs + i * step, startTs + (i + 1) * step]</code>, the same bounds
+ * that are used by per interval cassandra queries. Values are accumulated into primitive arrays, so rows are
+ * never materialized or boxed. Rows are expected in the column order of
+ * <code>SELECT ts, long_v, dbl_v, bool_v, str_v</code>.
+ */
+public class TsKvIntervalAggregator {
+
+    static final int TS_POS = 0;
+    static final int LONG_POS = 1;
+    static final int DOUBLE_POS = 2;
+    static final int BOOL_POS = 3;
+    static final int STR_POS = 4;
+
+    private final Aggregation aggregation;
+    private final String key;
+    private final long startTs;
+    private final long step;
+    private final int intervals;
+
+    private final long[] longCounts;
+    private final long[] doubleCounts;
+    private final long[] boolCounts;
+    private final long[] strCounts;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    private final boolean[] boolValues;
+    private final String[] strValues;
+
+    public TsKvIntervalAggregator(Aggregation aggregation, String key, long startTs, long endTs, long step) {
+        this.aggregation = aggregation;
+        this.key = key;
+        this.startTs = startTs;
+        this.step = step;
+        this.intervals = getIntervalsCount(startTs, endTs, step);
+        this.longCounts = new long[intervals];
+        this.doubleCounts = new long[intervals];
+        this.boolCounts = new long[intervals];
+        this.strCounts = new long[intervals];
+        if (aggregation == Aggregation.COUNT) {
+            this.longValues = null;
+            this.doubleValues = null;
+        } else {
+            this.longValues = new long[intervals];
+            this.doubleValues = new double[intervals];
+        }
+        if (aggregation == Aggregation.MIN || aggregation == Aggregation.MAX) {
+            this.boolValues = new boolean[intervals];
+            this.strValues = new String[intervals];
+        } else {
+            this.boolValues = null;
+            this.strValues = null;
+        }
+    }
+
+    public static int getIntervalsCount(long startTs, long endTs, long step) {
+        long count = (endTs - startTs + step - 1) / step;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many intervals in range " + startTs + "-" + endTs + " with step " + step + "!");
+        }
+        return (int) Math.max(count, 0);
+    }
+
+    /**
+     * End of the last interval. Can be greater than end of the query if the range is not a multiple of the step.
+     */
+    public long getEndTs() {
+        return startTs + intervals * step;
+    }
+
+    public void update(Row row) {
+        long ts = row.getLong(TS_POS);
+        if (ts <= startTs) {
+            return;
+        }
+        long idx = (ts - startTs - 1) / step;
+        if (idx >= intervals) {
+            return;
+        }
+        int i = (int) idx;
+        if (!row.isNull(LONG_POS)) {
+            updateLong(i, row.getLong(LONG_POS));
+        } else if (!row.isNull(DOUBLE_POS)) {
+            updateDouble(i, row.getDouble(DOUBLE_POS));
+        } else if (!row.isNull(BOOL_POS)) {
+            updateBoolean(i, row.getBool(BOOL_POS));
+        } else if (!row.isNull(STR_POS)) {
+            updateString(i, row.getString(STR_POS));
+        }
+    }
+
+    private void updateLong(int i, long value) {
+        long count = longCounts[i]++;
+        switch (aggregation) {
+            case SUM:
+            case AVG:
+                longValues[i] += value;
+                break;
+            case MIN:
+                longValues[i] = count == 0 ? value : Math.min(longValues[i], value);
+                break;
+            case MAX:
+                longValues[i] = count == 0 ? value : Math.max(longValues[i], value);
+                break;
+        }
+    }
+
+    private void updateDouble(int i, double value) {
+        long count = doubleCounts[i]++;
+        switch (aggregation) {
+            case SUM:
+            case AVG:
+                doubleValues[i] += value;
+                break;
+            case MIN:
+                doubleValues[i] = count == 0 ? value : Math.min(doubleValues[i], value);
+                break;
+            case MAX:
+                doubleValues[i] = count == 0 ? value : Math.max(doubleValues[i], value);
+                break;
+        }
+    }
+
+    private void updateBoolean(int i, boolean value) {
+        long count = boolCounts[i]++;
+        if (aggregation == Aggregation.MIN) {
+            boolValues[i] = count == 0 ? value : boolValues[i] && value;
+        } else if (aggregation == Aggregation.MAX) {
+            boolValues[i] = count == 0 ? value : boolValues[i] || value;
+        }
+    }
+
+    private void updateString(int i, String value) {
+        strCounts[i]++;
+        if (aggregation == Aggregation.MIN) {
+            if (strValues[i] == null || value.compareTo(strValues[i]) < 0) {
+                strValues[i] = value;
+            }
+        } else if (aggregation == Aggregation.MAX) {
+            if (strValues[i] == null || value.compareTo(strValues[i]) > 0) {
+                strValues[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Converts accumulated values to entries with the middle of the interval as a timestamp.
+     * Intervals without data are skipped. If an interval contains values of different types,
+     * long values take precedence over double, boolean and string values, in that order.
+     */
+    public List<TsKvEntry> toEntries() {
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 0; i < intervals; i++) {
+            KvEntry kvEntry = toKvEntry(i);
+            if (kvEntry != null) {
+                entries.add(new BasicTsKvEntry(startTs + i * step + step / 2, kvEntry));
+            }
+        }
+        return entries;
+    }
+
+    private KvEntry toKvEntry(int i) {
+        if (longCounts[i] > 0) {
+            return toKvEntry(longCounts[i], longValues != null ? longValues[i] : 0L);
+        } else if (doubleCounts[i] > 0) {
+            return toKvEntry(doubleCounts[i], doubleValues != null ? doubleValues[i] : 0.0);
+        } else if (boolCounts[i] > 0) {
+            return toKvEntry(boolCounts[i], boolValues != null && boolValues[i]);
+        } else if (strCounts[i] > 0) {
+            return toKvEntry(strCounts[i], strValues != null ? strValues[i] : null);
+        } else {
+            return null;
+        }
+    }
+
+    private KvEntry toKvEntry(long count, long value) {
+        switch (aggregation) {
+            case COUNT:
+                return new LongDataEntry(key, count);
+            case AVG:
+                return new LongDataEntry(key, value / count);
+            default:
+                return new LongDataEntry(key, value);
+        }
+    }
+
+    private KvEntry toKvEntry(long count, double value) {
+        switch (aggregation) {
+            case COUNT:
+                return new LongDataEntry(key, count);
+            case AVG:
+                return new DoubleDataEntry(key, value / count);
+            default:
+                return new DoubleDataEntry(key, value);
+        }
+    }
+
+    private KvEntry toKvEntry(long count, boolean value) {
+        switch (aggregation) {
+            case COUNT:
+                return new LongDataEntry(key, count);
+            case MIN:
+            case MAX:
+                return new BooleanDataEntry(key, value);
+            default:
+                return null;
+        }
+    }
+
+    private KvEntry toKvEntry(long count, String value) {
+        switch (aggregation) {
+            case COUNT:
+                return new LongDataEntry(key, count);
+            case MIN:
+            case MAX:
+                return new StringDataEntry(key, value);
+            default:
+                return null;
+        }
+    }
+}
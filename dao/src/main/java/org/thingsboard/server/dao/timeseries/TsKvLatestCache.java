@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Data;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.cache.StampedCacheSupport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache of latest timeseries values keyed by entity and key.
+ * <p>
+ * Values are updated on save and loaded on cache miss. Every update or invalidation of an entity bumps a version
+ * stamp of the entity, and values loaded from the database are only cached if the stamp did not change during
+ * the load, see {@link StampedCacheSupport}. The set of keys of an entity is cached separately and is used to answer
+ * requests for all latest values.
+ */
+public class TsKvLatestCache {
+
+    private static final int STAMPS_COUNT = 1024;
+
+    private final Cache<LatestKey, TsKvEntry> values;
+    private final Cache<EntityId, Set<String>> keys;
+    private final StampedCacheSupport support;
+
+    public TsKvLatestCache(long maxSize, long timeToLiveSec, long statsPrintIntervalMs) {
+        this.values = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS)
+                .build();
+        this.keys = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS)
+                .build();
+        this.support = new StampedCacheSupport("Latest timeseries", STAMPS_COUNT, statsPrintIntervalMs,
+                () -> String.format("values [%d], entities [%d]", values.size(), keys.size()));
+    }
+
+    /**
+     * Returns stamp of the entity that should be passed to the put methods of values loaded from the database.
+     */
+    public long getStamp(EntityId entityId) {
+        return support.getStamp(entityId);
+    }
+
+    public TsKvEntry get(EntityId entityId, String key) {
+        TsKvEntry entry = values.getIfPresent(new LatestKey(entityId, key));
+        support.recordAccess(entry != null);
+        return entry;
+    }
+
+    /**
+     * Returns all latest values of the entity or null if the keys of the entity or any of the values are not cached.
+     */
+    public List<TsKvEntry> getAll(EntityId entityId) {
+        Set<String> entityKeys = keys.getIfPresent(entityId);
+        List<TsKvEntry> entries = null;
+        if (entityKeys != null) {
+            entries = new ArrayList<>(entityKeys.size());
+            for (String key : entityKeys) {
+                TsKvEntry entry = values.getIfPresent(new LatestKey(entityId, key));
+                if (entry == null) {
+                    entries = null;
+                    break;
+                }
+                entries.add(entry);
+            }
+        }
+        support.recordAccess(entries != null);
+        return entries;
+    }
+
+    /**
+     * Caches value that was saved to the database. The cached value is replaced unconditionally,
+     * the same way the database overwrites the latest value regardless of its timestamp.
+     */
+    public void update(EntityId entityId, TsKvEntry entry) {
+        support.bumpStamp(entityId);
+        values.put(new LatestKey(entityId, entry.getKey()), entry);
+        Set<String> entityKeys = keys.getIfPresent(entityId);
+        if (entityKeys != null) {
+            entityKeys.add(entry.getKey());
+        }
+    }
+
+    public void put(EntityId entityId, TsKvEntry entry, long stamp) {
+        if (entry != null) {
+            LatestKey key = new LatestKey(entityId, entry.getKey());
+            support.putIfCurrent(entityId, stamp, () -> values.asMap().putIfAbsent(key, entry), () -> values.invalidate(key));
+        }
+    }
+
+    public void putAll(EntityId entityId, List<TsKvEntry> entries, long stamp) {
+        Set<String> entityKeys = ConcurrentHashMap.newKeySet();
+        entries.forEach(entry -> entityKeys.add(entry.getKey()));
+        support.putIfCurrent(entityId, stamp, () -> {
+            entries.forEach(entry -> values.asMap().putIfAbsent(new LatestKey(entityId, entry.getKey()), entry));
+            keys.put(entityId, entityKeys);
+        }, () -> {
+            entityKeys.forEach(key -> values.invalidate(new LatestKey(entityId, key)));
+            keys.invalidate(entityId);
+        });
+    }
+
+    public void invalidate(EntityId entityId, Collection<String> entityKeys) {
+        support.bumpStamp(entityId);
+        entityKeys.forEach(key -> values.invalidate(new LatestKey(entityId, key)));
+        Set<String> cachedKeys = keys.getIfPresent(entityId);
+        if (cachedKeys != null && !cachedKeys.containsAll(entityKeys)) {
+            keys.invalidate(entityId);
+        }
+    }
+
+    @Data
+    private static class LatestKey {
+        private final EntityId entityId;
+        private final String key;
+    }
+}
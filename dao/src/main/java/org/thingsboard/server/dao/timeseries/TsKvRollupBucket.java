@@ -0,0 +1,179 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+
+/**
+ * Pre-aggregated values of a single key within one rollup bucket.
+ * Min and max values of a type are only meaningful if the count of that type is positive.
+ */
+@Data
+@NoArgsConstructor
+public class TsKvRollupBucket {
+
+    private long ts;
+
+    private long boolCount;
+    private long strCount;
+    private long longCount;
+    private long doubleCount;
+
+    private long longSum;
+    private double doubleSum;
+
+    private boolean boolMin;
+    private boolean boolMax;
+    private String strMin;
+    private String strMax;
+    private long longMin;
+    private long longMax;
+    private double doubleMin;
+    private double doubleMax;
+
+    public TsKvRollupBucket(long ts) {
+        this.ts = ts;
+    }
+
+    public TsKvRollupBucket(TsKvRollupBucket other) {
+        this.ts = other.ts;
+        merge(other);
+    }
+
+    public boolean isEmpty() {
+        return boolCount == 0 && strCount == 0 && longCount == 0 && doubleCount == 0;
+    }
+
+    public void add(KvEntry entry) {
+        switch (entry.getDataType()) {
+            case BOOLEAN:
+                addBoolean(1, entry.getBooleanValue().get(), entry.getBooleanValue().get());
+                break;
+            case STRING:
+                addString(1, entry.getStrValue().get(), entry.getStrValue().get());
+                break;
+            case LONG:
+                long longValue = entry.getLongValue().get();
+                addLong(1, longValue, longValue, longValue);
+                break;
+            case DOUBLE:
+                double doubleValue = entry.getDoubleValue().get();
+                addDouble(1, doubleValue, doubleValue, doubleValue);
+                break;
+        }
+    }
+
+    public void merge(TsKvRollupBucket other) {
+        if (other.boolCount > 0) {
+            addBoolean(other.boolCount, other.boolMin, other.boolMax);
+        }
+        if (other.strCount > 0) {
+            addString(other.strCount, other.strMin, other.strMax);
+        }
+        if (other.longCount > 0) {
+            addLong(other.longCount, other.longSum, other.longMin, other.longMax);
+        }
+        if (other.doubleCount > 0) {
+            addDouble(other.doubleCount, other.doubleSum, other.doubleMin, other.doubleMax);
+        }
+    }
+
+    /**
+     * Converts the bucket to a value of the given aggregation. Same as for raw data aggregation,
+     * long values take precedence over double, boolean and string values, in that order.
+     */
+    public KvEntry toKvEntry(Aggregation aggregation, String key) {
+        if (longCount > 0) {
+            switch (aggregation) {
+                case COUNT:
+                    return new LongDataEntry(key, longCount);
+                case SUM:
+                    return new LongDataEntry(key, longSum);
+                case AVG:
+                    return new LongDataEntry(key, longSum / longCount);
+                case MIN:
+                    return new LongDataEntry(key, longMin);
+                case MAX:
+                    return new LongDataEntry(key, longMax);
+            }
+        } else if (doubleCount > 0) {
+            switch (aggregation) {
+                case COUNT:
+                    return new LongDataEntry(key, doubleCount);
+                case SUM:
+                    return new DoubleDataEntry(key, doubleSum);
+                case AVG:
+                    return new DoubleDataEntry(key, doubleSum / doubleCount);
+                case MIN:
+                    return new DoubleDataEntry(key, doubleMin);
+                case MAX:
+                    return new DoubleDataEntry(key, doubleMax);
+            }
+        } else if (boolCount > 0) {
+            switch (aggregation) {
+                case COUNT:
+                    return new LongDataEntry(key, boolCount);
+                case MIN:
+                    return new BooleanDataEntry(key, boolMin);
+                case MAX:
+                    return new BooleanDataEntry(key, boolMax);
+            }
+        } else if (strCount > 0) {
+            switch (aggregation) {
+                case COUNT:
+                    return new LongDataEntry(key, strCount);
+                case MIN:
+                    return new StringDataEntry(key, strMin);
+                case MAX:
+                    return new StringDataEntry(key, strMax);
+            }
+        }
+        return null;
+    }
+
+    private void addBoolean(long count, boolean min, boolean max) {
+        boolMin = boolCount == 0 ? min : boolMin && min;
+        boolMax = boolCount == 0 ? max : boolMax || max;
+        boolCount += count;
+    }
+
+    private void addString(long count, String min, String max) {
+        strMin = strCount == 0 || min.compareTo(strMin) < 0 ? min : strMin;
+        strMax = strCount == 0 || max.compareTo(strMax) > 0 ? max : strMax;
+        strCount += count;
+    }
+
+    private void addLong(long count, long sum, long min, long max) {
+        longMin = longCount == 0 ? min : Math.min(longMin, min);
+        longMax = longCount == 0 ? max : Math.max(longMax, max);
+        longSum += sum;
+        longCount += count;
+    }
+
+    private void addDouble(long count, double sum, double min, double max) {
+        doubleMin = doubleCount == 0 ? min : Math.min(doubleMin, min);
+        doubleMax = doubleCount == 0 ? max : Math.max(doubleMax, max);
+        doubleSum += sum;
+        doubleCount += count;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.List;
+
+/**
+ * Storage of pre-aggregated timeseries buckets. Buckets are identified by entity, key, rollup step
+ * and the start of the bucket.
+ */
+public interface TsKvRollupDao {
+
+    /**
+     * Returns buckets that start within [startTs, endTs) ordered by timestamp.
+     */
+    ListenableFuture<List<TsKvRollupBucket>> findAll(EntityId entityId, String key, long step, long startTs, long endTs);
+
+    /**
+     * Overwrites the bucket unless it was already saved with a greater version. Versions are timestamps
+     * at which the data of buckets was read, so a bucket that was built from older data never replaces a newer one.
+     */
+    ListenableFuture<Void> save(EntityId entityId, String key, long step, TsKvRollupBucket bucket, long version);
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Maintains pre-aggregated rollup buckets of timeseries data and answers aggregated queries from them.
+ * <p>
+ * Buckets are never updated incrementally. A saved value only marks the buckets that contain it as dirty and dirty
+ * buckets are periodically rebuilt from the data they cover: buckets of the finest step from raw data, coarser buckets
+ * from buckets of a finer step that divides them. Rebuilding is idempotent, so a value that is saved twice is counted once,
+ * and versioned writes make rebuilds of several nodes converge to the newest data. Queries overlay stored buckets
+ * with dirty buckets of this node built on the fly, values saved by other nodes are visible once those nodes flush them.
+ * <p>
+ * Buckets have the same bounds as intervals of raw data queries: <code>(ts, ts + step]</code> if the end of the interval
+ * is inclusive (cassandra) and <code>[ts, ts + step)</code> otherwise (sql). Raw sql queries also exclude their start,
+ * so the first bucket of a sql query is built on the fly without its first millisecond.
+ */
+@Slf4j
+public class TsKvRollupManager {
+
+    private static final long FLUSH_TIMEOUT_MS = 10000;
+
+    private final TsKvRollupDao rollupDao;
+    private final TsKvRollupSource source;
+    private final long[] steps;
+    private final int[] baseSteps;
+    private final boolean endInclusive;
+    private final long flushIntervalMs;
+
+    private final Set<RollupKey> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<RollupKey> flushing = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param endInclusive whether intervals of raw data queries include their end (cassandra) or start (sql).
+     *                     Buckets use the same convention, so results do not depend on the source of the data.
+     */
+    public TsKvRollupManager(TsKvRollupDao rollupDao, TsKvRollupSource source, long[] steps, boolean endInclusive, long flushIntervalMs) {
+        this.rollupDao = rollupDao;
+        this.source = source;
+        this.steps = Arrays.stream(steps).sorted().distinct().toArray();
+        this.baseSteps = new int[this.steps.length];
+        for (int i = 0; i < this.steps.length; i++) {
+            baseSteps[i] = -1;
+            for (int j = i - 1; j >= 0; j--) {
+                if (this.steps[i] % this.steps[j] == 0) {
+                    baseSteps[i] = j;
+                    break;
+                }
+            }
+        }
+        this.endInclusive = endInclusive;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public static long[] parseSteps(String steps) {
+        long[] result = Arrays.stream(steps.split(",")).map(String::trim).filter(s -> !s.isEmpty()).mapToLong(Long::parseLong).toArray();
+        for (long step : result) {
+            if (step <= 0) {
+                throw new IllegalArgumentException("Rollup step should be positive: " + steps + "!");
+            }
+        }
+        return result;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flush();
+    }
+
+    /**
+     * Marks buckets that contain the entry as dirty once the entry is saved, so rebuilt buckets always include it.
+     */
+    public void update(EntityId entityId, TsKvEntry entry, ListenableFuture<?> saveFuture) {
+        Futures.addCallback(saveFuture, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(@Nullable Object result) {
+                markDirty(entityId, entry.getKey(), entry.getTs(), 0);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        });
+    }
+
+    /**
+     * Returns the coarsest rollup step that can be used for the query. Every interval of the query
+     * has to consist of whole buckets, so the step has to divide both the interval and the start of the query.
+     */
+    public Optional<Long> findStep(long startTs, long endTs, long interval) {
+        for (int i = steps.length - 1; i >= 0; i--) {
+            long step = steps[i];
+            if (interval % step == 0 && Math.floorMod(startTs, step) == 0 && (endInclusive || Math.floorMod(endTs, step) == 0)) {
+                return Optional.of(step);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, String key, Aggregation aggregation,
+                                                          long startTs, long endTs, long interval, long step) {
+        int stepIdx = Arrays.binarySearch(steps, step);
+        int intervals = TsKvIntervalAggregator.getIntervalsCount(startTs, endTs, interval);
+        long rangeEndTs = endInclusive ? startTs + intervals * interval : endTs;
+        List<ListenableFuture<Map<Long, TsKvRollupBucket>>> futures = new ArrayList<>();
+        futures.add(loadBuckets(stepIdx, entityId, key, startTs, rangeEndTs));
+        if (!endInclusive && startTs < rangeEndTs) {
+            futures.add(Futures.transform(buildBucket(stepIdx, entityId, key, startTs, true), this::bucketToMap));
+        }
+        return Futures.transform(Futures.allAsList(futures), new Function<List<Map<Long, TsKvRollupBucket>>, List<TsKvEntry>>() {
+            @Nullable
+            @Override
+            public List<TsKvEntry> apply(@Nullable List<Map<Long, TsKvRollupBucket>> results) {
+                Map<Long, TsKvRollupBucket> bucketsByTs = new HashMap<>();
+                results.forEach(bucketsByTs::putAll);
+
+                TsKvRollupBucket[] aggregated = new TsKvRollupBucket[intervals];
+                for (TsKvRollupBucket bucket : bucketsByTs.values()) {
+                    int idx = (int) ((bucket.getTs() - startTs) / interval);
+                    if (idx >= 0 && idx < intervals) {
+                        if (aggregated[idx] == null) {
+                            aggregated[idx] = new TsKvRollupBucket(startTs + idx * interval);
+                        }
+                        aggregated[idx].merge(bucket);
+                    }
+                }
+                List<TsKvEntry> result = new ArrayList<>();
+                for (TsKvRollupBucket bucket : aggregated) {
+                    KvEntry kvEntry = bucket != null ? bucket.toKvEntry(aggregation, key) : null;
+                    if (kvEntry != null) {
+                        result.add(new BasicTsKvEntry(bucket.getTs() + interval / 2, kvEntry));
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Returns buckets of the step that start within [startTs, endTs). Stored buckets are replaced with dirty buckets
+     * of this node, which are built from the current data.
+     */
+    private ListenableFuture<Map<Long, TsKvRollupBucket>> loadBuckets(int stepIdx, EntityId entityId, String key, long startTs, long endTs) {
+        List<ListenableFuture<Map<Long, TsKvRollupBucket>>> futures = new ArrayList<>();
+        futures.add(Futures.transform(rollupDao.findAll(entityId, key, steps[stepIdx], startTs, endTs), this::bucketsToMap));
+        for (long ts : findLocalBuckets(entityId, key, steps[stepIdx], startTs, endTs)) {
+            futures.add(Futures.transform(buildBucket(stepIdx, entityId, key, ts, false), this::bucketToMap));
+        }
+        return Futures.transform(Futures.allAsList(futures), new Function<List<Map<Long, TsKvRollupBucket>>, Map<Long, TsKvRollupBucket>>() {
+            @Nullable
+            @Override
+            public Map<Long, TsKvRollupBucket> apply(@Nullable List<Map<Long, TsKvRollupBucket>> results) {
+                Map<Long, TsKvRollupBucket> bucketsByTs = new HashMap<>();
+                results.forEach(bucketsByTs::putAll);
+                return bucketsByTs;
+            }
+        });
+    }
+
+    /**
+     * Builds the bucket from raw data or from buckets of the base step.
+     *
+     * @param excludeStart whether the first millisecond of a [ts, ts + step) bucket is excluded
+     */
+    private ListenableFuture<TsKvRollupBucket> buildBucket(int stepIdx, EntityId entityId, String key, long ts, boolean excludeStart) {
+        long step = steps[stepIdx];
+        int baseIdx = baseSteps[stepIdx];
+        if (baseIdx < 0) {
+            long fromTs = endInclusive || excludeStart ? ts + 1 : ts;
+            long toTs = endInclusive ? ts + step + 1 : ts + step;
+            return source.aggregate(entityId, key, ts, fromTs, toTs);
+        }
+        List<ListenableFuture<Map<Long, TsKvRollupBucket>>> futures = new ArrayList<>();
+        if (excludeStart) {
+            long baseStep = steps[baseIdx];
+            futures.add(Futures.transform(buildBucket(baseIdx, entityId, key, ts, true), this::bucketToMap));
+            futures.add(loadBuckets(baseIdx, entityId, key, ts + baseStep, ts + step));
+        } else {
+            futures.add(loadBuckets(baseIdx, entityId, key, ts, ts + step));
+        }
+        return Futures.transform(Futures.allAsList(futures), new Function<List<Map<Long, TsKvRollupBucket>>, TsKvRollupBucket>() {
+            @Nullable
+            @Override
+            public TsKvRollupBucket apply(@Nullable List<Map<Long, TsKvRollupBucket>> results) {
+                TsKvRollupBucket bucket = new TsKvRollupBucket(ts);
+                results.forEach(buckets -> buckets.values().forEach(bucket::merge));
+                return bucket;
+            }
+        });
+    }
+
+    private Map<Long, TsKvRollupBucket> bucketToMap(TsKvRollupBucket bucket) {
+        Map<Long, TsKvRollupBucket> result = new HashMap<>();
+        result.put(bucket.getTs(), bucket);
+        return result;
+    }
+
+    private Map<Long, TsKvRollupBucket> bucketsToMap(List<TsKvRollupBucket> buckets) {
+        Map<Long, TsKvRollupBucket> result = new HashMap<>();
+        buckets.forEach(bucket -> result.put(bucket.getTs(), bucket));
+        return result;
+    }
+
+    private Set<Long> findLocalBuckets(EntityId entityId, String key, long step, long startTs, long endTs) {
+        Set<Long> result = new TreeSet<>();
+        if ((endTs - startTs) / step < dirty.size() + flushing.size()) {
+            for (long ts = startTs; ts < endTs; ts += step) {
+                RollupKey rollupKey = new RollupKey(entityId, key, step, ts);
+                if (dirty.contains(rollupKey) || flushing.contains(rollupKey)) {
+                    result.add(ts);
+                }
+            }
+        } else {
+            for (Set<RollupKey> keys : Arrays.asList(dirty, flushing)) {
+                for (RollupKey rollupKey : keys) {
+                    if (rollupKey.getStep() == step && rollupKey.getTs() >= startTs && rollupKey.getTs() < endTs
+                            && rollupKey.getKey().equals(key) && rollupKey.getEntityId().equals(entityId)) {
+                        result.add(rollupKey.getTs());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private long toBucketTs(long ts, long step) {
+        return Math.floorDiv(endInclusive ? ts - 1 : ts, step) * step;
+    }
+
+    private void markDirty(EntityId entityId, String key, long ts, int fromStepIdx) {
+        for (int i = fromStepIdx; i < steps.length; i++) {
+            dirty.add(new RollupKey(entityId, key, steps[i], toBucketTs(ts, steps[i])));
+        }
+    }
+
+    /**
+     * Rebuilds dirty buckets step by step from the finest one, so coarser buckets are built from already saved buckets.
+     */
+    private void flush() {
+        try {
+            for (int i = 0; i < steps.length; i++) {
+                List<ListenableFuture<Void>> futures = new ArrayList<>();
+                for (RollupKey key : dirty) {
+                    if (key.getStep() == steps[i] && flushing.add(key)) {
+                        dirty.remove(key);
+                        futures.add(rebuild(i, key));
+                    }
+                }
+                if (!futures.isEmpty()) {
+                    Futures.successfulAsList(futures).get(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("Failed to flush rollup buckets within {} ms", FLUSH_TIMEOUT_MS);
+        } catch (Throwable t) {
+            log.error("Failed to flush rollup buckets", t);
+        }
+    }
+
+    private ListenableFuture<Void> rebuild(int stepIdx, RollupKey key) {
+        long version = System.currentTimeMillis();
+        ListenableFuture<Void> future = Futures.transform(buildBucket(stepIdx, key.getEntityId(), key.getKey(), key.getTs(), false),
+                (AsyncFunction<TsKvRollupBucket, Void>) bucket -> rollupDao.save(key.getEntityId(), key.getKey(), key.getStep(), bucket, version));
+        Futures.addCallback(future, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(@Nullable Void result) {
+                flushing.remove(key);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}][{}] Failed to save rollup bucket {} of key {}", key.getEntityId().getEntityType(), key.getEntityId().getId(), key.getTs(), key.getKey(), t);
+                // coarser buckets may already be built from the stale bucket, so they are rebuilt as well
+                markDirty(key.getEntityId(), key.getKey(), endInclusive ? key.getTs() + 1 : key.getTs(), stepIdx);
+                flushing.remove(key);
+            }
+        });
+        return future;
+    }
+
+    @Data
+    private static class RollupKey {
+        private final EntityId entityId;
+        private final String key;
+        private final long step;
+        private final long ts;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.EntityId;
+
+/**
+ * Raw timeseries data that rollup buckets are built from.
+ */
+public interface TsKvRollupSource {
+
+    /**
+     * Aggregates raw values of the key with <code>fromTs &lt;= ts &lt; toTs</code> into a bucket that starts at bucketTs.
+     * Returns an empty bucket if there are no values in the range.
+     */
+    ListenableFuture<TsKvRollupBucket> aggregate(EntityId entityId, String key, long bucketTs, long fromTs, long toTs);
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded queue of write requests drained by a single dispatcher thread, shared by the write-behind buffers of DAOs.
+ * <p>
+ * A chunk is passed to the flush action either once it reaches the maximum chunk size or once the linger time passes
+ * after the first request of the chunk was taken from the queue. If the flush action throws, the failure action is
+ * called with the same chunk. Requests that are still queued when the dispatcher is stopped are flushed as one chunk.
+ */
+@Slf4j
+public class WriteBehindDispatcher<T> {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int maxChunkSize;
+    private final long lingerMs;
+    private final Consumer<List<T>> flushAction;
+    private final BiConsumer<List<T>, Throwable> failureAction;
+    private final long statsPrintIntervalMs;
+    private final Supplier<String> stats;
+
+    private ExecutorService dispatcher;
+    private volatile boolean stopped;
+    private long lastStatsPrintTs;
+
+    /**
+     * Statistics supplier returns the writer specific part of logged statistics, e.g. "flushes [10]".
+     */
+    public WriteBehindDispatcher(String name, int queueSize, int maxChunkSize, long lingerMs,
+                                 Consumer<List<T>> flushAction, BiConsumer<List<T>, Throwable> failureAction,
+                                 long statsPrintIntervalMs, Supplier<String> stats) {
+        this.name = name;
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.maxChunkSize = maxChunkSize;
+        this.lingerMs = lingerMs;
+        this.flushAction = flushAction;
+        this.failureAction = failureAction;
+        this.statsPrintIntervalMs = statsPrintIntervalMs;
+        this.stats = stats;
+    }
+
+    public void start() {
+        lastStatsPrintTs = System.currentTimeMillis();
+        dispatcher = Executors.newSingleThreadExecutor();
+        dispatcher.submit(this::dispatch);
+    }
+
+    public void stop() {
+        stopped = true;
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+            try {
+                dispatcher.awaitTermination(POLL_TIMEOUT_MS * 10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queues the request. Returns false if the queue is full or the dispatcher is stopped,
+     * in which case the caller is responsible for writing the request directly.
+     */
+    public boolean offer(T request) {
+        return !stopped && queue.offer(request);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void dispatch() {
+        List<T> chunk = new ArrayList<>(maxChunkSize);
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    chunk.add(first);
+                    long deadline = System.currentTimeMillis() + lingerMs;
+                    queue.drainTo(chunk, maxChunkSize - chunk.size());
+                    while (chunk.size() < maxChunkSize && !stopped) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        T next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        chunk.add(next);
+                        queue.drainTo(chunk, maxChunkSize - chunk.size());
+                    }
+                    flush(chunk);
+                    chunk.clear();
+                }
+                printStats();
+            } catch (InterruptedException e) {
+                log.debug("{} write buffer dispatcher was interrupted", name);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    private void flush(List<T> chunk) {
+        try {
+            flushAction.accept(chunk);
+        } catch (Throwable t) {
+            log.error("Failed to flush {} write buffer", name, t);
+            failureAction.accept(chunk, t);
+        }
+    }
+
+    private void printStats() {
+        long ts = System.currentTimeMillis();
+        if (statsPrintIntervalMs > 0 && ts - lastStatsPrintTs > statsPrintIntervalMs) {
+            lastStatsPrintTs = ts;
+            log.info("{} write buffer stats: queue size [{}], {}", name, queue.size(), stats.get());
+        }
+    }
+}
@@ -215,6 +215,30 @@ CREATE TABLE IF NOT EXISTS ts_kv_latest (
     CONSTRAINT ts_kv_latest_unq_key UNIQUE (entity_type, entity_id, key)
 );
 
+CREATE TABLE IF NOT EXISTS ts_kv_rollup (
+    entity_type character varying(255) NOT NULL,
+    entity_id uuid NOT NULL,
+    key character varying(255) NOT NULL,
+    step bigint NOT NULL,
+    ts bigint NOT NULL,
+    bool_cnt bigint,
+    str_cnt bigint,
+    long_cnt bigint,
+    dbl_cnt bigint,
+    long_sum bigint,
+    dbl_sum double precision,
+    bool_min boolean,
+    bool_max boolean,
+    str_min character varying(255),
+    str_max character varying(255),
+    long_min bigint,
+    long_max bigint,
+    dbl_min double precision,
+    dbl_max double precision,
+    version bigint,
+    CONSTRAINT ts_kv_rollup_unq_key UNIQUE (entity_type, entity_id, key, step, ts)
+);
+
 CREATE TABLE IF NOT EXISTS user_credentials (
     id uuid NOT NULL CONSTRAINT user_credentials_pkey PRIMARY KEY,
     activate_token character varying(255) UNIQUE,
@@ -0,0 +1,128 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.relation;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual benchmark of recursive relations search on a synthetic 6 level hierarchy of about 100k entities.
+ * Compares {@link RelationsSearch} with the previous depth-first search that blocked on every level.
+ * Every relations query completes after a fixed latency, similar to a database round-trip.
+ * <p>
+ * Run with <code>java -cp ... RelationsSearchBenchmark [latencyUs] [maxConcurrency]</code>.
+ */
+public class RelationsSearchBenchmark {
+
+    private static final int[] FAN_OUT = {6, 6, 6, 7, 7, 8};
+
+    private static final Map<EntityId, List<EntityRelation>> children = new HashMap<>();
+    private static ScheduledExecutorService scheduler;
+    private static long latencyUs;
+
+    public static void main(String[] args) throws Exception {
+        latencyUs = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        int maxConcurrency = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        scheduler = Executors.newScheduledThreadPool(4);
+        try {
+            EntityId root = createHierarchy();
+            int expected = children.values().stream().mapToInt(List::size).sum();
+            System.out.println("Entities: " + (expected + 1) + ", latency: " + latencyUs + " us");
+
+            for (int round = 0; round < 3; round++) {
+                long startTs = System.currentTimeMillis();
+                Set<EntityRelation> result = new RelationsSearch(EntitySearchDirection.FROM, Integer.MAX_VALUE, maxConcurrency, 0,
+                        RelationsSearchBenchmark::findRelations).start(root).get();
+                check(result.size(), expected);
+                System.out.println("  bfs, concurrency " + maxConcurrency + ": " + (System.currentTimeMillis() - startTs) + " ms");
+            }
+
+            long startTs = System.currentTimeMillis();
+            Set<EntityRelation> result = new HashSet<>();
+            findRecursivelyBlocking(root, Integer.MAX_VALUE, new HashSet<>(), result);
+            check(result.size(), expected);
+            System.out.println("  blocking dfs: " + (System.currentTimeMillis() - startTs) + " ms");
+
+            startTs = System.currentTimeMillis();
+            result = new RelationsSearch(EntitySearchDirection.FROM, Integer.MAX_VALUE, maxConcurrency, 1000,
+                    RelationsSearchBenchmark::findRelations).start(root).get();
+            check(result.size(), 1000);
+            System.out.println("  bfs, limited to 1000 results: " + (System.currentTimeMillis() - startTs) + " ms");
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static EntityId createHierarchy() {
+        EntityId root = new AssetId(UUID.randomUUID());
+        List<EntityId> level = Collections.singletonList(root);
+        for (int fanOut : FAN_OUT) {
+            List<EntityId> nextLevel = new ArrayList<>(level.size() * fanOut);
+            for (EntityId parent : level) {
+                List<EntityRelation> relations = new ArrayList<>(fanOut);
+                for (int i = 0; i < fanOut; i++) {
+                    EntityId child = new AssetId(UUID.randomUUID());
+                    relations.add(new EntityRelation(parent, child, EntityRelation.CONTAINS_TYPE));
+                    nextLevel.add(child);
+                }
+                children.put(parent, relations);
+            }
+            level = nextLevel;
+        }
+        return root;
+    }
+
+    private static ListenableFuture<List<EntityRelation>> findRelations(EntityId entityId) {
+        SettableFuture<List<EntityRelation>> future = SettableFuture.create();
+        List<EntityRelation> relations = children.getOrDefault(entityId, Collections.emptyList());
+        scheduler.schedule(() -> future.set(relations), latencyUs, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    private static void findRecursivelyBlocking(EntityId rootId, int lvl, Set<EntityId> visited, Set<EntityRelation> result) throws Exception {
+        if (lvl == 0) {
+            return;
+        }
+        List<EntityRelation> relations = findRelations(rootId).get();
+        result.addAll(relations);
+        for (EntityRelation relation : relations) {
+            if (visited.add(relation.getTo())) {
+                findRecursivelyBlocking(relation.getTo(), lvl - 1, visited, result);
+            }
+        }
+    }
+
+    private static void check(int actual, int expected) {
+        if (actual != expected) {
+            throw new IllegalStateException("Unexpected amount of relations: " + actual + ", expected: " + expected);
+        }
+    }
+}
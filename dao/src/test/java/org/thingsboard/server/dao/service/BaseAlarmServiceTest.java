@@ -16,20 +16,34 @@
 package org.thingsboard.server.dao.service;
 
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.alarm.*;
 import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.TimePageData;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.dao.relation.RelationService;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
 public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
 
     public static final String TEST_ALARM = "TEST_ALARM";
@@ -157,4 +171,128 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertEquals(1, alarms.getData().size());
         Assert.assertEquals(created, alarms.getData().get(0));
     }
+
+    @Test
+    public void testFindHighestAlarmSeverity() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(UUIDs.timeBased());
+        AssetId childId = new AssetId(UUIDs.timeBased());
+        AssetId otherId = new AssetId(UUIDs.timeBased());
+
+        EntityRelation relation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertTrue(relationService.saveRelation(relation).get());
+
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(parentId, null, null));
+
+        long ts = System.currentTimeMillis();
+        Alarm major = alarmService.createOrUpdateAlarm(Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .severity(AlarmSeverity.MAJOR).status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(ts).build());
+        alarmService.createOrUpdateAlarm(Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM + "_2")
+                .severity(AlarmSeverity.WARNING).status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(ts).build());
+
+        Assert.assertEquals(AlarmSeverity.MAJOR, alarmService.findHighestAlarmSeverity(parentId, null, null));
+        Assert.assertEquals(AlarmSeverity.MAJOR, alarmService.findHighestAlarmSeverity(childId, AlarmSearchStatus.ACTIVE, null));
+
+        major.setSeverity(AlarmSeverity.CRITICAL);
+        major = alarmService.createOrUpdateAlarm(major);
+
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(parentId, null, null));
+
+        alarmService.ackAlarm(major.getId(), System.currentTimeMillis()).get();
+
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACK, null));
+        Assert.assertEquals(AlarmSeverity.WARNING, alarmService.findHighestAlarmSeverity(parentId, null, AlarmStatus.ACTIVE_UNACK));
+
+        alarmService.clearAlarm(major.getId(), System.currentTimeMillis()).get();
+
+        Assert.assertEquals(AlarmSeverity.WARNING, alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACTIVE, null));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(childId, AlarmSearchStatus.CLEARED, null));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACK, null));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(parentId, null, AlarmStatus.CLEARED_ACK));
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(parentId, null, AlarmStatus.CLEARED_UNACK));
+
+        alarmService.invalidateAlarmSeverities(Arrays.asList(parentId, childId));
+
+        Assert.assertEquals(AlarmSeverity.WARNING, alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACTIVE, null));
+
+        Map<EntityId, AlarmSeverity> severities = alarmService.findHighestAlarmSeverities(
+                Arrays.asList(parentId, childId, otherId), AlarmSearchStatus.ANY, null).get();
+        Assert.assertEquals(3, severities.size());
+        Assert.assertEquals(AlarmSeverity.CRITICAL, severities.get(parentId));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, severities.get(childId));
+        Assert.assertNull(severities.get(otherId));
+    }
+
+    @Test
+    public void testCreateOrUpdateAlarmAsyncConcurrently() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(UUIDs.timeBased());
+        AssetId childId = new AssetId(UUIDs.timeBased());
+
+        EntityRelation relation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertTrue(relationService.saveRelation(relation).get());
+
+        long ts = System.currentTimeMillis();
+        List<ListenableFuture<Alarm>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(alarmService.createOrUpdateAlarmAsync(Alarm.builder().tenantId(tenantId).originator(childId)
+                    .type(TEST_ALARM)
+                    .severity(i < 9 ? AlarmSeverity.MINOR : AlarmSeverity.MAJOR).status(AlarmStatus.ACTIVE_UNACK)
+                    .startTs(ts + i).build()));
+        }
+        List<Alarm> results = Futures.allAsList(futures).get();
+
+        for (Alarm result : results) {
+            Assert.assertEquals(results.get(0).getId(), result.getId());
+        }
+
+        TimePageData<AlarmInfo> alarms = alarmService.findAlarms(AlarmQuery.builder()
+                .affectedEntityId(parentId)
+                .status(AlarmStatus.ACTIVE_UNACK).pageLink(
+                        new TimePageLink(10, 0L, System.currentTimeMillis(), false)
+                ).build()).get();
+        Assert.assertEquals(1, alarms.getData().size());
+        Assert.assertEquals(AlarmSeverity.MAJOR, alarms.getData().get(0).getSeverity());
+        Assert.assertEquals(ts + 9, alarms.getData().get(0).getEndTs());
+    }
+
+    @Test
+    public void testFindHighestAlarmSeverityDuringAlarmCreation() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(UUIDs.timeBased());
+        AssetId childId = new AssetId(UUIDs.timeBased());
+
+        EntityRelation relation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertTrue(relationService.saveRelation(relation).get());
+
+        RelationService interleavingRelationService = spy(relationService);
+        doAnswer(invocation -> {
+            ListenableFuture<?> result = (ListenableFuture<?>) invocation.callRealMethod();
+            result.get();
+            alarmService.invalidateAlarmSeverities(Collections.singletonList(parentId));
+            alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACTIVE, null);
+            return result;
+        }).when(interleavingRelationService).saveRelation(any(EntityRelation.class));
+
+        Alarm created;
+        ReflectionTestUtils.setField(alarmService, "relationService", interleavingRelationService);
+        try {
+            created = alarmService.createOrUpdateAlarm(Alarm.builder().tenantId(tenantId).originator(childId)
+                    .type(TEST_ALARM)
+                    .severity(AlarmSeverity.CRITICAL).status(AlarmStatus.ACTIVE_UNACK)
+                    .startTs(System.currentTimeMillis()).build());
+        } finally {
+            ReflectionTestUtils.setField(alarmService, "relationService", relationService);
+        }
+
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACTIVE, null));
+
+        alarmService.clearAlarm(created.getId(), System.currentTimeMillis()).get();
+
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(parentId, AlarmSearchStatus.ACTIVE, null));
+    }
 }
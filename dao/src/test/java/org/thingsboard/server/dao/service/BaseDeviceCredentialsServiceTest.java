@@ -21,6 +21,7 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.id.DeviceCredentialsId;
@@ -28,10 +29,14 @@ import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.security.DeviceCredentials;
 import org.thingsboard.server.common.data.security.DeviceCredentialsType;
+import org.thingsboard.server.dao.device.DeviceCredentialsCache;
 import org.thingsboard.server.dao.exception.DataValidationException;
 
 public abstract class BaseDeviceCredentialsServiceTest extends AbstractServiceTest {
 
+    @Autowired
+    private DeviceCredentialsCache deviceCredentialsCache;
+
     private TenantId tenantId;
 
     @Before
@@ -200,5 +205,31 @@ public abstract class BaseDeviceCredentialsServiceTest extends AbstractServiceTe
         Assert.assertEquals(deviceCredentials, foundDeviceCredentials);
         deviceService.deleteDevice(savedDevice.getId());
     }
-}
 
+    @Test
+    public void testLocalCacheInvalidatedOnUpdateAndDelete() {
+        Device device = new Device();
+        device.setTenantId(tenantId);
+        device.setName("My device");
+        device.setType("default");
+        Device savedDevice = deviceService.saveDevice(device);
+        DeviceCredentials deviceCredentials = deviceCredentialsService.findDeviceCredentialsByDeviceId(savedDevice.getId());
+        String oldCredentialsId = deviceCredentials.getCredentialsId();
+        deviceCredentialsCache.put(deviceCredentialsService.findDeviceCredentialsByCredentialsId(oldCredentialsId), deviceCredentialsCache.getStamp());
+        Assert.assertEquals(deviceCredentials, deviceCredentialsCache.get(oldCredentialsId));
+
+        deviceCredentials.setCredentialsId("new_access_token");
+        deviceCredentialsService.updateDeviceCredentials(deviceCredentials);
+        Assert.assertNull(deviceCredentialsCache.get(oldCredentialsId));
+
+        long stamp = deviceCredentialsCache.getStamp();
+        deviceCredentialsCache.put(deviceCredentialsService.findDeviceCredentialsByCredentialsId("new_access_token"), stamp);
+        Assert.assertEquals(deviceCredentials, deviceCredentialsCache.get("new_access_token"));
+
+        deviceService.deleteDevice(savedDevice.getId());
+        Assert.assertNull(deviceCredentialsCache.get("new_access_token"));
+
+        deviceCredentialsCache.put(deviceCredentials, stamp);
+        Assert.assertNull(deviceCredentialsCache.get("new_access_token"));
+    }
+}
@@ -103,6 +103,40 @@ public abstract class BaseRelationServiceTest extends AbstractServiceTest {
         Assert.assertFalse(relationService.checkRelation(childId, subChildId, EntityRelation.CONTAINS_TYPE, RelationTypeGroup.COMMON).get());
     }
 
+    @Test
+    public void testCachedRelationsInvalidatedOnChange() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(UUIDs.timeBased());
+        AssetId childId = new AssetId(UUIDs.timeBased());
+        AssetId subChildId = new AssetId(UUIDs.timeBased());
+
+        EntityRelation relationA = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationB = new EntityRelation(childId, subChildId, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertEquals(0, relationService.findByFrom(parentId, RelationTypeGroup.COMMON).get().size());
+        Assert.assertEquals(0, relationService.findByTo(childId, RelationTypeGroup.COMMON).get().size());
+
+        saveRelation(relationA);
+        saveRelation(relationB);
+
+        Assert.assertEquals(Collections.singletonList(relationA), relationService.findByFrom(parentId, RelationTypeGroup.COMMON).get());
+        Assert.assertEquals(Collections.singletonList(relationA), relationService.findByTo(childId, RelationTypeGroup.COMMON).get());
+        Assert.assertEquals(Collections.singletonList(relationB),
+                relationService.findByFromAndType(childId, EntityRelation.CONTAINS_TYPE, RelationTypeGroup.COMMON).get());
+        Assert.assertEquals(0, relationService.findByFromAndType(childId, EntityRelation.MANAGES_TYPE, RelationTypeGroup.COMMON).get().size());
+
+        Assert.assertTrue(relationService.deleteRelation(relationA).get());
+
+        Assert.assertEquals(0, relationService.findByFrom(parentId, RelationTypeGroup.COMMON).get().size());
+        Assert.assertEquals(0, relationService.findByTo(childId, RelationTypeGroup.COMMON).get().size());
+
+        Assert.assertEquals(Collections.singletonList(relationB), relationService.findByTo(subChildId, RelationTypeGroup.COMMON).get());
+
+        Assert.assertTrue(relationService.deleteEntityRelations(childId).get());
+
+        Assert.assertEquals(0, relationService.findByTo(subChildId, RelationTypeGroup.COMMON).get().size());
+        Assert.assertEquals(0, relationService.findByFrom(childId, RelationTypeGroup.COMMON).get().size());
+    }
+
     @Test
     public void testFindFrom() throws ExecutionException, InterruptedException {
         AssetId parentA = new AssetId(UUIDs.timeBased());
@@ -256,6 +290,44 @@ public abstract class BaseRelationServiceTest extends AbstractServiceTest {
     }
 
 
+    @Test
+    public void testRecursiveRelationWithSharedChild() throws ExecutionException, InterruptedException {
+        // A -> [B,C] -> D -> E
+        AssetId assetA = new AssetId(UUIDs.timeBased());
+        AssetId assetB = new AssetId(UUIDs.timeBased());
+        AssetId assetC = new AssetId(UUIDs.timeBased());
+        AssetId assetD = new AssetId(UUIDs.timeBased());
+        AssetId assetE = new AssetId(UUIDs.timeBased());
+
+        EntityRelation relationAB = new EntityRelation(assetA, assetB, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationAC = new EntityRelation(assetA, assetC, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationBD = new EntityRelation(assetB, assetD, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationCD = new EntityRelation(assetC, assetD, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationDE = new EntityRelation(assetD, assetE, EntityRelation.CONTAINS_TYPE);
+
+        saveRelation(relationAB);
+        saveRelation(relationAC);
+        saveRelation(relationBD);
+        saveRelation(relationCD);
+        saveRelation(relationDE);
+
+        EntityRelationsQuery query = new EntityRelationsQuery();
+        query.setParameters(new RelationsSearchParameters(assetA, EntitySearchDirection.FROM, -1));
+        List<EntityRelation> relations = relationService.findByQuery(query).get();
+        Assert.assertEquals(5, relations.size());
+        Assert.assertTrue(relations.contains(relationDE));
+
+        query.setParameters(new RelationsSearchParameters(assetA, EntitySearchDirection.FROM, 2));
+        relations = relationService.findByQuery(query).get();
+        Assert.assertEquals(4, relations.size());
+        Assert.assertFalse(relations.contains(relationDE));
+
+        query.setParameters(new RelationsSearchParameters(assetE, EntitySearchDirection.TO, -1));
+        relations = relationService.findByQuery(query).get();
+        Assert.assertEquals(5, relations.size());
+    }
+
+
     @Test(expected = DataValidationException.class)
     public void testSaveRelationWithEmptyFrom() throws ExecutionException, InterruptedException {
         EntityRelation relation = new EntityRelation();
@@ -29,8 +29,10 @@ import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -100,4 +102,23 @@ public abstract class BaseAttributesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(attrBNew, saved.get(1));
     }
 
+    @Test
+    public void findAllScopes() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        AttributeKvEntry clientAttr = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        AttributeKvEntry serverAttr = new BaseAttributeKvEntry(new StringDataEntry("A", "value2"), 73L);
+
+        attributesService.save(deviceId, DataConstants.CLIENT_SCOPE, Collections.singletonList(clientAttr)).get();
+        attributesService.save(deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(serverAttr)).get();
+
+        Map<String, List<AttributeKvEntry>> saved = attributesService.findAll(deviceId,
+                Arrays.asList(DataConstants.CLIENT_SCOPE, DataConstants.SERVER_SCOPE, DataConstants.SHARED_SCOPE)).get();
+
+        Assert.assertEquals(3, saved.size());
+        Assert.assertEquals(Collections.singletonList(clientAttr), saved.get(DataConstants.CLIENT_SCOPE));
+        Assert.assertEquals(Collections.singletonList(serverAttr), saved.get(DataConstants.SERVER_SCOPE));
+        Assert.assertTrue(saved.get(DataConstants.SHARED_SCOPE).isEmpty());
+    }
+
 }
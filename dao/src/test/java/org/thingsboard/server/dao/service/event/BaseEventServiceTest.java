@@ -16,6 +16,8 @@
 package org.thingsboard.server.dao.service.event;
 
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.junit.Assert;
 import org.junit.Test;
 import org.thingsboard.server.common.data.DataConstants;
@@ -33,6 +35,8 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 public abstract class BaseEventServiceTest extends AbstractServiceTest {
@@ -58,6 +62,37 @@ public abstract class BaseEventServiceTest extends AbstractServiceTest {
         Assert.assertFalse(saved.isPresent());
     }
 
+    @Test
+    public void saveEventIfNotExistsAfterUidCacheHit() throws Exception {
+        DeviceId devId = new DeviceId(UUIDs.timeBased());
+        TenantId tenantId = new TenantId(UUIDs.timeBased());
+        String uid = UUIDs.timeBased().toString();
+        Assert.assertTrue(eventService.saveIfNotExists(generateEvent(tenantId, devId, "ALARM", uid)).isPresent());
+        Assert.assertFalse(eventService.saveIfNotExists(generateEvent(tenantId, devId, "ALARM", uid)).isPresent());
+        Assert.assertTrue(eventService.saveIfNotExists(generateEvent(tenantId, devId, "ALARM", UUIDs.timeBased().toString())).isPresent());
+        Assert.assertTrue(eventService.findEvent(tenantId, devId, "ALARM", uid).isPresent());
+    }
+
+    @Test
+    public void saveEventsAsync() throws Exception {
+        RuleId ruleId = new RuleId(UUIDs.timeBased());
+        TenantId tenantId = new TenantId(UUIDs.timeBased());
+        List<ListenableFuture<Event>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(eventService.saveAsync(generateEvent(tenantId, ruleId, DataConstants.STATS, null)));
+            futures.add(eventService.saveAsync(generateEvent(tenantId, ruleId, DataConstants.ERROR, null)));
+        }
+        List<Event> saved = Futures.allAsList(futures).get();
+        for (Event event : saved) {
+            Assert.assertNotNull(event.getId());
+            Optional<Event> loaded = eventService.findEvent(tenantId, ruleId, event.getType(), event.getUid());
+            Assert.assertTrue(loaded.isPresent());
+            Assert.assertEquals(event.getId(), loaded.get().getId());
+        }
+        TimePageData<Event> events = eventService.findEvents(tenantId, ruleId, DataConstants.STATS, new TimePageLink(100));
+        Assert.assertEquals(10, events.getData().size());
+    }
+
     @Test
     public void findEventsByTypeAndTimeAscOrder() throws Exception {
         long timeBeforeStartTime = LocalDateTime.of(2016, Month.NOVEMBER, 1, 11, 30).toEpochSecond(ZoneOffset.UTC);
@@ -28,9 +28,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Andrew Shvayka
@@ -92,6 +94,46 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(toTsEntry(TS, stringKvEntry), entries.get(0));
     }
 
+    @Test
+    public void testFindLatestAfterUpdateAndInvalidation() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        saveEntries(deviceId, TS - 1);
+        assertEquals(4, tsService.findAllLatest(deviceId).get().size());
+        assertEquals(4, tsService.findAllLatest(deviceId).get().size());
+
+        KvEntry newKvEntry = new StringDataEntry("newKey", "newValue");
+        tsService.save(deviceId, toTsEntry(TS, newKvEntry)).get();
+        tsService.save(deviceId, toTsEntry(TS, stringKvEntry)).get();
+
+        List<TsKvEntry> latest = tsService.findAllLatest(deviceId).get();
+        assertEquals(5, latest.size());
+        assertTrue(latest.contains(toTsEntry(TS, newKvEntry)));
+        assertTrue(latest.contains(toTsEntry(TS, stringKvEntry)));
+
+        tsService.invalidateLatest(deviceId, Arrays.asList(STRING_KEY, "newKey"));
+
+        List<TsKvEntry> entries = tsService.findLatest(deviceId, Collections.singleton(STRING_KEY)).get();
+        assertEquals(1, entries.size());
+        assertEquals(toTsEntry(TS, stringKvEntry), entries.get(0));
+        assertEquals(5, tsService.findAllLatest(deviceId).get().size());
+    }
+
+    @Test
+    public void testFindLatestAfterSaveWithOlderTs() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        tsService.save(deviceId, toTsEntry(TS, stringKvEntry)).get();
+        assertEquals(toTsEntry(TS, stringKvEntry), tsService.findLatest(deviceId, Collections.singleton(STRING_KEY)).get().get(0));
+
+        KvEntry olderKvEntry = new StringDataEntry(STRING_KEY, "olderValue");
+        tsService.save(deviceId, toTsEntry(TS - 1, olderKvEntry)).get();
+        assertEquals(toTsEntry(TS - 1, olderKvEntry), tsService.findLatest(deviceId, Collections.singleton(STRING_KEY)).get().get(0));
+
+        tsService.invalidateLatest(deviceId, Collections.singletonList(STRING_KEY));
+        assertEquals(toTsEntry(TS - 1, olderKvEntry), tsService.findLatest(deviceId, Collections.singleton(STRING_KEY)).get().get(0));
+    }
+
     @Test
     public void testFindDeviceTsData() throws Exception {
         DeviceId deviceId = new DeviceId(UUIDs.timeBased());
@@ -183,6 +225,212 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         assertEquals(java.util.Optional.of(2L), list.get(2).getLongValue());
     }
 
+    @Test
+    public void testSaveMultipleKeys() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        for (long ts = TS; ts <= TS + 1; ts++) {
+            List<TsKvEntry> entries = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                entries.add(new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY + i, i + ts - TS)));
+            }
+            tsService.save(deviceId, entries, 0).get();
+        }
+
+        List<TsKvEntry> latest = tsService.findAllLatest(deviceId).get();
+        assertEquals(50, latest.size());
+        for (TsKvEntry entry : latest) {
+            assertEquals(TS + 1, entry.getTs());
+        }
+
+        List<TsKvEntry> list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY + 7, 0,
+                TS + 2, 1000, 10, Aggregation.NONE))).get();
+        assertEquals(2, list.size());
+        assertEquals(java.util.Optional.of(8L), list.get(0).getLongValue());
+        assertEquals(java.util.Optional.of(7L), list.get(1).getLongValue());
+    }
+
+    @Test
+    public void testFindDeviceTsDataFromMultiplePartitions() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        long hour = TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < 3; i++) {
+            save(deviceId, i * hour + 1000, i);
+            save(deviceId, i * hour + 2000, i + 10);
+        }
+
+        List<TsKvEntry> list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                3 * hour, hour, 10, Aggregation.NONE))).get();
+        assertEquals(6, list.size());
+        assertEquals(2 * hour + 2000, list.get(0).getTs());
+        assertEquals(1000, list.get(5).getTs());
+
+        list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                3 * hour, hour, 1, Aggregation.MAX))).get();
+        assertEquals(3, list.size());
+        assertEquals(java.util.Optional.of(10L), list.get(0).getLongValue());
+        assertEquals(java.util.Optional.of(11L), list.get(1).getLongValue());
+        assertEquals(java.util.Optional.of(12L), list.get(2).getLongValue());
+    }
+
+    @Test
+    public void testFindDeviceTsDataWithManyIntervals() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        int intervals = 50;
+        for (int i = 0; i < intervals; i++) {
+            save(deviceId, i * 1000 + 300, i);
+            save(deviceId, i * 1000 + 700, i + 10);
+        }
+
+        for (Aggregation aggregation : Arrays.asList(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            List<TsKvEntry> list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                    intervals * 1000, 1000, intervals, aggregation))).get();
+            assertEquals(intervals, list.size());
+            for (int i = 0; i < intervals; i++) {
+                long expected;
+                switch (aggregation) {
+                    case AVG:
+                        expected = i + 5;
+                        break;
+                    case SUM:
+                        expected = 2 * i + 10;
+                        break;
+                    case MIN:
+                        expected = i;
+                        break;
+                    case MAX:
+                        expected = i + 10;
+                        break;
+                    default:
+                        expected = 2;
+                }
+                assertEquals(i * 1000 + 500, list.get(i).getTs());
+                assertEquals(aggregation.name(), java.util.Optional.of(expected), list.get(i).getLongValue());
+            }
+        }
+    }
+
+    @Test
+    public void testFindDeviceTsDataFromRollups() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        for (int m = 0; m < 5; m++) {
+            for (int k = 1; k <= 5; k++) {
+                save(deviceId, m * minute + k * 10000, m * 10 + k);
+            }
+        }
+        assertMinuteAggregates(deviceId, 5, 15, 1, 5);
+
+        // wait until rollups are flushed
+        Thread.sleep(1000);
+        assertMinuteAggregates(deviceId, 5, 15, 1, 5);
+
+        save(deviceId, 55000, 100);
+        assertMinuteAggregates(deviceId, 6, 115, 1, 100);
+        Thread.sleep(1000);
+        assertMinuteAggregates(deviceId, 6, 115, 1, 100);
+    }
+
+    @Test
+    public void testRollupsCountResavedValuesOnce() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        for (int k = 1; k <= 5; k++) {
+            save(deviceId, k * 10000, k);
+        }
+        Thread.sleep(1000);
+        // redelivered values overwrite raw rows, so they are not counted again
+        for (int k = 1; k <= 5; k++) {
+            save(deviceId, k * 10000, k);
+        }
+        List<TsKvEntry> beforeFlush = findMinuteCounts(deviceId, 0, 1);
+        Thread.sleep(1000);
+        List<TsKvEntry> afterFlush = findMinuteCounts(deviceId, 0, 1);
+        for (List<TsKvEntry> list : Arrays.asList(beforeFlush, afterFlush)) {
+            assertEquals(1, list.size());
+            assertEquals(java.util.Optional.of(5L), list.get(0).getLongValue());
+        }
+    }
+
+    @Test
+    public void testRollupBoundsMatchRawQueries() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        long[] timestamps = {minute, minute + 1, 2 * minute - 1, 2 * minute, 2 * minute + 1, 3 * minute, 4 * minute - 1};
+        for (long ts : timestamps) {
+            save(deviceId, ts, ts);
+        }
+        assertCountsMatchRawQueries(deviceId, minute, 4);
+        Thread.sleep(1000);
+        assertCountsMatchRawQueries(deviceId, minute, 4);
+        assertCountsMatchRawQueries(deviceId, 2 * minute, 2);
+    }
+
+    private void assertCountsMatchRawQueries(DeviceId deviceId, long startTs, int minutes) throws Exception {
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        List<TsKvEntry> counts = findMinuteCounts(deviceId, startTs, minutes);
+        // a raw query of the whole range defines which values are aggregated, raw queries of each interval define
+        // to which interval they belong. Values that no interval query returns start an interval (sql excludes both bounds).
+        List<TsKvEntry> all = findRaw(deviceId, startTs, startTs + minutes * minute);
+        long[] expected = new long[minutes];
+        for (TsKvEntry entry : all) {
+            int idx = (int) ((entry.getTs() - startTs) / minute);
+            for (int m = 0; m < minutes; m++) {
+                long intervalStartTs = startTs + m * minute;
+                if (findRaw(deviceId, intervalStartTs, intervalStartTs + minute).stream().anyMatch(e -> e.getTs() == entry.getTs())) {
+                    idx = m;
+                    break;
+                }
+            }
+            expected[idx]++;
+        }
+        long[] actual = new long[minutes];
+        for (TsKvEntry entry : counts) {
+            actual[(int) ((entry.getTs() - startTs) / minute)] = entry.getLongValue().get();
+        }
+        Assert.assertArrayEquals(expected, actual);
+    }
+
+    private List<TsKvEntry> findRaw(DeviceId deviceId, long startTs, long endTs) throws Exception {
+        return tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, startTs, endTs, 0, 1000, Aggregation.NONE))).get();
+    }
+
+    private List<TsKvEntry> findMinuteCounts(DeviceId deviceId, long startTs, int minutes) throws Exception {
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        return tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, startTs,
+                startTs + minutes * minute, minute, minutes, Aggregation.COUNT))).get();
+    }
+
+    private void assertMinuteAggregates(DeviceId deviceId, long firstCount, long firstSum, long firstMin, long firstMax) throws Exception {
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        for (Aggregation aggregation : Arrays.asList(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            List<TsKvEntry> list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                    5 * minute, minute, 5, aggregation))).get();
+            assertEquals(5, list.size());
+            for (int m = 0; m < 5; m++) {
+                long count = m == 0 ? firstCount : 5;
+                long sum = m == 0 ? firstSum : 50 * m + 15;
+                long expected;
+                switch (aggregation) {
+                    case AVG:
+                        expected = sum / count;
+                        break;
+                    case SUM:
+                        expected = sum;
+                        break;
+                    case MIN:
+                        expected = m == 0 ? firstMin : 10 * m + 1;
+                        break;
+                    case MAX:
+                        expected = m == 0 ? firstMax : 10 * m + 5;
+                        break;
+                    default:
+                        expected = count;
+                }
+                assertEquals(m * minute + minute / 2, list.get(m).getTs());
+                assertEquals(aggregation.name(), java.util.Optional.of(expected), list.get(m).getLongValue());
+            }
+        }
+    }
+
     private TsKvEntry save(DeviceId deviceId, long ts, long value) throws Exception {
         TsKvEntry entry = new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY, value));
         tsService.save(deviceId, entry).get();
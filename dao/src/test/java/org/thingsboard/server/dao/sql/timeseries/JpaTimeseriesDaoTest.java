@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.timeseries;
+
+import com.datastax.driver.core.utils.UUIDs;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.AbstractJpaDaoTest;
+import org.thingsboard.server.dao.model.sql.TsKvEntity;
+import org.thingsboard.server.dao.timeseries.TimeseriesDao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class JpaTimeseriesDaoTest extends AbstractJpaDaoTest {
+
+    private static final String LONG_KEY = "longKey";
+    private static final String DOUBLE_KEY = "doubleKey";
+    private static final long START_TS = 0;
+    private static final long END_TS = 60000;
+    private static final long INTERVAL = 10000;
+
+    @Autowired
+    private TimeseriesDao timeseriesDao;
+
+    @Autowired
+    private TsKvRepository tsKvRepository;
+
+    private DeviceId deviceId;
+
+    @Before
+    public void before() throws Exception {
+        deviceId = new DeviceId(UUIDs.timeBased());
+        for (long ts = START_TS + 500; ts < END_TS; ts += 1000) {
+            timeseriesDao.save(deviceId, new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY, ts % 7000)), 0).get();
+            timeseriesDao.save(deviceId, new BasicTsKvEntry(ts, new DoubleDataEntry(DOUBLE_KEY, ts / 3.0)), 0).get();
+        }
+    }
+
+    @Test
+    public void testAggregationMatchesPerIntervalQueries() throws Exception {
+        for (String key : new String[]{LONG_KEY, DOUBLE_KEY}) {
+            for (Aggregation aggregation : Aggregation.values()) {
+                if (aggregation == Aggregation.NONE) {
+                    continue;
+                }
+                List<TsKvEntry> expected = findPerInterval(key, aggregation);
+                List<TsKvEntry> actual = timeseriesDao.findAllAsync(deviceId, Collections.singletonList(
+                        new BaseTsKvQuery(key, START_TS, END_TS, INTERVAL, 0, aggregation))).get();
+                assertEquals(aggregation + " " + key, END_TS / INTERVAL, actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    TsKvEntry expectedEntry = expected.get(i);
+                    TsKvEntry actualEntry = actual.get(i);
+                    assertEquals(expectedEntry.getTs(), actualEntry.getTs());
+                    assertEquals(expectedEntry.getDataType(), actualEntry.getDataType());
+                    assertEquals(Double.parseDouble(expectedEntry.getValueAsString()),
+                            Double.parseDouble(actualEntry.getValueAsString()), 0.000001);
+                }
+            }
+        }
+    }
+
+    private List<TsKvEntry> findPerInterval(String key, Aggregation aggregation) {
+        UUID entityId = deviceId.getId();
+        List<TsKvEntry> result = new ArrayList<>();
+        for (long startTs = START_TS; startTs < END_TS; startTs += INTERVAL) {
+            long endTs = startTs + INTERVAL;
+            TsKvEntity entity;
+            switch (aggregation) {
+                case AVG:
+                    entity = tsKvRepository.findAvg(entityId, EntityType.DEVICE, key, startTs, endTs);
+                    break;
+                case MAX:
+                    entity = tsKvRepository.findMax(entityId, EntityType.DEVICE, key, startTs, endTs);
+                    break;
+                case MIN:
+                    entity = tsKvRepository.findMin(entityId, EntityType.DEVICE, key, startTs, endTs);
+                    break;
+                case SUM:
+                    entity = tsKvRepository.findSum(entityId, EntityType.DEVICE, key, startTs, endTs);
+                    break;
+                default:
+                    entity = tsKvRepository.findCount(entityId, EntityType.DEVICE, key, startTs, endTs);
+            }
+            entity.setKey(key);
+            entity.setTs(startTs + INTERVAL / 2);
+            result.add(entity.toData());
+        }
+        return result;
+    }
+}
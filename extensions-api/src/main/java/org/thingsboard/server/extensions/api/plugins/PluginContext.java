@@ -64,6 +64,12 @@ public interface PluginContext {
 
     void send(PluginWebsocketMsg<?> wsMsg) throws IOException;
 
+    /**
+     * Sends the message with flow control. The message is not affected by the overflow policy of the session
+     * and the callback is notified once the message is written to the session or discarded.
+     */
+    void send(PluginWebsocketMsg<?> wsMsg, PluginCallback<Void> callback);
+
     void close(PluginWebsocketSessionRef sessionRef) throws IOException;
 
     /*
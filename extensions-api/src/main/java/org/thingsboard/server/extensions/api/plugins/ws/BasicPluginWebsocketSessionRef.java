@@ -33,9 +33,10 @@ public class BasicPluginWebsocketSessionRef implements PluginWebsocketSessionRef
     private final Map<String, Object> attributes;
     private final InetSocketAddress localAddress;
     private final InetSocketAddress remoteAddress;
+    private final PluginWebsocketMsgFormat format;
 
     public BasicPluginWebsocketSessionRef(String sessionId, PluginApiCallSecurityContext securityCtx, URI uri, Map<String, Object> attributes,
-            InetSocketAddress localAddress, InetSocketAddress remoteAddress) {
+            InetSocketAddress localAddress, InetSocketAddress remoteAddress, PluginWebsocketMsgFormat format) {
         super();
         this.sessionId = sessionId;
         this.securityCtx = securityCtx;
@@ -43,6 +44,7 @@ public class BasicPluginWebsocketSessionRef implements PluginWebsocketSessionRef
         this.attributes = attributes;
         this.localAddress = localAddress;
         this.remoteAddress = remoteAddress;
+        this.format = format;
     }
 
     public String getSessionId() {
@@ -108,4 +110,9 @@ public class BasicPluginWebsocketSessionRef implements PluginWebsocketSessionRef
         return securityCtx;
     }
 
+    @Override
+    public PluginWebsocketMsgFormat getFormat() {
+        return format;
+    }
+
 }
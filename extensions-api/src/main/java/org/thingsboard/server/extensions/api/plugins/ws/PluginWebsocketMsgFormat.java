@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.api.plugins.ws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Format of plugin websocket messages negotiated by the client, either with the <code>Sec-WebSocket-Protocol</code>
+ * header or with the <code>format</code> query parameter. JSON messages are sent as text frames, protobuf messages
+ * as binary frames.
+ */
+public enum PluginWebsocketMsgFormat {
+
+    JSON("json"), PROTOBUF("protobuf");
+
+    public static final String FORMAT_PARAM = "format";
+
+    private final String subProtocol;
+
+    PluginWebsocketMsgFormat(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public String getSubProtocol() {
+        return subProtocol;
+    }
+
+    public static Optional<PluginWebsocketMsgFormat> forSubProtocol(String subProtocol) {
+        for (PluginWebsocketMsgFormat format : values()) {
+            if (format.subProtocol.equalsIgnoreCase(subProtocol)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static List<String> getSubProtocols() {
+        List<String> subProtocols = new ArrayList<>();
+        for (PluginWebsocketMsgFormat format : values()) {
+            subProtocols.add(format.subProtocol);
+        }
+        return Collections.unmodifiableList(subProtocols);
+    }
+}
@@ -42,4 +42,6 @@ public interface PluginWebsocketSessionRef extends Serializable {
 
     PluginApiCallSecurityContext getSecurityCtx();
 
+    PluginWebsocketMsgFormat getFormat();
+
 }
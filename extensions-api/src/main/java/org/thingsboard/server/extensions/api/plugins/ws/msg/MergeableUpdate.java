@@ -0,0 +1,41 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.api.plugins.ws.msg;
+
+import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketSessionRef;
+
+import java.io.IOException;
+
+/**
+ * Update of a subscription that is encoded only when it is sent to the WebSocket session,
+ * so that the endpoint can merge it into a queued update of the same subscription if the session can't keep up.
+ */
+public interface MergeableUpdate {
+
+    int getSubscriptionId();
+
+    /**
+     * Returns an update that contains the values of this update and of the given later update of the same subscription,
+     * merged by key, or null if the updates can't be merged. Neither of the updates is modified.
+     */
+    MergeableUpdate merge(MergeableUpdate next);
+
+    /**
+     * Encodes the update to a text or binary message of the session.
+     */
+    PluginWebsocketMsg<?> encode(PluginWebsocketSessionRef sessionRef) throws IOException;
+
+}
@@ -26,13 +26,16 @@ import org.thingsboard.server.extensions.api.plugins.PluginCallback;
 import org.thingsboard.server.extensions.api.plugins.PluginContext;
 import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryRpcMsgHandler;
 import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryWebsocketMsgHandler;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.EntitySubscriptions;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.Subscription;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionErrorCode;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionFlushMsg;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionState;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionType;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdateBuffer;
 
 import java.util.*;
-import java.util.function.Function;
 
 /**
  * @author Andrew Shvayka
@@ -40,7 +43,7 @@ import java.util.function.Function;
 @Slf4j
 public class SubscriptionManager {
 
-    private final Map<EntityId, Set<Subscription>> subscriptionsByEntityId = new HashMap<>();
+    private final Map<EntityId, EntitySubscriptions> subscriptionsByEntityId = new HashMap<>();
 
     private final Map<String, Map<Integer, Subscription>> subscriptionsByWsSessionId = new HashMap<>();
 
@@ -49,7 +52,12 @@ public class SubscriptionManager {
     @Setter
     private TelemetryRpcMsgHandler rpcHandler;
 
-    public void addLocalWsSubscription(PluginContext ctx, String sessionId, EntityId entityId, SubscriptionState sub) {
+    /**
+     * Registers subscription of the local WebSocket session. If <code>minIntervalMs</code> is positive, updates are merged
+     * and sent to the session not more often than once per interval.
+     */
+    public void addLocalWsSubscription(PluginContext ctx, String sessionId, EntityId entityId, SubscriptionState sub,
+                                       long minIntervalMs, int maxPointsPerKey) {
         Optional<ServerAddress> server = ctx.resolve(entityId);
         Subscription subscription;
         if (server.isPresent()) {
@@ -61,6 +69,9 @@ public class SubscriptionManager {
             log.trace("[{}] Registering local subscription [{}] for device [{}]", sessionId, sub.getSubscriptionId(), entityId);
             subscription = new Subscription(sub, true);
         }
+        if (minIntervalMs > 0) {
+            subscription.setUpdateBuffer(new SubscriptionUpdateBuffer(minIntervalMs, maxPointsPerKey));
+        }
         registerSubscription(sessionId, entityId, subscription);
     }
 
@@ -114,9 +125,9 @@ public class SubscriptionManager {
     }
 
     private void registerSubscription(String sessionId, EntityId entityId, Subscription subscription) {
-        Set<Subscription> deviceSubscriptions = subscriptionsByEntityId.get(subscription.getEntityId());
+        EntitySubscriptions deviceSubscriptions = subscriptionsByEntityId.get(subscription.getEntityId());
         if (deviceSubscriptions == null) {
-            deviceSubscriptions = new HashSet<>();
+            deviceSubscriptions = new EntitySubscriptions();
             subscriptionsByEntityId.put(entityId, deviceSubscriptions);
         }
         deviceSubscriptions.add(subscription);
@@ -144,7 +155,7 @@ public class SubscriptionManager {
                 } else {
                     log.debug("[{}] Removed session subscription.", sessionId);
                 }
-                Set<Subscription> deviceSubscriptions = subscriptionsByEntityId.get(entityId);
+                EntitySubscriptions deviceSubscriptions = subscriptionsByEntityId.get(entityId);
                 if (deviceSubscriptions != null) {
                     boolean result = deviceSubscriptions.remove(subscription);
                     if (result) {
@@ -168,20 +179,20 @@ public class SubscriptionManager {
         }
     }
 
-    public void onLocalSubscriptionUpdate(PluginContext ctx, EntityId entityId, SubscriptionType type, Function<Subscription, List<TsKvEntry>> f) {
-        Set<Subscription> deviceSubscriptions = subscriptionsByEntityId.get(entityId);
+    /**
+     * Sends entries to subscriptions of the given type that are interested in their keys.
+     */
+    public void onLocalSubscriptionUpdate(PluginContext ctx, EntityId entityId, SubscriptionType type, List<TsKvEntry> entries) {
+        EntitySubscriptions deviceSubscriptions = subscriptionsByEntityId.get(entityId);
         if (deviceSubscriptions != null) {
-            deviceSubscriptions.stream().filter(s -> type == s.getType()).forEach(s -> {
+            deviceSubscriptions.match(type, entries).forEach((s, subscriptionUpdate) -> {
                 String sessionId = s.getWsSessionId();
-                List<TsKvEntry> subscriptionUpdate = f.apply(s);
-                if (!subscriptionUpdate.isEmpty()) {
-                    SubscriptionUpdate update = new SubscriptionUpdate(s.getSubscriptionId(), subscriptionUpdate);
-                    if (s.isLocal()) {
-                        updateSubscriptionState(sessionId, s, update);
-                        websocketHandler.sendWsMsg(ctx, sessionId, update);
-                    } else {
-                        rpcHandler.onSubscriptionUpdate(ctx, s.getServer(), sessionId, update);
-                    }
+                SubscriptionUpdate update = new SubscriptionUpdate(s.getSubscriptionId(), subscriptionUpdate);
+                if (s.isLocal()) {
+                    updateSubscriptionState(sessionId, s, update);
+                    sendWsMsg(ctx, sessionId, s, update);
+                } else {
+                    rpcHandler.onSubscriptionUpdate(ctx, s.getServer(), sessionId, update);
                 }
             });
         } else {
@@ -194,22 +205,52 @@ public class SubscriptionManager {
         Optional<Subscription> subOpt = getSubscription(sessionId, update.getSubscriptionId());
         if (subOpt.isPresent()) {
             updateSubscriptionState(sessionId, subOpt.get(), update);
+            sendWsMsg(ctx, sessionId, subOpt.get(), update);
+        }
+    }
+
+    public void onFlushTimeout(PluginContext ctx, SubscriptionFlushMsg msg) {
+        String sessionId = msg.getSessionId();
+        Optional<Subscription> subOpt = getSubscription(sessionId, msg.getId());
+        if (subOpt.isPresent() && subOpt.get().getUpdateBuffer() != null) {
+            SubscriptionUpdateBuffer buffer = subOpt.get().getUpdateBuffer();
+            if (!buffer.isEmpty()) {
+                websocketHandler.sendWsMsg(ctx, sessionId, buffer.flush(msg.getId(), System.currentTimeMillis()));
+            } else {
+                buffer.setFlushScheduled(false);
+            }
+        } else {
+            log.trace("[{}][{}] Subscription was removed before flush.", sessionId, msg.getId());
+        }
+    }
+
+    private void sendWsMsg(PluginContext ctx, String sessionId, Subscription s, SubscriptionUpdate update) {
+        SubscriptionUpdateBuffer buffer = s.getUpdateBuffer();
+        if (buffer == null || update.getErrorCode() != SubscriptionErrorCode.NO_ERROR.getCode()) {
             websocketHandler.sendWsMsg(ctx, sessionId, update);
+            return;
+        }
+        buffer.merge(update);
+        if (!buffer.isFlushScheduled()) {
+            long ts = System.currentTimeMillis();
+            long delay = buffer.getFlushDelay(ts);
+            if (delay == 0) {
+                websocketHandler.sendWsMsg(ctx, sessionId, buffer.flush(s.getSubscriptionId(), ts));
+            } else {
+                buffer.setFlushScheduled(true);
+                ctx.scheduleTimeoutMsg(new SubscriptionFlushMsg(sessionId, s.getSubscriptionId(), delay));
+            }
         }
     }
 
     public void onAttributesUpdateFromServer(PluginContext ctx, EntityId entityId, String scope, List<AttributeKvEntry> attributes) {
         Optional<ServerAddress> serverAddress = ctx.resolve(entityId);
         if (!serverAddress.isPresent()) {
-            onLocalSubscriptionUpdate(ctx, entityId, SubscriptionType.ATTRIBUTES, s -> {
-                List<TsKvEntry> subscriptionUpdate = new ArrayList<TsKvEntry>();
-                for (AttributeKvEntry kv : attributes) {
-                    if (s.isAllKeys() || s.getKeyStates().containsKey(kv.getKey())) {
-                        subscriptionUpdate.add(new BasicTsKvEntry(kv.getLastUpdateTs(), kv));
-                    }
-                }
-                return subscriptionUpdate;
-            });
+            List<TsKvEntry> entries = new ArrayList<>(attributes.size());
+            for (AttributeKvEntry kv : attributes) {
+                entries.add(new BasicTsKvEntry(kv.getLastUpdateTs(), kv));
+            }
+            onLocalSubscriptionUpdate(ctx, entityId, SubscriptionType.ATTRIBUTES, entries);
         } else {
             rpcHandler.onAttributesUpdate(ctx, serverAddress.get(), entityId, scope, attributes);
         }
@@ -218,15 +259,7 @@ public class SubscriptionManager {
     public void onTimeseriesUpdateFromServer(PluginContext ctx, EntityId entityId, List<TsKvEntry> entries) {
         Optional<ServerAddress> serverAddress = ctx.resolve(entityId);
         if (!serverAddress.isPresent()) {
-            onLocalSubscriptionUpdate(ctx, entityId, SubscriptionType.TIMESERIES, s -> {
-                List<TsKvEntry> subscriptionUpdate = new ArrayList<TsKvEntry>();
-                for (TsKvEntry kv : entries) {
-                    if (s.isAllKeys() || s.getKeyStates().containsKey((kv.getKey()))) {
-                        subscriptionUpdate.add(kv);
-                    }
-                }
-                return subscriptionUpdate;
-            });
+            onLocalSubscriptionUpdate(ctx, entityId, SubscriptionType.TIMESERIES, entries);
         } else {
             rpcHandler.onTimeseriesUpdate(ctx, serverAddress.get(), entityId, entries);
         }
@@ -262,7 +295,7 @@ public class SubscriptionManager {
 
             for (Subscription subscription : sessionSubscriptions.values()) {
                 EntityId entityId = subscription.getEntityId();
-                Set<Subscription> deviceSubscriptions = subscriptionsByEntityId.get(entityId);
+                EntitySubscriptions deviceSubscriptions = subscriptionsByEntityId.get(entityId);
                 deviceSubscriptions.remove(subscription);
                 if (deviceSubscriptions.isEmpty()) {
                     subscriptionsByEntityId.remove(entityId);
@@ -290,16 +323,15 @@ public class SubscriptionManager {
 
     public void onClusterUpdate(PluginContext ctx) {
         log.trace("Processing cluster onUpdate msg!");
-        Iterator<Map.Entry<EntityId, Set<Subscription>>> deviceIterator = subscriptionsByEntityId.entrySet().iterator();
+        Iterator<Map.Entry<EntityId, EntitySubscriptions>> deviceIterator = subscriptionsByEntityId.entrySet().iterator();
         while (deviceIterator.hasNext()) {
-            Map.Entry<EntityId, Set<Subscription>> e = deviceIterator.next();
-            Set<Subscription> subscriptions = e.getValue();
+            Map.Entry<EntityId, EntitySubscriptions> e = deviceIterator.next();
+            EntitySubscriptions subscriptions = e.getValue();
             Optional<ServerAddress> newAddressOptional = ctx.resolve(e.getKey());
             if (newAddressOptional.isPresent()) {
                 ServerAddress newAddress = newAddressOptional.get();
-                Iterator<Subscription> subscriptionIterator = subscriptions.iterator();
-                while (subscriptionIterator.hasNext()) {
-                    Subscription s = subscriptionIterator.next();
+                List<Subscription> movedSubscriptions = new ArrayList<>();
+                for (Subscription s : subscriptions.getSubscriptions()) {
                     if (s.isLocal()) {
                         if (!newAddress.equals(s.getServer())) {
                             log.trace("[{}] Local subscription is now handled on new server [{}]", s.getWsSessionId(), newAddress);
@@ -308,14 +340,13 @@ public class SubscriptionManager {
                         }
                     } else {
                         log.trace("[{}] Remote subscription is now handled on new server address: [{}]", s.getWsSessionId(), newAddress);
-                        subscriptionIterator.remove();
+                        movedSubscriptions.add(s);
                         //TODO: onUpdate state of subscription by WsSessionId and other maps.
                     }
                 }
+                movedSubscriptions.forEach(subscriptions::remove);
             } else {
-                Iterator<Subscription> subscriptionIterator = subscriptions.iterator();
-                while (subscriptionIterator.hasNext()) {
-                    Subscription s = subscriptionIterator.next();
+                for (Subscription s : subscriptions.getSubscriptions()) {
                     if (s.isLocal()) {
                         if (s.getServer() != null) {
                             log.trace("[{}] Local subscription is no longer handled on remote server address [{}]", s.getWsSessionId(), s.getServer());
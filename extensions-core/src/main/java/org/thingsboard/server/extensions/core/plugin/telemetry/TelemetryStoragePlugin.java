@@ -25,11 +25,13 @@ import org.thingsboard.server.extensions.api.plugins.handlers.RestMsgHandler;
 import org.thingsboard.server.extensions.api.plugins.handlers.RpcMsgHandler;
 import org.thingsboard.server.extensions.api.plugins.handlers.RuleMsgHandler;
 import org.thingsboard.server.extensions.api.plugins.handlers.WebsocketMsgHandler;
+import org.thingsboard.server.extensions.api.plugins.msg.TimeoutMsg;
 import org.thingsboard.server.extensions.core.action.telemetry.TelemetryPluginAction;
 import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryRestMsgHandler;
 import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryRpcMsgHandler;
 import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryRuleMsgHandler;
 import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryWebsocketMsgHandler;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionFlushMsg;
 
 @Plugin(name = "Telemetry Plugin", actions = {TelemetryPluginAction.class})
 @Slf4j
@@ -76,6 +78,15 @@ public class TelemetryStoragePlugin extends AbstractPlugin<EmptyComponentConfigu
         return rpcMsgHandler;
     }
 
+    @Override
+    public void process(PluginContext ctx, TimeoutMsg<?> msg) {
+        if (msg instanceof SubscriptionFlushMsg) {
+            subscriptionManager.onFlushTimeout(ctx, (SubscriptionFlushMsg) msg);
+        } else {
+            super.process(ctx, msg);
+        }
+    }
+
     @Override
     public void onServerAdded(PluginContext ctx, ServerAddress server) {
         subscriptionManager.onClusterUpdate(ctx);
@@ -36,5 +36,11 @@ public class GetHistoryCmd implements TelemetryPluginCmd {
     private long interval;
     private int limit;
     private String agg;
+    /**
+     * Maximum amount of values per key in a single reply. The history is sent in several chunks
+     * with {@link org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate#isHasMore()} set
+     * on all but the last one. 0 sends the whole history in one reply.
+     */
+    private int chunkSize;
 
 }
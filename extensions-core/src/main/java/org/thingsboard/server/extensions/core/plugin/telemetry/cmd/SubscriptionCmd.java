@@ -31,6 +31,14 @@ public abstract class SubscriptionCmd implements TelemetryPluginCmd {
     private String keys;
     private String scope;
     private boolean unsubscribe;
+    /**
+     * Minimum interval between updates sent to the session. Updates received in between are merged by key. 0 sends every update.
+     */
+    private long minIntervalMs;
+    /**
+     * Maximum amount of merged points per key. 0 or 1 keeps the latest value only.
+     */
+    private int maxPointsPerKey;
 
     public abstract SubscriptionType getType();
 
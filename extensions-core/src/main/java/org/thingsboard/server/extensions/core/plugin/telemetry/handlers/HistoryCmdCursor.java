@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.handlers;
+
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.data.kv.TsKvQuery;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.GetHistoryCmd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position of a chunked history command.
+ * <p>
+ * Keys are read one after another. Raw values are read from the newest to the oldest in pages of the chunk size,
+ * each page ends right before the oldest value of the previous one. Aggregated values are read from the oldest
+ * in windows of the chunk size intervals, so bounds of the intervals are the same as for a single query.
+ */
+class HistoryCmdCursor {
+
+    private final GetHistoryCmd cmd;
+    private final List<String> keys;
+    private final Aggregation aggregation;
+    private final int limit;
+    private final int chunkSize;
+
+    private int keyIdx;
+    private long cursorTs;
+    private int keyCount;
+    private boolean firstPage;
+    private int pageLimit;
+
+    HistoryCmdCursor(GetHistoryCmd cmd, List<String> keys, Aggregation aggregation, int limit, int chunkSize) {
+        this.cmd = cmd;
+        this.keys = keys;
+        this.aggregation = aggregation;
+        this.limit = limit;
+        this.chunkSize = chunkSize;
+        resetKey();
+    }
+
+    GetHistoryCmd getCmd() {
+        return cmd;
+    }
+
+    boolean hasNext() {
+        return keyIdx < keys.size();
+    }
+
+    TsKvQuery next() {
+        String key = keys.get(keyIdx);
+        if (aggregation == Aggregation.NONE) {
+            int pageSize = Math.min(chunkSize, limit - keyCount);
+            // value at the end of the previous page is returned again if the end of the range is inclusive
+            pageLimit = firstPage ? pageSize : pageSize + 1;
+            return new BaseTsKvQuery(key, cmd.getStartTs(), cursorTs, cmd.getInterval(), pageLimit, aggregation);
+        } else {
+            return new BaseTsKvQuery(key, cursorTs, getWindowEndTs(), cmd.getInterval(), limit, aggregation);
+        }
+    }
+
+    /**
+     * Moves the cursor past the result of the last query and returns values of the result that were not sent yet.
+     */
+    List<TsKvEntry> onResult(List<TsKvEntry> data) {
+        if (aggregation != Aggregation.NONE) {
+            cursorTs = getWindowEndTs();
+            if (cursorTs >= cmd.getEndTs()) {
+                nextKey();
+            }
+            return data;
+        }
+        int pageSize = firstPage ? pageLimit : pageLimit - 1;
+        List<TsKvEntry> chunk = new ArrayList<>(Math.min(data.size(), pageSize));
+        for (TsKvEntry entry : data) {
+            if (chunk.size() == pageSize) {
+                break;
+            }
+            if (firstPage || entry.getTs() < cursorTs) {
+                chunk.add(entry);
+            }
+        }
+        keyCount += chunk.size();
+        if (data.size() < pageLimit || chunk.isEmpty() || keyCount >= limit) {
+            nextKey();
+        } else {
+            cursorTs = chunk.get(chunk.size() - 1).getTs();
+            firstPage = false;
+        }
+        return chunk;
+    }
+
+    private long getWindowEndTs() {
+        long window = cmd.getInterval() > 0 ? cmd.getInterval() * chunkSize : cmd.getEndTs() - cursorTs;
+        return Math.min(cursorTs + window, cmd.getEndTs());
+    }
+
+    private void nextKey() {
+        keyIdx++;
+        resetKey();
+    }
+
+    private void resetKey() {
+        cursorTs = aggregation == Aggregation.NONE ? cmd.getEndTs() : cmd.getStartTs();
+        keyCount = 0;
+        firstPage = true;
+    }
+}
@@ -29,10 +29,8 @@ import org.thingsboard.server.extensions.core.plugin.telemetry.SubscriptionManag
 import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.*;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -83,7 +81,7 @@ public class TelemetryRpcMsgHandler implements RpcMsgHandler {
         } catch (InvalidProtocolBufferException e) {
             throw new RuntimeException(e);
         }
-        subscriptionManager.onRemoteSubscriptionUpdate(ctx, proto.getSessionId(), convert(proto));
+        subscriptionManager.onRemoteSubscriptionUpdate(ctx, proto.getSessionId(), TelemetryWebsocketProtoCodec.fromProto(proto));
     }
 
     private void processAttributeUpdate(PluginContext ctx, RpcMsg msg) {
@@ -135,7 +133,7 @@ public class TelemetryRpcMsgHandler implements RpcMsgHandler {
     }
 
     public void onSubscriptionUpdate(PluginContext ctx, ServerAddress address, String sessionId, SubscriptionUpdate update) {
-        SubscriptionUpdateProto proto = getSubscriptionUpdateProto(sessionId, update);
+        SubscriptionUpdateProto proto = TelemetryWebsocketProtoCodec.toProto(update).setSessionId(sessionId).build();
         ctx.sendPluginRpcMsg(new RpcMsg(address, SUBSCRIPTION_UPDATE_CLAZZ, proto.toByteArray()));
     }
 
@@ -169,49 +167,6 @@ public class TelemetryRpcMsgHandler implements RpcMsgHandler {
         subscriptionManager.removeSubscription(ctx, proto.getSessionId(), proto.getSubscriptionId());
     }
 
-    private static SubscriptionUpdateProto getSubscriptionUpdateProto(String sessionId, SubscriptionUpdate update) {
-        SubscriptionUpdateProto.Builder builder = SubscriptionUpdateProto.newBuilder();
-        builder.setSessionId(sessionId);
-        builder.setSubscriptionId(update.getSubscriptionId());
-        builder.setErrorCode(update.getErrorCode());
-        if (update.getErrorMsg() != null) {
-            builder.setErrorMsg(update.getErrorMsg());
-        }
-        update.getData().entrySet().forEach(
-                e -> {
-                    SubscriptionUpdateValueListProto.Builder dataBuilder = SubscriptionUpdateValueListProto.newBuilder();
-
-                    dataBuilder.setKey(e.getKey());
-                    e.getValue().forEach(v -> {
-                        Object[] array = (Object[]) v;
-                        dataBuilder.addTs((long) array[0]);
-                        dataBuilder.addValue((String) array[1]);
-                    });
-
-                    builder.addData(dataBuilder.build());
-                }
-        );
-        return builder.build();
-    }
-
-    private SubscriptionUpdate convert(SubscriptionUpdateProto proto) {
-        if (proto.getErrorCode() > 0) {
-            return new SubscriptionUpdate(proto.getSubscriptionId(), SubscriptionErrorCode.forCode(proto.getErrorCode()), proto.getErrorMsg());
-        } else {
-            Map<String, List<Object>> data = new TreeMap<>();
-            proto.getDataList().forEach(v -> {
-                List<Object> values = data.computeIfAbsent(v.getKey(), k -> new ArrayList<>());
-                for (int i = 0; i < v.getTsCount(); i++) {
-                    Object[] value = new Object[2];
-                    value[0] = v.getTs(i);
-                    value[1] = v.getValue(i);
-                    values.add(value);
-                }
-            });
-            return new SubscriptionUpdate(proto.getSubscriptionId(), data);
-        }
-    }
-
     public void onAttributesUpdate(PluginContext ctx, ServerAddress address, EntityId entityId, String scope, List<AttributeKvEntry> attributes) {
         ctx.sendPluginRpcMsg(new RpcMsg(address, ATTRIBUTES_UPDATE_CLAZZ, getAttributesUpdateProto(entityId, scope, attributes).toByteArray()));
     }
@@ -96,17 +96,7 @@ public class TelemetryRuleMsgHandler extends DefaultRuleMsgHandler {
             @Override
             public void onSuccess(PluginContext ctx, Void data) {
                 ctx.reply(new ResponsePluginToRuleMsg(msg.getUid(), tenantId, ruleId, BasicStatusCodeResponse.onSuccess(request.getMsgType(), request.getRequestId())));
-                subscriptionManager.onLocalSubscriptionUpdate(ctx, msg.getDeviceId(), SubscriptionType.TIMESERIES, s -> {
-                    List<TsKvEntry> subscriptionUpdate = new ArrayList<TsKvEntry>();
-                    for (Map.Entry<Long, List<KvEntry>> entry : request.getData().entrySet()) {
-                        for (KvEntry kv : entry.getValue()) {
-                            if (s.isAllKeys() || s.getKeyStates().containsKey((kv.getKey()))) {
-                                subscriptionUpdate.add(new BasicTsKvEntry(entry.getKey(), kv));
-                            }
-                        }
-                    }
-                    return subscriptionUpdate;
-                });
+                subscriptionManager.onLocalSubscriptionUpdate(ctx, msg.getDeviceId(), SubscriptionType.TIMESERIES, tsKvEntries);
             }
 
             @Override
@@ -126,15 +116,11 @@ public class TelemetryRuleMsgHandler extends DefaultRuleMsgHandler {
                     public void onSuccess(PluginContext ctx, Void value) {
                         ctx.reply(new ResponsePluginToRuleMsg(msg.getUid(), tenantId, ruleId, BasicStatusCodeResponse.onSuccess(request.getMsgType(), request.getRequestId())));
 
-                        subscriptionManager.onLocalSubscriptionUpdate(ctx, msg.getDeviceId(), SubscriptionType.ATTRIBUTES, s -> {
-                            List<TsKvEntry> subscriptionUpdate = new ArrayList<TsKvEntry>();
-                            for (AttributeKvEntry kv : request.getAttributes()) {
-                                if (s.isAllKeys() || s.getKeyStates().containsKey(kv.getKey())) {
-                                    subscriptionUpdate.add(new BasicTsKvEntry(kv.getLastUpdateTs(), kv));
-                                }
-                            }
-                            return subscriptionUpdate;
-                        });
+                        List<TsKvEntry> tsKvEntries = new ArrayList<>();
+                        for (AttributeKvEntry kv : request.getAttributes()) {
+                            tsKvEntries.add(new BasicTsKvEntry(kv.getLastUpdateTs(), kv));
+                        }
+                        subscriptionManager.onLocalSubscriptionUpdate(ctx, msg.getDeviceId(), SubscriptionType.ATTRIBUTES, tsKvEntries);
                     }
 
                     @Override
@@ -15,7 +15,6 @@
  */
 package org.thingsboard.server.extensions.core.plugin.telemetry.handlers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 import org.thingsboard.server.common.data.DataConstants;
@@ -26,9 +25,12 @@ import org.thingsboard.server.extensions.api.exception.UnauthorizedException;
 import org.thingsboard.server.extensions.api.plugins.PluginCallback;
 import org.thingsboard.server.extensions.api.plugins.PluginContext;
 import org.thingsboard.server.extensions.api.plugins.handlers.DefaultWebsocketMsgHandler;
+import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketMsgFormat;
 import org.thingsboard.server.extensions.api.plugins.ws.PluginWebsocketSessionRef;
 import org.thingsboard.server.extensions.api.plugins.ws.WsSessionMetaData;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.BinaryPluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeablePluginWebSocketMsg;
+import org.thingsboard.server.extensions.api.plugins.ws.msg.MergeableUpdate;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.PluginWebsocketMsg;
 import org.thingsboard.server.extensions.api.plugins.ws.msg.TextPluginWebSocketMsg;
 import org.thingsboard.server.extensions.core.plugin.telemetry.SubscriptionManager;
@@ -37,8 +39,10 @@ import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionE
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionState;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionType;
 import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdateBuffer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -66,9 +70,8 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
                 TextPluginWebSocketMsg textMsg = (TextPluginWebSocketMsg) wsMsg;
                 cmdsWrapper = jsonMapper.readValue(textMsg.getPayload(), TelemetryPluginCmdsWrapper.class);
             } else if (wsMsg instanceof BinaryPluginWebSocketMsg) {
-                throw new IllegalStateException("Not Implemented!");
-                // TODO: add support of BSON here based on
-                // https://github.com/michel-kraemer/bson4jackson
+                BinaryPluginWebSocketMsg binaryMsg = (BinaryPluginWebSocketMsg) wsMsg;
+                cmdsWrapper = TelemetryWebsocketProtoCodec.decodeCmds(binaryMsg.getPayload());
             }
             if (cmdsWrapper != null) {
                 if (cmdsWrapper.getAttrSubCmds() != null) {
@@ -120,7 +123,7 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
                             attributesData.forEach(v -> subState.put(v.getKey(), v.getTs()));
 
                             SubscriptionState sub = new SubscriptionState(sessionId, cmd.getCmdId(), entityId, SubscriptionType.ATTRIBUTES, false, subState);
-                            subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub);
+                            subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub, cmd.getMinIntervalMs(), cmd.getMaxPointsPerKey());
                         }
 
                         @Override
@@ -154,7 +157,7 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
                             attributesData.forEach(v -> subState.put(v.getKey(), v.getTs()));
 
                             SubscriptionState sub = new SubscriptionState(sessionId, cmd.getCmdId(), entityId, SubscriptionType.ATTRIBUTES, true, subState);
-                            subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub);
+                            subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub, cmd.getMinIntervalMs(), cmd.getMaxPointsPerKey());
                         }
 
                         @Override
@@ -210,7 +213,7 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
                             Map<String, Long> subState = new HashMap<>(data.size());
                             data.forEach(v -> subState.put(v.getKey(), v.getTs()));
                             SubscriptionState sub = new SubscriptionState(sessionId, cmd.getCmdId(), entityId, SubscriptionType.TIMESERIES, true, subState);
-                            subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub);
+                            subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub, cmd.getMinIntervalMs(), cmd.getMaxPointsPerKey());
                         }
 
                         @Override
@@ -241,7 +244,7 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
                 keys.forEach(key -> subState.put(key, startTs));
                 data.forEach(v -> subState.put(v.getKey(), v.getTs()));
                 SubscriptionState sub = new SubscriptionState(sessionId, cmd.getCmdId(), entityId, SubscriptionType.TIMESERIES, false, subState);
-                subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub);
+                subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub, cmd.getMinIntervalMs(), cmd.getMaxPointsPerKey());
             }
 
             @Override
@@ -278,29 +281,91 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
         }
         EntityId entityId = EntityIdFactory.getByTypeAndId(cmd.getEntityType(), cmd.getEntityId());
         List<String> keys = new ArrayList<>(getKeys(cmd).orElse(Collections.emptySet()));
+        if (cmd.getChunkSize() > 0) {
+            loadHistoryChunk(ctx, sessionRef, entityId,
+                    new HistoryCmdCursor(cmd, keys, getAggregation(cmd.getAgg()), getLimit(cmd.getLimit()), cmd.getChunkSize()));
+            return;
+        }
         List<TsKvQuery> queries = keys.stream().map(key -> new BaseTsKvQuery(key, cmd.getStartTs(), cmd.getEndTs(), cmd.getInterval(), getLimit(cmd.getLimit()), getAggregation(cmd.getAgg())))
                 .collect(Collectors.toList());
         ctx.loadTimeseries(entityId, queries, new PluginCallback<List<TsKvEntry>>() {
             @Override
             public void onSuccess(PluginContext ctx, List<TsKvEntry> data) {
-                sendWsMsg(ctx, sessionRef, new SubscriptionUpdate(cmd.getCmdId(), data));
+                sendHistoryMsg(ctx, sessionRef, new SubscriptionUpdate(cmd.getCmdId(), data), getHistorySentCallback(sessionRef, cmd));
             }
 
             @Override
             public void onFailure(PluginContext ctx, Exception e) {
-                SubscriptionUpdate update;
-                if (UnauthorizedException.class.isInstance(e)) {
-                    update = new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.UNAUTHORIZED,
-                            SubscriptionErrorCode.UNAUTHORIZED.getDefaultMsg());
-                } else {
-                    update = new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.INTERNAL_ERROR,
-                            "Failed to fetch data!");
+                sendHistoryMsg(ctx, sessionRef, getHistoryErrorUpdate(cmd, e), getHistorySentCallback(sessionRef, cmd));
+            }
+        });
+    }
+
+    /**
+     * Loads the next page of the history command. The page is sent with flow control,
+     * so the next page is only requested once the previous one is written to the session.
+     */
+    private void loadHistoryChunk(PluginContext ctx, PluginWebsocketSessionRef sessionRef, EntityId entityId, HistoryCmdCursor cursor) {
+        GetHistoryCmd cmd = cursor.getCmd();
+        ctx.loadTimeseries(entityId, Collections.singletonList(cursor.next()), new PluginCallback<List<TsKvEntry>>() {
+            @Override
+            public void onSuccess(PluginContext ctx, List<TsKvEntry> data) {
+                String sessionId = sessionRef.getSessionId();
+                if (!wsSessionsMap.containsKey(sessionId)) {
+                    log.debug("[{}][{}] Session is closed, history loading is stopped.", sessionId, cmd.getCmdId());
+                    return;
                 }
-                sendWsMsg(ctx, sessionRef, update);
+                List<TsKvEntry> chunk = cursor.onResult(data);
+                boolean hasMore = cursor.hasNext();
+                if (chunk.isEmpty() && hasMore) {
+                    loadHistoryChunk(ctx, sessionRef, entityId, cursor);
+                    return;
+                }
+                sendHistoryMsg(ctx, sessionRef, new SubscriptionUpdate(cmd.getCmdId(), chunk, hasMore), new PluginCallback<Void>() {
+                    @Override
+                    public void onSuccess(PluginContext ctx, Void value) {
+                        if (hasMore) {
+                            loadHistoryChunk(ctx, sessionRef, entityId, cursor);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(PluginContext ctx, Exception e) {
+                        log.debug("[{}][{}] Failed to send history chunk, history loading is stopped: {}", sessionId, cmd.getCmdId(), e.getMessage());
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(PluginContext ctx, Exception e) {
+                sendHistoryMsg(ctx, sessionRef, getHistoryErrorUpdate(cmd, e), getHistorySentCallback(sessionRef, cmd));
             }
         });
     }
 
+    private static PluginCallback<Void> getHistorySentCallback(PluginWebsocketSessionRef sessionRef, GetHistoryCmd cmd) {
+        return new PluginCallback<Void>() {
+            @Override
+            public void onSuccess(PluginContext ctx, Void value) {
+            }
+
+            @Override
+            public void onFailure(PluginContext ctx, Exception e) {
+                log.debug("[{}][{}] Failed to send history reply: {}", sessionRef.getSessionId(), cmd.getCmdId(), e.getMessage());
+            }
+        };
+    }
+
+    private static SubscriptionUpdate getHistoryErrorUpdate(GetHistoryCmd cmd, Exception e) {
+        if (UnauthorizedException.class.isInstance(e)) {
+            return new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.UNAUTHORIZED,
+                    SubscriptionErrorCode.UNAUTHORIZED.getDefaultMsg());
+        } else {
+            return new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.INTERNAL_ERROR,
+                    "Failed to fetch data!");
+        }
+    }
+
     private static Aggregation getAggregation(String agg) {
         return StringUtils.isEmpty(agg) ? DEFAULT_AGGREGATION : Aggregation.valueOf(agg);
     }
@@ -341,17 +406,37 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
     }
 
     private void sendWsMsg(PluginContext ctx, PluginWebsocketSessionRef sessionRef, SubscriptionUpdate update) {
-        TextPluginWebSocketMsg reply;
         try {
-            reply = new TextPluginWebSocketMsg(sessionRef, jsonMapper.writeValueAsString(update));
-            ctx.send(reply);
-        } catch (JsonProcessingException e) {
-            log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
+            ctx.send(new MergeablePluginWebSocketMsg(sessionRef, new MergeableSubscriptionUpdate(update)));
         } catch (IOException e) {
             log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
         }
     }
 
+    /**
+     * Sends the history reply with flow control. Unlike subscription updates, history replies are never merged
+     * or discarded by the overflow policy of the session.
+     */
+    private void sendHistoryMsg(PluginContext ctx, PluginWebsocketSessionRef sessionRef, SubscriptionUpdate update, PluginCallback<Void> callback) {
+        PluginWebsocketMsg<?> msg;
+        try {
+            msg = encodeWsMsg(sessionRef, update);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
+            callback.onFailure(ctx, e);
+            return;
+        }
+        ctx.send(msg, callback);
+    }
+
+    private PluginWebsocketMsg<?> encodeWsMsg(PluginWebsocketSessionRef sessionRef, SubscriptionUpdate update) throws IOException {
+        if (sessionRef.getFormat() == PluginWebsocketMsgFormat.PROTOBUF) {
+            return new BinaryPluginWebSocketMsg(sessionRef, ByteBuffer.wrap(TelemetryWebsocketProtoCodec.encodeUpdate(update)));
+        } else {
+            return new TextPluginWebSocketMsg(sessionRef, jsonMapper.writeValueAsString(update));
+        }
+    }
+
     public static Optional<Set<String>> getKeys(TelemetryPluginCmd cmd) {
         if (!StringUtils.isEmpty(cmd.getKeys())) {
             Set<String> keys = new HashSet<>();
@@ -370,4 +455,52 @@ public class TelemetryWebsocketMsgHandler extends DefaultWebsocketMsgHandler {
             sendWsMsg(ctx, md.getSessionRef(), update);
         }
     }
+
+    /**
+     * Update that is encoded by the WebSocket endpoint when it is sent. Updates without errors are merged by key
+     * the same way as by {@link SubscriptionUpdateBuffer}, keeping up to {@link SubscriptionUpdateBuffer#MAX_POINTS_PER_KEY}
+     * latest points of each key.
+     */
+    private class MergeableSubscriptionUpdate implements MergeableUpdate {
+
+        private final SubscriptionUpdate update;
+
+        private MergeableSubscriptionUpdate(SubscriptionUpdate update) {
+            this.update = update;
+        }
+
+        @Override
+        public int getSubscriptionId() {
+            return update.getSubscriptionId();
+        }
+
+        @Override
+        public MergeableUpdate merge(MergeableUpdate next) {
+            if (!(next instanceof MergeableSubscriptionUpdate)) {
+                return null;
+            }
+            SubscriptionUpdate nextUpdate = ((MergeableSubscriptionUpdate) next).update;
+            if (!isMergeable(update) || !isMergeable(nextUpdate) || update.getSubscriptionId() != nextUpdate.getSubscriptionId()) {
+                return null;
+            }
+            SubscriptionUpdateBuffer buffer = new SubscriptionUpdateBuffer(0, SubscriptionUpdateBuffer.MAX_POINTS_PER_KEY);
+            buffer.merge(update);
+            buffer.merge(nextUpdate);
+            return new MergeableSubscriptionUpdate(buffer.flush(update.getSubscriptionId(), 0));
+        }
+
+        @Override
+        public PluginWebsocketMsg<?> encode(PluginWebsocketSessionRef sessionRef) throws IOException {
+            return encodeWsMsg(sessionRef, update);
+        }
+
+        private boolean isMergeable(SubscriptionUpdate update) {
+            return update.getErrorCode() == SubscriptionErrorCode.NO_ERROR.getCode() && update.getData() != null && !update.isHasMore();
+        }
+
+        @Override
+        public String toString() {
+            return update.toString();
+        }
+    }
 }
@@ -0,0 +1,322 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.handlers;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.springframework.util.StringUtils;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.AttributesSubscriptionCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.GetHistoryCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.SubscriptionCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.TelemetryPluginCmdsWrapper;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.TimeseriesSubscriptionCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.GetHistoryCmdProto;
+import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.SubscriptionCmdProto;
+import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.SubscriptionUpdateProto;
+import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.SubscriptionUpdateValueListProto;
+import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.TelemetryPluginCmdsProto;
+import org.thingsboard.server.extensions.core.plugin.telemetry.gen.TelemetryPluginProtos.TimeseriesSubscriptionCmdProto;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionErrorCode;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Protobuf encoding of telemetry plugin commands and subscription updates, used by the binary websocket protocol
+ * and to forward subscription updates between cluster nodes. Empty strings of optional command fields are decoded
+ * as <code>null</code>, same as missing JSON fields.
+ */
+public final class TelemetryWebsocketProtoCodec {
+
+    private static final int UPDATE_SUBSCRIPTION_ID_FIELD = SubscriptionUpdateProto.SUBSCRIPTIONID_FIELD_NUMBER;
+    private static final int UPDATE_ERROR_CODE_FIELD = SubscriptionUpdateProto.ERRORCODE_FIELD_NUMBER;
+    private static final int UPDATE_ERROR_MSG_FIELD = SubscriptionUpdateProto.ERRORMSG_FIELD_NUMBER;
+    private static final int UPDATE_DATA_FIELD = SubscriptionUpdateProto.DATA_FIELD_NUMBER;
+    private static final int UPDATE_HAS_MORE_FIELD = SubscriptionUpdateProto.HASMORE_FIELD_NUMBER;
+    private static final int VALUE_LIST_KEY_FIELD = SubscriptionUpdateValueListProto.KEY_FIELD_NUMBER;
+    private static final int VALUE_LIST_TS_FIELD = SubscriptionUpdateValueListProto.TS_FIELD_NUMBER;
+    private static final int VALUE_LIST_VALUE_FIELD = SubscriptionUpdateValueListProto.VALUE_FIELD_NUMBER;
+
+    private TelemetryWebsocketProtoCodec() {
+    }
+
+    public static TelemetryPluginCmdsWrapper decodeCmds(ByteBuffer payload) throws IOException {
+        TelemetryPluginCmdsProto proto = TelemetryPluginCmdsProto.parseFrom(CodedInputStream.newInstance(payload));
+        TelemetryPluginCmdsWrapper wrapper = new TelemetryPluginCmdsWrapper();
+        if (proto.getAttrSubCmdsCount() > 0) {
+            List<AttributesSubscriptionCmd> cmds = new ArrayList<>(proto.getAttrSubCmdsCount());
+            proto.getAttrSubCmdsList().forEach(cmdProto -> cmds.add(fromProto(new AttributesSubscriptionCmd(), cmdProto)));
+            wrapper.setAttrSubCmds(cmds);
+        }
+        if (proto.getTsSubCmdsCount() > 0) {
+            List<TimeseriesSubscriptionCmd> cmds = new ArrayList<>(proto.getTsSubCmdsCount());
+            proto.getTsSubCmdsList().forEach(cmdProto -> {
+                TimeseriesSubscriptionCmd cmd = fromProto(new TimeseriesSubscriptionCmd(), cmdProto.getCmd());
+                cmd.setStartTs(cmdProto.getStartTs());
+                cmd.setTimeWindow(cmdProto.getTimeWindow());
+                cmd.setInterval(cmdProto.getInterval());
+                cmd.setLimit(cmdProto.getLimit());
+                cmd.setAgg(emptyToNull(cmdProto.getAgg()));
+                cmds.add(cmd);
+            });
+            wrapper.setTsSubCmds(cmds);
+        }
+        if (proto.getHistoryCmdsCount() > 0) {
+            List<GetHistoryCmd> cmds = new ArrayList<>(proto.getHistoryCmdsCount());
+            proto.getHistoryCmdsList().forEach(cmdProto -> cmds.add(new GetHistoryCmd(cmdProto.getCmdId(), emptyToNull(cmdProto.getEntityType()),
+                    emptyToNull(cmdProto.getEntityId()), emptyToNull(cmdProto.getKeys()), cmdProto.getStartTs(), cmdProto.getEndTs(),
+                    cmdProto.getInterval(), cmdProto.getLimit(), emptyToNull(cmdProto.getAgg()), cmdProto.getChunkSize())));
+            wrapper.setHistoryCmds(cmds);
+        }
+        return wrapper;
+    }
+
+    public static byte[] encodeCmds(TelemetryPluginCmdsWrapper wrapper) {
+        TelemetryPluginCmdsProto.Builder builder = TelemetryPluginCmdsProto.newBuilder();
+        if (wrapper.getAttrSubCmds() != null) {
+            wrapper.getAttrSubCmds().forEach(cmd -> builder.addAttrSubCmds(toProto(cmd)));
+        }
+        if (wrapper.getTsSubCmds() != null) {
+            wrapper.getTsSubCmds().forEach(cmd -> {
+                TimeseriesSubscriptionCmdProto.Builder cmdBuilder = TimeseriesSubscriptionCmdProto.newBuilder()
+                        .setCmd(toProto(cmd))
+                        .setStartTs(cmd.getStartTs())
+                        .setTimeWindow(cmd.getTimeWindow())
+                        .setInterval(cmd.getInterval())
+                        .setLimit(cmd.getLimit());
+                if (cmd.getAgg() != null) {
+                    cmdBuilder.setAgg(cmd.getAgg());
+                }
+                builder.addTsSubCmds(cmdBuilder);
+            });
+        }
+        if (wrapper.getHistoryCmds() != null) {
+            wrapper.getHistoryCmds().forEach(cmd -> {
+                GetHistoryCmdProto.Builder cmdBuilder = GetHistoryCmdProto.newBuilder()
+                        .setCmdId(cmd.getCmdId())
+                        .setStartTs(cmd.getStartTs())
+                        .setEndTs(cmd.getEndTs())
+                        .setInterval(cmd.getInterval())
+                        .setLimit(cmd.getLimit())
+                        .setChunkSize(cmd.getChunkSize());
+                if (cmd.getEntityType() != null) {
+                    cmdBuilder.setEntityType(cmd.getEntityType());
+                }
+                if (cmd.getEntityId() != null) {
+                    cmdBuilder.setEntityId(cmd.getEntityId());
+                }
+                if (cmd.getKeys() != null) {
+                    cmdBuilder.setKeys(cmd.getKeys());
+                }
+                if (cmd.getAgg() != null) {
+                    cmdBuilder.setAgg(cmd.getAgg());
+                }
+                builder.addHistoryCmds(cmdBuilder);
+            });
+        }
+        return builder.build().toByteArray();
+    }
+
+    /**
+     * Encodes the update as {@link SubscriptionUpdateProto} without an intermediate message, so values are copied
+     * only once. The result is the same as serialization of {@link #toProto(SubscriptionUpdate)}.
+     */
+    public static byte[] encodeUpdate(SubscriptionUpdate update) {
+        Map<String, List<Object>> data = update.getData();
+        int size = 0;
+        if (update.getSubscriptionId() != 0) {
+            size += CodedOutputStream.computeInt32Size(UPDATE_SUBSCRIPTION_ID_FIELD, update.getSubscriptionId());
+        }
+        if (update.getErrorCode() != 0) {
+            size += CodedOutputStream.computeInt32Size(UPDATE_ERROR_CODE_FIELD, update.getErrorCode());
+        }
+        if (!StringUtils.isEmpty(update.getErrorMsg())) {
+            size += CodedOutputStream.computeStringSize(UPDATE_ERROR_MSG_FIELD, update.getErrorMsg());
+        }
+        int[] valueListSizes = null;
+        if (data != null) {
+            valueListSizes = new int[data.size()];
+            int i = 0;
+            for (Map.Entry<String, List<Object>> e : data.entrySet()) {
+                int valueListSize = computeValueListSize(e.getKey(), e.getValue());
+                valueListSizes[i++] = valueListSize;
+                size += CodedOutputStream.computeTagSize(UPDATE_DATA_FIELD) + CodedOutputStream.computeUInt32SizeNoTag(valueListSize) + valueListSize;
+            }
+        }
+        if (update.isHasMore()) {
+            size += CodedOutputStream.computeBoolSize(UPDATE_HAS_MORE_FIELD, true);
+        }
+        byte[] result = new byte[size];
+        CodedOutputStream out = CodedOutputStream.newInstance(result);
+        try {
+            if (update.getSubscriptionId() != 0) {
+                out.writeInt32(UPDATE_SUBSCRIPTION_ID_FIELD, update.getSubscriptionId());
+            }
+            if (update.getErrorCode() != 0) {
+                out.writeInt32(UPDATE_ERROR_CODE_FIELD, update.getErrorCode());
+            }
+            if (!StringUtils.isEmpty(update.getErrorMsg())) {
+                out.writeString(UPDATE_ERROR_MSG_FIELD, update.getErrorMsg());
+            }
+            if (data != null) {
+                int i = 0;
+                for (Map.Entry<String, List<Object>> e : data.entrySet()) {
+                    out.writeTag(UPDATE_DATA_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                    out.writeUInt32NoTag(valueListSizes[i++]);
+                    writeValueList(out, e.getKey(), e.getValue());
+                }
+            }
+            if (update.isHasMore()) {
+                out.writeBool(UPDATE_HAS_MORE_FIELD, true);
+            }
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode subscription update!", e);
+        }
+        return result;
+    }
+
+    private static int computeValueListSize(String key, List<Object> values) {
+        int size = 0;
+        if (!key.isEmpty()) {
+            size += CodedOutputStream.computeStringSize(VALUE_LIST_KEY_FIELD, key);
+        }
+        if (!values.isEmpty()) {
+            int tsSize = computeTsSize(values);
+            size += CodedOutputStream.computeTagSize(VALUE_LIST_TS_FIELD) + CodedOutputStream.computeUInt32SizeNoTag(tsSize) + tsSize;
+            for (Object value : values) {
+                size += CodedOutputStream.computeStringSize(VALUE_LIST_VALUE_FIELD, (String) ((Object[]) value)[1]);
+            }
+        }
+        return size;
+    }
+
+    private static int computeTsSize(List<Object> values) {
+        int size = 0;
+        for (Object value : values) {
+            size += CodedOutputStream.computeInt64SizeNoTag((long) ((Object[]) value)[0]);
+        }
+        return size;
+    }
+
+    private static void writeValueList(CodedOutputStream out, String key, List<Object> values) throws IOException {
+        if (!key.isEmpty()) {
+            out.writeString(VALUE_LIST_KEY_FIELD, key);
+        }
+        if (!values.isEmpty()) {
+            out.writeTag(VALUE_LIST_TS_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(computeTsSize(values));
+            for (Object value : values) {
+                out.writeInt64NoTag((long) ((Object[]) value)[0]);
+            }
+            for (Object value : values) {
+                out.writeString(VALUE_LIST_VALUE_FIELD, (String) ((Object[]) value)[1]);
+            }
+        }
+    }
+
+    public static SubscriptionUpdate decodeUpdate(ByteBuffer payload) throws IOException {
+        return fromProto(SubscriptionUpdateProto.parseFrom(CodedInputStream.newInstance(payload)));
+    }
+
+    static SubscriptionUpdateProto.Builder toProto(SubscriptionUpdate update) {
+        SubscriptionUpdateProto.Builder builder = SubscriptionUpdateProto.newBuilder();
+        builder.setSubscriptionId(update.getSubscriptionId());
+        builder.setErrorCode(update.getErrorCode());
+        if (update.getErrorMsg() != null) {
+            builder.setErrorMsg(update.getErrorMsg());
+        }
+        if (update.getData() != null) {
+            update.getData().entrySet().forEach(
+                    e -> {
+                        SubscriptionUpdateValueListProto.Builder dataBuilder = SubscriptionUpdateValueListProto.newBuilder();
+
+                        dataBuilder.setKey(e.getKey());
+                        e.getValue().forEach(v -> {
+                            Object[] array = (Object[]) v;
+                            dataBuilder.addTs((long) array[0]);
+                            dataBuilder.addValue((String) array[1]);
+                        });
+
+                        builder.addData(dataBuilder.build());
+                    }
+            );
+        }
+        builder.setHasMore(update.isHasMore());
+        return builder;
+    }
+
+    static SubscriptionUpdate fromProto(SubscriptionUpdateProto proto) {
+        if (proto.getErrorCode() > 0) {
+            return new SubscriptionUpdate(proto.getSubscriptionId(), SubscriptionErrorCode.forCode(proto.getErrorCode()), proto.getErrorMsg());
+        } else {
+            Map<String, List<Object>> data = new TreeMap<>();
+            proto.getDataList().forEach(v -> {
+                List<Object> values = data.computeIfAbsent(v.getKey(), k -> new ArrayList<>());
+                for (int i = 0; i < v.getTsCount(); i++) {
+                    Object[] value = new Object[2];
+                    value[0] = v.getTs(i);
+                    value[1] = v.getValue(i);
+                    values.add(value);
+                }
+            });
+            return new SubscriptionUpdate(proto.getSubscriptionId(), data, proto.getHasMore());
+        }
+    }
+
+    private static <T extends SubscriptionCmd> T fromProto(T cmd, SubscriptionCmdProto proto) {
+        cmd.setCmdId(proto.getCmdId());
+        cmd.setEntityType(emptyToNull(proto.getEntityType()));
+        cmd.setEntityId(emptyToNull(proto.getEntityId()));
+        cmd.setKeys(emptyToNull(proto.getKeys()));
+        cmd.setScope(emptyToNull(proto.getScope()));
+        cmd.setUnsubscribe(proto.getUnsubscribe());
+        cmd.setMinIntervalMs(proto.getMinIntervalMs());
+        cmd.setMaxPointsPerKey(proto.getMaxPointsPerKey());
+        return cmd;
+    }
+
+    private static SubscriptionCmdProto toProto(SubscriptionCmd cmd) {
+        SubscriptionCmdProto.Builder builder = SubscriptionCmdProto.newBuilder()
+                .setCmdId(cmd.getCmdId())
+                .setUnsubscribe(cmd.isUnsubscribe())
+                .setMinIntervalMs(cmd.getMinIntervalMs())
+                .setMaxPointsPerKey(cmd.getMaxPointsPerKey());
+        if (cmd.getEntityType() != null) {
+            builder.setEntityType(cmd.getEntityType());
+        }
+        if (cmd.getEntityId() != null) {
+            builder.setEntityId(cmd.getEntityId());
+        }
+        if (cmd.getKeys() != null) {
+            builder.setKeys(cmd.getKeys());
+        }
+        if (cmd.getScope() != null) {
+            builder.setScope(cmd.getScope());
+        }
+        return builder.build();
+    }
+
+    private static String emptyToNull(String value) {
+        return StringUtils.isEmpty(value) ? null : value;
+    }
+}
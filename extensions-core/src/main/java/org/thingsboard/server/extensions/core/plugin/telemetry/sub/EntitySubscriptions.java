@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
+
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Subscriptions of a single entity, indexed by subscription type and key.
+ * <p>
+ * Subscriptions to all keys are kept in a separate set per type, so an update only touches the subscriptions
+ * to the keys of the update and the subscriptions to all keys. Keys of a subscription are taken from
+ * its key states when the subscription is added and must not change until it is removed.
+ */
+public class EntitySubscriptions {
+
+    private final Set<Subscription> subscriptions = new HashSet<>();
+    private final Map<SubscriptionType, Set<Subscription>> allKeysSubscriptions = new EnumMap<>(SubscriptionType.class);
+    private final Map<SubscriptionType, Map<String, Set<Subscription>>> keySubscriptions = new EnumMap<>(SubscriptionType.class);
+
+    public void add(Subscription subscription) {
+        if (!subscriptions.add(subscription)) {
+            return;
+        }
+        if (subscription.isAllKeys()) {
+            allKeysSubscriptions.computeIfAbsent(subscription.getType(), type -> new HashSet<>()).add(subscription);
+        } else {
+            Map<String, Set<Subscription>> byKey = keySubscriptions.computeIfAbsent(subscription.getType(), type -> new HashMap<>());
+            for (String key : subscription.getKeyStates().keySet()) {
+                byKey.computeIfAbsent(key, k -> new HashSet<>()).add(subscription);
+            }
+        }
+    }
+
+    public boolean remove(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return false;
+        }
+        if (subscription.isAllKeys()) {
+            Set<Subscription> allKeys = allKeysSubscriptions.get(subscription.getType());
+            if (allKeys != null) {
+                allKeys.remove(subscription);
+                if (allKeys.isEmpty()) {
+                    allKeysSubscriptions.remove(subscription.getType());
+                }
+            }
+        } else {
+            Map<String, Set<Subscription>> byKey = keySubscriptions.get(subscription.getType());
+            if (byKey != null) {
+                for (String key : subscription.getKeyStates().keySet()) {
+                    Set<Subscription> keySubs = byKey.get(key);
+                    if (keySubs != null) {
+                        keySubs.remove(subscription);
+                        if (keySubs.isEmpty()) {
+                            byKey.remove(key);
+                        }
+                    }
+                }
+                if (byKey.isEmpty()) {
+                    keySubscriptions.remove(subscription.getType());
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return subscriptions.isEmpty();
+    }
+
+    public int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * All subscriptions of the entity. The set must not be modified directly.
+     */
+    public Set<Subscription> getSubscriptions() {
+        return Collections.unmodifiableSet(subscriptions);
+    }
+
+    /**
+     * Groups entries by subscriptions of the given type that are interested in their keys.
+     * Entries of each subscription keep the order of the given list.
+     */
+    public Map<Subscription, List<TsKvEntry>> match(SubscriptionType type, List<TsKvEntry> entries) {
+        Map<Subscription, List<TsKvEntry>> result = new LinkedHashMap<>();
+        Set<Subscription> allKeys = allKeysSubscriptions.get(type);
+        Map<String, Set<Subscription>> byKey = keySubscriptions.get(type);
+        for (TsKvEntry entry : entries) {
+            if (allKeys != null) {
+                for (Subscription subscription : allKeys) {
+                    result.computeIfAbsent(subscription, s -> new ArrayList<>()).add(entry);
+                }
+            }
+            if (byKey != null) {
+                Set<Subscription> keySubs = byKey.get(entry.getKey());
+                if (keySubs != null) {
+                    for (Subscription subscription : keySubs) {
+                        result.computeIfAbsent(subscription, s -> new ArrayList<>()).add(entry);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
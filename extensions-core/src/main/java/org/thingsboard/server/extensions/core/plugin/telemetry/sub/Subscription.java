@@ -15,8 +15,8 @@
  */
 package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.msg.cluster.ServerAddress;
@@ -24,17 +24,24 @@ import org.thingsboard.server.common.msg.cluster.ServerAddress;
 import java.util.Map;
 
 @Data
-@AllArgsConstructor
+@EqualsAndHashCode(exclude = "updateBuffer")
 public class Subscription {
 
     private final SubscriptionState sub;
     private final boolean local;
     private ServerAddress server;
+    private SubscriptionUpdateBuffer updateBuffer;
 
     public Subscription(SubscriptionState sub, boolean local) {
         this(sub, local, null);
     }
 
+    public Subscription(SubscriptionState sub, boolean local, ServerAddress server) {
+        this.sub = sub;
+        this.local = local;
+        this.server = server;
+    }
+
     public String getWsSessionId() {
         return getSub().getWsSessionId();
     }
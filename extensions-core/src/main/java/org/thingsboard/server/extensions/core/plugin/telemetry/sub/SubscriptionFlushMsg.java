@@ -0,0 +1,33 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
+
+import lombok.Getter;
+import org.thingsboard.server.extensions.api.plugins.msg.TimeoutMsg;
+
+/**
+ * Scheduled flush of merged updates of a local WebSocket subscription.
+ */
+public final class SubscriptionFlushMsg extends TimeoutMsg<Integer> {
+
+    @Getter
+    private final String sessionId;
+
+    public SubscriptionFlushMsg(String sessionId, int subscriptionId, long timeout) {
+        super(subscriptionId, timeout);
+        this.sessionId = sessionId;
+    }
+}
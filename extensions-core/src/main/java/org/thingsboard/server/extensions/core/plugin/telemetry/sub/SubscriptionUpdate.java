@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 
 import java.util.*;
@@ -26,10 +27,16 @@ public class SubscriptionUpdate {
     private int errorCode;
     private String errorMsg;
     private Map<String, List<Object>> data;
+    private boolean hasMore;
 
     public SubscriptionUpdate(int subscriptionId, List<TsKvEntry> data) {
+        this(subscriptionId, data, false);
+    }
+
+    public SubscriptionUpdate(int subscriptionId, List<TsKvEntry> data, boolean hasMore) {
         super();
         this.subscriptionId = subscriptionId;
+        this.hasMore = hasMore;
         this.data = new TreeMap<>();
         for (TsKvEntry tsEntry : data) {
             List<Object> values = this.data.get(tsEntry.getKey());
@@ -45,9 +52,14 @@ public class SubscriptionUpdate {
     }
 
     public SubscriptionUpdate(int subscriptionId, Map<String, List<Object>> data) {
+        this(subscriptionId, data, false);
+    }
+
+    public SubscriptionUpdate(int subscriptionId, Map<String, List<Object>> data, boolean hasMore) {
         super();
         this.subscriptionId = subscriptionId;
         this.data = data;
+        this.hasMore = hasMore;
     }
 
     public SubscriptionUpdate(int subscriptionId, SubscriptionErrorCode errorCode) {
@@ -89,9 +101,17 @@ public class SubscriptionUpdate {
         return errorMsg;
     }
 
+    /**
+     * Whether more chunks of the same history command follow this one.
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
     @Override
     public String toString() {
         return "SubscriptionUpdate [subscriptionId=" + subscriptionId + ", errorCode=" + errorCode + ", errorMsg=" + errorMsg + ", data="
-                + data + "]";
+                + data + ", hasMore=" + hasMore + "]";
     }
 }
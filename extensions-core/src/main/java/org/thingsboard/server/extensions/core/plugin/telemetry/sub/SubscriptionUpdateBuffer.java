@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Updates of a subscription that are merged between flushes to the WebSocket session.
+ * <p>
+ * Points are merged by key. Either only the point with the latest timestamp is kept, or all points
+ * up to the limit per key, in which case the oldest points are discarded first.
+ * The buffer is accessed from the plugin actor only and is not thread safe.
+ */
+public class SubscriptionUpdateBuffer {
+
+    public static final int MAX_POINTS_PER_KEY = 1000;
+
+    private final long minIntervalMs;
+    private final int maxPointsPerKey;
+    private final Map<String, LinkedList<Object>> data = new TreeMap<>();
+
+    private long lastFlushTs;
+    private boolean flushScheduled;
+
+    public SubscriptionUpdateBuffer(long minIntervalMs, int maxPointsPerKey) {
+        this.minIntervalMs = minIntervalMs;
+        this.maxPointsPerKey = Math.min(Math.max(maxPointsPerKey, 1), MAX_POINTS_PER_KEY);
+    }
+
+    public long getMinIntervalMs() {
+        return minIntervalMs;
+    }
+
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    public boolean isFlushScheduled() {
+        return flushScheduled;
+    }
+
+    public void setFlushScheduled(boolean flushScheduled) {
+        this.flushScheduled = flushScheduled;
+    }
+
+    /**
+     * Time left until the buffer may be flushed, 0 if it may be flushed right away.
+     */
+    public long getFlushDelay(long ts) {
+        return Math.max(0L, lastFlushTs + minIntervalMs - ts);
+    }
+
+    public void merge(SubscriptionUpdate update) {
+        if (update.getData() == null) {
+            return;
+        }
+        update.getData().forEach((key, points) -> {
+            LinkedList<Object> merged = data.get(key);
+            if (merged == null) {
+                merged = new LinkedList<>();
+                data.put(key, merged);
+            }
+            for (Object point : points) {
+                if (maxPointsPerKey == 1) {
+                    if (merged.isEmpty()) {
+                        merged.add(point);
+                    } else if (getTs(point) >= getTs(merged.getFirst())) {
+                        merged.set(0, point);
+                    }
+                } else {
+                    merged.add(point);
+                    if (merged.size() > maxPointsPerKey) {
+                        merged.removeFirst();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Converts merged points to a single update and clears the buffer.
+     */
+    public SubscriptionUpdate flush(int subscriptionId, long ts) {
+        Map<String, List<Object>> updateData = new TreeMap<>();
+        data.forEach((key, points) -> updateData.put(key, new ArrayList<>(points)));
+        data.clear();
+        lastFlushTs = ts;
+        flushScheduled = false;
+        return new SubscriptionUpdate(subscriptionId, updateData);
+    }
+
+    private static long getTs(Object point) {
+        return (long) ((Object[]) point)[0];
+    }
+}
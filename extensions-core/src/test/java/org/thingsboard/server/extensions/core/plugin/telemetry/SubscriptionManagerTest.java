@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.extensions.api.plugins.PluginContext;
+import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryRpcMsgHandler;
+import org.thingsboard.server.extensions.core.plugin.telemetry.handlers.TelemetryWebsocketMsgHandler;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionState;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionType;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+
+/**
+ * Compares key indexed lookup of {@link SubscriptionManager} with a full scan of all subscriptions
+ * on random sequences of subscribe, unsubscribe, session close and update operations.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SubscriptionManagerTest {
+
+    private static final int SESSIONS = 5;
+    private static final int KEYS = 10;
+    private static final int OPERATIONS = 5000;
+
+    @Mock
+    private PluginContext ctx;
+    @Mock
+    private TelemetryWebsocketMsgHandler websocketHandler;
+    @Mock
+    private TelemetryRpcMsgHandler rpcHandler;
+
+    private SubscriptionManager subscriptionManager;
+    private Map<String, List<String>> sentUpdates;
+
+    @Before
+    public void before() {
+        Mockito.when(ctx.resolve(any())).thenReturn(Optional.empty());
+        sentUpdates = new HashMap<>();
+        Mockito.doAnswer(invocation -> {
+            String sessionId = (String) invocation.getArguments()[1];
+            SubscriptionUpdate update = (SubscriptionUpdate) invocation.getArguments()[2];
+            sentUpdates.put(sessionId + ":" + update.getSubscriptionId(), toList(update));
+            return null;
+        }).when(websocketHandler).sendWsMsg(any(PluginContext.class), anyString(), any(SubscriptionUpdate.class));
+        subscriptionManager = new SubscriptionManager();
+        subscriptionManager.setWebsocketHandler(websocketHandler);
+        subscriptionManager.setRpcHandler(rpcHandler);
+    }
+
+    @Test
+    public void randomOperationsMatchFullScan() {
+        for (long seed = 0; seed < 10; seed++) {
+            before();
+            runRandomOperations(new Random(seed));
+        }
+    }
+
+    private void runRandomOperations(Random random) {
+        EntityId[] entities = new EntityId[3];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = new DeviceId(UUID.randomUUID());
+        }
+        List<SubscriptionState> registered = new ArrayList<>();
+        int subscriptionId = 0;
+        for (int op = 0; op < OPERATIONS; op++) {
+            int action = random.nextInt(10);
+            if (action < 3) {
+                String sessionId = "session" + random.nextInt(SESSIONS);
+                EntityId entityId = entities[random.nextInt(entities.length)];
+                SubscriptionType type = SubscriptionType.values()[random.nextInt(SubscriptionType.values().length)];
+                boolean allKeys = random.nextInt(5) == 0;
+                Map<String, Long> keyStates = new HashMap<>();
+                if (!allKeys) {
+                    int keys = 1 + random.nextInt(3);
+                    for (int i = 0; i < keys; i++) {
+                        keyStates.put("key" + random.nextInt(KEYS), 0L);
+                    }
+                }
+                SubscriptionState sub = new SubscriptionState(sessionId, ++subscriptionId, entityId, type, allKeys, keyStates);
+                subscriptionManager.addLocalWsSubscription(ctx, sessionId, entityId, sub, 0L, 0);
+                registered.add(sub);
+            } else if (action < 4 && !registered.isEmpty()) {
+                SubscriptionState sub = registered.remove(random.nextInt(registered.size()));
+                subscriptionManager.removeSubscription(ctx, sub.getWsSessionId(), sub.getSubscriptionId());
+            } else if (action < 5) {
+                String sessionId = "session" + random.nextInt(SESSIONS);
+                registered.removeIf(sub -> sub.getWsSessionId().equals(sessionId));
+                subscriptionManager.cleanupLocalWsSessionSubscriptions(ctx, sessionId);
+            } else {
+                EntityId entityId = entities[random.nextInt(entities.length)];
+                SubscriptionType type = SubscriptionType.values()[random.nextInt(SubscriptionType.values().length)];
+                List<TsKvEntry> entries = new ArrayList<>();
+                int size = 1 + random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    entries.add(new BasicTsKvEntry(op * 10 + i, new LongDataEntry("key" + random.nextInt(KEYS), random.nextLong())));
+                }
+                sentUpdates.clear();
+                subscriptionManager.onLocalSubscriptionUpdate(ctx, entityId, type, entries);
+                Assert.assertEquals(scan(registered, entityId, type, entries), sentUpdates);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> scan(List<SubscriptionState> registered, EntityId entityId, SubscriptionType type, List<TsKvEntry> entries) {
+        Map<String, List<String>> expected = new HashMap<>();
+        for (SubscriptionState sub : registered) {
+            if (!sub.getEntityId().equals(entityId) || sub.getType() != type) {
+                continue;
+            }
+            List<TsKvEntry> subscriptionUpdate = new ArrayList<>();
+            for (TsKvEntry kv : entries) {
+                if (sub.isAllKeys() || sub.getKeyStates().containsKey(kv.getKey())) {
+                    subscriptionUpdate.add(kv);
+                }
+            }
+            if (!subscriptionUpdate.isEmpty()) {
+                expected.put(sub.getWsSessionId() + ":" + sub.getSubscriptionId(), toList(new SubscriptionUpdate(sub.getSubscriptionId(), subscriptionUpdate)));
+            }
+        }
+        return expected;
+    }
+
+    private static List<String> toList(SubscriptionUpdate update) {
+        List<String> result = new ArrayList<>();
+        update.getData().forEach((key, values) -> values.forEach(value -> {
+            Object[] point = (Object[]) value;
+            result.add(key + "=" + point[0] + ":" + point[1]);
+        }));
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manual benchmark of subscription update encoding. Compares size and throughput of the JSON text protocol
+ * with the protobuf binary protocol for updates of different sizes.
+ * <p>
+ * Run with <code>java -cp ... TelemetryWebsocketCodecBenchmark [iterations]</code>.
+ */
+public class TelemetryWebsocketCodecBenchmark {
+
+    private static final int KEYS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        ObjectMapper jsonMapper = new ObjectMapper();
+        for (int pointsPerKey : new int[]{1, 10, 100}) {
+            SubscriptionUpdate update = createUpdate(pointsPerKey);
+            int jsonSize = jsonMapper.writeValueAsBytes(update).length;
+            int protoSize = TelemetryWebsocketProtoCodec.encodeUpdate(update).length;
+            System.out.println(String.format("%d keys x %d points: json %d bytes, protobuf %d bytes",
+                    KEYS, pointsPerKey, jsonSize, protoSize));
+            int count = Math.max(iterations / pointsPerKey, 100);
+            for (int round = 0; round < 3; round++) {
+                long size = 0;
+                long startNs = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    size += jsonMapper.writeValueAsString(update).length();
+                }
+                long jsonNs = System.nanoTime() - startNs;
+                startNs = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    size += TelemetryWebsocketProtoCodec.encodeUpdate(update).length;
+                }
+                long protoNs = System.nanoTime() - startNs;
+                System.out.println(String.format("  round %d: json %d ns/update, protobuf %d ns/update (%d)",
+                        round, jsonNs / count, protoNs / count, size));
+            }
+        }
+    }
+
+    private static SubscriptionUpdate createUpdate(int pointsPerKey) {
+        List<TsKvEntry> entries = new ArrayList<>();
+        long ts = 1496000000000L;
+        for (int i = 0; i < pointsPerKey; i++) {
+            for (int k = 0; k < KEYS; k++) {
+                entries.add(new BasicTsKvEntry(ts + i * 1000, new DoubleDataEntry("key" + k, Math.sin(i + k) * 100)));
+            }
+        }
+        return new SubscriptionUpdate(1, entries);
+    }
+}
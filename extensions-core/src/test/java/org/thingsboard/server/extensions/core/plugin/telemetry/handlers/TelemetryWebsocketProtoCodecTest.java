@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.AttributesSubscriptionCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.GetHistoryCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.TelemetryPluginCmdsWrapper;
+import org.thingsboard.server.extensions.core.plugin.telemetry.cmd.TimeseriesSubscriptionCmd;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionErrorCode;
+import org.thingsboard.server.extensions.core.plugin.telemetry.sub.SubscriptionUpdate;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TelemetryWebsocketProtoCodecTest {
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    public void cmdsRoundTrip() throws Exception {
+        TelemetryPluginCmdsWrapper wrapper = createCmds();
+
+        TelemetryPluginCmdsWrapper decoded = TelemetryWebsocketProtoCodec.decodeCmds(ByteBuffer.wrap(TelemetryWebsocketProtoCodec.encodeCmds(wrapper)));
+
+        Assert.assertEquals(jsonMapper.writeValueAsString(wrapper), jsonMapper.writeValueAsString(decoded));
+        Assert.assertNull(decoded.getAttrSubCmds().get(0).getKeys());
+        Assert.assertNull(decoded.getTsSubCmds().get(0).getAgg());
+    }
+
+    @Test
+    public void emptyCmdsRoundTrip() throws Exception {
+        TelemetryPluginCmdsWrapper decoded = TelemetryWebsocketProtoCodec.decodeCmds(
+                ByteBuffer.wrap(TelemetryWebsocketProtoCodec.encodeCmds(new TelemetryPluginCmdsWrapper())));
+
+        Assert.assertNull(decoded.getAttrSubCmds());
+        Assert.assertNull(decoded.getTsSubCmds());
+        Assert.assertNull(decoded.getHistoryCmds());
+    }
+
+    @Test
+    public void updateRoundTrip() throws Exception {
+        List<TsKvEntry> entries = new ArrayList<>();
+        entries.add(new BasicTsKvEntry(1000L, new DoubleDataEntry("temperature", 42.5)));
+        entries.add(new BasicTsKvEntry(2000L, new DoubleDataEntry("temperature", 43.0)));
+        entries.add(new BasicTsKvEntry(2000L, new StringDataEntry("status", "ok")));
+        SubscriptionUpdate update = new SubscriptionUpdate(7, entries);
+
+        SubscriptionUpdate decoded = TelemetryWebsocketProtoCodec.decodeUpdate(ByteBuffer.wrap(TelemetryWebsocketProtoCodec.encodeUpdate(update)));
+
+        Assert.assertEquals(jsonMapper.writeValueAsString(update), jsonMapper.writeValueAsString(decoded));
+        Assert.assertEquals(update.getLatestValues(), decoded.getLatestValues());
+    }
+
+    @Test
+    public void updateEncodingMatchesGeneratedCode() throws Exception {
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            entries.add(new BasicTsKvEntry(1496000000000L + i * 1000, new DoubleDataEntry("key" + (i % 7), i * 1.5)));
+            entries.add(new BasicTsKvEntry(1496000000000L + i * 1000, new StringDataEntry("\u0442\u0435\u043a\u0441\u0442", "value " + i)));
+        }
+        entries.add(new BasicTsKvEntry(-1L, new StringDataEntry("empty", "")));
+        SubscriptionUpdate update = new SubscriptionUpdate(300, entries);
+
+        Assert.assertArrayEquals(TelemetryWebsocketProtoCodec.toProto(update).build().toByteArray(),
+                TelemetryWebsocketProtoCodec.encodeUpdate(update));
+        SubscriptionUpdate error = new SubscriptionUpdate(0, SubscriptionErrorCode.INTERNAL_ERROR);
+        Assert.assertArrayEquals(TelemetryWebsocketProtoCodec.toProto(error).build().toByteArray(),
+                TelemetryWebsocketProtoCodec.encodeUpdate(error));
+    }
+
+    @Test
+    public void errorUpdateRoundTrip() throws Exception {
+        SubscriptionUpdate update = new SubscriptionUpdate(3, SubscriptionErrorCode.BAD_REQUEST, "Device id is empty!");
+
+        SubscriptionUpdate decoded = TelemetryWebsocketProtoCodec.decodeUpdate(ByteBuffer.wrap(TelemetryWebsocketProtoCodec.encodeUpdate(update)));
+
+        Assert.assertEquals(jsonMapper.writeValueAsString(update), jsonMapper.writeValueAsString(decoded));
+        Assert.assertEquals(SubscriptionErrorCode.BAD_REQUEST.getCode(), decoded.getErrorCode());
+    }
+
+    private static TelemetryPluginCmdsWrapper createCmds() {
+        AttributesSubscriptionCmd attrCmd = new AttributesSubscriptionCmd();
+        attrCmd.setCmdId(1);
+        attrCmd.setEntityType("DEVICE");
+        attrCmd.setEntityId("0f1a2b3c-0000-11e7-8080-808080808080");
+        attrCmd.setScope("CLIENT_SCOPE");
+        attrCmd.setMinIntervalMs(500);
+
+        TimeseriesSubscriptionCmd tsCmd = new TimeseriesSubscriptionCmd();
+        tsCmd.setCmdId(2);
+        tsCmd.setEntityType("DEVICE");
+        tsCmd.setEntityId("0f1a2b3c-0000-11e7-8080-808080808080");
+        tsCmd.setKeys("temperature,humidity");
+        tsCmd.setStartTs(1000L);
+        tsCmd.setTimeWindow(60000L);
+        tsCmd.setLimit(100);
+        tsCmd.setMaxPointsPerKey(10);
+
+        TimeseriesSubscriptionCmd unsubscribeCmd = new TimeseriesSubscriptionCmd();
+        unsubscribeCmd.setCmdId(3);
+        unsubscribeCmd.setUnsubscribe(true);
+
+        GetHistoryCmd historyCmd = new GetHistoryCmd(4, "DEVICE", "0f1a2b3c-0000-11e7-8080-808080808080", "temperature",
+                0L, 60000L, 1000L, 500, "AVG", 100);
+
+        TelemetryPluginCmdsWrapper wrapper = new TelemetryPluginCmdsWrapper();
+        wrapper.setAttrSubCmds(Collections.singletonList(attrCmd));
+        wrapper.setTsSubCmds(Arrays.asList(tsCmd, unsubscribeCmd));
+        wrapper.setHistoryCmds(Collections.singletonList(historyCmd));
+        return wrapper;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
+
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Manual benchmark of subscription lookup for a single entity. Compares key indexed {@link EntitySubscriptions#match}
+ * with a scan of all subscriptions that checks the keys of each one, as done before the index was introduced.
+ * <p>
+ * Run with <code>java -cp ... EntitySubscriptionsBenchmark [subscriptions] [iterations]</code>.
+ */
+public class EntitySubscriptionsBenchmark {
+
+    private static final int KEYS = 1000;
+    private static final int UPDATE_KEYS = 5;
+    private static final int ALL_KEYS_RATIO = 100;
+
+    public static void main(String[] args) {
+        int subscriptions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        DeviceId entityId = new DeviceId(UUID.randomUUID());
+        Set<Subscription> all = new HashSet<>();
+        EntitySubscriptions index = new EntitySubscriptions();
+        for (int i = 0; i < subscriptions; i++) {
+            boolean allKeys = i % ALL_KEYS_RATIO == 0;
+            Map<String, Long> keyStates = new HashMap<>();
+            if (!allKeys) {
+                keyStates.put("key" + (i % KEYS), 0L);
+                keyStates.put("key" + ((i * 7) % KEYS), 0L);
+            }
+            Subscription subscription = new Subscription(new SubscriptionState("session" + i, i, entityId, SubscriptionType.TIMESERIES, allKeys, keyStates), true);
+            all.add(subscription);
+            index.add(subscription);
+        }
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 0; i < UPDATE_KEYS; i++) {
+            entries.add(new BasicTsKvEntry(42L, new DoubleDataEntry("key" + i, i * 1.5)));
+        }
+        int expected = scan(all, entries);
+        if (expected != index.match(SubscriptionType.TIMESERIES, entries).size()) {
+            throw new IllegalStateException("Index and scan results differ!");
+        }
+        System.out.println(subscriptions + " subscriptions, " + UPDATE_KEYS + " keys per update, " + expected + " matched");
+        for (int round = 0; round < 3; round++) {
+            long scanNs = runScan(all, entries, iterations, expected);
+            long indexNs = runIndex(index, entries, iterations, expected);
+            System.out.println(String.format("  round %d: scan %d ns/update, index %d ns/update",
+                    round, scanNs / iterations, indexNs / iterations));
+        }
+    }
+
+    private static int scan(Set<Subscription> all, List<TsKvEntry> entries) {
+        int matched = 0;
+        for (Subscription s : all) {
+            if (s.getType() != SubscriptionType.TIMESERIES) {
+                continue;
+            }
+            List<TsKvEntry> subscriptionUpdate = new ArrayList<>();
+            for (TsKvEntry kv : entries) {
+                if (s.isAllKeys() || s.getKeyStates().containsKey(kv.getKey())) {
+                    subscriptionUpdate.add(kv);
+                }
+            }
+            if (!subscriptionUpdate.isEmpty()) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static long runScan(Set<Subscription> all, List<TsKvEntry> entries, int iterations, int expected) {
+        long startNs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            check(scan(all, entries), expected);
+        }
+        return System.nanoTime() - startNs;
+    }
+
+    private static long runIndex(EntitySubscriptions index, List<TsKvEntry> entries, int iterations, int expected) {
+        long startNs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            check(index.match(SubscriptionType.TIMESERIES, entries).size(), expected);
+        }
+        return System.nanoTime() - startNs;
+    }
+
+    private static void check(int matched, int expected) {
+        if (matched != expected) {
+            throw new IllegalStateException("Unexpected result count: " + matched);
+        }
+    }
+}
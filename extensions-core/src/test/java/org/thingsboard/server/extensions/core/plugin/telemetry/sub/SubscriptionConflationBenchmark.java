@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manual benchmark of subscription update conflation. Replays telemetry published at 50 Hz in simulated time
+ * and compares the amount of WebSocket messages, bytes and serialization CPU time with and without
+ * {@link SubscriptionUpdateBuffer}.
+ * <p>
+ * Run with <code>java -cp ... SubscriptionConflationBenchmark [subscriptions] [seconds]</code>.
+ */
+public class SubscriptionConflationBenchmark {
+
+    private static final int PUBLISH_INTERVAL_MS = 20;
+    private static final int KEYS = 5;
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int subscriptions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + round + ": " + subscriptions + " subscriptions, " + seconds + " s at " + (1000 / PUBLISH_INTERVAL_MS) + " Hz");
+            run("  immediate          ", subscriptions, seconds, 0, 0);
+            run("  200 ms, latest     ", subscriptions, seconds, 200, 0);
+            run("  1000 ms, latest    ", subscriptions, seconds, 1000, 0);
+            run("  1000 ms, 10 points ", subscriptions, seconds, 1000, 10);
+        }
+    }
+
+    private static void run(String name, int subscriptions, int seconds, long minIntervalMs, int maxPointsPerKey) throws JsonProcessingException {
+        List<SubscriptionUpdateBuffer> buffers = new ArrayList<>(subscriptions);
+        long[] flushTs = new long[subscriptions];
+        for (int i = 0; i < subscriptions; i++) {
+            buffers.add(minIntervalMs > 0 ? new SubscriptionUpdateBuffer(minIntervalMs, maxPointsPerKey) : null);
+            flushTs[i] = -1;
+        }
+        long messages = 0;
+        long bytes = 0;
+        long startCpu = threadMXBean.getCurrentThreadCpuTime();
+        for (long ts = 0; ts < seconds * 1000L; ts += PUBLISH_INTERVAL_MS) {
+            List<TsKvEntry> entries = createEntries(ts);
+            for (int i = 0; i < subscriptions; i++) {
+                SubscriptionUpdate update = new SubscriptionUpdate(i, entries);
+                SubscriptionUpdateBuffer buffer = buffers.get(i);
+                if (buffer == null) {
+                    bytes += jsonMapper.writeValueAsBytes(update).length;
+                    messages++;
+                    continue;
+                }
+                buffer.merge(update);
+                if (flushTs[i] >= 0 && flushTs[i] <= ts) {
+                    flushTs[i] = -1;
+                    bytes += jsonMapper.writeValueAsBytes(buffer.flush(i, ts)).length;
+                    messages++;
+                } else if (flushTs[i] < 0) {
+                    long delay = buffer.getFlushDelay(ts);
+                    if (delay == 0) {
+                        bytes += jsonMapper.writeValueAsBytes(buffer.flush(i, ts)).length;
+                        messages++;
+                    } else {
+                        flushTs[i] = ts + delay;
+                    }
+                }
+            }
+        }
+        long cpuMs = (threadMXBean.getCurrentThreadCpuTime() - startCpu) / 1000000;
+        System.out.println(String.format("%s %8d msgs, %10d bytes, %6d ms cpu", name, messages, bytes, cpuMs));
+    }
+
+    private static List<TsKvEntry> createEntries(long ts) {
+        List<TsKvEntry> entries = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            entries.add(new BasicTsKvEntry(ts, new DoubleDataEntry("key" + i, Math.sin(ts / 1000.0 + i))));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.plugin.telemetry.sub;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SubscriptionUpdateBufferTest {
+
+    private static final int SUB_ID = 1;
+
+    @Test
+    public void latestValueOnlyKeepsNewestPointPerKey() {
+        SubscriptionUpdateBuffer buffer = new SubscriptionUpdateBuffer(1000, 0);
+        buffer.merge(update(entry("a", 10, 1), entry("b", 10, 2)));
+        buffer.merge(update(entry("a", 30, 3)));
+        buffer.merge(update(entry("a", 20, 4)));
+
+        SubscriptionUpdate result = buffer.flush(SUB_ID, 100);
+        Assert.assertEquals(SUB_ID, result.getSubscriptionId());
+        assertPoints(result.getData().get("a"), 30);
+        assertPoints(result.getData().get("b"), 10);
+        Assert.assertEquals("3", ((Object[]) result.getData().get("a").get(0))[1]);
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void pointsPerKeyAreCappedByDroppingOldest() {
+        SubscriptionUpdateBuffer buffer = new SubscriptionUpdateBuffer(1000, 3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.merge(update(entry("a", i * 10, i)));
+        }
+        buffer.merge(update(entry("b", 15, 0)));
+
+        SubscriptionUpdate result = buffer.flush(SUB_ID, 100);
+        assertPoints(result.getData().get("a"), 30, 40, 50);
+        assertPoints(result.getData().get("b"), 15);
+    }
+
+    @Test
+    public void pointsPerKeyAreLimited() {
+        SubscriptionUpdateBuffer buffer = new SubscriptionUpdateBuffer(1000, Integer.MAX_VALUE);
+        for (int i = 0; i < SubscriptionUpdateBuffer.MAX_POINTS_PER_KEY + 10; i++) {
+            buffer.merge(update(entry("a", i, i)));
+        }
+        Assert.assertEquals(SubscriptionUpdateBuffer.MAX_POINTS_PER_KEY, buffer.flush(SUB_ID, 100).getData().get("a").size());
+    }
+
+    @Test
+    public void flushDelayIsCountedFromLastFlush() {
+        SubscriptionUpdateBuffer buffer = new SubscriptionUpdateBuffer(1000, 0);
+        Assert.assertEquals(0, buffer.getFlushDelay(5000));
+        buffer.merge(update(entry("a", 10, 1)));
+        buffer.setFlushScheduled(true);
+        buffer.flush(SUB_ID, 5000);
+        Assert.assertFalse(buffer.isFlushScheduled());
+        Assert.assertEquals(1000, buffer.getFlushDelay(5000));
+        Assert.assertEquals(400, buffer.getFlushDelay(5600));
+        Assert.assertEquals(0, buffer.getFlushDelay(7000));
+    }
+
+    private static void assertPoints(List<Object> points, long... expectedTs) {
+        Assert.assertEquals(expectedTs.length, points.size());
+        for (int i = 0; i < expectedTs.length; i++) {
+            Assert.assertEquals(expectedTs[i], ((Object[]) points.get(i))[0]);
+        }
+    }
+
+    private static TsKvEntry entry(String key, long ts, long value) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(key, value));
+    }
+
+    private static SubscriptionUpdate update(TsKvEntry... entries) {
+        List<TsKvEntry> data = new ArrayList<>();
+        for (TsKvEntry entry : entries) {
+            data.add(entry);
+        }
+        return new SubscriptionUpdate(SUB_ID, data);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.thingsboard.server.common.data.Device;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manual benchmark of a device reconnect storm. Intended to be run against a freshly restarted server,
+ * so that every connected device creates and initializes a new device actor.
+ * <p>
+ * All devices connect at the same time and publish a single telemetry message with QoS 1. The benchmark reports
+ * the time until all devices are connected and the time until all messages are acknowledged.
+ * Parameters are passed as system properties: rest.url, mqtt.url, username, password, devices and timeout (seconds).
+ */
+@Slf4j
+public class MqttReconnectStormBenchmark {
+
+    private static final String DEVICE_NAME_PREFIX = "Storm Device ";
+    private static final String TELEMETRY_TOPIC = "v1/devices/me/telemetry";
+
+    public static void main(String[] args) throws Exception {
+        String restUrl = System.getProperty("rest.url", "http://localhost:8080");
+        String mqttUrl = System.getProperty("mqtt.url", "tcp://localhost:1883");
+        String username = System.getProperty("username", "tenant@thingsboard.org");
+        String password = System.getProperty("password", "tenant");
+        int deviceCount = Integer.getInteger("devices", 1000);
+        long timeout = Long.getLong("timeout", 300L);
+
+        RestClient restClient = new RestClient(restUrl);
+        restClient.login(username, password);
+        List<String> tokens = new ArrayList<>(deviceCount);
+        for (int i = 0; i < deviceCount; i++) {
+            String name = DEVICE_NAME_PREFIX + i;
+            Device device = restClient.findDevice(name).orElseGet(() -> restClient.createDevice(name));
+            tokens.add(restClient.getCredentials(device.getId()).getCredentialsId());
+        }
+        log.info("Prepared {} devices", deviceCount);
+
+        CountDownLatch connected = new CountDownLatch(deviceCount);
+        CountDownLatch delivered = new CountDownLatch(deviceCount);
+        AtomicInteger failures = new AtomicInteger();
+        List<MqttAsyncClient> clients = new ArrayList<>(deviceCount);
+
+        long startTs = System.nanoTime();
+        for (String token : tokens) {
+            MqttAsyncClient client = new MqttAsyncClient(mqttUrl, MqttAsyncClient.generateClientId(), new MemoryPersistence());
+            clients.add(client);
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setUserName(token);
+            options.setMaxInflight(10);
+            client.connect(options, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    connected.countDown();
+                    publish(client, delivered, failures);
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable e) {
+                    log.warn("Failed to connect device", e);
+                    failures.incrementAndGet();
+                    connected.countDown();
+                    delivered.countDown();
+                }
+            });
+        }
+
+        boolean allConnected = connected.await(timeout, TimeUnit.SECONDS);
+        long connectedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs);
+        boolean allDelivered = delivered.await(timeout, TimeUnit.SECONDS);
+        long deliveredTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs);
+
+        log.info("Devices: {}, failures: {}", deviceCount, failures.get());
+        log.info("All connected: {} in {} ms", allConnected, connectedTime);
+        log.info("All delivered: {} in {} ms", allDelivered, deliveredTime);
+
+        for (MqttAsyncClient client : clients) {
+            try {
+                if (client.isConnected()) {
+                    client.disconnect();
+                }
+                client.close();
+            } catch (MqttException e) {
+                log.warn("Failed to close client", e);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void publish(MqttAsyncClient client, CountDownLatch delivered, AtomicInteger failures) {
+        MqttMessage message = new MqttMessage(("{\"temperature\":" + System.currentTimeMillis() % 100 + "}").getBytes());
+        message.setQos(1);
+        try {
+            client.publish(TELEMETRY_TOPIC, message, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    delivered.countDown();
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable e) {
+                    log.warn("Failed to publish telemetry", e);
+                    failures.incrementAndGet();
+                    delivered.countDown();
+                }
+            });
+        } catch (MqttException e) {
+            log.warn("Failed to publish telemetry", e);
+            failures.incrementAndGet();
+            delivered.countDown();
+        }
+    }
+}
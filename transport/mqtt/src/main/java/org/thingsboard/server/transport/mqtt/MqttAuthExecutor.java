@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes blocking device authentication and gateway device lookups outside of netty event loop.
+ * <p>
+ * The number of pending requests is limited, so a reconnect storm can't queue an unlimited amount of work.
+ * Requests over the limit fail immediately with {@link RejectedExecutionException}.
+ */
+@Slf4j
+public class MqttAuthExecutor {
+
+    private final ListeningExecutorService executor;
+    private final Semaphore permits;
+    private final long statsPrintIntervalMs;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong processingTimeNanos = new AtomicLong();
+    private final AtomicLong lastStatsPrintTs = new AtomicLong(System.currentTimeMillis());
+
+    public MqttAuthExecutor(int poolSize, int maxPendingRequests, long statsPrintIntervalMs) {
+        this.executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(poolSize,
+                new ThreadFactoryBuilder().setNameFormat("mqtt-auth-%d").setDaemon(true).build()));
+        this.permits = new Semaphore(maxPendingRequests);
+        this.statsPrintIntervalMs = statsPrintIntervalMs;
+    }
+
+    public <T> ListenableFuture<T> submit(Callable<T> task) {
+        if (!permits.tryAcquire()) {
+            rejectedCount.incrementAndGet();
+            printStats();
+            return Futures.immediateFailedFuture(new RejectedExecutionException("Too many pending MQTT authentication requests!"));
+        }
+        submittedCount.incrementAndGet();
+        long submitTs = System.nanoTime();
+        ListenableFuture<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return Futures.immediateFailedFuture(e);
+        }
+        future.addListener(() -> {
+            permits.release();
+            processingTimeNanos.addAndGet(System.nanoTime() - submitTs);
+            completedCount.incrementAndGet();
+            printStats();
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public double getAvgProcessingTimeMs() {
+        long completed = completedCount.get();
+        return completed > 0 ? processingTimeNanos.get() / 1000000.0 / completed : 0.0;
+    }
+
+    private void printStats() {
+        long ts = System.currentTimeMillis();
+        long lastTs = lastStatsPrintTs.get();
+        if (statsPrintIntervalMs > 0 && ts - lastTs > statsPrintIntervalMs && lastStatsPrintTs.compareAndSet(lastTs, ts)) {
+            log.info("MQTT auth stats: submitted [{}], completed [{}], rejected [{}], avg processing time [{}] ms",
+                    submittedCount.get(), completedCount.get(), rejectedCount.get(), String.format("%.3f", getAvgProcessingTimeMs()));
+        }
+    }
+}
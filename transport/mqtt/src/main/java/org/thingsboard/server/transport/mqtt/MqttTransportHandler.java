@@ -16,6 +16,9 @@
 package org.thingsboard.server.transport.mqtt;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.mqtt.*;
@@ -27,6 +30,7 @@ import io.netty.util.concurrent.GenericFutureListener;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.security.DeviceCredentialsFilter;
 import org.thingsboard.server.common.data.security.DeviceTokenCredentials;
 import org.thingsboard.server.common.data.security.DeviceX509Credentials;
 import org.thingsboard.server.common.msg.session.AdaptorToSessionActorMsg;
@@ -45,8 +49,11 @@ import org.thingsboard.server.transport.mqtt.util.SslUtil;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
 
 import static io.netty.handler.codec.mqtt.MqttConnectReturnCode.*;
 import static io.netty.handler.codec.mqtt.MqttMessageType.*;
@@ -70,11 +77,14 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     private final DeviceAuthService authService;
     private final RelationService relationService;
     private final SslHandler sslHandler;
+    private final MqttAuthExecutor authExecutor;
+    private final Queue<MqttMessage> pendingMsgs;
     private volatile boolean connected;
     private volatile GatewaySessionCtx gatewaySessionCtx;
+    private boolean processingAsync;
 
     public MqttTransportHandler(SessionMsgProcessor processor, DeviceService deviceService, DeviceAuthService authService, RelationService relationService,
-                                MqttTransportAdaptor adaptor, SslHandler sslHandler) {
+                                MqttTransportAdaptor adaptor, SslHandler sslHandler, MqttAuthExecutor authExecutor) {
         this.processor = processor;
         this.deviceService = deviceService;
         this.relationService = relationService;
@@ -83,13 +93,56 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         this.deviceSessionCtx = new DeviceSessionCtx(processor, authService, adaptor);
         this.sessionId = deviceSessionCtx.getSessionId().toUidStr();
         this.sslHandler = sslHandler;
+        this.authExecutor = authExecutor;
+        this.pendingMsgs = new ArrayDeque<>();
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         log.trace("[{}] Processing msg: {}", sessionId, msg);
         if (msg instanceof MqttMessage) {
-            processMqttMsg(ctx, (MqttMessage) msg);
+            if (processingAsync) {
+                pendingMsgs.add((MqttMessage) msg);
+            } else {
+                processMqttMsg(ctx, (MqttMessage) msg);
+            }
+        }
+    }
+
+    /**
+     * Stops reading from the channel until the future completes. Messages that were already read are processed
+     * afterwards in the same order, as if the future was completed synchronously.
+     */
+    private <T> void processAsync(ChannelHandlerContext ctx, ListenableFuture<T> future, FutureCallback<T> callback) {
+        processingAsync = true;
+        ctx.channel().config().setAutoRead(false);
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                callback.onSuccess(result);
+                resume(ctx);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                callback.onFailure(t);
+                resume(ctx);
+            }
+        }, ctx.executor());
+    }
+
+    private void resume(ChannelHandlerContext ctx) {
+        processingAsync = false;
+        if (!ctx.channel().isActive()) {
+            pendingMsgs.clear();
+            return;
+        }
+        MqttMessage msg;
+        while (!processingAsync && (msg = pendingMsgs.poll()) != null) {
+            processMqttMsg(ctx, msg);
+        }
+        if (!processingAsync) {
+            ctx.channel().config().setAutoRead(true);
         }
     }
 
@@ -142,7 +195,16 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
                     } else if (topicName.equals(GATEWAY_RPC_TOPIC)) {
                         gatewaySessionCtx.onDeviceRpcResponse(mqttMsg);
                     } else if (topicName.equals(GATEWAY_CONNECT_TOPIC)) {
-                        gatewaySessionCtx.onDeviceConnect(mqttMsg);
+                        processAsync(ctx, gatewaySessionCtx.onDeviceConnect(mqttMsg), new FutureCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                            }
+
+                            @Override
+                            public void onFailure(Throwable t) {
+                                log.warn("[{}] Failed to process publish msg [{}][{}]", sessionId, topicName, msgId, t);
+                            }
+                        });
                     } else if (topicName.equals(GATEWAY_DISCONNECT_TOPIC)) {
                         gatewaySessionCtx.onDeviceDisconnect(mqttMsg);
                     }
@@ -270,32 +332,49 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         if (StringUtils.isEmpty(userName)) {
             ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_BAD_USER_NAME_OR_PASSWORD));
             ctx.close();
-        } else if (!deviceSessionCtx.login(new DeviceTokenCredentials(msg.payload().userName()))) {
-            ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_NOT_AUTHORIZED));
-            ctx.close();
         } else {
-            ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_ACCEPTED));
-            connected = true;
-            checkGatewaySession();
+            login(ctx, new DeviceTokenCredentials(userName));
         }
     }
 
     private void processX509CertConnect(ChannelHandlerContext ctx, X509Certificate cert) {
+        String sha3Hash;
         try {
             String strCert = SslUtil.getX509CertificateString(cert);
-            String sha3Hash = EncryptionUtil.getSha3Hash(strCert);
-            if (deviceSessionCtx.login(new DeviceX509Credentials(sha3Hash))) {
-                ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_ACCEPTED));
-                connected = true;
-                checkGatewaySession();
-            } else {
-                ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_NOT_AUTHORIZED));
-                ctx.close();
-            }
+            sha3Hash = EncryptionUtil.getSha3Hash(strCert);
         } catch (Exception e) {
             ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_NOT_AUTHORIZED));
             ctx.close();
+            return;
         }
+        login(ctx, new DeviceX509Credentials(sha3Hash));
+    }
+
+    private void login(ChannelHandlerContext ctx, DeviceCredentialsFilter credentials) {
+        processAsync(ctx, authExecutor.submit(() -> deviceSessionCtx.login(credentials)), new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean success) {
+                if (success) {
+                    ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_ACCEPTED));
+                    connected = true;
+                    checkGatewaySession();
+                } else {
+                    ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_NOT_AUTHORIZED));
+                    ctx.close();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof RejectedExecutionException) {
+                    log.debug("[{}] Failed to submit authentication request: {}", sessionId, t.getMessage());
+                } else {
+                    log.warn("[{}] Failed to authenticate device", sessionId, t);
+                }
+                ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_SERVER_UNAVAILABLE));
+                ctx.close();
+            }
+        });
     }
 
     private X509Certificate getX509Certificate() {
@@ -374,7 +453,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         if (infoNode != null) {
             JsonNode gatewayNode = infoNode.get("gateway");
             if (gatewayNode != null && gatewayNode.asBoolean()) {
-                gatewaySessionCtx = new GatewaySessionCtx(processor, deviceService, authService, relationService, deviceSessionCtx);
+                gatewaySessionCtx = new GatewaySessionCtx(processor, deviceService, authService, relationService, deviceSessionCtx, authExecutor);
             }
         }
     }
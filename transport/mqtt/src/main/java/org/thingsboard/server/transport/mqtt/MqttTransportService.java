@@ -77,8 +77,16 @@ public class MqttTransportService {
     @Value("${mqtt.netty.worker_group_thread_count}")
     private Integer workerGroupThreadCount;
 
+    @Value("${mqtt.auth.thread_pool_size}")
+    private Integer authThreadPoolSize;
+    @Value("${mqtt.auth.max_pending_requests}")
+    private Integer authMaxPendingRequests;
+    @Value("${mqtt.auth.stats_print_interval_ms}")
+    private Long authStatsPrintIntervalMs;
+
 
     private MqttTransportAdaptor adaptor;
+    private MqttAuthExecutor authExecutor;
 
     private Channel serverChannel;
     private EventLoopGroup bossGroup;
@@ -93,13 +101,15 @@ public class MqttTransportService {
         log.info("Lookup MQTT transport adaptor {}", adaptorName);
         this.adaptor = (MqttTransportAdaptor) appContext.getBean(adaptorName);
 
+        authExecutor = new MqttAuthExecutor(authThreadPoolSize, authMaxPendingRequests, authStatsPrintIntervalMs);
+
         log.info("Starting MQTT transport server");
         bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
         workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
         ServerBootstrap b = new ServerBootstrap();
         b.group(bossGroup, workerGroup)
                 .channel(NioServerSocketChannel.class)
-                .childHandler(new MqttTransportServerInitializer(processor, deviceService, authService, relationService, adaptor, sslHandlerProvider));
+                .childHandler(new MqttTransportServerInitializer(processor, deviceService, authService, relationService, adaptor, sslHandlerProvider, authExecutor));
 
         serverChannel = b.bind(host, port).sync().channel();
         log.info("Mqtt transport started!");
@@ -113,6 +123,7 @@ public class MqttTransportService {
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            authExecutor.shutdown();
         }
         log.info("MQTT transport stopped!");
     }
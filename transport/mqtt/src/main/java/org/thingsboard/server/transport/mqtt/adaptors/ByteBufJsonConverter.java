@@ -0,0 +1,430 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.adaptors;
+
+import com.google.gson.JsonSyntaxException;
+import io.netty.buffer.ByteBuf;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.core.BasicTelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.BasicUpdateAttributesRequest;
+import org.thingsboard.server.common.msg.core.TelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.UpdateAttributesRequest;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming counterpart of {@link org.thingsboard.server.common.transport.adaptor.JsonConverter} for telemetry and
+ * attribute payloads. Reads JSON directly from the {@link ByteBuf} without building a payload string or a Gson tree.
+ * <p>
+ * Produces the same entries as the tree based converter for strict JSON. Anything else, including lenient syntax
+ * that Gson accepts, is rejected with {@link JsonSyntaxException}, so callers can fall back to the tree based converter.
+ * The buffer reader index is not modified.
+ */
+public class ByteBufJsonConverter {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String TS = "ts";
+    private static final String VALUES = "values";
+    private static final int MAX_FAST_LONG_DIGITS = 18;
+
+    private final ByteBuf buf;
+    private final int end;
+    private int pos;
+
+    private ByteBufJsonConverter(ByteBuf buf) {
+        this.buf = buf;
+        this.pos = buf.readerIndex();
+        this.end = buf.writerIndex();
+    }
+
+    public static TelemetryUploadRequest convertToTelemetry(ByteBuf payload, int requestId) throws JsonSyntaxException {
+        BasicTelemetryUploadRequest request = new BasicTelemetryUploadRequest(requestId);
+        long systemTs = System.currentTimeMillis();
+        ByteBufJsonConverter parser = new ByteBufJsonConverter(payload);
+        byte b = parser.nextToken();
+        if (b == '{') {
+            parser.parseTelemetryObject(request, systemTs);
+        } else if (b == '[') {
+            parser.pos++;
+            if (parser.nextToken() == ']') {
+                parser.pos++;
+            } else {
+                do {
+                    if (parser.nextToken() != '{') {
+                        throw parser.error("Can't parse value");
+                    }
+                    parser.parseTelemetryObject(request, systemTs);
+                } while (parser.nextSeparator(']'));
+            }
+        } else {
+            throw parser.error("Can't parse value");
+        }
+        parser.checkEnd();
+        return request;
+    }
+
+    public static UpdateAttributesRequest convertToAttributes(ByteBuf payload, int requestId) throws JsonSyntaxException {
+        ByteBufJsonConverter parser = new ByteBufJsonConverter(payload);
+        if (parser.nextToken() != '{') {
+            throw parser.error("Can't parse value");
+        }
+        List<KvEntry> values = new ArrayList<>();
+        parser.parseValuesObject(values);
+        parser.checkEnd();
+        long ts = System.currentTimeMillis();
+        List<AttributeKvEntry> attributes = new ArrayList<>(values.size());
+        for (KvEntry value : values) {
+            attributes.add(new BaseAttributeKvEntry(value, ts));
+        }
+        BasicUpdateAttributesRequest request = new BasicUpdateAttributesRequest(requestId);
+        request.add(attributes);
+        return request;
+    }
+
+    /**
+     * Parses either <code>{"ts": 1, "values": {...}}</code> or an object of values without timestamp.
+     * The form is only known at the end of the object, so entries of both forms are collected until then.
+     */
+    private void parseTelemetryObject(BasicTelemetryUploadRequest request, long systemTs) {
+        pos++;
+        List<KvEntry> values = new ArrayList<>();
+        List<KvEntry> tsValues = null;
+        KvEntry tsEntry = null;
+        boolean hasValuesKey = false;
+        if (nextToken() == '}') {
+            pos++;
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        do {
+            String key = parseKey(keys);
+            if (nextToken() == '{') {
+                if (!VALUES.equals(key) || hasValuesKey) {
+                    throw error("Can't parse value");
+                }
+                hasValuesKey = true;
+                tsValues = new ArrayList<>();
+                parseValuesObject(tsValues);
+            } else {
+                KvEntry entry = parsePrimitive(key);
+                if (TS.equals(key)) {
+                    tsEntry = entry;
+                } else if (VALUES.equals(key)) {
+                    hasValuesKey = true;
+                }
+                values.add(entry);
+            }
+        } while (nextSeparator('}'));
+
+        if (tsEntry != null && hasValuesKey) {
+            if (tsValues == null || !tsEntry.getLongValue().isPresent()) {
+                throw error("Can't parse value");
+            }
+            long ts = tsEntry.getLongValue().get();
+            for (KvEntry entry : tsValues) {
+                request.add(ts, entry);
+            }
+        } else if (tsValues != null) {
+            throw error("Can't parse value");
+        } else {
+            for (KvEntry entry : values) {
+                request.add(systemTs, entry);
+            }
+        }
+    }
+
+    private void parseValuesObject(List<KvEntry> result) {
+        pos++;
+        if (nextToken() == '}') {
+            pos++;
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        do {
+            String key = parseKey(keys);
+            result.add(parsePrimitive(key));
+        } while (nextSeparator('}'));
+    }
+
+    /**
+     * Duplicate keys are rejected, since the tree based converter keeps only the last value of such keys.
+     */
+    private String parseKey(Set<String> keys) {
+        if (nextToken() != '"') {
+            throw error("Expected name");
+        }
+        String key = parseString();
+        if (!keys.add(key)) {
+            throw error("Duplicate key " + key);
+        }
+        if (nextToken() != ':') {
+            throw error("Expected ':'");
+        }
+        pos++;
+        return key;
+    }
+
+    private KvEntry parsePrimitive(String key) {
+        byte b = nextToken();
+        if (b == '"') {
+            return new StringDataEntry(key, parseString());
+        } else if (b == 't') {
+            expectLiteral("true");
+            return new BooleanDataEntry(key, true);
+        } else if (b == 'f') {
+            expectLiteral("false");
+            return new BooleanDataEntry(key, false);
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            return parseNumber(key);
+        } else {
+            throw error("Can't parse value");
+        }
+    }
+
+    /**
+     * Numbers with a fraction are doubles, other numbers are longs, same as in the tree based converter.
+     */
+    private KvEntry parseNumber(String key) {
+        int start = pos;
+        boolean negative = buf.getByte(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int digitsStart = pos;
+        int intDigits = skipDigits();
+        if (intDigits == 0 || (intDigits > 1 && buf.getByte(digitsStart) == '0')) {
+            throw error("Malformed number");
+        }
+        boolean fraction = false;
+        boolean exponent = false;
+        if (pos < end && buf.getByte(pos) == '.') {
+            pos++;
+            fraction = true;
+            if (skipDigits() == 0) {
+                throw error("Malformed number");
+            }
+        }
+        if (pos < end && (buf.getByte(pos) == 'e' || buf.getByte(pos) == 'E')) {
+            pos++;
+            exponent = true;
+            if (pos < end && (buf.getByte(pos) == '+' || buf.getByte(pos) == '-')) {
+                pos++;
+            }
+            if (skipDigits() == 0) {
+                throw error("Malformed number");
+            }
+        }
+        if (!fraction && !exponent && intDigits <= MAX_FAST_LONG_DIGITS) {
+            long value = 0;
+            for (int i = digitsStart; i < pos; i++) {
+                value = value * 10 + (buf.getByte(i) - '0');
+            }
+            return new LongDataEntry(key, negative ? -value : value);
+        }
+        String number = buf.toString(start, pos - start, UTF8);
+        if (fraction) {
+            return new DoubleDataEntry(key, Double.parseDouble(number));
+        }
+        try {
+            return new LongDataEntry(key, Long.parseLong(number));
+        } catch (NumberFormatException e) {
+            return new LongDataEntry(key, new BigDecimal(number).longValue());
+        }
+    }
+
+    private int skipDigits() {
+        int start = pos;
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            pos++;
+        }
+        return pos - start;
+    }
+
+    /**
+     * Strings without escape sequences are decoded straight from the buffer, others are decoded segment by segment.
+     */
+    private String parseString() {
+        pos++;
+        int start = pos;
+        boolean ascii = true;
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b == '"') {
+                String result = ascii ? toAsciiString(start, pos - start) : buf.toString(start, pos - start, UTF8);
+                pos++;
+                return result;
+            } else if (b == '\\') {
+                return parseEscapedString(start);
+            } else if (b < 0) {
+                ascii = false;
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * Plain ascii strings, like all telemetry keys in practice, are copied without a charset decoder.
+     */
+    private String toAsciiString(int start, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buf.getByte(start + i);
+        }
+        return new String(chars);
+    }
+
+    private String parseEscapedString(int start) {
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        int segmentStart = start;
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b == '"') {
+                sb.append(buf.toString(segmentStart, pos - segmentStart, UTF8));
+                pos++;
+                return sb.toString();
+            } else if (b == '\\') {
+                sb.append(buf.toString(segmentStart, pos - segmentStart, UTF8));
+                pos++;
+                if (pos >= end) {
+                    break;
+                }
+                byte escaped = buf.getByte(pos++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                    case '\'':
+                        sb.append((char) escaped);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        sb.append(parseUnicodeEscape());
+                        break;
+                    default:
+                        throw error("Invalid escape sequence");
+                }
+                segmentStart = pos;
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private char parseUnicodeEscape() {
+        if (pos + 4 > end) {
+            throw error("Unterminated escape sequence");
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf.getByte(pos++), 16);
+            if (digit < 0) {
+                throw error("Malformed escape sequence");
+            }
+            value = (value << 4) + digit;
+        }
+        return (char) value;
+    }
+
+    private void expectLiteral(String literal) {
+        if (pos + literal.length() > end) {
+            throw error("Can't parse value");
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (buf.getByte(pos + i) != literal.charAt(i)) {
+                throw error("Can't parse value");
+            }
+        }
+        pos += literal.length();
+        if (pos < end && isLiteralChar(buf.getByte(pos))) {
+            throw error("Can't parse value");
+        }
+    }
+
+    /**
+     * Consumes a separator between members or elements. Returns true if more of them follow.
+     */
+    private boolean nextSeparator(char close) {
+        byte b = nextToken();
+        pos++;
+        if (b == ',') {
+            return true;
+        } else if (b == close) {
+            return false;
+        } else {
+            throw error("Expected ',' or '" + close + "'");
+        }
+    }
+
+    private byte nextToken() {
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+            pos++;
+        }
+        throw error("Unexpected end of input");
+    }
+
+    private void checkEnd() {
+        while (pos < end) {
+            byte b = buf.getByte(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                throw error("Did not consume the entire document");
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isLiteralChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b == '.' || b == '-';
+    }
+
+    private JsonSyntaxException error(String msg) {
+        return new JsonSyntaxException(msg + " at position " + (pos - buf.readerIndex()));
+    }
+}
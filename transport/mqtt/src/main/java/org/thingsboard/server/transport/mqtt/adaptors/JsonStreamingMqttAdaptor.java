@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.adaptors;
+
+import com.google.gson.JsonSyntaxException;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.msg.core.TelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.UpdateAttributesRequest;
+import org.thingsboard.server.common.msg.session.SessionContext;
+import org.thingsboard.server.common.transport.adaptor.AdaptorException;
+
+/**
+ * Json adaptor that parses telemetry and attribute payloads directly from the inbound buffer.
+ * Payloads that are not strict json are handled by the lenient parser of {@link JsonMqttAdaptor}.
+ */
+@Component("JsonStreamingMqttAdaptor")
+@Slf4j
+public class JsonStreamingMqttAdaptor extends JsonMqttAdaptor {
+
+    @Override
+    protected UpdateAttributesRequest convertToUpdateAttributesRequest(SessionContext ctx, MqttPublishMessage inbound) throws AdaptorException {
+        ByteBuf payload = inbound.payload();
+        UpdateAttributesRequest request;
+        try {
+            request = ByteBufJsonConverter.convertToAttributes(payload, inbound.variableHeader().messageId());
+        } catch (JsonSyntaxException ex) {
+            log.trace("[{}] Falling back to lenient attributes parsing: {}", ctx.getSessionId(), ex.getMessage());
+            return super.convertToUpdateAttributesRequest(ctx, inbound);
+        }
+        payload.release();
+        return request;
+    }
+
+    @Override
+    protected TelemetryUploadRequest convertToTelemetryUploadRequest(SessionContext ctx, MqttPublishMessage inbound) throws AdaptorException {
+        ByteBuf payload = inbound.payload();
+        TelemetryUploadRequest request;
+        try {
+            request = ByteBufJsonConverter.convertToTelemetry(payload, inbound.variableHeader().messageId());
+        } catch (JsonSyntaxException ex) {
+            log.trace("[{}] Falling back to lenient telemetry parsing: {}", ctx.getSessionId(), ex.getMessage());
+            return super.convertToTelemetryUploadRequest(ctx, inbound);
+        }
+        payload.release();
+        return request;
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.thingsboard.server.transport.mqtt.session;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -38,6 +41,7 @@ import org.thingsboard.server.common.transport.adaptor.JsonConverter;
 import org.thingsboard.server.common.transport.auth.DeviceAuthService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.relation.RelationService;
+import org.thingsboard.server.transport.mqtt.MqttAuthExecutor;
 import org.thingsboard.server.transport.mqtt.MqttTransportHandler;
 import org.thingsboard.server.transport.mqtt.adaptors.JsonMqttAdaptor;
 
@@ -61,26 +65,37 @@ public class GatewaySessionCtx {
     private final DeviceService deviceService;
     private final DeviceAuthService authService;
     private final RelationService relationService;
+    private final MqttAuthExecutor authExecutor;
     private final Map<String, GatewayDeviceSessionCtx> devices;
     private ChannelHandlerContext channel;
 
-    public GatewaySessionCtx(SessionMsgProcessor processor, DeviceService deviceService, DeviceAuthService authService, RelationService relationService, DeviceSessionCtx gatewaySessionCtx) {
+    public GatewaySessionCtx(SessionMsgProcessor processor, DeviceService deviceService, DeviceAuthService authService, RelationService relationService,
+                             DeviceSessionCtx gatewaySessionCtx, MqttAuthExecutor authExecutor) {
         this.processor = processor;
         this.deviceService = deviceService;
         this.authService = authService;
         this.relationService = relationService;
         this.gateway = gatewaySessionCtx.getDevice();
         this.gatewaySessionId = gatewaySessionCtx.getSessionId();
+        this.authExecutor = authExecutor;
         this.devices = new HashMap<>();
     }
 
-    public void onDeviceConnect(MqttPublishMessage msg) throws AdaptorException {
+    /**
+     * Looks up or creates the device using {@link MqttAuthExecutor}. The device is added to the session and the message
+     * is acknowledged on the channel event loop once the returned future completes.
+     */
+    public ListenableFuture<Void> onDeviceConnect(MqttPublishMessage msg) throws AdaptorException {
         JsonElement json = getJson(msg);
         String deviceName = checkDeviceName(getDeviceName(json));
         String deviceType = getDeviceType(json);
-        if (!devices.containsKey(deviceName)) {
+        if (devices.containsKey(deviceName)) {
+            ack(msg);
+            return Futures.immediateFuture(null);
+        }
+        ListenableFuture<Device> deviceFuture = authExecutor.submit(() -> {
             Optional<Device> deviceOpt = deviceService.findDeviceByTenantIdAndName(gateway.getTenantId(), deviceName);
-            Device device = deviceOpt.orElseGet(() -> {
+            return deviceOpt.orElseGet(() -> {
                 Device newDevice = new Device();
                 newDevice.setTenantId(gateway.getTenantId());
                 newDevice.setName(deviceName);
@@ -89,13 +104,18 @@ public class GatewaySessionCtx {
                 relationService.saveRelation(new EntityRelation(gateway.getId(), newDevice.getId(), "Created"));
                 return newDevice;
             });
-            GatewayDeviceSessionCtx ctx = new GatewayDeviceSessionCtx(this, device);
-            devices.put(deviceName, ctx);
-            log.debug("[{}] Added device [{}] to the gateway session", gatewaySessionId, deviceName);
-            processor.process(new BasicToDeviceActorSessionMsg(device, new BasicAdaptorToSessionActorMsg(ctx, new AttributesSubscribeMsg())));
-            processor.process(new BasicToDeviceActorSessionMsg(device, new BasicAdaptorToSessionActorMsg(ctx, new RpcSubscribeMsg())));
-        }
-        ack(msg);
+        });
+        return Futures.transform(deviceFuture, (Function<Device, Void>) device -> {
+            if (!devices.containsKey(deviceName)) {
+                GatewayDeviceSessionCtx ctx = new GatewayDeviceSessionCtx(this, device);
+                devices.put(deviceName, ctx);
+                log.debug("[{}] Added device [{}] to the gateway session", gatewaySessionId, deviceName);
+                processor.process(new BasicToDeviceActorSessionMsg(device, new BasicAdaptorToSessionActorMsg(ctx, new AttributesSubscribeMsg())));
+                processor.process(new BasicToDeviceActorSessionMsg(device, new BasicAdaptorToSessionActorMsg(ctx, new RpcSubscribeMsg())));
+            }
+            ack(msg);
+            return null;
+        }, channel.executor());
     }
 
     public void onDeviceDisconnect(MqttPublishMessage msg) throws AdaptorException {
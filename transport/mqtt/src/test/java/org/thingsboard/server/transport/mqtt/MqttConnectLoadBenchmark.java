@@ -0,0 +1,205 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnectMessage;
+import io.netty.handler.codec.mqtt.MqttConnectPayload;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttConnectVariableHeader;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.security.DeviceCredentialsFilter;
+import org.thingsboard.server.common.transport.auth.DeviceAuthResult;
+import org.thingsboard.server.common.transport.auth.DeviceAuthService;
+import org.thingsboard.server.transport.mqtt.adaptors.JsonMqttAdaptor;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manual load test of MQTT CONNECT processing with a slow {@link DeviceAuthService}.
+ * <p>
+ * Starts the MQTT transport on a local port with a stub auth service that sleeps for every credentials lookup,
+ * then connects clients as fast as possible. Compares authentication on the netty event loop, which is
+ * simulated by an executor that runs requests inline, with authentication on {@link MqttAuthExecutor}.
+ * Parameters are passed as system properties: connections, concurrency, workers (event loop threads),
+ * authThreads, authLatencyMs and port.
+ */
+public class MqttConnectLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = Integer.getInteger("connections", 5000);
+        int concurrency = Integer.getInteger("concurrency", 500);
+        int workers = Integer.getInteger("workers", 2);
+        int authThreads = Integer.getInteger("authThreads", 32);
+        long authLatencyMs = Long.getLong("authLatencyMs", 20L);
+        int port = Integer.getInteger("port", 18830);
+
+        DeviceAuthService authService = new SlowDeviceAuthService(authLatencyMs);
+        System.out.println(String.format("Auth latency %d ms, %d event loop threads: blocking limit is %d connects/s",
+                authLatencyMs, workers, workers * 1000 / Math.max(authLatencyMs, 1)));
+
+        run("event loop", new InlineAuthExecutor(), authService, connections, concurrency, workers, port);
+        run("auth executor", new MqttAuthExecutor(authThreads, connections, 0), authService, connections, concurrency, workers, port);
+    }
+
+    private static void run(String name, MqttAuthExecutor authExecutor, DeviceAuthService authService,
+                            int connections, int concurrency, int workers, int port) throws Exception {
+        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        EventLoopGroup workerGroup = new NioEventLoopGroup(workers);
+        EventLoopGroup clientGroup = new NioEventLoopGroup();
+        try {
+            Channel serverChannel = new ServerBootstrap().group(bossGroup, workerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new MqttTransportServerInitializer(msg -> {
+                    }, null, authService, null, new JsonMqttAdaptor(), null, authExecutor))
+                    .bind("localhost", port).sync().channel();
+
+            CountDownLatch done = new CountDownLatch(connections);
+            Semaphore inFlight = new Semaphore(concurrency);
+            AtomicInteger accepted = new AtomicInteger();
+            Bootstrap client = new Bootstrap().group(clientGroup).channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new MqttDecoder(), MqttEncoder.INSTANCE, new ConnectClientHandler(accepted));
+                            ch.closeFuture().addListener(f -> {
+                                inFlight.release();
+                                done.countDown();
+                            });
+                        }
+                    });
+
+            long startTs = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                inFlight.acquire();
+                client.connect("localhost", port).addListener(f -> {
+                    if (!f.isSuccess()) {
+                        inFlight.release();
+                        done.countDown();
+                    }
+                });
+            }
+            if (!done.await(5, TimeUnit.MINUTES)) {
+                System.out.println(name + ": timeout, " + done.getCount() + " connections didn't complete");
+            }
+            long elapsedMs = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs), 1);
+            System.out.println(String.format("%s: %d of %d connections accepted in %d ms, %d connects/s",
+                    name, accepted.get(), connections, elapsedMs, accepted.get() * 1000L / elapsedMs));
+            serverChannel.close().sync();
+        } finally {
+            clientGroup.shutdownGracefully().sync();
+            workerGroup.shutdownGracefully().sync();
+            bossGroup.shutdownGracefully().sync();
+            authExecutor.shutdown();
+        }
+    }
+
+    private static class ConnectClientHandler extends ChannelInboundHandlerAdapter {
+
+        private final AtomicInteger accepted;
+
+        ConnectClientHandler(AtomicInteger accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            String token = UUID.randomUUID().toString();
+            ctx.writeAndFlush(new MqttConnectMessage(
+                    new MqttFixedHeader(MqttMessageType.CONNECT, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                    new MqttConnectVariableHeader("MQTT", 4, true, false, false, 0, false, true, 60),
+                    new MqttConnectPayload(token, null, null, token, null)));
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof MqttConnAckMessage
+                    && ((MqttConnAckMessage) msg).variableHeader().connectReturnCode() == MqttConnectReturnCode.CONNECTION_ACCEPTED) {
+                accepted.incrementAndGet();
+            }
+            ctx.close();
+        }
+    }
+
+    private static class SlowDeviceAuthService implements DeviceAuthService {
+
+        private final long latencyMs;
+
+        SlowDeviceAuthService(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public DeviceAuthResult process(DeviceCredentialsFilter credentials) {
+            sleep();
+            return DeviceAuthResult.of(new DeviceId(UUID.randomUUID()));
+        }
+
+        @Override
+        public Optional<Device> findDeviceById(DeviceId deviceId) {
+            return Optional.of(new Device(deviceId));
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class InlineAuthExecutor extends MqttAuthExecutor {
+
+        InlineAuthExecutor() {
+            super(1, 1, 0);
+        }
+
+        @Override
+        public <T> ListenableFuture<T> submit(Callable<T> task) {
+            try {
+                return Futures.immediateFuture(task.call());
+            } catch (Exception e) {
+                return Futures.immediateFailedFuture(e);
+            }
+        }
+    }
+}
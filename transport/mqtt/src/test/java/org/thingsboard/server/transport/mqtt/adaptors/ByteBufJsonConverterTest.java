@@ -0,0 +1,235 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.adaptors;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.msg.core.TelemetryUploadRequest;
+import org.thingsboard.server.common.msg.core.UpdateAttributesRequest;
+import org.thingsboard.server.common.msg.session.SessionContext;
+import org.thingsboard.server.common.transport.adaptor.AdaptorException;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that {@link ByteBufJsonConverter}, alone or with the fallback of {@link JsonStreamingMqttAdaptor},
+ * produces the same requests as the tree based {@link JsonConverter}.
+ */
+public class ByteBufJsonConverterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long SYSTEM_TS = -1;
+
+    private final JsonStreamingMqttAdaptor adaptor = new JsonStreamingMqttAdaptor();
+    private final SessionContext ctx = mock(SessionContext.class);
+
+    @Test
+    public void testTelemetryWithoutTs() throws Exception {
+        assertTelemetryParity("{\"str\":\"value\",\"long\":42,\"double\":42.5,\"true\":true,\"false\":false,\"negative\":-7}");
+        assertTelemetryParity(" { \"a\" : 1 ,\n\t\"b\" :\r\n\"2\" } ");
+        assertTelemetryParity("{}");
+    }
+
+    @Test
+    public void testTelemetryWithTs() throws Exception {
+        assertTelemetryParity("{\"ts\":1451649600512,\"values\":{\"a\":1,\"b\":\"2\",\"c\":3.5}}");
+        assertTelemetryParity("{\"values\":{\"a\":1},\"ts\":1451649600512}");
+        assertTelemetryParity("{\"ts\":1451649600512,\"values\":{}}");
+        assertTelemetryParity("{\"ts\":1451649600512,\"values\":{\"a\":1},\"other\":2}");
+        assertTelemetryParity("{\"ts\":1451649600512,\"a\":1}");
+    }
+
+    @Test
+    public void testTelemetryArrays() throws Exception {
+        assertTelemetryParity("[{\"ts\":1451649600512,\"values\":{\"a\":1}},{\"ts\":1451649600513,\"values\":{\"a\":2}},{\"b\":true}]");
+        assertTelemetryParity("[{\"ts\":1451649600512,\"values\":{\"a\":1}},{\"ts\":1451649600512,\"values\":{\"b\":2}}]");
+        assertTelemetryParity(" [ ] ");
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        assertTelemetryParity("{\"a\":0,\"b\":-0,\"c\":0.0,\"d\":-0.25}");
+        assertTelemetryParity("{\"a\":1e3,\"b\":1E+3,\"c\":15e-1,\"d\":1.5e2,\"e\":-2.5E-3}");
+        assertTelemetryParity("{\"a\":999999999999999999,\"b\":9223372036854775807,\"c\":-9223372036854775808}");
+        assertTelemetryParity("{\"a\":9223372036854775808,\"b\":123456789012345678901234567890,\"c\":-123456789012345678901234567890}");
+        assertTelemetryParity("{\"a\":1.7976931348623157E308,\"b\":4.9E-324,\"c\":0.1234567890123456789}");
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        assertTelemetryParity("{\"a\":\"\",\"b\":\"quote \\\" backslash \\\\ slash \\/ apostrophe \\'\"}");
+        assertTelemetryParity("{\"a\":\"\\b\\f\\n\\r\\t\",\"b\":\"\\u0041\\u00e9\\u20AC\",\"c\":\"\\ud83d\\ude00\"}");
+        assertTelemetryParity("{\"a\":\"caf\u00e9 \u20ac \ud83d\ude00\",\"\u00e9\\u00e9\":\"key with escape\"}");
+        assertTelemetryParity("{\"a\\nb\":\"1\",\"ts\":\"not a ts\"}");
+    }
+
+    @Test
+    public void testDuplicateKeysFallBack() throws Exception {
+        assertTelemetryFallbackParity("{\"a\":1,\"a\":2}");
+        assertTelemetryFallbackParity("{\"ts\":1451649600512,\"values\":{\"a\":1,\"a\":\"2\"}}");
+        assertTelemetryFallbackParity("{\"ts\":1451649600512,\"ts\":1451649600513,\"values\":{\"a\":1}}");
+        assertAttributesFallbackParity("{\"a\":true,\"b\":1,\"a\":false}");
+    }
+
+    @Test
+    public void testLenientInputFallsBack() throws Exception {
+        assertTelemetryFallbackParity("{a:1}");
+        assertTelemetryFallbackParity("{'a':'b'}");
+        assertTelemetryFallbackParity("{\"a\":1;\"b\":2}");
+        assertTelemetryFallbackParity("{\"a\":NaN}");
+        assertTelemetryFallbackParity("{\"a\":01}");
+        assertTelemetryFallbackParity("{\"ts\":1451649600512.5,\"values\":{\"a\":1}}");
+        assertAttributesFallbackParity("{a:\"b\"}");
+    }
+
+    @Test
+    public void testMalformedInputIsRejected() throws Exception {
+        assertTelemetryRejected("");
+        assertTelemetryRejected("{\"a\":");
+        assertTelemetryRejected("{\"a\":{\"b\":1}}");
+        assertTelemetryRejected("{\"a\":[1,2]}");
+        assertTelemetryRejected("{\"a\":null}");
+        assertTelemetryRejected("[1]");
+        assertTelemetryRejected("42");
+        assertTelemetryRejected("{\"ts\":1451649600512,\"values\":1}");
+        assertTelemetryRejected("{\"a\":\"unterminated}");
+        assertAttributesRejected("[{\"a\":1}]");
+        assertAttributesRejected("{\"a\":{}}");
+    }
+
+    @Test
+    public void testAttributes() throws Exception {
+        assertAttributesParity("{\"str\":\"value\",\"long\":42,\"double\":4.2e1,\"bool\":true,\"big\":123456789012345678901234567890}");
+        assertAttributesParity("{\"a\":\"\\u00e9\\n\",\"ts\":1,\"values\":2}");
+        assertAttributesParity("{}");
+    }
+
+    @Test
+    public void testReaderIndexIsNotModified() throws Exception {
+        ByteBuf payload = payload("{\"a\":1}");
+        int readerIndex = payload.readerIndex();
+        ByteBufJsonConverter.convertToTelemetry(payload, 1);
+        ByteBufJsonConverter.convertToAttributes(payload, 1);
+        Assert.assertEquals(readerIndex, payload.readerIndex());
+    }
+
+    private void assertTelemetryParity(String json) throws Exception {
+        long startTs = System.currentTimeMillis();
+        TelemetryUploadRequest expected = JsonConverter.convertToTelemetry(new JsonParser().parse(json), 1);
+        TelemetryUploadRequest actual = ByteBufJsonConverter.convertToTelemetry(payload(json), 1);
+        Assert.assertEquals(json, toMap(expected, startTs), toMap(actual, startTs));
+        Assert.assertEquals(json, toMap(expected, startTs), toMap(adaptor.convertToTelemetryUploadRequest(ctx, publish(json)), startTs));
+    }
+
+    private void assertTelemetryFallbackParity(String json) throws Exception {
+        long startTs = System.currentTimeMillis();
+        try {
+            ByteBufJsonConverter.convertToTelemetry(payload(json), 1);
+            Assert.fail("Streaming converter should reject " + json);
+        } catch (JsonSyntaxException e) {
+            // expected
+        }
+        TelemetryUploadRequest expected = JsonConverter.convertToTelemetry(new JsonParser().parse(json), 1);
+        Assert.assertEquals(json, toMap(expected, startTs), toMap(adaptor.convertToTelemetryUploadRequest(ctx, publish(json)), startTs));
+    }
+
+    private void assertTelemetryRejected(String json) {
+        try {
+            adaptor.convertToTelemetryUploadRequest(ctx, publish(json));
+            Assert.fail("Payload should be rejected: " + json);
+        } catch (AdaptorException e) {
+            // expected
+        }
+    }
+
+    private void assertAttributesParity(String json) throws Exception {
+        UpdateAttributesRequest expected = JsonConverter.convertToAttributes(new JsonParser().parse(json), 1);
+        Assert.assertEquals(json, toMap(expected), toMap(ByteBufJsonConverter.convertToAttributes(payload(json), 1)));
+        Assert.assertEquals(json, toMap(expected), toMap(adaptor.convertToUpdateAttributesRequest(ctx, publish(json))));
+    }
+
+    private void assertAttributesFallbackParity(String json) throws Exception {
+        try {
+            ByteBufJsonConverter.convertToAttributes(payload(json), 1);
+            Assert.fail("Streaming converter should reject " + json);
+        } catch (JsonSyntaxException e) {
+            // expected
+        }
+        UpdateAttributesRequest expected = JsonConverter.convertToAttributes(new JsonParser().parse(json), 1);
+        Assert.assertEquals(json, toMap(expected), toMap(adaptor.convertToUpdateAttributesRequest(ctx, publish(json))));
+    }
+
+    private void assertAttributesRejected(String json) {
+        try {
+            adaptor.convertToUpdateAttributesRequest(ctx, publish(json));
+            Assert.fail("Payload should be rejected: " + json);
+        } catch (AdaptorException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Timestamps assigned by the converters themselves are replaced with {@link #SYSTEM_TS}.
+     */
+    private static Map<Long, List<String>> toMap(TelemetryUploadRequest request, long startTs) {
+        Map<Long, List<String>> result = new TreeMap<>();
+        for (Map.Entry<Long, List<KvEntry>> entry : request.getData().entrySet()) {
+            List<String> values = result.computeIfAbsent(entry.getKey() >= startTs ? SYSTEM_TS : entry.getKey(), ts -> new ArrayList<>());
+            entry.getValue().forEach(kv -> values.add(toString(kv)));
+        }
+        return result;
+    }
+
+    private static List<String> toMap(UpdateAttributesRequest request) {
+        List<String> result = new ArrayList<>();
+        for (AttributeKvEntry attribute : request.getAttributes()) {
+            result.add(toString(attribute));
+        }
+        result.sort(String::compareTo);
+        return result;
+    }
+
+    private static String toString(KvEntry kv) {
+        return kv.getKey() + "=" + kv.getDataType() + ":" + kv.getValueAsString();
+    }
+
+    private static ByteBuf payload(String json) {
+        return Unpooled.copiedBuffer(json, UTF8);
+    }
+
+    private static MqttPublishMessage publish(String json) {
+        return new MqttPublishMessage(new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("v1/devices/me/telemetry", 1), payload(json));
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.adaptors;
+
+import com.google.gson.JsonParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.msg.core.TelemetryUploadRequest;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manual benchmark of telemetry payload parsing. Compares the tree based {@link JsonConverter}, as used by
+ * {@link JsonMqttAdaptor}, with {@link ByteBufJsonConverter}, as used by {@link JsonStreamingMqttAdaptor}.
+ * <p>
+ * Run with <code>java -cp ... JsonStreamingConverterBenchmark [iterations]</code>.
+ */
+public class JsonStreamingConverterBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int KEYS = 20;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        for (String json : new String[]{createPayload(false), createPayload(true)}) {
+            ByteBuf payload = Unpooled.directBuffer().writeBytes(json.getBytes(UTF8));
+            verify(payload);
+            System.out.println("Payload: " + payload.readableBytes() + " bytes, " + KEYS + " keys");
+            for (int round = 0; round < 3; round++) {
+                long treeNs = runTree(payload, iterations);
+                long streamingNs = runStreaming(payload, iterations);
+                System.out.println(String.format("  round %d: tree %d ns/msg, streaming %d ns/msg",
+                        round, treeNs / iterations, streamingNs / iterations));
+            }
+            payload.release();
+        }
+    }
+
+    private static String createPayload(boolean withTs) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < KEYS; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"key").append(i).append("\":");
+            switch (i % 4) {
+                case 0:
+                    sb.append(1000 + i * 37);
+                    break;
+                case 1:
+                    sb.append(i * 1.25);
+                    break;
+                case 2:
+                    sb.append(i % 3 == 0);
+                    break;
+                default:
+                    sb.append("\"value").append(i).append('"');
+            }
+        }
+        sb.append('}');
+        return withTs ? "{\"ts\":1451649600512,\"values\":" + sb + "}" : sb.toString();
+    }
+
+    private static void verify(ByteBuf payload) {
+        Map<Long, List<KvEntry>> expected = parseTree(payload).getData();
+        Map<Long, List<KvEntry>> actual = ByteBufJsonConverter.convertToTelemetry(payload, 1).getData();
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException("Different timestamps: " + expected.keySet() + " vs " + actual.keySet());
+        }
+        List<KvEntry> expectedEntries = expected.values().iterator().next();
+        List<KvEntry> actualEntries = actual.values().iterator().next();
+        if (!expectedEntries.equals(actualEntries)) {
+            throw new IllegalStateException("Different entries: " + expectedEntries + " vs " + actualEntries);
+        }
+    }
+
+    private static TelemetryUploadRequest parseTree(ByteBuf payload) {
+        return JsonConverter.convertToTelemetry(new JsonParser().parse(payload.toString(UTF8)), 1);
+    }
+
+    private static long runTree(ByteBuf payload, int iterations) {
+        long count = 0;
+        long startNs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            count += parseTree(payload).getData().size();
+        }
+        long elapsed = System.nanoTime() - startNs;
+        check(count, iterations);
+        return elapsed;
+    }
+
+    private static long runStreaming(ByteBuf payload, int iterations) {
+        long count = 0;
+        long startNs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            count += ByteBufJsonConverter.convertToTelemetry(payload, 1).getData().size();
+        }
+        long elapsed = System.nanoTime() - startNs;
+        check(count, iterations);
+        return elapsed;
+    }
+
+    private static void check(long count, int iterations) {
+        if (count != iterations) {
+            throw new IllegalStateException("Unexpected result count: " + count);
+        }
+    }
+}